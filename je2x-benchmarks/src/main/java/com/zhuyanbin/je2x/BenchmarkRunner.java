@@ -0,0 +1,48 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 性能测试入口<br/>
+ * 与org.openjdk.jmh.Main的参数相同,另外默认启用gc profiler,
+ * 同时输出吞吐量和内存分配速率(gc.alloc.rate.norm为每次操作分配的字节数)
+ */
+public class BenchmarkRunner
+{
+    /**
+     * @param args
+     *            JMH命令行参数,例如 -p shape=1000x10 ExcelReaderBenchmark
+     * @throws CommandLineOptionException
+     * @throws RunnerException
+     * @throws IOException
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException
+    {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp())
+        {
+            options.showHelp();
+            return;
+        }
+
+        new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ExcelReader热点路径的性能测试<br/>
+ * getCellValue和parseRow2Xml每次操作处理一行(依次循环所有的行),
+ * parseSheet2Xml和output每次操作处理整个工作表
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcelReaderBenchmark
+{
+    /**
+     * 工作表的形状: 行数x列数
+     */
+    @Param({ "1000x10", "10000x10", "1000x100" })
+    public String       shape;
+
+    /**
+     * 单元格内容: number、string或mixed
+     */
+    @Param({ "number", "string", "mixed" })
+    public String       content;
+
+    private ExcelReader reader;
+
+    private HSSFSheet   sheet;
+
+    private HSSFCell[][] cells;
+
+    private int         row;
+
+    private Path        source;
+
+    private Path        target;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        source = Files.createTempFile("je2x-bench", ".xls");
+        target = Files.createTempFile("je2x-bench", ".xml");
+        WorkBookGenerator.write(shape, content, source);
+
+        HSSFWorkbook wb = WorkBookGenerator.create(shape, content);
+        sheet = wb.getSheetAt(0);
+        int rows = WorkBookGenerator.getRows(shape);
+        cells = new HSSFCell[rows][];
+        for (int i = 0; i < rows; i++)
+        {
+            HSSFRow r = sheet.getRow(i);
+            cells[i] = new HSSFCell[r.getLastCellNum()];
+            for (int j = 0; j < cells[i].length; j++)
+            {
+                cells[i][j] = r.getCell(j);
+            }
+        }
+
+        reader = new ExcelReader(source.toString());
+        reader.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+    }
+
+    /**
+     * 下一行的行号
+     */
+    private int nextRow()
+    {
+        int result = row;
+        row = (row + 1) % cells.length;
+
+        return result;
+    }
+
+    @Benchmark
+    public void getCellValue(Blackhole bh)
+    {
+        for (HSSFCell cell : cells[nextRow()])
+        {
+            bh.consume(reader.getCellValue(cell));
+        }
+    }
+
+    @Benchmark
+    public Element parseRow2Xml()
+    {
+        return reader.parseRow2Xml(sheet.getRow(nextRow()));
+    }
+
+    @Benchmark
+    public Element parseSheet2Xml()
+    {
+        return reader.parseSheet2Xml(sheet);
+    }
+
+    @Benchmark
+    public boolean output() throws IOException
+    {
+        return reader.output(target.toString());
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+
+/**
+ * 生成性能测试使用的工作簿<br/>
+ * 形状(shape)为"行数x列数",内容(content)为:
+ * <ul>
+ * <li>number: 数值表,大部分是整数,其余是1~4位小数</li>
+ * <li>string: 文本表,短文本为主,部分重复</li>
+ * <li>mixed: 第一列为编号,之后数值、文本、布尔值交替,带有少量空单元格</li>
+ * </ul>
+ * 相同的参数总是生成相同的数据
+ */
+public final class WorkBookGenerator
+{
+    private WorkBookGenerator()
+    {
+    }
+
+    /**
+     * 解析形状中的行数
+     *
+     * @param shape
+     *            行数x列数
+     * @return 行数
+     */
+    public static int getRows(String shape)
+    {
+        return Integer.parseInt(shape.substring(0, shape.indexOf('x')));
+    }
+
+    /**
+     * 解析形状中的列数
+     *
+     * @param shape
+     *            行数x列数
+     * @return 列数
+     */
+    public static int getColumns(String shape)
+    {
+        return Integer.parseInt(shape.substring(shape.indexOf('x') + 1));
+    }
+
+    /**
+     * 生成工作簿
+     *
+     * @param shape
+     *            行数x列数
+     * @param content
+     *            number、string或mixed
+     * @return 只有一个工作表的工作簿
+     */
+    public static HSSFWorkbook create(String shape, String content)
+    {
+        int rows = getRows(shape);
+        int columns = getColumns(shape);
+        Random random = new Random(rows * 31L + columns);
+
+        HSSFWorkbook result = new HSSFWorkbook();
+        HSSFSheet sheet = result.createSheet("data");
+        // ExcelReader不输出最后一行,因此多生成一行
+        for (int i = 0; i <= rows; i++)
+        {
+            HSSFRow row = sheet.createRow(i);
+            for (int j = 0; j < columns; j++)
+            {
+                fill(row.createCell(j), i, j, content, random);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 生成工作簿并保存到文件
+     *
+     * @param shape
+     *            行数x列数
+     * @param content
+     *            number、string或mixed
+     * @param file
+     *            文件
+     * @throws IOException
+     */
+    public static void write(String shape, String content, Path file) throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(file.toFile());
+        try
+        {
+            create(shape, content).write(fos);
+        }
+        finally
+        {
+            fos.close();
+        }
+    }
+
+    /**
+     * 填充单元格
+     */
+    private static void fill(HSSFCell cell, int row, int column, String content, Random random)
+    {
+        if ("number".equals(content))
+        {
+            fillNumber(cell, random);
+        }
+        else if ("string".equals(content))
+        {
+            cell.setCellValue("item_" + random.nextInt(1000) + "_" + column);
+        }
+        else if (0 == column)
+        {
+            cell.setCellValue(row + 10000);
+        }
+        else
+        {
+            switch (column % 4)
+            {
+                case 0:
+                    cell.setCellValue(0 == random.nextInt(3));
+                    break;
+                case 1:
+                    fillNumber(cell, random);
+                    break;
+                case 2:
+                    cell.setCellValue("名称" + random.nextInt(500));
+                    break;
+                default:
+                    if (0 != random.nextInt(5))
+                    {
+                        cell.setCellValue(random.nextInt(100));
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 填充数值
+     */
+    private static void fillNumber(HSSFCell cell, Random random)
+    {
+        int digits = random.nextInt(8) - 3;
+        double value = random.nextInt(100000);
+        cell.setCellValue((digits <= 0) ? value : value / Math.pow(10, digits));
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * XmlReader热点路径的性能测试<br/>
+ * getCellType和parseXml2Row每次操作处理一行(依次循环所有的行),
+ * load和output每次操作处理整个文件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlReaderBenchmark
+{
+    /**
+     * 工作表的形状: 行数x列数
+     */
+    @Param({ "1000x10", "10000x10", "1000x100" })
+    public String         shape;
+
+    /**
+     * 单元格内容: number、string或mixed
+     */
+    @Param({ "number", "string", "mixed" })
+    public String         content;
+
+    private XmlReader     reader;
+
+    private List<Element> rows;
+
+    private HSSFSheet     sheet;
+
+    private int           row;
+
+    private Path          source;
+
+    private Path          xml;
+
+    private Path          target;
+
+    @Setup
+    public void setUp() throws IOException, JDOMException
+    {
+        source = Files.createTempFile("je2x-bench", ".xls");
+        xml = Files.createTempFile("je2x-bench", ".xml");
+        target = Files.createTempFile("je2x-bench", ".xls");
+        WorkBookGenerator.write(shape, content, source);
+        new ExcelReader(source.toString()).convert(xml.toString());
+
+        rows = new SAXBuilder().build(xml.toFile()).getRootElement().getChildren().get(0).getChildren();
+        reader = new XmlReader(xml.toString());
+        reader.load();
+    }
+
+    /**
+     * 每轮使用新的工作表,避免parseXml2Row写入的行一直累积
+     */
+    @Setup(Level.Iteration)
+    public void setUpSheet()
+    {
+        sheet = new HSSFWorkbook().createSheet("data");
+        row = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(xml);
+        Files.deleteIfExists(target);
+    }
+
+    /**
+     * 下一行的行号
+     */
+    private int nextRow()
+    {
+        int result = row;
+        row = (row + 1) % rows.size();
+
+        return result;
+    }
+
+    @Benchmark
+    public void getCellType(Blackhole bh)
+    {
+        for (Element cell : rows.get(nextRow()).getChildren())
+        {
+            bh.consume(reader.getCellType(cell));
+        }
+    }
+
+    @Benchmark
+    public HSSFSheet parseXml2Row()
+    {
+        int rownum = nextRow();
+        reader.parseXml2Row(rownum, rows.get(rownum), sheet);
+
+        return sheet;
+    }
+
+    @Benchmark
+    public HSSFWorkbook load() throws IOException, JDOMException
+    {
+        reader.load();
+
+        return reader.getWorkBook();
+    }
+
+    @Benchmark
+    public boolean output() throws IOException
+    {
+        return reader.output(target.toString());
+    }
+}
@@ -0,0 +1,471 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 原子输出文件<br/>
+ * 数据先写入同一目录中的临时文件,commit时按同步策略刷新到磁盘后改名为目标文件。
+ * 进程崩溃或者多个进程同时输出同一个文件时,目标文件要么是旧的内容,要么是完整的新内容,
+ * 不会出现写了一半的文件。没有commit就close时删除临时文件。<br/>
+ * 使用方法:
+ *
+ * <pre>
+ * AtomicFile file = new AtomicFile(target);
+ * try
+ * {
+ *     write(file.getOutputStream());
+ *     file.commit();
+ * }
+ * finally
+ * {
+ *     file.close();
+ * }
+ * </pre>
+ *
+ * 输出使用较大的缓冲,减少网络文件系统上的小块写入;根据文件扩展名(.gz/.zz)自动压缩
+ */
+public class AtomicFile implements Closeable
+{
+    /**
+     * 读写缓冲大小
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * 同步策略
+     */
+    public static enum Sync
+    {
+        /**
+         * 不同步,由操作系统决定何时写入磁盘。进程崩溃时仍然是原子的,断电时可能丢失
+         */
+        NONE,
+
+        /**
+         * 改名之前同步文件内容
+         */
+        DATA,
+
+        /**
+         * 改名之前同步文件内容和属性,改名之后同步所在目录
+         */
+        FULL
+    }
+
+    /**
+     * 压缩格式
+     */
+    public static enum Compression
+    {
+        /**
+         * 不压缩
+         */
+        NONE(null),
+
+        /**
+         * gzip格式,扩展名.gz
+         */
+        GZIP(".gz"),
+
+        /**
+         * zlib(deflate)格式,扩展名.zz
+         */
+        DEFLATE(".zz");
+
+        /**
+         * 扩展名
+         */
+        private final String _extension;
+
+        private Compression(String extension)
+        {
+            _extension = extension;
+        }
+
+        /**
+         * 获取扩展名
+         *
+         * @return 扩展名,不压缩时返回null
+         */
+        public String getExtension()
+        {
+            return _extension;
+        }
+
+        /**
+         * 根据文件扩展名获取压缩格式
+         *
+         * @param fileName
+         *            文件名
+         * @return 压缩格式
+         */
+        public static Compression forFile(String fileName)
+        {
+            String name = fileName.toLowerCase();
+            for (Compression compression : values())
+            {
+                if ((null != compression._extension) && name.endsWith(compression._extension))
+                {
+                    return compression;
+                }
+            }
+
+            return NONE;
+        }
+
+        /**
+         * 去掉文件名中的压缩扩展名
+         *
+         * @param fileName
+         *            文件名
+         * @return 文件名
+         */
+        public static String strip(String fileName)
+        {
+            String extension = forFile(fileName)._extension;
+
+            return (null == extension) ? fileName : fileName.substring(0, fileName.length() - extension.length());
+        }
+
+        /**
+         * 包装压缩输出流
+         *
+         * @param os
+         *            输出流
+         * @return 压缩输出流,关闭时同时关闭os
+         * @throws IOException
+         */
+        public OutputStream wrap(OutputStream os) throws IOException
+        {
+            switch (this)
+            {
+                case GZIP:
+                    return new GZIPOutputStream(os, BUFFER_SIZE / 4);
+                case DEFLATE:
+                    return new DeflaterOutputStream(os, new Deflater(), BUFFER_SIZE / 4)
+                    {
+                        @Override
+                        public void close() throws IOException
+                        {
+                            super.close();
+                            def.end();
+                        }
+                    };
+                default:
+                    return os;
+            }
+        }
+
+        /**
+         * 根据数据头识别压缩格式并包装解压输入流<br/>
+         * gzip以1f 8b开头,zlib的头两个字节按大端读取是31的倍数且压缩方法为8,
+         * xml文档不会以这些字节开头
+         *
+         * @param is
+         *            支持mark的输入流
+         * @return 解压输入流,不是压缩数据时返回is
+         * @throws IOException
+         */
+        public static InputStream unwrap(InputStream is) throws IOException
+        {
+            is.mark(2);
+            int b0 = is.read();
+            int b1 = is.read();
+            is.reset();
+
+            if ((0x1f == b0) && (0x8b == b1))
+            {
+                return new GZIPInputStream(is, BUFFER_SIZE / 4);
+            }
+            if ((b1 >= 0) && (8 == (b0 & 0x0f)) && (0 == ((b0 << 8) | b1) % 31))
+            {
+                return new InflaterInputStream(is);
+            }
+
+            return is;
+        }
+    }
+
+    /**
+     * 目标文件
+     */
+    private final Path        _target;
+
+    /**
+     * 压缩格式
+     */
+    private final Compression _compression;
+
+    /**
+     * 同步策略
+     */
+    private final Sync        _sync;
+
+    /**
+     * 临时文件,还没有打开时为null
+     */
+    private Path              _temp    = null;
+
+    /**
+     * 临时文件的通道
+     */
+    private FileChannel       _channel = null;
+
+    /**
+     * 输出流
+     */
+    private OutputStream      _os      = null;
+
+    /**
+     * 构造方法,根据扩展名选择压缩格式,不同步
+     *
+     * @param target
+     *            目标文件
+     */
+    public AtomicFile(Path target)
+    {
+        this(target, Sync.NONE);
+    }
+
+    /**
+     * 构造方法,根据扩展名选择压缩格式
+     *
+     * @param target
+     *            目标文件
+     * @param sync
+     *            同步策略
+     */
+    public AtomicFile(Path target, Sync sync)
+    {
+        this(target, Compression.forFile(target.toString()), sync);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param target
+     *            目标文件
+     * @param compression
+     *            压缩格式
+     * @param sync
+     *            同步策略
+     */
+    public AtomicFile(Path target, Compression compression, Sync sync)
+    {
+        _target = target;
+        _compression = compression;
+        _sync = sync;
+    }
+
+    /**
+     * 获取目标文件
+     *
+     * @return 目标文件
+     */
+    public Path getTarget()
+    {
+        return _target;
+    }
+
+    /**
+     * 获取输出流,第一次调用时创建临时文件<br/>
+     * 输出流不需要(也不应该)由调用者关闭,commit或close时关闭
+     *
+     * @return 输出流
+     * @throws IOException
+     */
+    public OutputStream getOutputStream() throws IOException
+    {
+        if (null == _os)
+        {
+            // 不使用Files.createTempFile,它创建的文件只有所有者可以读写
+            Path dir = _target.toAbsolutePath().getParent();
+            String prefix = "." + _target.getFileName().toString() + ".";
+            while (null == _channel)
+            {
+                Path temp = dir.resolve(prefix + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+                try
+                {
+                    _channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+                    _temp = temp;
+                }
+                catch (FileAlreadyExistsException ex)
+                {
+                    continue;
+                }
+            }
+            OutputStream os = new BufferedOutputStream(Channels.newOutputStream(_channel), BUFFER_SIZE);
+            _os = _compression.wrap(os);
+        }
+
+        return _os;
+    }
+
+    /**
+     * 完成输出,将临时文件改名为目标文件
+     *
+     * @throws IOException
+     */
+    public void commit() throws IOException
+    {
+        OutputStream os = getOutputStream();
+        if (os instanceof DeflaterOutputStream)
+        {
+            ((DeflaterOutputStream) os).finish();
+        }
+        os.flush();
+        if (Sync.NONE != _sync)
+        {
+            _channel.force(Sync.FULL == _sync);
+        }
+        os.close();
+        _os = null;
+        _channel = null;
+
+        try
+        {
+            Files.move(_temp, _target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException ex)
+        {
+            Files.move(_temp, _target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        _temp = null;
+
+        if (Sync.FULL == _sync)
+        {
+            syncDirectory(_target.toAbsolutePath().getParent());
+        }
+    }
+
+    /**
+     * 关闭输出,没有commit时删除临时文件
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            if (null != _os)
+            {
+                _os.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            // 放弃输出时忽略关闭的错误,例如压缩流结束时写入失败
+        }
+        finally
+        {
+            _os = null;
+            _channel = null;
+            if (null != _temp)
+            {
+                Files.deleteIfExists(_temp);
+                _temp = null;
+            }
+        }
+    }
+
+    /**
+     * 原子地写入文件
+     *
+     * @param target
+     *            目标文件
+     * @param data
+     *            文件内容
+     * @param sync
+     *            同步策略
+     * @throws IOException
+     */
+    public static void write(Path target, byte[] data, Sync sync) throws IOException
+    {
+        AtomicFile file = new AtomicFile(target, sync);
+        try
+        {
+            file.getOutputStream().write(data);
+            file.commit();
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    /**
+     * 打开输入文件,使用较大的缓冲,压缩文件(.gz/.zz)自动解压
+     *
+     * @param file
+     *            文件
+     * @return 输入流,由调用者负责关闭
+     * @throws IOException
+     */
+    public static InputStream openInput(Path file) throws IOException
+    {
+        InputStream is = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try
+        {
+            return Compression.unwrap(is);
+        }
+        catch (IOException ex)
+        {
+            is.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 同步目录,使改名操作写入磁盘。不支持打开目录的系统(例如Windows)忽略
+     *
+     * @param dir
+     *            目录
+     */
+    private static void syncDirectory(Path dir)
+    {
+        try
+        {
+            FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ);
+            try
+            {
+                channel.force(true);
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            // 不支持同步目录
+        }
+    }
+}
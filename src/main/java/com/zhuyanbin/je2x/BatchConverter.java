@@ -0,0 +1,1147 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdom2.JDOMException;
+
+/**
+ * 批量转换工具<br/>
+ * 遍历目录下所有的Excel(或xml)文件,在线程池中并行转换。
+ * 同时进行的转换按照文件大小占用内存配额,避免多个大文件同时转换导致内存不足。<br/>
+ * 用法: java com.zhuyanbin.je2x.BatchConverter [选项] 目录
+ */
+public class BatchConverter
+{
+    /**
+     * 转换方向: Excel转换成xml
+     */
+    public static final int  TO_XML         = 0;
+
+    /**
+     * 转换方向: xml转换成Excel
+     */
+    public static final int  TO_EXCEL       = 1;
+
+    /**
+     * 1MB
+     */
+    private static final int MB             = 1024 * 1024;
+
+    /**
+     * 转换时内存占用与文件大小的估算倍数
+     */
+    private static final int MEMORY_FACTOR  = 16;
+
+    /**
+     * 转换方向
+     */
+    private int              _direction     = TO_XML;
+
+    /**
+     * xml转换成Excel时的输出格式
+     */
+    private int              _format        = XmlReader.FORMAT_XLS;
+
+    /**
+     * 输出目录,为null时输出到源文件所在目录
+     */
+    private Path             _outputDir     = null;
+
+    /**
+     * 包含的文件(glob,相对于转换目录)
+     */
+    private List<PathMatcher> _includes     = new ArrayList<PathMatcher>();
+
+    /**
+     * 排除的文件(glob,相对于转换目录)
+     */
+    private List<PathMatcher> _excludes     = new ArrayList<PathMatcher>();
+
+    /**
+     * 线程数
+     */
+    private int              _threads       = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 同时转换的文件可以使用的内存配额(MB)
+     */
+    private int              _memory        = (int) Math.max(1, Runtime.getRuntime().maxMemory() / 2 / MB);
+
+    /**
+     * Excel转换成xml时是否输出紧凑格式
+     */
+    private boolean          _compact       = false;
+
+    /**
+     * Excel转换成xml时是否输出单元格样式
+     */
+    private boolean          _cellStyles    = false;
+
+    /**
+     * 输出xls时是否修补已有的文件
+     */
+    private boolean          _patch         = false;
+
+    /**
+     * 增量转换的清单和缓存目录,为null时转换所有文件
+     */
+    private Path             _cacheDir      = null;
+
+    /**
+     * 输出xml的压缩格式
+     */
+    private AtomicFile.Compression _compression = AtomicFile.Compression.NONE;
+
+    /**
+     * 输出文件的同步策略
+     */
+    private AtomicFile.Sync  _sync          = AtomicFile.Sync.NONE;
+
+    /**
+     * 设置转换方向
+     *
+     * @param direction
+     *            TO_XML或TO_EXCEL
+     */
+    public void setDirection(int direction)
+    {
+        _direction = direction;
+    }
+
+    /**
+     * 获取转换方向
+     *
+     * @return TO_XML或TO_EXCEL
+     */
+    public int getDirection()
+    {
+        return _direction;
+    }
+
+    /**
+     * 设置xml转换成Excel时的输出格式
+     *
+     * @param format
+     *            XmlReader.FORMAT_XLS、XmlReader.FORMAT_XLSX或XmlReader.FORMAT_TABLE
+     */
+    public void setFormat(int format)
+    {
+        _format = format;
+    }
+
+    /**
+     * 获取xml转换成Excel时的输出格式
+     *
+     * @return XmlReader.FORMAT_XLS、XmlReader.FORMAT_XLSX或XmlReader.FORMAT_TABLE
+     */
+    public int getFormat()
+    {
+        return _format;
+    }
+
+    /**
+     * 设置输出目录,目录结构与转换目录一致
+     *
+     * @param outputDir
+     *            输出目录,为null时输出到源文件所在目录
+     */
+    public void setOutputDir(Path outputDir)
+    {
+        _outputDir = outputDir;
+    }
+
+    /**
+     * 获取输出目录
+     *
+     * @return 输出目录,为null时输出到源文件所在目录
+     */
+    public Path getOutputDir()
+    {
+        return _outputDir;
+    }
+
+    /**
+     * 添加包含的文件,没有添加时包含所有文件
+     *
+     * @param glob
+     *            相对于转换目录的glob(例如 config/item*.xls),或者文件名的glob(例如 item*.xls)
+     */
+    public void addInclude(String glob)
+    {
+        _includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * 添加排除的文件
+     *
+     * @param glob
+     *            相对于转换目录的glob,或者文件名的glob
+     */
+    public void addExclude(String glob)
+    {
+        _excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * 设置线程数
+     *
+     * @param threads
+     *            线程数
+     */
+    public void setThreads(int threads)
+    {
+        _threads = Math.max(1, threads);
+    }
+
+    /**
+     * 获取线程数
+     *
+     * @return 线程数
+     */
+    public int getThreads()
+    {
+        return _threads;
+    }
+
+    /**
+     * 设置同时转换的文件可以使用的内存配额
+     *
+     * @param memory
+     *            内存配额(MB)
+     */
+    public void setMemory(int memory)
+    {
+        _memory = Math.max(1, memory);
+    }
+
+    /**
+     * 获取同时转换的文件可以使用的内存配额
+     *
+     * @return 内存配额(MB)
+     */
+    public int getMemory()
+    {
+        return _memory;
+    }
+
+    /**
+     * 设置Excel转换成xml时是否输出紧凑格式
+     *
+     * @param compact
+     *            true为紧凑格式(R/C),false为普通格式(Row/Cell/Data)
+     */
+    public void setCompact(boolean compact)
+    {
+        _compact = compact;
+    }
+
+    /**
+     * Excel转换成xml时是否输出紧凑格式
+     *
+     * @return 紧凑格式返回true
+     */
+    public boolean isCompact()
+    {
+        return _compact;
+    }
+
+    /**
+     * 设置Excel转换成xml时是否输出单元格样式(只支持xls文件)
+     *
+     * @param cellStyles
+     *            true为输出单元格样式,false为只输出数据
+     */
+    public void setCellStyles(boolean cellStyles)
+    {
+        _cellStyles = cellStyles;
+    }
+
+    /**
+     * Excel转换成xml时是否输出单元格样式
+     *
+     * @return 输出单元格样式返回true
+     */
+    public boolean isCellStyles()
+    {
+        return _cellStyles;
+    }
+
+    /**
+     * 设置输出xls时是否修补已有的文件<br/>
+     * 修补时只修改与xml不同的单元格,xml中没有的内容(图片、打印设置等)保持不变,见XmlPatcher
+     *
+     * @param patch
+     *            true为修补,false为重新生成
+     */
+    public void setPatch(boolean patch)
+    {
+        _patch = patch;
+    }
+
+    /**
+     * 输出xls时是否修补已有的文件
+     *
+     * @return 修补时返回true
+     */
+    public boolean isPatch()
+    {
+        return _patch;
+    }
+
+    /**
+     * 设置增量转换的清单和缓存目录<br/>
+     * 设置后源文件和输出文件都没有改变的文件不再转换,
+     * 源文件内容与以前转换过的某个版本相同时直接使用缓存的结果
+     *
+     * @param cacheDir
+     *            清单和缓存目录,为null时转换所有文件
+     */
+    public void setCacheDir(Path cacheDir)
+    {
+        _cacheDir = cacheDir;
+    }
+
+    /**
+     * 获取增量转换的清单和缓存目录
+     *
+     * @return 清单和缓存目录,为null时转换所有文件
+     */
+    public Path getCacheDir()
+    {
+        return _cacheDir;
+    }
+
+    /**
+     * 设置输出xml的压缩格式,输出文件名添加对应的扩展名(.xml.gz/.xml.zz)
+     *
+     * @param compression
+     *            压缩格式
+     */
+    public void setCompression(AtomicFile.Compression compression)
+    {
+        _compression = compression;
+    }
+
+    /**
+     * 获取输出xml的压缩格式
+     *
+     * @return 压缩格式
+     */
+    public AtomicFile.Compression getCompression()
+    {
+        return _compression;
+    }
+
+    /**
+     * 设置输出文件的同步策略
+     *
+     * @param sync
+     *            同步策略
+     */
+    public void setSync(AtomicFile.Sync sync)
+    {
+        _sync = sync;
+    }
+
+    /**
+     * 获取输出文件的同步策略
+     *
+     * @return 同步策略
+     */
+    public AtomicFile.Sync getSync()
+    {
+        return _sync;
+    }
+
+    /**
+     * 转换器版本,包括影响输出结果的转换选项
+     *
+     * @return 转换器版本
+     */
+    protected String getVersion()
+    {
+        String result = ConvertManifest.VERSION;
+        if (TO_XML == getDirection())
+        {
+            result += isCompact() ? "-xml-compact" : "-xml";
+            result += isCellStyles() ? "-styles" : "";
+            result += (null == getCompression().getExtension()) ? "" : getCompression().getExtension();
+        }
+        else
+        {
+            if (XmlReader.FORMAT_TABLE == getFormat())
+            {
+                result += "-table-" + TableFile.VERSION;
+            }
+            else
+            {
+                result += (XmlReader.FORMAT_XLSX == getFormat()) ? "-xlsx" : (isPatch() ? "-xls-patch" : "-xls");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 获取源文件在清单中的记录名
+     *
+     * @param root
+     *            转换目录
+     * @param file
+     *            源文件
+     * @return 以'/'分隔的相对路径
+     */
+    protected static String getKey(Path root, Path file)
+    {
+        StringBuilder result = new StringBuilder();
+        for (Path name : root.relativize(file))
+        {
+            if (result.length() > 0)
+            {
+                result.append('/');
+            }
+            result.append(name.toString());
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * 是否为需要转换的文件
+     *
+     * @param root
+     *            转换目录
+     * @param file
+     *            文件
+     * @return 需要转换时返回true
+     */
+    protected boolean accept(Path root, Path file)
+    {
+        String name = file.getFileName().toString().toLowerCase();
+        boolean result = false;
+        if (TO_XML == getDirection())
+        {
+            result = name.endsWith(".xls") || name.endsWith(".xlsx");
+        }
+        else
+        {
+            result = AtomicFile.Compression.strip(name).endsWith(".xml");
+        }
+
+        Path relative = root.relativize(file);
+        if (result && (!_includes.isEmpty()))
+        {
+            result = matches(_includes, relative);
+        }
+        if (result)
+        {
+            result = !matches(_excludes, relative);
+        }
+
+        return result;
+    }
+
+    /**
+     * 是否匹配任意一个glob,相对路径或文件名匹配即可
+     *
+     * @param matchers
+     *            glob
+     * @param path
+     *            相对路径
+     * @return 匹配时返回true
+     */
+    private static boolean matches(List<PathMatcher> matchers, Path path)
+    {
+        for (PathMatcher matcher : matchers)
+        {
+            if (matcher.matches(path) || matcher.matches(path.getFileName()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 获取需要转换的文件
+     *
+     * @param root
+     *            转换目录
+     * @return 需要转换的文件
+     * @throws IOException
+     */
+    public List<Path> listFiles(final Path root) throws IOException
+    {
+        final List<Path> result = new ArrayList<Path>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                if (attrs.isRegularFile() && accept(root, file))
+                {
+                    result.add(file);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * 获取输出文件名
+     *
+     * @param root
+     *            转换目录
+     * @param file
+     *            源文件
+     * @return 输出文件
+     */
+    public Path getTarget(Path root, Path file)
+    {
+        String name = AtomicFile.Compression.strip(file.getFileName().toString());
+        int dot = name.lastIndexOf('.');
+        if (dot > 0)
+        {
+            name = name.substring(0, dot);
+        }
+
+        if (TO_XML == getDirection())
+        {
+            name += ".xml";
+            name += (null == getCompression().getExtension()) ? "" : getCompression().getExtension();
+        }
+        else
+        {
+            if (XmlReader.FORMAT_TABLE == getFormat())
+            {
+                name += TableFile.EXTENSION;
+            }
+            else
+            {
+                name += (XmlReader.FORMAT_XLSX == getFormat()) ? ".xlsx" : ".xls";
+            }
+        }
+
+        Path dir = file.getParent();
+        if (null != getOutputDir())
+        {
+            Path parent = root.relativize(file).getParent();
+            dir = (null == parent) ? getOutputDir() : getOutputDir().resolve(parent);
+        }
+
+        return dir.resolve(name);
+    }
+
+    /**
+     * 排除输出文件相同的源文件<br/>
+     * 例如同一目录下的a.xls和a.xlsx(或者a.xml和a.xml.gz)输出到同一个文件,同时转换时后完成的会覆盖先完成的,
+     * 因此这些源文件都不转换,按转换失败统计
+     *
+     * @param root
+     *            转换目录
+     * @param files
+     *            需要转换的文件
+     * @param summary
+     *            转换结果统计
+     * @param log
+     *            输出错误信息,为null时不输出
+     * @return 输出文件不与其他源文件相同的源文件
+     */
+    protected List<Path> getUniqueTargets(Path root, List<Path> files, Summary summary, PrintStream log)
+    {
+        Map<Path, List<Path>> sources = new LinkedHashMap<Path, List<Path>>();
+        for (Path file : files)
+        {
+            Path target = getTarget(root, file).toAbsolutePath().normalize();
+            List<Path> list = sources.get(target);
+            if (null == list)
+            {
+                list = new ArrayList<Path>();
+                sources.put(target, list);
+            }
+            list.add(file);
+        }
+
+        List<Path> result = new ArrayList<Path>();
+        for (Map.Entry<Path, List<Path>> entry : sources.entrySet())
+        {
+            List<Path> list = entry.getValue();
+            if (1 == list.size())
+            {
+                result.add(list.get(0));
+                continue;
+            }
+
+            for (Path file : list)
+            {
+                summary.fail();
+                if (null != log)
+                {
+                    log.println(file + ": output " + entry.getKey() + " is also the output of " + list);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 转换单个文件
+     *
+     * @param source
+     *            源文件
+     * @param target
+     *            输出文件
+     * @throws IOException
+     * @throws JDOMException
+     */
+    protected void convert(Path source, Path target) throws IOException, JDOMException
+    {
+        createParent(target);
+
+        if (TO_XML == getDirection())
+        {
+            ExcelReader reader = new ExcelReader(source.toString());
+            reader.setCompact(isCompact());
+            reader.setCellStyles(isCellStyles());
+            reader.setSync(getSync());
+            reader.convert(target.toString());
+        }
+        else if (XmlReader.FORMAT_XLSX == getFormat())
+        {
+            XmlReader reader = new XmlReader(source.toString());
+            reader.setSync(getSync());
+            reader.output(target.toString(), XmlReader.FORMAT_XLSX);
+        }
+        else if (XmlReader.FORMAT_TABLE == getFormat())
+        {
+            XmlReader reader = new XmlReader(source.toString());
+            reader.setSync(getSync());
+            reader.output(target.toString(), XmlReader.FORMAT_TABLE);
+        }
+        else
+        {
+            XmlReader reader = new XmlReader(source.toString());
+            reader.setSync(getSync());
+            if (isPatch() && Files.isRegularFile(target))
+            {
+                reader.patch(target.toString());
+            }
+            else
+            {
+                reader.setStreaming(true);
+                reader.load();
+            }
+            reader.output(target.toString(), XmlReader.FORMAT_XLS);
+        }
+    }
+
+    /**
+     * 创建输出文件所在的目录
+     *
+     * @param target
+     *            输出文件
+     * @throws IOException
+     */
+    private static void createParent(Path target) throws IOException
+    {
+        Path parent = target.toAbsolutePath().getParent();
+        if (null != parent)
+        {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * 估算转换文件时需要的内存配额
+     *
+     * @param size
+     *            文件大小
+     * @return 内存配额(MB),不超过总配额
+     */
+    protected int getPermits(long size)
+    {
+        long result = (size * MEMORY_FACTOR + MB - 1) / MB;
+
+        return (int) Math.max(1, Math.min(getMemory(), result));
+    }
+
+    /**
+     * 转换目录下所有的文件
+     *
+     * @param root
+     *            转换目录
+     * @param log
+     *            转换失败时输出错误信息,为null时不输出
+     * @return 转换结果统计
+     * @throws IOException
+     */
+    public Summary run(final Path root, final PrintStream log) throws IOException
+    {
+        final Summary result = new Summary();
+        final Semaphore memory = new Semaphore(getMemory(), true);
+        final String version = getVersion();
+        long start = System.nanoTime();
+
+        ConvertManifest manifest = null;
+        if (null != getCacheDir())
+        {
+            manifest = new ConvertManifest(getCacheDir());
+            manifest.load();
+        }
+        final ConvertManifest cache = manifest;
+
+        List<Path> files = getUniqueTargets(root, listFiles(root), result, log);
+        ExecutorService executor = Executors.newFixedThreadPool(getThreads());
+        try
+        {
+            List<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (final Path file : files)
+            {
+                tasks.add(executor.submit(new Callable<Void>()
+                {
+                    public Void call() throws InterruptedException
+                    {
+                        Path target = getTarget(root, file);
+                        String key = getKey(root, file);
+                        if ((null != cache) && cache.isUpToDate(key, file, target, version))
+                        {
+                            result.skip();
+                            return null;
+                        }
+
+                        long size = 0;
+                        int permits = 1;
+                        String hash = null;
+                        try
+                        {
+                            size = Files.size(file);
+                            permits = getPermits(size);
+                            if (null != cache)
+                            {
+                                hash = ConvertManifest.hash(file);
+                                createParent(target);
+                                if (cache.restore(key, file, hash, target, version))
+                                {
+                                    result.restore(size);
+                                    return null;
+                                }
+                            }
+                        }
+                        catch (IOException ex)
+                        {
+                            // 文件大小未知时按最小配额处理,转换时再报告错误
+                        }
+
+                        memory.acquire(permits);
+                        try
+                        {
+                            convert(file, target);
+                            if (null != hash)
+                            {
+                                cache.put(key, file, hash, target, version);
+                            }
+                            result.add(size);
+                        }
+                        catch (Exception ex)
+                        {
+                            result.fail();
+                            if (null != log)
+                            {
+                                log.println(file + ": " + ex);
+                            }
+                        }
+                        finally
+                        {
+                            memory.release(permits);
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> task : tasks)
+            {
+                try
+                {
+                    task.get();
+                }
+                catch (Exception ex)
+                {
+                    result.fail();
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if (null != cache)
+        {
+            for (String key : cache.keys())
+            {
+                if (!Files.exists(root.resolve(key)))
+                {
+                    cache.remove(key);
+                }
+            }
+            cache.save();
+        }
+
+        result.setTime(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 转换结果统计
+     */
+    public static class Summary
+    {
+        /**
+         * 成功转换的文件数
+         */
+        private final AtomicInteger _files   = new AtomicInteger();
+
+        /**
+         * 转换失败的文件数
+         */
+        private final AtomicInteger _failed  = new AtomicInteger();
+
+        /**
+         * 没有改变而跳过的文件数
+         */
+        private final AtomicInteger _skipped = new AtomicInteger();
+
+        /**
+         * 从缓存中恢复的文件数
+         */
+        private final AtomicInteger _cached  = new AtomicInteger();
+
+        /**
+         * 成功转换的文件总大小
+         */
+        private final AtomicLong    _bytes   = new AtomicLong();
+
+        /**
+         * 耗时(纳秒)
+         */
+        private long                _time    = 0;
+
+        void add(long size)
+        {
+            _files.incrementAndGet();
+            _bytes.addAndGet(size);
+        }
+
+        void fail()
+        {
+            _failed.incrementAndGet();
+        }
+
+        void skip()
+        {
+            _skipped.incrementAndGet();
+        }
+
+        void restore(long size)
+        {
+            _cached.incrementAndGet();
+            add(size);
+        }
+
+        void setTime(long time)
+        {
+            _time = time;
+        }
+
+        /**
+         * @return 成功转换的文件数
+         */
+        public int getFiles()
+        {
+            return _files.get();
+        }
+
+        /**
+         * @return 转换失败的文件数
+         */
+        public int getFailed()
+        {
+            return _failed.get();
+        }
+
+        /**
+         * @return 没有改变而跳过的文件数
+         */
+        public int getSkipped()
+        {
+            return _skipped.get();
+        }
+
+        /**
+         * @return 从缓存中恢复的文件数(包括在成功转换的文件数中)
+         */
+        public int getCached()
+        {
+            return _cached.get();
+        }
+
+        /**
+         * @return 成功转换的文件总大小
+         */
+        public long getBytes()
+        {
+            return _bytes.get();
+        }
+
+        /**
+         * @return 耗时(秒)
+         */
+        public double getSeconds()
+        {
+            return _time / 1e9;
+        }
+
+        @Override
+        public String toString()
+        {
+            double seconds = Math.max(getSeconds(), 1e-9);
+            return String.format(
+                    "%d files (%d failed, %d skipped, %d cached), %.2f MB in %.3f s: %.2f files/s, %.2f MB/s",
+                    getFiles(), getFailed(), getSkipped(), getCached(), getBytes() / (double) MB, getSeconds(), getFiles() / seconds, getBytes()
+                            / (double) MB / seconds);
+        }
+    }
+
+    /**
+     * 输出用法
+     *
+     * @param out
+     *            输出
+     */
+    private static void usage(PrintStream out)
+    {
+        out.println("usage: java com.zhuyanbin.je2x.BatchConverter [options] <dir>");
+        out.println("  -d, --direction xml|excel   convert excel to xml (default) or xml to excel");
+        out.println("  -f, --format xls|xlsx|table excel format when converting xml to excel (default xls),");
+        out.println("                              table writes the binary columnar config format (.tbl)");
+        out.println("  -s, --schema legacy|compact xml schema when converting excel to xml (default legacy)");
+        out.println("  -y, --styles on|off         write deduplicated cell styles (xls only, default off)");
+        out.println("  -p, --patch on|off          only rewrite changed cells of an existing xls (default off)");
+        out.println("  -o, --output <dir>          output directory (default: next to the source file)");
+        out.println("  -i, --include <glob>        only convert files matching the glob (repeatable)");
+        out.println("  -e, --exclude <glob>        skip files matching the glob (repeatable)");
+        out.println("  -t, --threads <n>           number of worker threads");
+        out.println("  -m, --memory <MB>           memory budget shared by running conversions");
+        out.println("  -c, --cache <dir>           incremental mode: manifest and output cache directory");
+        out.println("  -z, --compress <type>       xml compression: none|gzip|deflate (.xml.gz/.xml.zz)");
+        out.println("      --sync none|data|full   flush output files to disk before renaming (default none)");
+    }
+
+    /**
+     * 解析命令行参数
+     *
+     * @param args
+     *            命令行参数
+     * @return 转换目录,参数错误时返回null
+     */
+    protected Path parseArgs(String[] args)
+    {
+        Path root = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            if (!arg.startsWith("-"))
+            {
+                if (null != root)
+                {
+                    return null;
+                }
+                root = Paths.get(arg);
+                continue;
+            }
+
+            if (i + 1 >= args.length)
+            {
+                return null;
+            }
+
+            String value = args[++i];
+            if ("-d".equals(arg) || "--direction".equals(arg))
+            {
+                int direction = indexOf(value, "xml", "excel");
+                if (direction < 0)
+                {
+                    return null;
+                }
+                setDirection((1 == direction) ? TO_EXCEL : TO_XML);
+            }
+            else if ("-f".equals(arg) || "--format".equals(arg))
+            {
+                int format = indexOf(value, "xls", "xlsx", "table");
+                if (format < 0)
+                {
+                    return null;
+                }
+                setFormat((2 == format) ? XmlReader.FORMAT_TABLE : ((1 == format) ? XmlReader.FORMAT_XLSX
+                        : XmlReader.FORMAT_XLS));
+            }
+            else if ("-s".equals(arg) || "--schema".equals(arg))
+            {
+                int schema = indexOf(value, "legacy", "compact");
+                if (schema < 0)
+                {
+                    return null;
+                }
+                setCompact(1 == schema);
+            }
+            else if ("-y".equals(arg) || "--styles".equals(arg))
+            {
+                int styles = indexOf(value, "off", "on");
+                if (styles < 0)
+                {
+                    return null;
+                }
+                setCellStyles(1 == styles);
+            }
+            else if ("-p".equals(arg) || "--patch".equals(arg))
+            {
+                int patch = indexOf(value, "off", "on");
+                if (patch < 0)
+                {
+                    return null;
+                }
+                setPatch(1 == patch);
+            }
+            else if ("-o".equals(arg) || "--output".equals(arg))
+            {
+                setOutputDir(Paths.get(value));
+            }
+            else if ("-i".equals(arg) || "--include".equals(arg))
+            {
+                addInclude(value);
+            }
+            else if ("-e".equals(arg) || "--exclude".equals(arg))
+            {
+                addExclude(value);
+            }
+            else if ("-t".equals(arg) || "--threads".equals(arg))
+            {
+                setThreads(Integer.parseInt(value));
+            }
+            else if ("-m".equals(arg) || "--memory".equals(arg))
+            {
+                setMemory(Integer.parseInt(value));
+            }
+            else if ("-c".equals(arg) || "--cache".equals(arg))
+            {
+                setCacheDir(Paths.get(value));
+            }
+            else if ("-z".equals(arg) || "--compress".equals(arg))
+            {
+                setCompression(AtomicFile.Compression.valueOf(value.toUpperCase()));
+            }
+            else if ("--sync".equals(arg))
+            {
+                setSync(AtomicFile.Sync.valueOf(value.toUpperCase()));
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * 查找选项的取值<br/>
+     * 拼错的取值不能按默认值处理,例如"-d Excel"按默认方向转换会用xls覆盖已经合并的xml
+     *
+     * @param value
+     *            选项的取值
+     * @param choices
+     *            允许的取值
+     * @return 取值在choices中的位置,不是允许的取值时返回-1
+     */
+    private static int indexOf(String value, String... choices)
+    {
+        for (int i = 0; i < choices.length; i++)
+        {
+            if (choices[i].equals(value))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 命令行入口
+     *
+     * @param args
+     *            命令行参数
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        BatchConverter converter = new BatchConverter();
+        Path root = null;
+        try
+        {
+            root = converter.parseArgs(args);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            root = null;
+        }
+
+        if (null == root)
+        {
+            usage(System.err);
+            System.exit(2);
+        }
+
+        Summary summary = converter.run(root, System.err);
+        System.out.println(summary);
+        System.exit((0 == summary.getFailed()) ? 0 : 1);
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * 按xml中的数据类型设置单元格的值<br/>
+ * Number和Boolean直接从字符解析(见DoubleFormatter.parse),创建数值和布尔单元格;
+ * 字符串通过字典复用同一个RichTextString,相同的字符串只创建一次(配置表中大量重复的枚举值),
+ * 查找字典时直接比较字符,命中时不创建String。<br/>
+ * 每个工作簿使用一个实例,不是线程安全的
+ */
+public class CellValueWriter
+{
+    /**
+     * 字典的初始容量(2的幂)
+     */
+    private static final int   INITIAL_CAPACITY = 256;
+
+    /**
+     * 写入的工作簿
+     */
+    private Workbook           _wb              = null;
+
+    /**
+     * 创建RichTextString
+     */
+    private CreationHelper     _helper          = null;
+
+    /**
+     * 字典的key
+     */
+    private String[]           _keys            = new String[INITIAL_CAPACITY];
+
+    /**
+     * 字典的value
+     */
+    private RichTextString[]   _values          = new RichTextString[INITIAL_CAPACITY];
+
+    /**
+     * 字典中字符串的数量
+     */
+    private int                _size            = 0;
+
+    /**
+     * 构造方法
+     *
+     * @param wb
+     *            写入的工作簿
+     */
+    public CellValueWriter(Workbook wb)
+    {
+        _wb = wb;
+        _helper = wb.getCreationHelper();
+    }
+
+    /**
+     * 获取写入的工作簿
+     *
+     * @return 工作簿
+     */
+    public Workbook getWorkBook()
+    {
+        return _wb;
+    }
+
+    /**
+     * 设置单元格的值<br/>
+     * 不能解析的Number/Boolean按字符串处理,保留原始数据
+     *
+     * @param cell
+     *            单元格
+     * @param type
+     *            xml中Data的type属性
+     * @param text
+     *            单元格数据,为null时为空白单元格
+     */
+    public void setValue(Cell cell, String type, CharSequence text)
+    {
+        if (null == text)
+        {
+            cell.setCellType(Cell.CELL_TYPE_BLANK);
+            return;
+        }
+
+        if ("Number".equals(type) && (0 != text.length()))
+        {
+            try
+            {
+                cell.setCellValue(DoubleFormatter.parse(text));
+                return;
+            }
+            catch (NumberFormatException ex)
+            {
+                // 按字符串处理
+            }
+        }
+        else if ("Boolean".equals(type))
+        {
+            if (equalsIgnoreCase(text, "TRUE"))
+            {
+                cell.setCellValue(true);
+                return;
+            }
+            if (equalsIgnoreCase(text, "FALSE"))
+            {
+                cell.setCellValue(false);
+                return;
+            }
+        }
+
+        cell.setCellValue(getString(text));
+    }
+
+    /**
+     * 字典中字符串的数量
+     *
+     * @return 不同字符串的数量
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * 从字典中获取字符串,不存在时创建
+     *
+     * @param text
+     *            字符串
+     * @return 字符串对应的RichTextString
+     */
+    public RichTextString getString(CharSequence text)
+    {
+        int hash = hash(text);
+        int mask = _keys.length - 1;
+        int i = hash & mask;
+        while (null != _keys[i])
+        {
+            if (contentEquals(_keys[i], text))
+            {
+                return _values[i];
+            }
+            i = (i + 1) & mask;
+        }
+
+        String key = text.toString();
+        RichTextString result = _helper.createRichTextString(key);
+        _keys[i] = key;
+        _values[i] = result;
+        if (++_size * 2 > _keys.length)
+        {
+            resize();
+        }
+
+        return result;
+    }
+
+    /**
+     * 字典扩容为原来的两倍
+     */
+    private void resize()
+    {
+        String[] keys = _keys;
+        RichTextString[] values = _values;
+        _keys = new String[keys.length * 2];
+        _values = new RichTextString[keys.length * 2];
+        int mask = _keys.length - 1;
+        for (int j = 0; j < keys.length; j++)
+        {
+            if (null != keys[j])
+            {
+                int i = hash(keys[j]) & mask;
+                while (null != _keys[i])
+                {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = keys[j];
+                _values[i] = values[j];
+            }
+        }
+    }
+
+    /**
+     * 计算字符串的哈希,与String.hashCode一致
+     *
+     * @param text
+     *            字符串
+     * @return 哈希
+     */
+    private static int hash(CharSequence text)
+    {
+        int h = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            h = 31 * h + text.charAt(i);
+        }
+
+        // 与HashMap一致,混合高位
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 比较字符串内容
+     */
+    private static boolean contentEquals(String key, CharSequence text)
+    {
+        if (key.length() != text.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++)
+        {
+            if (key.charAt(i) != text.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 不区分大小写比较字符串内容
+     */
+    private static boolean equalsIgnoreCase(CharSequence text, String value)
+    {
+        if (text.length() != value.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (Character.toUpperCase(text.charAt(i)) != value.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
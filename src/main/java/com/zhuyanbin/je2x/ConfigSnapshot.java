@@ -0,0 +1,584 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom2.JDOMException;
+
+/**
+ * 可以热更新的配置表<br/>
+ * 源文件(xls、xlsx、xml或者分文件输出的索引文件)改变后在后台线程中重新读取,
+ * 创建一组新的不可变的表,全部创建完成后通过一个volatile引用整体替换。
+ * 读取方只需要一次volatile读,不加锁,也不会看到只更新了一部分的表;
+ * 同一次请求中应该只调用一次get(),再从同一个快照中读取各个表,保证各个表之间一致。<br/>
+ * 重新读取时先只计算每个工作表的指纹(见WorkBookIndex),没有工作表改变时不替换快照;
+ * 否则再读取一次,只有改变的工作表交给ConfigTable.Builder创建,内容没有改变的工作表不缓存数据,
+ * 直接沿用上一个快照中的表,调用者持有的旧表仍然有效。读取失败时保留原来的快照,下次检查时重试
+ *
+ * <pre>
+ * ConfigSnapshot config = new ConfigSnapshot(Paths.get("config.xls"));
+ * config.start(5, TimeUnit.SECONDS);
+ * ...
+ * ConfigTable items = config.get().getTable("items");
+ * </pre>
+ */
+public class ConfigSnapshot implements Closeable
+{
+    /**
+     * 源文件
+     */
+    private final Path                _file;
+
+    /**
+     * 关键列
+     */
+    private final int                 _keyColumn;
+
+    /**
+     * 表头的行数
+     */
+    private final int                 _headerRows;
+
+    /**
+     * 当前的快照,读取时不加锁
+     */
+    private volatile Snapshot         _snapshot   = null;
+
+    /**
+     * 当前快照对应的源文件大小和修改时间,只在持有锁时访问
+     */
+    private String                    _stamp      = null;
+
+    /**
+     * 最近一次后台读取失败的原因,成功后清除
+     */
+    private volatile Exception        _error      = null;
+
+    /**
+     * 后台检查的线程
+     */
+    private ScheduledExecutorService  _executor   = null;
+
+    /**
+     * 构造方法,关键列为0,表头为1行,需要调用reload()或者start()读取源文件
+     *
+     * @param file
+     *            xls、xlsx或者xml文件
+     */
+    public ConfigSnapshot(Path file)
+    {
+        this(file, 0, 1);
+    }
+
+    /**
+     * 构造方法,需要调用reload()或者start()读取源文件<br/>
+     * 关键列和表头的行数决定了表的内容,沿用的旧表必须使用相同的设置,因此创建后不能修改
+     *
+     * @param file
+     *            xls、xlsx或者xml文件
+     * @param keyColumn
+     *            关键列
+     * @param headerRows
+     *            表头的行数
+     */
+    public ConfigSnapshot(Path file, int keyColumn, int headerRows)
+    {
+        _file = file;
+        _keyColumn = keyColumn;
+        _headerRows = headerRows;
+    }
+
+    /**
+     * 获取源文件
+     *
+     * @return xls、xlsx或者xml文件
+     */
+    public Path getFile()
+    {
+        return _file;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 所有表的关键列,默认为0
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 获取表头的行数
+     *
+     * @return 每个工作表开头跳过的行数,默认为1
+     */
+    public int getHeaderRows()
+    {
+        return _headerRows;
+    }
+
+    /**
+     * 获取当前的快照(一次volatile读,不加锁)
+     *
+     * @return 快照,还没有读取时返回null
+     */
+    public Snapshot get()
+    {
+        return _snapshot;
+    }
+
+    /**
+     * 从当前的快照中获取表<br/>
+     * 需要读取多个表时应该使用get()获取快照,避免两次读取之间快照被替换
+     *
+     * @param name
+     *            表名(工作表名)
+     * @return 表,没有时返回null
+     */
+    public ConfigTable getTable(String name)
+    {
+        Snapshot snapshot = _snapshot;
+
+        return (null == snapshot) ? null : snapshot.getTable(name);
+    }
+
+    /**
+     * 最近一次后台读取失败的原因
+     *
+     * @return 失败的原因,最近一次成功时返回null
+     */
+    public Exception getError()
+    {
+        return _error;
+    }
+
+    /**
+     * 源文件的大小或修改时间改变时重新读取
+     *
+     * @return 快照被替换时返回true
+     * @throws IOException
+     */
+    public synchronized boolean refresh() throws IOException
+    {
+        String stamp = getStamp();
+        if (stamp.equals(_stamp))
+        {
+            return false;
+        }
+
+        return load(stamp);
+    }
+
+    /**
+     * 立即重新读取源文件
+     *
+     * @return 快照被替换时返回true,所有工作表都没有改变时返回false
+     * @throws IOException
+     */
+    public synchronized boolean reload() throws IOException
+    {
+        return load(getStamp());
+    }
+
+    /**
+     * 开始在后台线程中定期检查源文件<br/>
+     * 还没有读取时先在当前线程中读取一次,保证返回后get()不为null
+     *
+     * @param period
+     *            两次检查之间的间隔
+     * @param unit
+     *            间隔的单位
+     * @throws IOException
+     *             第一次读取失败时抛出
+     */
+    public synchronized void start(long period, TimeUnit unit) throws IOException
+    {
+        if (null != _executor)
+        {
+            return;
+        }
+        if (null == _snapshot)
+        {
+            reload();
+        }
+
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "je2x-snapshot");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+        _executor.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    refresh();
+                    _error = null;
+                }
+                catch (Exception ex)
+                {
+                    // 保留原来的快照,下次检查时重试
+                    _error = ex;
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * 停止后台检查,当前的快照仍然可以使用
+     */
+    public synchronized void close()
+    {
+        if (null != _executor)
+        {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    /**
+     * 读取源文件,创建新的快照并替换当前的快照<br/>
+     * 已经有快照时先只计算工作表的指纹,有工作表改变时再读取一次,只创建改变的工作表
+     *
+     * @param stamp
+     *            读取之前源文件的大小和修改时间,读取过程中文件又被修改时下次检查会再次读取
+     * @return 快照被替换时返回true
+     * @throws IOException
+     */
+    private boolean load(String stamp) throws IOException
+    {
+        Snapshot previous = _snapshot;
+        Set<String> reused = new HashSet<String>();
+        if (null != previous)
+        {
+            WorkBookIndex index = new WorkBookIndex();
+            index.setRows(false);
+            process(index);
+
+            List<String> names = new ArrayList<String>();
+            for (WorkBookIndex.Sheet sheet : index.getSheets())
+            {
+                names.add(sheet.getName());
+                Long hash = previous.getHash(sheet.getName());
+                if ((null != hash) && (hash.longValue() == sheet.getHash()))
+                {
+                    reused.add(sheet.getName());
+                }
+            }
+            if ((reused.size() == names.size())
+                    && names.equals(new ArrayList<String>(previous.getTables().keySet())))
+            {
+                _stamp = stamp;
+                return false;
+            }
+        }
+
+        ConfigTable.Builder builder = new ConfigTable.Builder();
+        builder.setKeyColumn(_keyColumn);
+        builder.setHeaderRows(_headerRows);
+        Loader loader = new Loader(builder, previous, reused);
+        WorkBookIndex index = new WorkBookIndex(loader);
+        index.setRows(false);
+        loader._index = index;
+        process(index);
+        if (loader._modified)
+        {
+            // 两次读取之间文件被修改,沿用的表已经不是最新的,保留原来的快照,下次检查时重新读取
+            return false;
+        }
+
+        Map<String, Long> hashes = new HashMap<String, Long>();
+        for (WorkBookIndex.Sheet sheet : index.getSheets())
+        {
+            hashes.put(sheet.getName(), Long.valueOf(sheet.getHash()));
+        }
+        _snapshot = new Snapshot(builder.getTables(), hashes, (null == previous) ? 1 : previous.getVersion() + 1);
+        _stamp = stamp;
+
+        return true;
+    }
+
+    /**
+     * 读取源文件
+     *
+     * @param handler
+     *            回调接口
+     * @throws IOException
+     */
+    private void process(WorkBookHandler handler) throws IOException
+    {
+        if (isExcel())
+        {
+            ExcelReader.process(_file, handler);
+        }
+        else
+        {
+            new XmlReader(_file.toString()).process(handler);
+        }
+    }
+
+    /**
+     * 是否为Excel文件,否则按xml文件读取
+     *
+     * @return xls或xlsx文件时返回true
+     */
+    private boolean isExcel()
+    {
+        String name = _file.getFileName().toString().toLowerCase();
+
+        return name.endsWith(".xls") || ExcelReader.isXlsx(name);
+    }
+
+    /**
+     * 源文件(分文件输出时包括所有工作表文件)的大小和修改时间
+     *
+     * @return 大小和修改时间组成的字符串
+     * @throws IOException
+     */
+    private String getStamp() throws IOException
+    {
+        StringBuilder result = new StringBuilder();
+        appendStamp(result, _file);
+        if (!isExcel())
+        {
+            try
+            {
+                List<File> sheetFiles = XmlReader.getSheetFiles(_file.toString());
+                if (null != sheetFiles)
+                {
+                    for (File file : sheetFiles)
+                    {
+                        appendStamp(result, file.toPath());
+                    }
+                }
+            }
+            catch (JDOMException ex)
+            {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static void appendStamp(StringBuilder sb, Path file) throws IOException
+    {
+        sb.append(Files.size(file)).append(':').append(Files.getLastModifiedTime(file).toMillis()).append(';');
+    }
+
+    /**
+     * 配置表的快照,创建后不再改变
+     */
+    public static final class Snapshot
+    {
+        /**
+         * 表名对应的表,按工作表的顺序
+         */
+        private final Map<String, ConfigTable> _tables;
+
+        /**
+         * 表名对应的工作表指纹
+         */
+        private final Map<String, Long>        _hashes;
+
+        /**
+         * 版本,每次替换加1
+         */
+        private final long                     _version;
+
+        Snapshot(Map<String, ConfigTable> tables, Map<String, Long> hashes, long version)
+        {
+            _tables = Collections.unmodifiableMap(new LinkedHashMap<String, ConfigTable>(tables));
+            _hashes = hashes;
+            _version = version;
+        }
+
+        /**
+         * 获取表
+         *
+         * @param name
+         *            表名(工作表名)
+         * @return 表,没有时返回null
+         */
+        public ConfigTable getTable(String name)
+        {
+            return _tables.get(name);
+        }
+
+        /**
+         * 获取所有的表
+         *
+         * @return 表名对应的表,按工作表的顺序
+         */
+        public Map<String, ConfigTable> getTables()
+        {
+            return _tables;
+        }
+
+        /**
+         * 获取版本<br/>
+         * 第一次读取成功的快照为1,之后每次替换快照加1,内容没有改变时不替换,版本也不变
+         *
+         * @return 版本
+         */
+        public long getVersion()
+        {
+            return _version;
+        }
+
+        /**
+         * 获取工作表的指纹
+         *
+         * @param name
+         *            表名(工作表名)
+         * @return 指纹,没有时返回null
+         */
+        Long getHash(String name)
+        {
+            return _hashes.get(name);
+        }
+    }
+
+    /**
+     * 读取时的回调<br/>
+     * 接在WorkBookIndex之后,沿用的工作表不把数据交给ConfigTable.Builder,
+     * 工作表结束时指纹已经计算完成,确认与上一个快照中的指纹相同后沿用上一个快照中的表
+     */
+    private static class Loader implements WorkBookHandler
+    {
+        /**
+         * 创建表
+         */
+        private final ConfigTable.Builder _builder;
+
+        /**
+         * 上一个快照,第一次读取时为null
+         */
+        private final Snapshot            _previous;
+
+        /**
+         * 沿用上一个快照中的表的工作表
+         */
+        private final Set<String>         _reused;
+
+        /**
+         * 计算指纹
+         */
+        private WorkBookIndex             _index    = null;
+
+        /**
+         * 当前工作表是否沿用上一个快照中的表
+         */
+        private boolean                   _skip     = false;
+
+        /**
+         * 沿用的工作表的指纹是否与第一次读取时不同
+         */
+        private boolean                   _modified = false;
+
+        Loader(ConfigTable.Builder builder, Snapshot previous, Set<String> reused)
+        {
+            _builder = builder;
+            _previous = previous;
+            _reused = reused;
+        }
+
+        public void startWorkBook()
+        {
+            _builder.startWorkBook();
+        }
+
+        public void startSheet(String name)
+        {
+            _skip = _reused.contains(name);
+            _builder.startSheet(name);
+        }
+
+        public void startRow(int rownum, short height)
+        {
+            if (!_skip)
+            {
+                _builder.startRow(rownum, height);
+            }
+        }
+
+        public void cell(int column, String type, String value)
+        {
+            if (!_skip)
+            {
+                _builder.cell(column, type, value);
+            }
+        }
+
+        public void formulaCell(int column, String formula, String type, String value)
+        {
+            if (!_skip)
+            {
+                _builder.formulaCell(column, formula, type, value);
+            }
+        }
+
+        public void endRow()
+        {
+            if (!_skip)
+            {
+                _builder.endRow();
+            }
+        }
+
+        public void endSheet()
+        {
+            if (!_skip)
+            {
+                _builder.endSheet();
+                return;
+            }
+
+            List<WorkBookIndex.Sheet> sheets = _index.getSheets();
+            WorkBookIndex.Sheet sheet = sheets.get(sheets.size() - 1);
+            if (_previous.getHash(sheet.getName()).longValue() != sheet.getHash())
+            {
+                _modified = true;
+            }
+            _builder.endSheet(_previous.getTable(sheet.getName()));
+        }
+
+        public void endWorkBook()
+        {
+            _builder.endWorkBook();
+        }
+    }
+}
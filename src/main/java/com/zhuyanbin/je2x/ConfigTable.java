@@ -0,0 +1,1125 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.jdom2.Element;
+
+/**
+ * 只读的内存配置表<br/>
+ * 按列保存数据: 数值列保存为double[],布尔列保存为BitSet,其他列保存为字符串池的编号(int[]),
+ * 同一张表中相同的字符串只保存一份。整张表只有几十个数组对象,不会为每个单元格创建对象。<br/>
+ * 关键列(默认为第一列)建立开放寻址的哈希索引,按关键字读取单元格是O(1)的,
+ * 读取数值和布尔值不会装箱。关键字重复时以第一次出现的行为准。<br/>
+ * 前headerRows行(默认为1)是表头,第一行的文本作为列名,不计入数据行。
+ * 表可以从xml的Element(ExcelReader.getXml或者读取的xml文件)、HSSFWorkbook(XmlReader.getWorkBook)创建,
+ * 也可以直接从Excel文件流式读取(见Builder.load),不创建中间的xml或者工作簿对象
+ */
+public final class ConfigTable
+{
+    /**
+     * 列类型: 空列
+     */
+    public static final int  TYPE_EMPTY   = 0;
+
+    /**
+     * 列类型: 数值
+     */
+    public static final int  TYPE_NUMBER  = 1;
+
+    /**
+     * 列类型: 布尔
+     */
+    public static final int  TYPE_BOOLEAN = 2;
+
+    /**
+     * 列类型: 字符串(包括类型混合的列)
+     */
+    public static final int  TYPE_STRING  = 3;
+
+    /**
+     * 表名(工作表名)
+     */
+    private final String     _name;
+
+    /**
+     * 列名,没有时为空字符串
+     */
+    private final String[]   _columns;
+
+    /**
+     * 数据行数
+     */
+    private final int        _rows;
+
+    /**
+     * 每一列的类型
+     */
+    private final int[]      _types;
+
+    /**
+     * 数值列的数据,其他列为null
+     */
+    private final double[][] _numbers;
+
+    /**
+     * 布尔列的数据,其他列为null
+     */
+    private final BitSet[]   _booleans;
+
+    /**
+     * 字符串列在字符串池中的编号,其他列为null
+     */
+    private final int[][]    _strings;
+
+    /**
+     * 每一列中有数据的行
+     */
+    private final BitSet[]   _present;
+
+    /**
+     * 字符串池
+     */
+    private final String[]   _pool;
+
+    /**
+     * 关键列,没有数据行时为-1
+     */
+    private final int        _keyColumn;
+
+    /**
+     * 哈希索引,保存行号,空位为-1,长度为2的幂
+     */
+    private final int[]      _slots;
+
+    ConfigTable(String name, String[] columns, int rows, int[] types, double[][] numbers, BitSet[] booleans,
+            int[][] strings, BitSet[] present, String[] pool, int keyColumn)
+    {
+        _name = name;
+        _columns = columns;
+        _rows = rows;
+        _types = types;
+        _numbers = numbers;
+        _booleans = booleans;
+        _strings = strings;
+        _present = present;
+        _pool = pool;
+        _keyColumn = ((keyColumn >= 0) && (keyColumn < columns.length)) ? keyColumn : -1;
+
+        int capacity = Integer.highestOneBit(Math.max(2, rows) * 2 - 1) << 1;
+        _slots = new int[capacity];
+        Arrays.fill(_slots, -1);
+        if (_keyColumn >= 0)
+        {
+            for (int row = 0; row < rows; row++)
+            {
+                if (_present[_keyColumn].get(row))
+                {
+                    insert(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 将一行加入哈希索引,关键字已经存在时忽略
+     *
+     * @param row
+     *            行号
+     */
+    private void insert(int row)
+    {
+        int mask = _slots.length - 1;
+        int i = hashRow(row) & mask;
+        while (-1 != _slots[i])
+        {
+            if (sameKey(_slots[i], row))
+            {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        _slots[i] = row;
+    }
+
+    /**
+     * 关键列中一行数据的哈希,与hash(long)/hash(String)一致
+     *
+     * @param row
+     *            行号
+     * @return 哈希
+     */
+    private int hashRow(int row)
+    {
+        switch (_types[_keyColumn])
+        {
+            case TYPE_NUMBER:
+                double value = _numbers[_keyColumn][row];
+                return (value == (long) value) ? hash((long) value) : hash(Double.doubleToLongBits(value));
+            case TYPE_BOOLEAN:
+                return hash(_booleans[_keyColumn].get(row) ? 1 : 0);
+            default:
+                return hash(_pool[_strings[_keyColumn][row]]);
+        }
+    }
+
+    /**
+     * 两行的关键字是否相同
+     *
+     * @param a
+     *            行号
+     * @param b
+     *            行号
+     * @return 相同时返回true
+     */
+    private boolean sameKey(int a, int b)
+    {
+        switch (_types[_keyColumn])
+        {
+            case TYPE_NUMBER:
+                return _numbers[_keyColumn][a] == _numbers[_keyColumn][b];
+            case TYPE_BOOLEAN:
+                return _booleans[_keyColumn].get(a) == _booleans[_keyColumn].get(b);
+            default:
+                return _strings[_keyColumn][a] == _strings[_keyColumn][b];
+        }
+    }
+
+    /**
+     * 数值关键字的哈希,TableFile中的索引使用同一个函数
+     *
+     * @param key
+     *            关键字
+     * @return 哈希
+     */
+    static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 字符串关键字的哈希,TableFile中的索引使用同一个函数
+     *
+     * @param key
+     *            关键字
+     * @return 哈希
+     */
+    static int hash(String key)
+    {
+        int h = key.hashCode() * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 按数值关键字查找行,关键列为字符串列时按十进制文本查找
+     *
+     * @param key
+     *            关键字
+     * @return 行号,没有时返回-1
+     */
+    public int getRow(long key)
+    {
+        if ((_keyColumn < 0) || (TYPE_STRING == _types[_keyColumn]))
+        {
+            return (_keyColumn < 0) ? -1 : getRow(Long.toString(key));
+        }
+        if (TYPE_BOOLEAN == _types[_keyColumn])
+        {
+            return -1;
+        }
+
+        int mask = _slots.length - 1;
+        double[] keys = _numbers[_keyColumn];
+        for (int i = hash(key) & mask; -1 != _slots[i]; i = (i + 1) & mask)
+        {
+            if (keys[_slots[i]] == key)
+            {
+                return _slots[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 按字符串关键字查找行,关键列为数值列时先解析成数值
+     *
+     * @param key
+     *            关键字
+     * @return 行号,没有时返回-1
+     */
+    public int getRow(String key)
+    {
+        if ((_keyColumn < 0) || (null == key))
+        {
+            return -1;
+        }
+        if (TYPE_NUMBER == _types[_keyColumn])
+        {
+            try
+            {
+                double value = DoubleFormatter.parse(key);
+                return (value == (long) value) ? getRow((long) value) : -1;
+            }
+            catch (NumberFormatException ex)
+            {
+                return -1;
+            }
+        }
+        if (TYPE_STRING != _types[_keyColumn])
+        {
+            return -1;
+        }
+
+        int mask = _slots.length - 1;
+        int[] codes = _strings[_keyColumn];
+        for (int i = hash(key) & mask; -1 != _slots[i]; i = (i + 1) & mask)
+        {
+            if (key.equals(_pool[codes[_slots[i]]]))
+            {
+                return _slots[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 是否有关键字对应的行
+     *
+     * @param key
+     *            关键字
+     * @return 有时返回true
+     */
+    public boolean contains(long key)
+    {
+        return getRow(key) >= 0;
+    }
+
+    /**
+     * 是否有关键字对应的行
+     *
+     * @param key
+     *            关键字
+     * @return 有时返回true
+     */
+    public boolean contains(String key)
+    {
+        return getRow(key) >= 0;
+    }
+
+    /**
+     * 查找行,没有时抛出异常
+     *
+     * @param key
+     *            关键字
+     * @return 行号
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    private int requireRow(long key)
+    {
+        int row = getRow(key);
+        if (row < 0)
+        {
+            throw new IllegalArgumentException(_name + ": no row with key " + key);
+        }
+
+        return row;
+    }
+
+    /**
+     * 查找行,没有时抛出异常,同requireRow(long)
+     */
+    private int requireRow(String key)
+    {
+        int row = getRow(key);
+        if (row < 0)
+        {
+            throw new IllegalArgumentException(_name + ": no row with key " + key);
+        }
+
+        return row;
+    }
+
+    /**
+     * 按关键字读取数值<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public double getDouble(long key, int column)
+    {
+        return getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getDouble(long, int)
+     */
+    public double getDouble(String key, int column)
+    {
+        return getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取数值<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值,小数部分截断
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public long getLong(long key, int column)
+    {
+        return (long) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getLong(long, int)
+     */
+    public long getLong(String key, int column)
+    {
+        return (long) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取数值<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值,小数部分截断
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public int getInt(long key, int column)
+    {
+        return (int) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getInt(long, int)
+     */
+    public int getInt(String key, int column)
+    {
+        return (int) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取布尔值<br/>
+     * 单元格的转换规则见getBooleanAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 布尔值
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    public boolean getBoolean(long key, int column)
+    {
+        return getBooleanAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getBoolean(long, int)
+     */
+    public boolean getBoolean(String key, int column)
+    {
+        return getBooleanAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取文本<br/>
+     * 单元格的转换规则见getStringAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 文本,空单元格返回null
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    public String getString(long key, int column)
+    {
+        return getStringAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getString(long, int)
+     */
+    public String getString(String key, int column)
+    {
+        return getStringAt(requireRow(key), column);
+    }
+
+    /**
+     * 按行号读取数值<br/>
+     * 空单元格为0,布尔值为1/0,字符串列按数值解析
+     *
+     * @param row
+     *            行号(从0开始,不包括表头)
+     * @param column
+     *            列号
+     * @return 数值
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public double getDoubleAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return 0;
+        }
+
+        switch (_types[column])
+        {
+            case TYPE_NUMBER:
+                return _numbers[column][row];
+            case TYPE_BOOLEAN:
+                return _booleans[column].get(row) ? 1 : 0;
+            default:
+                return DoubleFormatter.parse(_pool[_strings[column][row]]);
+        }
+    }
+
+    /**
+     * 按行号读取布尔值<br/>
+     * 空单元格为false,数值不为0时为true,字符串为"true"(不区分大小写)或"1"时为true
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 布尔值
+     */
+    public boolean getBooleanAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return false;
+        }
+
+        switch (_types[column])
+        {
+            case TYPE_NUMBER:
+                return 0 != _numbers[column][row];
+            case TYPE_BOOLEAN:
+                return _booleans[column].get(row);
+            default:
+                String text = _pool[_strings[column][row]];
+                return "true".equalsIgnoreCase(text) || "1".equals(text);
+        }
+    }
+
+    /**
+     * 按行号读取文本<br/>
+     * 字符串列直接返回池中的字符串,数值和布尔值转换成与xml一致的文本
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 文本,空单元格返回null
+     */
+    public String getStringAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return null;
+        }
+
+        switch (_types[column])
+        {
+            case TYPE_NUMBER:
+                return DoubleFormatter.format(_numbers[column][row]);
+            case TYPE_BOOLEAN:
+                return _booleans[column].get(row) ? "TRUE" : "FALSE";
+            default:
+                return _pool[_strings[column][row]];
+        }
+    }
+
+    /**
+     * 单元格是否为空
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 空单元格或者超出范围的列返回true
+     * @throws IndexOutOfBoundsException
+     *             行号超出范围时抛出
+     */
+    public boolean isNull(int row, int column)
+    {
+        if ((row < 0) || (row >= _rows))
+        {
+            throw new IndexOutOfBoundsException(_name + ": row " + row);
+        }
+
+        return (column < 0) || (column >= _columns.length) || !_present[column].get(row);
+    }
+
+    /**
+     * 获取表名
+     *
+     * @return 工作表名
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * 获取行数
+     *
+     * @return 数据的行数,不包括表头
+     */
+    public int getRowCount()
+    {
+        return _rows;
+    }
+
+    /**
+     * 获取列数
+     *
+     * @return 列数
+     */
+    public int getColumnCount()
+    {
+        return _columns.length;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 关键列的列号
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 获取列名
+     *
+     * @param column
+     *            列号
+     * @return 列名(表头第一行的文本)
+     */
+    public String getColumnName(int column)
+    {
+        return _columns[column];
+    }
+
+    /**
+     * 获取列的类型
+     *
+     * @param column
+     *            列号
+     * @return TYPE_EMPTY/TYPE_NUMBER/TYPE_BOOLEAN/TYPE_STRING
+     */
+    public int getColumnType(int column)
+    {
+        return _types[column];
+    }
+
+    /**
+     * 按列名查找列
+     *
+     * @param name
+     *            列名(表头第一行的文本)
+     * @return 列号,没有时返回-1
+     */
+    public int getColumn(String name)
+    {
+        for (int i = 0; i < _columns.length; i++)
+        {
+            if (_columns[i].equals(name))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 以下方法供TableFile输出二进制格式使用,返回内部数组,不能修改
+     */
+    double[] getNumbers(int column)
+    {
+        return _numbers[column];
+    }
+
+    BitSet getBooleans(int column)
+    {
+        return _booleans[column];
+    }
+
+    int[] getStrings(int column)
+    {
+        return _strings[column];
+    }
+
+    BitSet getPresent(int column)
+    {
+        return _present[column];
+    }
+
+    String[] getPool()
+    {
+        return _pool;
+    }
+
+    int[] getSlots()
+    {
+        return _slots;
+    }
+
+    /**
+     * 从xml读取所有的表,使用默认设置(第一列为关键列,一行表头)
+     *
+     * @param workbook
+     *            WorkBook元素
+     * @return 表名对应的表,按工作表的顺序
+     */
+    public static Map<String, ConfigTable> of(Element workbook)
+    {
+        return new Builder().build(workbook);
+    }
+
+    /**
+     * 从工作簿读取所有的表,使用默认设置(第一列为关键列,一行表头)
+     *
+     * @param wb
+     *            工作簿,例如XmlReader.getWorkBook
+     * @return 表名对应的表,按工作表的顺序
+     */
+    public static Map<String, ConfigTable> of(HSSFWorkbook wb)
+    {
+        return new Builder().build(wb);
+    }
+
+    /**
+     * 表的创建<br/>
+     * 作为WorkBookHandler接收流式回调,每个工作表结束时创建一张表。
+     * 创建过程中每一列暂存原始的文本,工作表结束时根据所有数据的类型决定列的存储方式
+     */
+    public static class Builder implements WorkBookHandler
+    {
+        /**
+         * 关键列
+         */
+        private int                            _keyColumn  = 0;
+
+        /**
+         * 表头的行数
+         */
+        private int                            _headerRows = 1;
+
+        /**
+         * 已经创建的表
+         */
+        private final Map<String, ConfigTable> _tables     = new LinkedHashMap<String, ConfigTable>();
+
+        /**
+         * 当前工作表名
+         */
+        private String                         _sheet      = null;
+
+        /**
+         * 当前工作表的列名
+         */
+        private final List<String>             _names      = new ArrayList<String>();
+
+        /**
+         * 当前工作表每一列暂存的数据
+         */
+        private final List<ColumnBuffer>       _buffers    = new ArrayList<ColumnBuffer>();
+
+        /**
+         * 当前工作表已经处理的行数(包括表头)
+         */
+        private int                            _rowCount   = 0;
+
+        /**
+         * 当前行是否为表头
+         */
+        private boolean                        _header     = false;
+
+        /**
+         * 当前行是否为表头的第一行
+         */
+        private boolean                        _nameRow    = false;
+
+        /**
+         * 第一个数据行的行号,数据行中间的空行也会保留为空行
+         */
+        private int                            _firstRow   = -1;
+
+        /**
+         * 当前数据行的位置
+         */
+        private int                            _row        = -1;
+
+        public void setKeyColumn(int keyColumn)
+        {
+            _keyColumn = keyColumn;
+        }
+
+        public int getKeyColumn()
+        {
+            return _keyColumn;
+        }
+
+        /**
+         * 设置表头的行数
+         *
+         * @param headerRows
+         *            表头的行数,默认为1,第一行的文本作为列名
+         */
+        public void setHeaderRows(int headerRows)
+        {
+            _headerRows = headerRows;
+        }
+
+        public int getHeaderRows()
+        {
+            return _headerRows;
+        }
+
+        /**
+         * 获取已经创建的表
+         *
+         * @return 表名对应的表,按工作表的顺序
+         */
+        public Map<String, ConfigTable> getTables()
+        {
+            return Collections.unmodifiableMap(_tables);
+        }
+
+        /**
+         * 从xml创建所有的表
+         *
+         * @param workbook
+         *            WorkBook元素
+         * @return 表名对应的表
+         */
+        public Map<String, ConfigTable> build(Element workbook)
+        {
+            startWorkBook();
+            try
+            {
+                for (Element sheet : workbook.getChildren(XmlType.WorkSheet))
+                {
+                    ElementHandler.process(sheet, this);
+                }
+            }
+            catch (IOException ex)
+            {
+                // Builder本身不会抛出IOException
+                throw new IllegalStateException(ex);
+            }
+
+            return getTables();
+        }
+
+        /**
+         * 从工作簿创建所有的表,单元格数据与ExcelReader转换成xml时一致
+         *
+         * @param wb
+         *            工作簿
+         * @return 表名对应的表
+         */
+        public Map<String, ConfigTable> build(HSSFWorkbook wb)
+        {
+            ExcelReader reader = new ExcelReader();
+            startWorkBook();
+            for (int i = 0; i < wb.getNumberOfSheets(); i++)
+            {
+                HSSFSheet sheet = wb.getSheetAt(i);
+                startSheet(sheet.getSheetName());
+                for (Iterator<Row> rows = sheet.rowIterator(); rows.hasNext();)
+                {
+                    HSSFRow row = (HSSFRow) rows.next();
+                    startRow(row.getRowNum(), row.getHeight());
+                    for (Iterator<Cell> cells = row.cellIterator(); cells.hasNext();)
+                    {
+                        HSSFCell cell = (HSSFCell) cells.next();
+                        Element data = reader.getCellValue(cell);
+                        if (null != data)
+                        {
+                            cell(cell.getColumnIndex(), data.getAttributeValue("type"), data.getText());
+                        }
+                    }
+                    endRow();
+                }
+                endSheet();
+            }
+
+            return getTables();
+        }
+
+        /**
+         * 从Excel文件流式创建所有的表(xls使用HSSF事件模型,xlsx使用SAX),
+         * 不创建xml或者工作簿对象。与build(HSSFWorkbook)一致,包括每个工作表的最后一行
+         *
+         * @param file
+         *            xls或xlsx文件
+         * @return 表名对应的表
+         * @throws IOException
+         */
+        public Map<String, ConfigTable> load(Path file) throws IOException
+        {
+            ExcelReader.process(file, this);
+
+            return getTables();
+        }
+
+        public void startWorkBook()
+        {
+            _tables.clear();
+        }
+
+        public void startSheet(String name)
+        {
+            _sheet = name;
+            _names.clear();
+            _buffers.clear();
+            _rowCount = 0;
+            _firstRow = -1;
+            _row = -1;
+        }
+
+        public void startRow(int rownum, short height)
+        {
+            _header = _rowCount < _headerRows;
+            _nameRow = 0 == _rowCount;
+            _rowCount++;
+            if (!_header)
+            {
+                _firstRow = (_firstRow < 0) ? rownum : _firstRow;
+                _row = rownum - _firstRow;
+            }
+        }
+
+        public void cell(int column, String type, String value)
+        {
+            if (_nameRow)
+            {
+                while (_names.size() <= column)
+                {
+                    _names.add("");
+                }
+                _names.set(column, (null == value) ? "" : value);
+            }
+            if (_header || (null == value) || (0 == value.length()))
+            {
+                return;
+            }
+
+            while (_buffers.size() <= column)
+            {
+                _buffers.add(new ColumnBuffer());
+            }
+            _buffers.get(column).add(_row, type, value);
+        }
+
+        public void formulaCell(int column, String formula, String type, String value)
+        {
+            cell(column, type, value);
+        }
+
+        public void endRow()
+        {
+        }
+
+        public void endSheet()
+        {
+            int columns = Math.max(_names.size(), _buffers.size());
+            int rows = _row + 1;
+            String[] names = new String[columns];
+            int[] types = new int[columns];
+            double[][] numbers = new double[columns][];
+            BitSet[] booleans = new BitSet[columns];
+            int[][] strings = new int[columns][];
+            BitSet[] present = new BitSet[columns];
+            Map<String, Integer> pool = new HashMap<String, Integer>();
+            List<String> values = new ArrayList<String>();
+            for (int i = 0; i < columns; i++)
+            {
+                names[i] = (i < _names.size()) ? _names.get(i) : "";
+                ColumnBuffer buffer = (i < _buffers.size()) ? _buffers.get(i) : new ColumnBuffer();
+                present[i] = new BitSet(rows);
+                types[i] = buffer.getType();
+                switch (types[i])
+                {
+                    case TYPE_NUMBER:
+                        numbers[i] = new double[rows];
+                        break;
+                    case TYPE_BOOLEAN:
+                        booleans[i] = new BitSet(rows);
+                        break;
+                    case TYPE_STRING:
+                        strings[i] = new int[rows];
+                        break;
+                    default:
+                        break;
+                }
+
+                for (int j = 0; j < buffer.size; j++)
+                {
+                    int row = buffer.rows[j];
+                    String value = buffer.values[j];
+                    present[i].set(row);
+                    if (TYPE_NUMBER == types[i])
+                    {
+                        numbers[i][row] = DoubleFormatter.parse(value);
+                    }
+                    else if (TYPE_BOOLEAN == types[i])
+                    {
+                        booleans[i].set(row, "true".equalsIgnoreCase(value));
+                    }
+                    else if (TYPE_STRING == types[i])
+                    {
+                        Integer code = pool.get(value);
+                        if (null == code)
+                        {
+                            code = Integer.valueOf(values.size());
+                            pool.put(value, code);
+                            values.add(value);
+                        }
+                        strings[i][row] = code.intValue();
+                    }
+                }
+            }
+
+            _tables.put(_sheet, new ConfigTable(_sheet, names, rows, types, numbers, booleans, strings, present,
+                    values.toArray(new String[values.size()]), _keyColumn));
+            _buffers.clear();
+        }
+
+        /**
+         * 结束当前工作表,不创建新表而是使用已有的表<br/>
+         * 用于工作表内容没有改变时保留上一次创建的表(见ConfigSnapshot)
+         *
+         * @param table
+         *            已有的表
+         */
+        void endSheet(ConfigTable table)
+        {
+            _tables.put(_sheet, table);
+            _buffers.clear();
+        }
+
+        public void endWorkBook()
+        {
+        }
+    }
+
+    /**
+     * 创建表时一列暂存的数据
+     */
+    private static class ColumnBuffer
+    {
+        /**
+         * 数据所在的行
+         */
+        int[]    rows    = new int[16];
+
+        /**
+         * 原始文本
+         */
+        String[] values  = new String[16];
+
+        /**
+         * 数据个数
+         */
+        int      size    = 0;
+
+        /**
+         * 是否所有数据都是数值
+         */
+        boolean  number  = true;
+
+        /**
+         * 是否所有数据都是布尔值
+         */
+        boolean  bool    = true;
+
+        void add(int row, String type, String value)
+        {
+            if (size == rows.length)
+            {
+                rows = Arrays.copyOf(rows, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rows[size] = row;
+            values[size] = value;
+            size++;
+            number &= "Number".equals(type);
+            bool &= "Boolean".equals(type);
+        }
+
+        int getType()
+        {
+            if (0 == size)
+            {
+                return TYPE_EMPTY;
+            }
+
+            return number ? TYPE_NUMBER : (bool ? TYPE_BOOLEAN : TYPE_STRING);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 转换服务的客户端<br/>
+ * 把命令行参数和工作目录转发给ConvertServer,再把结果写到标准输出/标准错误,
+ * 自身不依赖POI和JDOM,启动很快。服务没有运行时在本进程中直接执行命令。例如:
+ * 
+ * <pre>
+ * git config diff.excel.textconv "java -cp je2x.jar com.zhuyanbin.je2x.ConvertClient textconv"
+ * </pre>
+ */
+public final class ConvertClient
+{
+    /**
+     * 状态文件名(在用户目录中),内容为"端口 令牌"
+     */
+    public static final String   STATE      = ".je2x-server";
+
+    /**
+     * 令牌验证通过时服务端返回的确认
+     */
+    static final byte            ACCEPTED   = 0x4A;
+
+    /**
+     * 响应结束帧
+     */
+    static final byte            FRAME_END  = 0;
+
+    /**
+     * 标准输出帧
+     */
+    static final byte            FRAME_OUT  = 1;
+
+    /**
+     * 标准错误帧
+     */
+    static final byte            FRAME_ERR  = 2;
+
+    /**
+     * 帧的最大长度
+     */
+    static final int             FRAME_SIZE = 64 * 1024;
+
+    /**
+     * 连接和等待确认的超时(毫秒)
+     */
+    static final int             TIMEOUT    = 1000;
+
+    /**
+     * 状态文件编码
+     */
+    private static final Charset CHARSET    = Charset.forName("utf-8");
+
+    private ConvertClient()
+    {
+    }
+
+    /**
+     * 默认的状态文件
+     * 
+     * @return 用户目录中的状态文件
+     */
+    public static Path getStateFile()
+    {
+        return Paths.get(System.getProperty("user.home"), STATE);
+    }
+
+    /**
+     * 连接转换服务并执行命令
+     * 
+     * @param state
+     *            状态文件
+     * @param cwd
+     *            工作目录
+     * @param args
+     *            命令行参数
+     * @param out
+     *            标准输出
+     * @param err
+     *            标准错误
+     * @return 退出码,服务没有运行或者没有确认令牌时返回-1
+     * @throws IOException
+     */
+    public static int call(Path state, Path cwd, String[] args, OutputStream out, OutputStream err)
+            throws IOException
+    {
+        String[] fields = null;
+        try
+        {
+            fields = new String(Files.readAllBytes(state), CHARSET).trim().split(" ");
+        }
+        catch (NoSuchFileException ex)
+        {
+            return -1;
+        }
+        if ((2 != fields.length) || (!fields[0].matches("\\d{1,5}")))
+        {
+            return -1;
+        }
+
+        Socket socket = new Socket();
+        try
+        {
+            DataInputStream dis = null;
+            DataOutputStream dos = null;
+            try
+            {
+                // 状态文件可能已经过时,端口被其他进程使用: 连接失败、被断开或者超时没有确认时都在本进程中执行
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(fields[0])),
+                        TIMEOUT);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(TIMEOUT);
+                dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                dos.writeUTF(fields[1]);
+                dos.flush();
+                dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (ACCEPTED != dis.readByte())
+                {
+                    return -1;
+                }
+            }
+            catch (IOException ex)
+            {
+                return -1;
+            }
+
+            // 转换可能需要很长时间,确认之后不再超时
+            socket.setSoTimeout(0);
+            writeRequest(dos, cwd.toAbsolutePath().toString(), args);
+
+            return readResponse(dis, out, err);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * 发送请求
+     * 
+     * @param out
+     *            输出
+     * @param cwd
+     *            工作目录
+     * @param args
+     *            命令行参数
+     * @throws IOException
+     */
+    static void writeRequest(DataOutputStream out, String cwd, String[] args) throws IOException
+    {
+        out.writeUTF(cwd);
+        out.writeInt(args.length);
+        for (String arg : args)
+        {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /**
+     * 读取响应
+     * 
+     * @param in
+     *            输入
+     * @param out
+     *            标准输出
+     * @param err
+     *            标准错误
+     * @return 退出码
+     * @throws IOException
+     */
+    static int readResponse(DataInputStream in, OutputStream out, OutputStream err) throws IOException
+    {
+        byte[] buffer = new byte[FRAME_SIZE];
+        byte type = 0;
+        while (FRAME_END != (type = in.readByte()))
+        {
+            int length = in.readInt();
+            if ((length < 0) || (length > FRAME_SIZE))
+            {
+                throw new IOException("invalid frame length " + length);
+            }
+            in.readFully(buffer, 0, length);
+            ((FRAME_ERR == type) ? err : out).write(buffer, 0, length);
+        }
+        out.flush();
+        err.flush();
+
+        return in.readInt();
+    }
+
+    /**
+     * 命令行入口,参数见ConvertServer.usage
+     * 
+     * @param args
+     *            命令行参数
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path cwd = Paths.get("").toAbsolutePath();
+        int code = call(getStateFile(), cwd, args, System.out, System.err);
+        if (code < 0)
+        {
+            code = new ConvertServer().execute(cwd, args, System.out, System.err);
+            System.out.flush();
+        }
+        System.exit(code);
+    }
+}
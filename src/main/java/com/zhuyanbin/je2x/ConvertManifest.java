@@ -0,0 +1,544 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 增量转换清单<br/>
+ * 记录每个源文件的大小、修改时间、内容哈希,以及转换器版本和输出文件的哈希。
+ * 源文件和输出文件的大小、修改时间都与清单一致时不需要重新转换(只需要读取文件属性)。<br/>
+ * 同时作为按内容寻址的缓存: 每次转换的结果按(源文件哈希,转换器版本)保存在缓存目录中,
+ * 切换分支后源文件内容与以前某次转换相同时直接复制缓存的结果。<br/>
+ * 清单和缓存目录的结构:
+ *
+ * <pre>
+ * dir/manifest.txt             每行一个源文件,字段以制表符分隔
+ * dir/objects/ab/cdef...       缓存的输出文件,文件名为源文件哈希 + "." + 版本
+ * </pre>
+ */
+public class ConvertManifest
+{
+    /**
+     * 转换器版本,输出格式改变时需要修改,使旧的清单和缓存失效
+     */
+    public static final String              VERSION   = "1.2.0";
+
+    /**
+     * 清单文件名
+     */
+    public static final String              MANIFEST  = "manifest.txt";
+
+    /**
+     * 缓存目录名
+     */
+    public static final String              OBJECTS   = "objects";
+
+    /**
+     * 清单文件头
+     */
+    private static final String             HEADER    = "# je2x manifest 1";
+
+    /**
+     * 哈希算法
+     */
+    private static final String             ALGORITHM = "SHA-1";
+
+    /**
+     * 清单编码
+     */
+    private static final Charset            CHARSET   = Charset.forName("utf-8");
+
+    /**
+     * 清单和缓存所在目录
+     */
+    private Path                            _dir      = null;
+
+    /**
+     * 清单记录,key为源文件相对路径
+     */
+    private final Map<String, Entry>        _entries  = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * 构造方法
+     *
+     * @param dir
+     *            清单和缓存所在目录
+     */
+    public ConvertManifest(Path dir)
+    {
+        _dir = dir;
+    }
+
+    /**
+     * 获取清单和缓存所在目录
+     *
+     * @return 目录
+     */
+    public Path getDir()
+    {
+        return _dir;
+    }
+
+    /**
+     * 获取清单记录
+     *
+     * @param key
+     *            源文件相对路径
+     * @return 清单记录,没有时返回null
+     */
+    public Entry get(String key)
+    {
+        return _entries.get(key);
+    }
+
+    /**
+     * 删除清单记录
+     *
+     * @param key
+     *            源文件相对路径
+     */
+    public void remove(String key)
+    {
+        _entries.remove(key);
+    }
+
+    /**
+     * 获取所有记录的源文件相对路径
+     *
+     * @return 源文件相对路径(已排序)
+     */
+    public List<String> keys()
+    {
+        List<String> result = new ArrayList<String>(_entries.keySet());
+        Collections.sort(result);
+
+        return result;
+    }
+
+    /**
+     * 读取清单,清单不存在或者文件头不一致时为空清单
+     *
+     * @throws IOException
+     */
+    public void load() throws IOException
+    {
+        _entries.clear();
+        Path file = _dir.resolve(MANIFEST);
+        if (!Files.isRegularFile(file))
+        {
+            return;
+        }
+
+        BufferedReader reader = Files.newBufferedReader(file, CHARSET);
+        try
+        {
+            if (!HEADER.equals(reader.readLine()))
+            {
+                return;
+            }
+
+            String line = null;
+            while (null != (line = reader.readLine()))
+            {
+                Entry entry = Entry.parse(line);
+                if (null != entry)
+                {
+                    _entries.put(entry.getKey(), entry);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * 保存清单,先写入临时文件再改名,中途失败不会破坏原有清单
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException
+    {
+        Files.createDirectories(_dir);
+        Path temp = Files.createTempFile(_dir, MANIFEST, ".tmp");
+        try
+        {
+            BufferedWriter writer = Files.newBufferedWriter(temp, CHARSET);
+            try
+            {
+                writer.write(HEADER);
+                writer.newLine();
+                for (String key : keys())
+                {
+                    writer.write(_entries.get(key).toString());
+                    writer.newLine();
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+
+            Files.move(temp, _dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 输出文件是否为最新,只比较文件大小和修改时间,不读取文件内容
+     *
+     * @param key
+     *            源文件相对路径
+     * @param source
+     *            源文件
+     * @param target
+     *            输出文件
+     * @param version
+     *            转换器版本(包括影响输出的转换选项)
+     * @return 与清单一致时返回true
+     */
+    public boolean isUpToDate(String key, Path source, Path target, String version)
+    {
+        Entry entry = get(key);
+        if ((null == entry) || (!entry.getVersion().equals(version)))
+        {
+            return false;
+        }
+
+        try
+        {
+            return (entry.getSize() == Files.size(source))
+                    && (entry.getModified() == Files.getLastModifiedTime(source).toMillis())
+                    && (entry.getOutputSize() == Files.size(target))
+                    && (entry.getOutputModified() == Files.getLastModifiedTime(target).toMillis());
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * 获取缓存的输出文件
+     *
+     * @param hash
+     *            源文件哈希
+     * @param version
+     *            转换器版本
+     * @return 缓存文件
+     */
+    protected Path getObject(String hash, String version)
+    {
+        return _dir.resolve(OBJECTS).resolve(hash.substring(0, 2)).resolve(hash.substring(2) + "." + version);
+    }
+
+    /**
+     * 从缓存中恢复输出文件
+     *
+     * @param key
+     *            源文件相对路径
+     * @param source
+     *            源文件
+     * @param hash
+     *            源文件哈希
+     * @param target
+     *            输出文件
+     * @param version
+     *            转换器版本
+     * @return 缓存中存在时返回true
+     * @throws IOException
+     */
+    public boolean restore(String key, Path source, String hash, Path target, String version) throws IOException
+    {
+        Path object = getObject(hash, version);
+        if (!Files.isRegularFile(object))
+        {
+            return false;
+        }
+
+        Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+        _entries.put(key, new Entry(key, version, source, hash, target, hash(target)));
+
+        return true;
+    }
+
+    /**
+     * 转换完成后记录源文件和输出文件,并将输出文件保存到缓存中
+     *
+     * @param key
+     *            源文件相对路径
+     * @param source
+     *            源文件
+     * @param hash
+     *            源文件哈希
+     * @param target
+     *            输出文件
+     * @param version
+     *            转换器版本
+     * @throws IOException
+     */
+    public void put(String key, Path source, String hash, Path target, String version) throws IOException
+    {
+        Path object = getObject(hash, version);
+        if (!Files.isRegularFile(object))
+        {
+            Files.createDirectories(object.getParent());
+            Path temp = Files.createTempFile(object.getParent(), hash, ".tmp");
+            try
+            {
+                Files.copy(target, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, object, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        _entries.put(key, new Entry(key, version, source, hash, target, hash(target)));
+    }
+
+    /**
+     * 计算文件内容的哈希
+     *
+     * @param file
+     *            文件
+     * @return 十六进制的哈希
+     * @throws IOException
+     */
+    public static String hash(Path file) throws IOException
+    {
+        MessageDigest digest = getDigest();
+        byte[] buffer = new byte[64 * 1024];
+        InputStream is = Files.newInputStream(file);
+        try
+        {
+            int length = 0;
+            while ((length = is.read(buffer)) > 0)
+            {
+                digest.update(buffer, 0, length);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * 计算数据的哈希
+     *
+     * @param data
+     *            数据
+     * @return 十六进制的哈希
+     */
+    public static String hash(byte[] data)
+    {
+        return toHex(getDigest().digest(data));
+    }
+
+    /**
+     * 创建哈希算法实例
+     *
+     * @return 哈希算法实例
+     */
+    private static MessageDigest getDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * 转换成十六进制字符串
+     *
+     * @param bytes
+     *            字节数组
+     * @return 十六进制字符串
+     */
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes)
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * 清单记录
+     */
+    public static class Entry
+    {
+        /**
+         * 源文件相对路径
+         */
+        private final String _key;
+
+        /**
+         * 转换器版本
+         */
+        private final String _version;
+
+        /**
+         * 源文件大小
+         */
+        private final long   _size;
+
+        /**
+         * 源文件修改时间(毫秒)
+         */
+        private final long   _modified;
+
+        /**
+         * 源文件哈希
+         */
+        private final String _hash;
+
+        /**
+         * 输出文件大小
+         */
+        private final long   _outputSize;
+
+        /**
+         * 输出文件修改时间(毫秒)
+         */
+        private final long   _outputModified;
+
+        /**
+         * 输出文件哈希
+         */
+        private final String _outputHash;
+
+        Entry(String key, String version, long size, long modified, String hash, long outputSize,
+                long outputModified, String outputHash)
+        {
+            _key = key;
+            _version = version;
+            _size = size;
+            _modified = modified;
+            _hash = hash;
+            _outputSize = outputSize;
+            _outputModified = outputModified;
+            _outputHash = outputHash;
+        }
+
+        Entry(String key, String version, Path source, String hash, Path target, String outputHash)
+                throws IOException
+        {
+            this(key, version, Files.size(source), Files.getLastModifiedTime(source).toMillis(), hash, Files
+                    .size(target), Files.getLastModifiedTime(target).toMillis(), outputHash);
+        }
+
+        /**
+         * 解析清单中的一行
+         *
+         * @param line
+         *            清单中的一行
+         * @return 清单记录,格式错误时返回null
+         */
+        static Entry parse(String line)
+        {
+            String[] fields = line.split("\t");
+            if (8 != fields.length)
+            {
+                return null;
+            }
+
+            try
+            {
+                return new Entry(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                        fields[4], Long.parseLong(fields[5]), Long.parseLong(fields[6]), fields[7]);
+            }
+            catch (NumberFormatException ex)
+            {
+                return null;
+            }
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        public String getVersion()
+        {
+            return _version;
+        }
+
+        public long getSize()
+        {
+            return _size;
+        }
+
+        public long getModified()
+        {
+            return _modified;
+        }
+
+        public String getHash()
+        {
+            return _hash;
+        }
+
+        public long getOutputSize()
+        {
+            return _outputSize;
+        }
+
+        public long getOutputModified()
+        {
+            return _outputModified;
+        }
+
+        public String getOutputHash()
+        {
+            return _outputHash;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _key + "\t" + _version + "\t" + _size + "\t" + _modified + "\t" + _hash + "\t" + _outputSize
+                    + "\t" + _outputModified + "\t" + _outputHash;
+        }
+    }
+}
@@ -0,0 +1,693 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.jdom2.JDOMException;
+
+/**
+ * 常驻的转换服务<br/>
+ * 作为git的textconv/merge driver使用时每次调用都要启动JVM并加载POI/JDOM,
+ * 往往比转换本身还慢。转换服务在一个JVM中常驻,ConvertClient只转发命令行参数,
+ * 不加载POI和JDOM。支持两种传输方式:
+ * 
+ * <pre>
+ * java com.zhuyanbin.je2x.ConvertServer [--port n]   监听127.0.0.1,端口和令牌写入~/.je2x-server
+ * java com.zhuyanbin.je2x.ConvertServer --stdio      从标准输入读取请求,向标准输出写入响应
+ * </pre>
+ * 
+ * 请求和响应都是DataOutputStream格式的帧:
+ * 
+ * <pre>
+ * 连接(仅TCP)  UTF(令牌)  令牌一致时返回byte(0x4A),否则断开
+ * 请求         UTF(工作目录) int(参数个数) UTF(参数)...
+ * 响应         (byte(1=stdout,2=stderr) int(长度) bytes)... byte(0) int(退出码)
+ * </pre>
+ * 
+ * 一个连接上可以依次发送多个请求。支持的命令见usage
+ */
+public class ConvertServer implements Closeable
+{
+
+    /**
+     * 文本编码
+     */
+    private static final Charset CHARSET      = Charset.forName("utf-8");
+
+    /**
+     * 接受连接连续失败的次数上限,超过时停止服务
+     */
+    private static final int     MAX_FAILURES = 10;
+
+    /**
+     * 接受连接失败后等待的最长时间(毫秒)
+     */
+    private static final long    MAX_BACKOFF  = 5000;
+
+    /**
+     * 令牌,防止其他用户连接到服务
+     */
+    private final String         _token;
+
+    /**
+     * 监听的socket,没有监听时为null
+     */
+    private ServerSocket         _socket      = null;
+
+    /**
+     * 处理连接的线程池
+     */
+    private ExecutorService      _executor    = null;
+
+    /**
+     * 错误信息的输出
+     */
+    private PrintStream          _err         = System.err;
+
+    /**
+     * 写入的状态文件,关闭时删除
+     */
+    private volatile Path        _state       = null;
+
+    /**
+     * 是否已经关闭
+     */
+    private volatile boolean     _closed      = false;
+
+    /**
+     * 构造方法,生成随机令牌
+     */
+    public ConvertServer()
+    {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        _token = sb.toString();
+    }
+
+    /**
+     * 获取令牌
+     * 
+     * @return 令牌
+     */
+    public String getToken()
+    {
+        return _token;
+    }
+
+    /**
+     * 设置错误信息的输出
+     * 
+     * @param err
+     *            错误信息的输出,默认为System.err
+     */
+    public void setErr(PrintStream err)
+    {
+        _err = err;
+    }
+
+    /**
+     * 获取错误信息的输出
+     * 
+     * @return 错误信息的输出
+     */
+    public PrintStream getErr()
+    {
+        return _err;
+    }
+
+    /**
+     * 预热: 转换一个很小的工作簿,提前加载POI/JDOM的类
+     * 
+     * @throws IOException
+     */
+    public void warmUp() throws IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        wb.createSheet("warmup").createRow(0).createCell(0).setCellValue(1);
+        wb.getSheetAt(0).createRow(1).createCell(0).setCellValue("warmup");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        wb.write(bos);
+
+        ExcelReader excel = new ExcelReader();
+        excel.load(new ByteArrayInputStream(bos.toByteArray()));
+        bos.reset();
+        excel.output(bos);
+
+        try
+        {
+            new XmlReader().load(new ByteArrayInputStream(bos.toByteArray()));
+        }
+        catch (JDOMException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 在127.0.0.1上监听,在后台线程中接受连接
+     * 
+     * @param port
+     *            端口,0为任意空闲端口
+     * @param threads
+     *            同时处理的连接数
+     * @return 实际监听的端口
+     * @throws IOException
+     */
+    public int listen(int port, int threads) throws IOException
+    {
+        _socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        _executor = Executors.newFixedThreadPool(threads);
+        Thread thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                accept();
+            }
+        }, "je2x-server");
+        thread.start();
+
+        return _socket.getLocalPort();
+    }
+
+    /**
+     * 接受连接,直到关闭<br/>
+     * 接受失败(例如文件描述符用完)时等待一段时间再重试,等待时间逐次加倍,
+     * 连续失败MAX_FAILURES次时停止服务
+     */
+    private void accept()
+    {
+        int failures = 0;
+        while (!_closed)
+        {
+            try
+            {
+                final Socket socket = _socket.accept();
+                failures = 0;
+                _executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        handle(socket);
+                    }
+                });
+            }
+            catch (IOException ex)
+            {
+                if (_closed)
+                {
+                    return;
+                }
+
+                failures++;
+                _err.println("je2x server: accept failed (" + failures + "/" + MAX_FAILURES + "): " + ex);
+                if (failures >= MAX_FAILURES)
+                {
+                    _err.println("je2x server: too many failures, stopping");
+                    close();
+                    return;
+                }
+                try
+                {
+                    Thread.sleep(Math.min(MAX_BACKOFF, 100L << failures));
+                }
+                catch (InterruptedException ie)
+                {
+                    close();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理一个TCP连接,令牌不一致时直接断开
+     * 
+     * @param socket
+     *            连接
+     */
+    private void handle(Socket socket)
+    {
+        try
+        {
+            socket.setTcpNoDelay(true);
+            // 连接之后不发送令牌的进程不能一直占用处理线程
+            socket.setSoTimeout(ConvertClient.TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] token = in.readUTF().getBytes(CHARSET);
+            if (MessageDigest.isEqual(_token.getBytes(CHARSET), token))
+            {
+                // 转换可能需要很长时间,令牌验证通过后不再超时
+                socket.setSoTimeout(0);
+                OutputStream os = socket.getOutputStream();
+                os.write(ConvertClient.ACCEPTED);
+                os.flush();
+                serve(in, os);
+            }
+        }
+        catch (IOException ex)
+        {
+            // 客户端断开
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ex)
+            {
+                // 忽略
+            }
+        }
+    }
+
+    /**
+     * 将端口和令牌写入状态文件,文件只有所有者可以读写(支持POSIX权限时)
+     * 
+     * @param file
+     *            状态文件
+     * @param port
+     *            端口
+     * @throws IOException
+     */
+    public void writeState(Path file, int port) throws IOException
+    {
+        AtomicFile.write(file, (port + " " + _token).getBytes(CHARSET), AtomicFile.Sync.NONE);
+        _state = file;
+        try
+        {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // 不支持POSIX权限的文件系统
+        }
+    }
+
+    /**
+     * 依次处理请求,直到输入结束
+     * 
+     * @param is
+     *            请求
+     * @param os
+     *            响应
+     * @throws IOException
+     */
+    public void serve(InputStream is, OutputStream os) throws IOException
+    {
+        DataInputStream in = (is instanceof DataInputStream) ? (DataInputStream) is : new DataInputStream(
+                new BufferedInputStream(is));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, ConvertClient.FRAME_SIZE + 5));
+        while (!_closed)
+        {
+            String cwd = null;
+            try
+            {
+                cwd = in.readUTF();
+            }
+            catch (EOFException ex)
+            {
+                return;
+            }
+
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++)
+            {
+                args[i] = in.readUTF();
+            }
+
+            FrameOutputStream stdout = new FrameOutputStream(out, ConvertClient.FRAME_OUT);
+            FrameOutputStream stderr = new FrameOutputStream(out, ConvertClient.FRAME_ERR);
+            PrintStream err = new PrintStream(stderr, true, CHARSET.name());
+            int code = execute(Paths.get(cwd), args, stdout, err);
+            err.flush();
+            stdout.flush();
+            out.writeByte(ConvertClient.FRAME_END);
+            out.writeInt(code);
+            out.flush();
+        }
+    }
+
+    /**
+     * 执行一个命令
+     * 
+     * @param cwd
+     *            客户端的工作目录,相对路径基于这个目录
+     * @param args
+     *            命令行参数
+     * @param out
+     *            标准输出
+     * @param err
+     *            标准错误
+     * @return 退出码,0为成功
+     */
+    public int execute(Path cwd, String[] args, OutputStream out, PrintStream err)
+    {
+        boolean compact = false;
+        boolean cellStyles = false;
+        int keyColumn = 0;
+        int i = 0;
+        for (; (i + 1 < args.length) && args[i].startsWith("-"); i += 2)
+        {
+            // 拼错的取值不能按默认值处理,与BatchConverter.parseArgs一致
+            String value = args[i + 1];
+            if (("-s".equals(args[i]) || "--schema".equals(args[i])) && value.matches("legacy|compact"))
+            {
+                compact = "compact".equals(value);
+            }
+            else if (("-y".equals(args[i]) || "--styles".equals(args[i])) && value.matches("on|off"))
+            {
+                cellStyles = "on".equals(value);
+            }
+            else if (("-k".equals(args[i]) || "--key".equals(args[i])) && value.matches("\\d{1,9}"))
+            {
+                keyColumn = Integer.parseInt(value);
+            }
+            else
+            {
+                usage(err);
+                return 2;
+            }
+        }
+        String command = (i < args.length) ? args[i] : null;
+        List<Path> files = new ArrayList<Path>();
+        for (String arg : Arrays.asList(args).subList(Math.min(i + 1, args.length), args.length))
+        {
+            files.add(cwd.resolve(arg));
+        }
+
+        try
+        {
+            if ("ping".equals(command) && files.isEmpty())
+            {
+                out.write(("je2x " + ConvertManifest.VERSION + "\n").getBytes(CHARSET));
+                return 0;
+            }
+            if ("shutdown".equals(command) && files.isEmpty())
+            {
+                close();
+                return 0;
+            }
+            if ("textconv".equals(command) && (1 == files.size()))
+            {
+                ExcelReader reader = new ExcelReader(files.get(0).toString());
+                reader.setCompact(compact);
+                reader.setCellStyles(cellStyles);
+                reader.convert(out);
+                return 0;
+            }
+            if ("toxml".equals(command) && (2 == files.size()))
+            {
+                ExcelReader reader = new ExcelReader(files.get(0).toString());
+                reader.setCompact(compact);
+                reader.setCellStyles(cellStyles);
+                reader.convert(files.get(1));
+                return 0;
+            }
+            if ("toexcel".equals(command) && (2 == files.size()))
+            {
+                XmlReader reader = new XmlReader(files.get(0).toString());
+                if (XmlReader.FORMAT_XLS == XmlReader.getFormat(files.get(1).toString()))
+                {
+                    reader.setStreaming(true);
+                    reader.load();
+                }
+                reader.output(files.get(1));
+                return 0;
+            }
+            if ("merge".equals(command) && (3 == files.size()))
+            {
+                WorkBookMerger merger = new WorkBookMerger();
+                merger.setKeyColumn(keyColumn);
+                int conflicts = merger.merge(files.get(0), files.get(1), files.get(2), err);
+                return (0 == conflicts) ? 0 : 1;
+            }
+            if ("diff".equals(command) && (2 == files.size()))
+            {
+                WorkBookDiff diff = new WorkBookDiff();
+                diff.setKeyColumn(keyColumn);
+                PrintStream ps = new PrintStream(out, false, "utf-8");
+                WorkBookDiff.print(diff.diff(files.get(0), files.get(1)), ps);
+                ps.flush();
+                return 0;
+            }
+        }
+        catch (Exception ex)
+        {
+            err.println(ex);
+            return 1;
+        }
+
+        usage(err);
+        return 2;
+    }
+
+    /**
+     * 输出命令的用法
+     * 
+     * @param out
+     *            输出
+     */
+    static void usage(PrintStream out)
+    {
+        out.println("usage: [-s legacy|compact] [-y on|off] [-k column] <command> [files]");
+        out.println("  textconv <excel>            write the excel file as xml to stdout (git textconv)");
+        out.println("  toxml <excel> <xml>         convert excel to xml");
+        out.println("  toexcel <xml> <excel>       convert xml to xls/xlsx (by extension)");
+        out.println("  merge <base> <ours> <theirs> merge xml by key column into ours (git merge driver)");
+        out.println("  diff <old> <new>            list added/removed/modified rows by key column");
+        out.println("  ping                        print the server version");
+        out.println("  shutdown                    stop the server");
+    }
+
+    /**
+     * 停止服务,正在处理的请求处理完后退出<br/>
+     * 状态文件仍然是本服务写入的内容时删除,避免客户端连接到以后使用同一端口的其他进程
+     */
+    public void close()
+    {
+        _closed = true;
+        if (null != _state)
+        {
+            try
+            {
+                String content = new String(Files.readAllBytes(_state), CHARSET);
+                if (content.endsWith(" " + _token))
+                {
+                    Files.delete(_state);
+                }
+            }
+            catch (IOException ex)
+            {
+                // 状态文件已经被删除
+            }
+            _state = null;
+        }
+        if (null != _socket)
+        {
+            try
+            {
+                _socket.close();
+            }
+            catch (IOException ex)
+            {
+                // 忽略
+            }
+            _executor.shutdown();
+        }
+    }
+
+    /**
+     * 命令行入口
+     * 
+     * @param args
+     *            命令行参数
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException
+    {
+        boolean stdio = false;
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path state = ConvertClient.getStateFile();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if ("--stdio".equals(args[i]))
+                {
+                    stdio = true;
+                }
+                else if ("--port".equals(args[i]) && (i + 1 < args.length))
+                {
+                    port = Integer.parseInt(args[++i]);
+                }
+                else if ("--threads".equals(args[i]) && (i + 1 < args.length))
+                {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                else if ("--state".equals(args[i]) && (i + 1 < args.length))
+                {
+                    state = Paths.get(args[++i]);
+                }
+                else
+                {
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println("usage: java com.zhuyanbin.je2x.ConvertServer"
+                    + " [--stdio] [--port n] [--threads n] [--state file]");
+            System.exit(2);
+        }
+
+        ConvertServer server = new ConvertServer();
+        server.warmUp();
+        if (stdio)
+        {
+            // 标准输出用于传输响应,转换过程中的其他输出改到标准错误
+            OutputStream os = new FileOutputStream(FileDescriptor.out);
+            System.setOut(System.err);
+            server.serve(System.in, os);
+            return;
+        }
+
+        port = server.listen(port, threads);
+        server.writeState(state, port);
+        System.err.println("je2x server listening on 127.0.0.1:" + port);
+    }
+
+    /**
+     * 将输出分成帧写入响应
+     */
+    private static class FrameOutputStream extends OutputStream
+    {
+        /**
+         * 响应
+         */
+        private final DataOutputStream _out;
+
+        /**
+         * 帧类型
+         */
+        private final byte             _type;
+
+        /**
+         * 缓冲
+         */
+        private final byte[]           _buffer = new byte[ConvertClient.FRAME_SIZE];
+
+        /**
+         * 缓冲中的字节数
+         */
+        private int                    _count  = 0;
+
+        FrameOutputStream(DataOutputStream out, byte type)
+        {
+            _out = out;
+            _type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (_count == _buffer.length)
+            {
+                writeFrame();
+            }
+            _buffer[_count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (_count == _buffer.length)
+                {
+                    writeFrame();
+                }
+                int n = Math.min(len, _buffer.length - _count);
+                System.arraycopy(b, off, _buffer, _count, n);
+                _count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            writeFrame();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            writeFrame();
+        }
+
+        /**
+         * 将缓冲写成一帧
+         * 
+         * @throws IOException
+         */
+        private void writeFrame() throws IOException
+        {
+            if (_count > 0)
+            {
+                _out.writeByte(_type);
+                _out.writeInt(_count);
+                _out.write(_buffer, 0, _count);
+                _count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+/**
+ * 数值格式化<br/>
+ * 输出能够精确读回同一个double的最短十进制字符串,不使用科学计数法、不分组、
+ * 没有多余的小数点和末尾的0(例如 42、0.12345、-0.001)。<br/>
+ * 所有方法都是静态的、线程安全的,不需要创建实例。
+ * 整数(绝对值小于10^15)直接按long输出,不创建任何对象
+ */
+public final class DoubleFormatter
+{
+    /**
+     * 按long直接输出的整数的绝对值上限,小于2^53,保证整数部分是精确的
+     */
+    private static final double                    MAX_INTEGER = 1e15;
+
+    /**
+     * 不超过这个位数时Double.toString的结果已经是最短的,超过时尝试缩短
+     */
+    private static final int                       MAX_EXACT   = 15;
+
+    /**
+     * 能够精确表示的10的幂,2^53以内的整数除以这些数的结果是正确舍入的
+     */
+    private static final double[]                  POW10       = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+            1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * 快速解析时有效数字的上限(2^53)
+     */
+    private static final long                      MAX_DIGITS  = 1L << 53;
+
+    /**
+     * 每个线程的输出缓冲
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER      = new ThreadLocal<StringBuilder>()
+    {
+        @Override
+        protected StringBuilder initialValue()
+        {
+            return new StringBuilder(32);
+        }
+    };
+
+    /**
+     * 每个线程的有效数字缓冲
+     */
+    private static final ThreadLocal<char[]>        DIGITS      = new ThreadLocal<char[]>()
+    {
+        @Override
+        protected char[] initialValue()
+        {
+            return new char[32];
+        }
+    };
+
+    private DoubleFormatter()
+    {
+    }
+
+    /**
+     * 解析数值,结果与Double.parseDouble一致<br/>
+     * format输出的普通小数(有效数字不超过2^53、小数位数不超过22位)直接在字符上计算,
+     * 不创建String,其他形式(指数、NaN、Infinity等)交给Double.parseDouble
+     *
+     * @param text
+     *            数值文本
+     * @return 数值
+     * @throws NumberFormatException
+     *             不是数值时抛出
+     */
+    public static double parse(CharSequence text)
+    {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if ((length > 0) && (('-' == text.charAt(0)) || ('+' == text.charAt(0))))
+        {
+            negative = '-' == text.charAt(0);
+            i++;
+        }
+
+        long digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if ((c >= '0') && (c <= '9'))
+            {
+                if (digits >= MAX_DIGITS / 10)
+                {
+                    return Double.parseDouble(text.toString());
+                }
+                digits = digits * 10 + (c - '0');
+                scale += point ? 1 : 0;
+                any = true;
+            }
+            else if (('.' == c) && (!point))
+            {
+                point = true;
+            }
+            else
+            {
+                return Double.parseDouble(text.toString());
+            }
+        }
+
+        if ((!any) || (scale >= POW10.length))
+        {
+            return Double.parseDouble(text.toString());
+        }
+
+        double result = (0 == scale) ? digits : digits / POW10[scale];
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * 格式化数值
+     *
+     * @param value
+     *            数值
+     * @return 能够精确读回value的最短十进制字符串
+     */
+    public static String format(double value)
+    {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+
+        return append(sb, value).toString();
+    }
+
+    /**
+     * 格式化数值并追加到sb中
+     *
+     * @param sb
+     *            输出
+     * @param value
+     *            数值
+     * @return sb
+     */
+    public static StringBuilder append(StringBuilder sb, double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            sb.append(value);
+        }
+        else if (0 == value)
+        {
+            // 与DecimalFormat一致,-0.0输出为"-0"
+            sb.append((1 / value < 0) ? "-0" : "0");
+        }
+        else if ((value == Math.rint(value)) && (Math.abs(value) < MAX_INTEGER))
+        {
+            sb.append((long) value);
+        }
+        else
+        {
+            appendDecimal(sb, value);
+        }
+
+        return sb;
+    }
+
+    /**
+     * 格式化非整数(或者很大的整数)<br/>
+     * Double.toString的结果能够读回同一个double,但是在JDK 19之前偶尔会多出一位,
+     * 因此位数较多时再尝试去掉最后一位,直到不能精确读回为止
+     *
+     * @param sb
+     *            输出
+     * @param value
+     *            数值
+     */
+    private static void appendDecimal(StringBuilder sb, double value)
+    {
+        double abs = Math.abs(value);
+        String text = Double.toString(abs);
+        char[] digits = DIGITS.get();
+
+        // value = 0.d1d2...dn * 10^exponent
+        int count = 0;
+        int exponent = 0;
+        int integers = -1;
+        int ordinal = 0;
+        int length = text.length();
+        int i = 0;
+        for (; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if ('.' == c)
+            {
+                integers = ordinal;
+            }
+            else if ('E' == c)
+            {
+                break;
+            }
+            else
+            {
+                if ((0 == count) && ('0' == c))
+                {
+                    ordinal++;
+                    continue;
+                }
+                if (0 == count)
+                {
+                    exponent = -ordinal;
+                }
+                digits[count++] = c;
+                ordinal++;
+            }
+        }
+        exponent += (integers < 0) ? ordinal : integers;
+        if (i < length)
+        {
+            exponent += Integer.parseInt(text.substring(i + 1));
+        }
+        while ((count > 1) && ('0' == digits[count - 1]))
+        {
+            count--;
+        }
+
+        if (count > MAX_EXACT)
+        {
+            int shorter = 0;
+            while ((count > 1) && (0 != (shorter = shorten(digits, count, exponent, abs))))
+            {
+                if (shorter < 0)
+                {
+                    // 进位到了更高一位,例如 0.999 -> 1
+                    exponent++;
+                    shorter = -shorter;
+                }
+                count = shorter;
+            }
+        }
+
+        if (value < 0)
+        {
+            sb.append('-');
+        }
+        if (exponent <= 0)
+        {
+            sb.append("0.");
+            for (int j = exponent; j < 0; j++)
+            {
+                sb.append('0');
+            }
+            sb.append(digits, 0, count);
+        }
+        else if (exponent >= count)
+        {
+            sb.append(digits, 0, count);
+            for (int j = count; j < exponent; j++)
+            {
+                sb.append('0');
+            }
+        }
+        else
+        {
+            sb.append(digits, 0, exponent);
+            sb.append('.');
+            sb.append(digits, exponent, count - exponent);
+        }
+    }
+
+    /**
+     * 尝试去掉最后一位有效数字(分别尝试舍去和进位)
+     *
+     * @param digits
+     *            有效数字,成功时修改为新的有效数字
+     * @param count
+     *            有效数字位数
+     * @param exponent
+     *            指数
+     * @param value
+     *            数值(绝对值)
+     * @return 新的有效数字位数,进位到更高一位时返回负数,不能缩短时返回0
+     */
+    private static int shorten(char[] digits, int count, int exponent, double value)
+    {
+        boolean up = digits[count - 1] >= '5';
+        for (int k = 0; k < 2; k++, up = !up)
+        {
+            char[] candidate = new char[count - 1];
+            System.arraycopy(digits, 0, candidate, 0, count - 1);
+            int length = count - 1;
+            boolean carry = false;
+            if (up)
+            {
+                int j = length - 1;
+                while ((j >= 0) && ('9' == candidate[j]))
+                {
+                    j--;
+                }
+                if (j < 0)
+                {
+                    candidate[0] = '1';
+                    length = 1;
+                    carry = true;
+                }
+                else
+                {
+                    candidate[j]++;
+                    length = j + 1;
+                }
+            }
+            while ((length > 1) && ('0' == candidate[length - 1]))
+            {
+                length--;
+            }
+
+            double parsed = Double.parseDouble("0." + new String(candidate, 0, length) + "E"
+                    + (carry ? exponent + 1 : exponent));
+            if (parsed == value)
+            {
+                System.arraycopy(candidate, 0, digits, 0, length);
+                return carry ? -length : length;
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jdom2.Element;
+
+/**
+ * 将流式回调的数据构建成xml的Element<br/>
+ * 生成的结构与ExcelReader.parseWorkBook2Xml一致。process则相反,按回调的顺序处理xml中的工作表
+ */
+public class ElementHandler implements WorkBookHandler
+{
+    /**
+     * 转换之后的WorkBook
+     */
+    private Element _workBook   = null;
+
+    /**
+     * 当前处理中的WorkSheet
+     */
+    private Element _sheet      = null;
+
+    /**
+     * 当前处理中的Row
+     */
+    private Element _row        = null;
+
+    /**
+     * 是否输出紧凑格式
+     */
+    private boolean _compact    = false;
+
+    /**
+     * 下一个连续的行号
+     */
+    private int     _nextRow    = 0;
+
+    /**
+     * 下一个连续的列号
+     */
+    private int     _nextColumn = 0;
+
+    /**
+     * 默认构造方法,输出普通格式
+     */
+    public ElementHandler()
+    {
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param compact
+     *            true为紧凑格式(R/C),false为普通格式(Row/Cell/Data)
+     */
+    public ElementHandler(boolean compact)
+    {
+        _compact = compact;
+    }
+
+    /**
+     * 获取转换之后的xml数据
+     *
+     * @return 转换之后的xml数据
+     */
+    public Element getXml()
+    {
+        return _workBook;
+    }
+
+    public void startWorkBook()
+    {
+        _workBook = new Element(XmlType.WorkBook);
+    }
+
+    public void startSheet(String name)
+    {
+        _sheet = new Element(XmlType.WorkSheet);
+        _sheet.setAttribute("name", name);
+        _nextRow = 0;
+    }
+
+    public void startRow(int rownum, short height)
+    {
+        if (_compact)
+        {
+            _row = new Element(XmlType.CompactRow);
+            if (XmlType.DefaultHeight != height)
+            {
+                _row.setAttribute("h", Short.toString(height));
+            }
+        }
+        else
+        {
+            _row = new Element(XmlType.Row);
+            _row.setAttribute("Height", Short.toString(height));
+        }
+
+        setIndex(_row, rownum, _nextRow);
+        _nextRow = rownum + 1;
+        _nextColumn = 0;
+    }
+
+    /**
+     * 行号/列号与上一行/上一个单元格不连续时设置行号/列号属性
+     *
+     * @param element
+     *            行或单元格
+     * @param index
+     *            行号/列号
+     * @param next
+     *            上一行/上一个单元格的下一个行号/列号
+     */
+    private void setIndex(Element element, int index, int next)
+    {
+        if (index != next)
+        {
+            element.setAttribute(_compact ? XmlType.CompactIndex : XmlType.Index, Integer.toString(index));
+        }
+    }
+
+    public void cell(int column, String type, String value)
+    {
+        formulaCell(column, null, type, value);
+    }
+
+    public void formulaCell(int column, String formula, String type, String value)
+    {
+        if (_compact)
+        {
+            Element cell = new Element(XmlType.CompactCell);
+            String t = XmlType.toCompactType(type);
+            if (null != t)
+            {
+                cell.setAttribute("t", t);
+            }
+            if (null != formula)
+            {
+                cell.setAttribute(XmlType.CompactFormula, formula);
+            }
+            cell.setText(value);
+            setIndex(cell, column, _nextColumn);
+            _nextColumn = column + 1;
+            _row.addContent(cell);
+            return;
+        }
+
+        Element data = new Element(XmlType.Data);
+        data.setAttribute("type", type);
+        if (null != formula)
+        {
+            data.setAttribute(XmlType.Formula, formula);
+        }
+        data.setText(value);
+
+        Element cell = new Element(XmlType.Cell);
+        setIndex(cell, column, _nextColumn);
+        _nextColumn = column + 1;
+        cell.addContent(data);
+        _row.addContent(cell);
+    }
+
+    public void endRow()
+    {
+        _sheet.addContent(_row);
+        _row = null;
+    }
+
+    public void endSheet()
+    {
+        _workBook.addContent(_sheet);
+        _sheet = null;
+    }
+
+    public void endWorkBook()
+    {
+    }
+
+    /**
+     * 按回调的顺序处理xml中的一个工作表(普通格式和紧凑格式),没有Data的单元格不回调
+     *
+     * @param sheet
+     *            WorkSheet元素
+     * @param handler
+     *            回调
+     * @throws IOException
+     */
+    public static void process(Element sheet, WorkBookHandler handler) throws IOException
+    {
+        handler.startSheet(sheet.getAttributeValue("name"));
+        int rownum = -1;
+        for (Element row : sheet.getChildren())
+        {
+            rownum = XmlType.getIndex(row, rownum + 1);
+            String height = XmlType.CompactRow.equals(row.getName()) ? row.getAttributeValue("h") : row
+                    .getAttributeValue("Height");
+            handler.startRow(rownum, (null == height) ? XmlType.DefaultHeight : Short.parseShort(height));
+            for (Map.Entry<Integer, String[]> entry : getCells(row).entrySet())
+            {
+                String[] cell = entry.getValue();
+                if (null == cell[1])
+                {
+                    handler.cell(entry.getKey().intValue(), cell[0], cell[2]);
+                }
+                else
+                {
+                    handler.formulaCell(entry.getKey().intValue(), cell[1], cell[0], cell[2]);
+                }
+            }
+            handler.endRow();
+        }
+        handler.endSheet();
+    }
+
+    /**
+     * 获取一行中的所有单元格(普通格式和紧凑格式)
+     *
+     * @param row
+     *            Row/R元素
+     * @return 列号对应的{数据类型, 公式, 数据},没有Data的单元格不包括在内
+     */
+    public static TreeMap<Integer, String[]> getCells(Element row)
+    {
+        TreeMap<Integer, String[]> result = new TreeMap<Integer, String[]>();
+        int column = -1;
+        for (Element cell : row.getChildren())
+        {
+            column = XmlType.getIndex(cell, column + 1);
+            if (XmlType.CompactCell.equals(cell.getName()))
+            {
+                result.put(Integer.valueOf(column), new String[] { XmlType.toType(cell.getAttributeValue("t")),
+                        XmlType.getFormula(cell), cell.getText() });
+            }
+            else
+            {
+                Element data = cell.getChild(XmlType.Data);
+                if (null != data)
+                {
+                    result.put(Integer.valueOf(column), new String[] { data.getAttributeValue("type"),
+                            XmlType.getFormula(cell), data.getText() });
+                }
+            }
+        }
+
+        return result;
+    }
+}
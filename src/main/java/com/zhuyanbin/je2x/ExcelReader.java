@@ -11,17 +11,44 @@
  */
 package com.zhuyanbin.je2x;
 
-import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.output.Format;
@@ -36,13 +63,57 @@ public class ExcelReader
     /**
      * 需要处理的excel文件名
      */
-    private String               _fileName   = null;
+    private String               _fileName     = null;
 
-    private static DecimalFormat format      = null;
     /**
      * 转换成xml的Element
      */
-    private Element              _xmlElement = null;
+    private Element              _xmlElement   = null;
+
+    /**
+     * 是否使用流式(HSSF事件模型)读取
+     */
+    private boolean              _streaming    = false;
+
+    /**
+     * 并行转换工作表时使用的线程池,为null时顺序转换
+     */
+    private ExecutorService      _executor     = null;
+
+    /**
+     * 是否输出紧凑格式
+     */
+    private boolean              _compact      = false;
+
+    /**
+     * 是否输出单元格样式
+     */
+    private boolean              _cellStyles   = false;
+
+    /**
+     * 当前转换的工作簿的样式表,不输出单元格样式时为null
+     */
+    private StylePalette         _palette      = null;
+
+    /**
+     * 输出文件的同步策略
+     */
+    private AtomicFile.Sync      _sync         = AtomicFile.Sync.NONE;
+
+    /**
+     * 是否在导出时计算行和工作表的指纹
+     */
+    private boolean              _fingerprints = false;
+
+    /**
+     * 上一次导出的指纹,没有计算时为null
+     */
+    private WorkBookIndex        _index        = null;
+
+    /**
+     * 输出配置表时使用的设置(关键列、表头行数)
+     */
+    private ConfigTable.Builder  _tableBuilder = new ConfigTable.Builder();
 
     /**
      * 默认构造方法
@@ -83,6 +154,186 @@ public class ExcelReader
         return _fileName;
     }
 
+    /**
+     * 设置是否使用流式读取<br/>
+     * 流式读取基于HSSF事件模型,不会创建HSSFWorkbook,适用于行数很多的大文件
+     * 
+     * @param streaming
+     *            true为流式读取,false为普通读取
+     */
+    public void setStreaming(boolean streaming)
+    {
+        _streaming = streaming;
+    }
+
+    /**
+     * 是否使用流式读取
+     * 
+     * @return 流式读取返回true
+     */
+    public boolean isStreaming()
+    {
+        return _streaming;
+    }
+
+    /**
+     * 设置并行转换工作表时使用的线程池<br/>
+     * 设置之后load和convert会在线程池中同时转换各个工作表,结果仍按照工作表的顺序输出,
+     * 与顺序转换的结果完全一致。流式读取(setStreaming)和xlsx文件不支持并行转换
+     * 
+     * @param executor
+     *            线程池,为null时顺序转换
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        _executor = executor;
+    }
+
+    /**
+     * 获取并行转换工作表时使用的线程池
+     * 
+     * @return 线程池,顺序转换时为null
+     */
+    public ExecutorService getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * 设置是否并行转换工作表,并行时使用ForkJoinPool.commonPool()
+     * 
+     * @param parallel
+     *            true为并行转换,false为顺序转换
+     */
+    public void setParallel(boolean parallel)
+    {
+        setExecutor(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * 设置是否输出紧凑格式<br/>
+     * 紧凑格式使用R/C元素代替Row/Cell/Data,数据直接作为C的文本,类型为t属性,
+     * 例如 &lt;R&gt;&lt;C t="n"&gt;42&lt;/C&gt;&lt;C&gt;名称&lt;/C&gt;&lt;/R&gt;,
+     * 文件大小约为普通格式的三分之一。XmlReader可以自动识别两种格式
+     * 
+     * @param compact
+     *            true为紧凑格式,false为普通格式
+     */
+    public void setCompact(boolean compact)
+    {
+        _compact = compact;
+    }
+
+    /**
+     * 是否输出紧凑格式
+     * 
+     * @return 紧凑格式返回true
+     */
+    public boolean isCompact()
+    {
+        return _compact;
+    }
+
+    /**
+     * 设置是否输出单元格样式<br/>
+     * 输出时工作簿中实际使用的样式去重之后写入WorkBook下的Styles元素(见StylePalette),
+     * 单元格通过Style(紧凑格式为s)属性引用样式编号,默认样式的单元格不输出样式。
+     * 只支持xls文件,输出样式时load和convert总是使用HSSFWorkbook读取
+     * 
+     * @param cellStyles
+     *            true为输出单元格样式,false为只输出数据
+     */
+    public void setCellStyles(boolean cellStyles)
+    {
+        _cellStyles = cellStyles;
+    }
+
+    /**
+     * 是否输出单元格样式
+     * 
+     * @return 输出单元格样式返回true
+     */
+    public boolean isCellStyles()
+    {
+        return _cellStyles;
+    }
+
+    /**
+     * 设置输出文件的同步策略<br/>
+     * 输出文件总是先写入临时文件再改名,同步策略决定改名之前是否将数据刷新到磁盘
+     * 
+     * @param sync
+     *            同步策略,默认为AtomicFile.Sync.NONE
+     */
+    public void setSync(AtomicFile.Sync sync)
+    {
+        _sync = sync;
+    }
+
+    /**
+     * 获取输出文件的同步策略
+     * 
+     * @return 同步策略
+     */
+    public AtomicFile.Sync getSync()
+    {
+        return _sync;
+    }
+
+    /**
+     * 设置是否在导出时计算行和工作表的指纹<br/>
+     * 打开时output(Path)和convert(Path)在xml文件旁边另外输出索引文件(见WorkBookIndex),
+     * 指纹在导出的同时计算,不需要重新读取xml
+     * 
+     * @param fingerprints
+     *            true为计算指纹
+     */
+    public void setFingerprints(boolean fingerprints)
+    {
+        _fingerprints = fingerprints;
+    }
+
+    /**
+     * 是否在导出时计算行和工作表的指纹
+     * 
+     * @return 计算指纹返回true
+     */
+    public boolean isFingerprints()
+    {
+        return _fingerprints;
+    }
+
+    /**
+     * 获取上一次导出时计算的指纹
+     * 
+     * @return 指纹,没有计算时返回null
+     */
+    public WorkBookIndex getIndex()
+    {
+        return _index;
+    }
+
+    /**
+     * 设置输出配置表(outputTable)时使用的设置
+     * 
+     * @param tableBuilder
+     *            关键列、表头行数等设置
+     */
+    public void setTableBuilder(ConfigTable.Builder tableBuilder)
+    {
+        _tableBuilder = tableBuilder;
+    }
+
+    /**
+     * 获取输出配置表时使用的设置
+     * 
+     * @return 关键列、表头行数等设置
+     */
+    public ConfigTable.Builder getTableBuilder()
+    {
+        return _tableBuilder;
+    }
+
     /**
      * 获取将excel文件转换好之后的xml数据
      * 
@@ -103,8 +354,38 @@ public class ExcelReader
     protected Element parseWorkBook2Xml(HSSFWorkbook wb)
     {
         Element result = new Element(XmlType.WorkBook);
+        Element styles = createPalette(wb);
+        if (null != styles)
+        {
+            result.addContent(styles);
+        }
+
+        if ((wb instanceof HSSFWorkbook) && (null != getExecutor()))
+        {
+            List<Future<Element>> sheets = new ArrayList<Future<Element>>();
+            int as_num = wb.getNumberOfSheets();
+            for (int i = 0; i < as_num; i++)
+            {
+                final HSSFSheet sheet = wb.getSheetAt(i);
+                sheets.add(getExecutor().submit(new Callable<Element>()
+                {
+                    public Element call()
+                    {
+                        return parseSheet2Xml(sheet);
+                    }
+                }));
+            }
 
-        if (wb instanceof HSSFWorkbook)
+            for (Future<Element> future : sheets)
+            {
+                Element sheet = getResult(future);
+                if (null != sheet)
+                {
+                    result.addContent(sheet);
+                }
+            }
+        }
+        else if (wb instanceof HSSFWorkbook)
         {
             int as_num = wb.getNumberOfSheets();
             for (int i = 0; i < as_num; i++)
@@ -121,7 +402,56 @@ public class ExcelReader
     }
 
     /**
-     * 将Excel文件的工作表(sheet)转换的实现方法
+     * 创建工作簿的样式表
+     * 
+     * @param wb
+     *            excel文件操作对象
+     * @return Styles元素,不输出单元格样式或者只有默认样式时返回null
+     */
+    private Element createPalette(HSSFWorkbook wb)
+    {
+        _palette = isCellStyles() ? new StylePalette(wb) : null;
+
+        return ((null == _palette) || (0 == _palette.size())) ? null : _palette.toXml();
+    }
+
+    /**
+     * 等待并获取并行任务的结果,任务中抛出的异常原样抛出
+     * 
+     * @param future
+     *            并行任务
+     * @return 任务的结果
+     */
+    private static <T> T getResult(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 将Excel文件的工作表(sheet)转换的实现方法<br/>
+     * 只遍历存在的行,与上一行不连续的行输出行号属性(XmlType.Index)
      * 
      * @param sheet
      *            Excel文件的工作表(sheet)
@@ -136,12 +466,22 @@ public class ExcelReader
             result = new Element(XmlType.WorkSheet);
             result.setAttribute("name", sheet.getSheetName());
             int rowCount = sheet.getLastRowNum();
-            for (int i = 0; i < rowCount; i++)
+            int next = 0;
+            for (Iterator<Row> it = sheet.rowIterator(); it.hasNext();)
             {
-                Element row = parseRow2Xml(sheet.getRow(i));
+                HSSFRow wbRow = (HSSFRow) it.next();
+                int rownum = wbRow.getRowNum();
+                if (rownum >= rowCount)
+                {
+                    break;
+                }
+
+                Element row = parseRow2Xml(wbRow);
                 if (null != row)
                 {
+                    setIndex(row, rownum, next);
                     result.addContent(row);
+                    next = rownum + 1;
                 }
             }
         }
@@ -150,7 +490,8 @@ public class ExcelReader
     }
 
     /**
-     * 将Excel文件的工作表(sheet)中的某行(row)转换的实现方法
+     * 将Excel文件的工作表(sheet)中的某行(row)转换的实现方法<br/>
+     * 只遍历存在的单元格,与上一个单元格不连续的单元格输出列号属性(XmlType.Index)
      * 
      * @param row
      *            Excel文件的工作表(sheet)中的某行(row)
@@ -159,18 +500,32 @@ public class ExcelReader
     protected Element parseRow2Xml(HSSFRow row)
     {
         Element result = null;
-        if (row instanceof HSSFRow)
+        if ((row instanceof HSSFRow) && isCompact())
+        {
+            result = new Element(XmlType.CompactRow);
+            if (XmlType.DefaultHeight != row.getHeight())
+            {
+                result.setAttribute("h", Short.toString(row.getHeight()));
+            }
+        }
+        else if (row instanceof HSSFRow)
         {
             result = new Element(XmlType.Row);
             result.setAttribute("Height", Short.toString(row.getHeight()));
+        }
 
-            int cells = row.getLastCellNum();
-            for (int i = 0; i < cells; i++)
+        if (null != result)
+        {
+            int next = 0;
+            for (Iterator<Cell> it = row.cellIterator(); it.hasNext();)
             {
-                Element cell = parseCell2Xml(row.getCell(i));
+                HSSFCell wbCell = (HSSFCell) it.next();
+                Element cell = parseCell2Xml(wbCell);
                 if (null != cell)
                 {
+                    setIndex(cell, wbCell.getColumnIndex(), next);
                     result.addContent(cell);
+                    next = wbCell.getColumnIndex() + 1;
                 }
             }
         }
@@ -178,6 +533,24 @@ public class ExcelReader
         return result;
     }
 
+    /**
+     * 行号/列号与上一行/上一个单元格不连续时设置行号/列号属性
+     * 
+     * @param element
+     *            行或单元格
+     * @param index
+     *            行号/列号
+     * @param next
+     *            上一行/上一个单元格的下一个行号/列号
+     */
+    private void setIndex(Element element, int index, int next)
+    {
+        if (index != next)
+        {
+            element.setAttribute(isCompact() ? XmlType.CompactIndex : XmlType.Index, Integer.toString(index));
+        }
+    }
+
     /**
      * 将Excel文件的工作表(sheet)中的某行(row)中的某个单元格(cell)转换的实现方法
      * 
@@ -188,7 +561,26 @@ public class ExcelReader
     protected Element parseCell2Xml(HSSFCell cell)
     {
         Element result = null;
-        if (cell instanceof HSSFCell)
+        if ((cell instanceof HSSFCell) && isCompact())
+        {
+            result = new Element(XmlType.CompactCell);
+            Element value = getCellValue(cell);
+            if (null != value)
+            {
+                String type = XmlType.toCompactType(value.getAttributeValue("type"));
+                if (null != type)
+                {
+                    result.setAttribute("t", type);
+                }
+                String formula = value.getAttributeValue(XmlType.Formula);
+                if (null != formula)
+                {
+                    result.setAttribute(XmlType.CompactFormula, formula);
+                }
+                result.setText(value.getText());
+            }
+        }
+        else if (cell instanceof HSSFCell)
         {
             result = new Element(XmlType.Cell);
             Element value = getCellValue(cell);
@@ -198,6 +590,15 @@ public class ExcelReader
             }
         }
 
+        if ((null != result) && (null != _palette))
+        {
+            int style = _palette.getId(cell.getCellStyle());
+            if (style >= 0)
+            {
+                result.setAttribute(isCompact() ? XmlType.CompactStyle : XmlType.Style, Integer.toString(style));
+            }
+        }
+
         return result;
     }
 
@@ -214,7 +615,8 @@ public class ExcelReader
 
     /**
      * 解析Excel文件，并转换成xml数据 <br/>
-     * 如果文件不存在或无法打开Excel文件则抛出异常
+     * 如果文件不存在或无法打开Excel文件则抛出异常。
+     * xls文件使用NPOIFSFileSystem打开,文件内容通过内存映射读取,不会整个复制到堆中
      * 
      * @throws FileNotFoundException
      * @throws IOException
@@ -222,31 +624,25 @@ public class ExcelReader
     public void load() throws FileNotFoundException, IOException
     {
         setXmlElement(null);
-        FileInputStream fis = new FileInputStream(getFileName());
-
-        try
+        if (isXlsx(getFileName()))
         {
-            POIFSFileSystem fs = new POIFSFileSystem(fis);
-            setXmlElement(parseWorkBook2Xml(new HSSFWorkbook(fs)));
+            ElementHandler handler = new ElementHandler(isCompact());
+            new XSSFEventReader(handler).process(getFileName());
+            setXmlElement(handler.getXml());
+            return;
         }
-        catch (IOException ex)
-        {
-            if (null != fis)
-            {
-                fis.close();
-                fis = null;
-            }
 
-            throw ex;
+        NPOIFSFileSystem fs = openFileSystem(getFileName());
+        try
+        {
+            load(fs.getRoot());
         }
-        
-        if (null != fis)
+        finally
         {
-            fis.close();
-            fis = null;
+            fs.close();
         }
     }
-    
+
     /**
      * 解析Excel文件，并转换成xml数据 <br/>
      * 如果文件不存在或无法打开Excel文件则抛出异常
@@ -263,77 +659,845 @@ public class ExcelReader
     }
 
     /**
-     * 数值格式化器
+     * 解析Excel文件，并转换成xml数据
      * 
-     * @return
+     * @param file
+     *            需要解析的excel文件
+     * @throws FileNotFoundException
+     * @throws IOException
      */
-    private static DecimalFormat getFormater()
+    public void load(Path file) throws FileNotFoundException, IOException
     {
-        if (null == format)
-        {
-            format = new DecimalFormat();
-            format.setDecimalSeparatorAlwaysShown(false);
-            format.setGroupingUsed(false);
-        }
-
-        return format;
+        load(file.toString());
     }
 
     /**
-     * 获取Excel中单元格(cell)数据
+     * 从输入流解析Excel,并转换成xml数据<br/>
+     * 根据文件头自动识别xls和xlsx,不需要先保存成临时文件。输入流由调用者负责关闭
      * 
-     * @param cell
-     *            Excel中的单元格
-     * @return Excel中单元格(cell)数据
+     * @param is
+     *            Excel数据
+     * @throws IOException
      */
-    protected Element getCellValue(HSSFCell cell)
+    public void load(InputStream is) throws IOException
     {
-        Element result = null;
-        if (cell instanceof HSSFCell)
+        setXmlElement(null);
+        BufferedInputStream bis = new BufferedInputStream(NPOIFSFileSystem.createNonClosingInputStream(is));
+        if (isXlsx(bis))
         {
-            result = new Element(XmlType.Data);
-
-            switch (cell.getCellType())
-            {
-                case HSSFCell.CELL_TYPE_NUMERIC:
-                    result.setAttribute("type", "Number");
-                    result.setText(getFormater().format(cell.getNumericCellValue()));
-                    break;
-                case HSSFCell.CELL_TYPE_BOOLEAN:
-                    result.setAttribute("type", "Boolean");
-                    result.setText(cell.toString());
-                    break;
-                case HSSFCell.CELL_TYPE_STRING:
-                default:
-                    result.setAttribute("type", "String");
-                    result.setText(cell.toString());
-            }
+            ElementHandler handler = new ElementHandler(isCompact());
+            processXlsx(bis, handler);
+            setXmlElement(handler.getXml());
+            return;
         }
 
-        return result;
+        load(new POIFSFileSystem(bis).getRoot());
     }
 
-    public boolean output(String fileName) throws FileNotFoundException, IOException
+    /**
+     * 从通道解析Excel,并转换成xml数据。通道由调用者负责关闭
+     * 
+     * @param channel
+     *            Excel数据
+     * @throws IOException
+     */
+    public void load(ReadableByteChannel channel) throws IOException
     {
-        boolean result = false;
+        load(Channels.newInputStream(channel));
+    }
 
-        if (getXml() instanceof Element)
+    /**
+     * 解析xls文件系统,并转换成xml数据
+     * 
+     * @param dir
+     *            xls文件系统的根目录
+     * @throws IOException
+     */
+    protected void load(DirectoryNode dir) throws IOException
+    {
+        if (isStreaming() && !isCellStyles())
         {
-            Document document = new Document(getXml());
-            XMLOutputter xop = new XMLOutputter(getFormat());
-            xop.output(document, new FileOutputStream(fileName));
-            result = true;
+            ElementHandler handler = new ElementHandler(isCompact());
+            new HSSFEventReader(handler).process(dir);
+            setXmlElement(handler.getXml());
         }
-
+        else
+        {
+            setXmlElement(parseWorkBook2Xml(new HSSFWorkbook(dir, false)));
+        }
+    }
+
+    /**
+     * 以只读方式打开xls文件,文件内容通过内存映射读取
+     * 
+     * @param fileName
+     *            xls文件名
+     * @return 文件系统,由调用者负责关闭
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    protected static NPOIFSFileSystem openFileSystem(String fileName) throws FileNotFoundException, IOException
+    {
+        File file = new File(fileName);
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(fileName);
+        }
+
+        return new NPOIFSFileSystem(file, true);
+    }
+
+    /**
+     * 流式读取Excel文件(xls使用HSSF事件模型,xlsx使用SAX),不创建工作簿对象<br/>
+     * 与转换xml不同,包括每个工作表的最后一行,用于创建配置表
+     *
+     * @param file
+     *            xls或xlsx文件
+     * @param handler
+     *            回调接口
+     * @throws IOException
+     */
+    static void process(Path file, WorkBookHandler handler) throws IOException
+    {
+        if (isXlsx(file.toString()))
+        {
+            XSSFEventReader reader = new XSSFEventReader(handler);
+            reader.setLastRow(true);
+            reader.process(file.toString());
+        }
+        else
+        {
+            NPOIFSFileSystem fs = openFileSystem(file.toString());
+            try
+            {
+                HSSFEventReader reader = new HSSFEventReader(handler);
+                reader.setLastRow(true);
+                reader.process(fs.getRoot());
+            }
+            finally
+            {
+                fs.close();
+            }
+        }
+    }
+
+    /**
+     * 根据文件头判断是否为xlsx(zip)数据,不改变输入流的位置
+     * 
+     * @param is
+     *            支持mark的输入流
+     * @return zip文件头时返回true
+     * @throws IOException
+     */
+    protected static boolean isXlsx(InputStream is) throws IOException
+    {
+        is.mark(4);
+        try
+        {
+            return ('P' == is.read()) && ('K' == is.read());
+        }
+        finally
+        {
+            is.reset();
+        }
+    }
+
+    /**
+     * 流式读取xlsx数据
+     * 
+     * @param is
+     *            xlsx数据
+     * @param handler
+     *            回调接口
+     * @throws IOException
+     */
+    private static void processXlsx(InputStream is, WorkBookHandler handler) throws IOException
+    {
+        try
+        {
+            OPCPackage pkg = OPCPackage.open(is);
+            try
+            {
+                new XSSFEventReader(handler).process(pkg);
+            }
+            finally
+            {
+                pkg.revert();
+            }
+        }
+        catch (OpenXML4JException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 是否为xlsx文件<br/>
+     * xlsx文件使用XSSFEventReader流式读取
+     * 
+     * @param fileName
+     *            Excel文件名
+     * @return 扩展名为.xlsx时返回true
+     */
+    protected static boolean isXlsx(String fileName)
+    {
+        return XmlReader.FORMAT_XLSX == XmlReader.getFormat(fileName);
+    }
+
+    /**
+     * 将数值格式化成xml中的数据<br/>
+     * 输出能够精确读回原数值的最短字符串,见DoubleFormatter
+     * 
+     * @param value
+     *            数值
+     * @return 格式化之后的数据
+     */
+    static String formatNumber(double value)
+    {
+        return DoubleFormatter.format(value);
+    }
+
+    /**
+     * 获取Excel中单元格(cell)数据<br/>
+     * 公式单元格输出公式(XmlType.Formula属性)和公式的缓存结果,不进行计算
+     * 
+     * @param cell
+     *            Excel中的单元格
+     * @return Excel中单元格(cell)数据
+     */
+    protected Element getCellValue(HSSFCell cell)
+    {
+        Element result = null;
+        if (cell instanceof HSSFCell)
+        {
+            result = new Element(XmlType.Data);
+
+            switch (cell.getCellType())
+            {
+                case HSSFCell.CELL_TYPE_NUMERIC:
+                    result.setAttribute("type", "Number");
+                    result.setText(formatNumber(cell.getNumericCellValue()));
+                    break;
+                case HSSFCell.CELL_TYPE_BOOLEAN:
+                    result.setAttribute("type", "Boolean");
+                    result.setText(cell.toString());
+                    break;
+                case HSSFCell.CELL_TYPE_FORMULA:
+                    setFormulaValue(result, cell);
+                    break;
+                case HSSFCell.CELL_TYPE_STRING:
+                default:
+                    result.setAttribute("type", "String");
+                    result.setText(cell.toString());
+            }
+        }
+
         return result;
     }
 
-    private Format getFormat()
+    /**
+     * 设置公式单元格的数据: 公式和公式的缓存结果
+     * 
+     * @param data
+     *            Data元素
+     * @param cell
+     *            公式单元格
+     */
+    private static void setFormulaValue(Element data, HSSFCell cell)
+    {
+        switch (cell.getCachedFormulaResultType())
+        {
+            case HSSFCell.CELL_TYPE_NUMERIC:
+                data.setAttribute("type", "Number");
+                data.setText(formatNumber(cell.getNumericCellValue()));
+                break;
+            case HSSFCell.CELL_TYPE_BOOLEAN:
+                data.setAttribute("type", "Boolean");
+                data.setText(cell.getBooleanCellValue() ? "TRUE" : "FALSE");
+                break;
+            case HSSFCell.CELL_TYPE_ERROR:
+                data.setAttribute("type", "Error");
+                data.setText(ErrorEval.getText(cell.getErrorCellValue()));
+                break;
+            case HSSFCell.CELL_TYPE_STRING:
+            default:
+                data.setAttribute("type", "String");
+                data.setText(cell.getStringCellValue());
+                break;
+        }
+        data.setAttribute(XmlType.Formula, cell.getCellFormula());
+    }
+
+    /**
+     * 将转换好的xml数据保存到文件
+     * 
+     * @param fileName
+     *            xml文件名
+     * @return 成功返回true,没有转换好的xml数据时返回false
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public boolean output(String fileName) throws FileNotFoundException, IOException
     {
-        Format result = Format.getCompactFormat();
-        result.setEncoding("utf-8");
-        result.setIndent("    ");
+        return output(Paths.get(fileName));
+    }
+
+    /**
+     * 将转换好的xml数据保存到文件<br/>
+     * 先写入临时文件再改名,中途失败不会留下不完整的文件。扩展名为.gz/.zz时压缩输出
+     * 
+     * @param file
+     *            xml文件
+     * @return 成功返回true,没有转换好的xml数据时返回false
+     * @throws IOException
+     */
+    public boolean output(Path file) throws IOException
+    {
+        boolean result = false;
+
+        if (getXml() instanceof Element)
+        {
+            AtomicFile out = new AtomicFile(file, getSync());
+            try
+            {
+                result = output(out.getOutputStream());
+                out.commit();
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (isFingerprints())
+            {
+                _index = WorkBookIndex.of(getXml(), 0);
+                _index.write(WorkBookIndex.getIndexFile(file), getSync());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 将转换好的xml数据写入输出流。输出流由调用者负责关闭
+     * 
+     * @param os
+     *            输出流
+     * @return 成功返回true,没有转换好的xml数据时返回false
+     * @throws IOException
+     */
+    public boolean output(OutputStream os) throws IOException
+    {
+        boolean result = false;
+
+        if (getXml() instanceof Element)
+        {
+            Document document = getXml().getDocument();
+            if (null == document)
+            {
+                document = new Document(getXml());
+            }
+            XMLOutputter xop = new XMLOutputter(getFormat());
+            xop.output(document, os);
+            result = true;
+        }
 
         return result;
     }
+
+    /**
+     * 将转换好的xml数据写入通道。通道由调用者负责关闭
+     * 
+     * @param channel
+     *            通道
+     * @return 成功返回true,没有转换好的xml数据时返回false
+     * @throws IOException
+     */
+    public boolean output(WritableByteChannel channel) throws IOException
+    {
+        return output(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 输出二进制的配置表文件(见TableFile),先写入临时文件再改名<br/>
+     * 设置了Excel文件时直接从文件流式读取(包括每个工作表的最后一行),不使用转换好的xml;
+     * 只有从输入流load的xml数据时使用xml数据,这时没有每个工作表的最后一行
+     * 
+     * @param file
+     *            配置表文件
+     * @return 成功返回true,既没有转换好的xml数据也没有设置Excel文件时返回false
+     * @throws IOException
+     */
+    public boolean outputTable(Path file) throws IOException
+    {
+        if ((null == getXml()) && (null == getFileName()))
+        {
+            return false;
+        }
+
+        AtomicFile out = new AtomicFile(file, AtomicFile.Compression.NONE, getSync());
+        try
+        {
+            boolean result = outputTable(out.getOutputStream());
+            out.commit();
+            return result;
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * 将二进制的配置表写入输出流,输出流由调用者负责关闭
+     * 
+     * @param os
+     *            输出流
+     * @return 成功返回true,既没有转换好的xml数据也没有设置Excel文件时返回false
+     * @throws IOException
+     */
+    public boolean outputTable(OutputStream os) throws IOException
+    {
+        Map<String, ConfigTable> tables = null;
+        if (null != getFileName())
+        {
+            tables = getTableBuilder().load(Paths.get(getFileName()));
+        }
+        else if (getXml() instanceof Element)
+        {
+            tables = getTableBuilder().build(getXml());
+        }
+        else
+        {
+            return false;
+        }
+
+        TableFile.write(tables, os);
+
+        return true;
+    }
+
+    /**
+     * 分文件输出xml<br/>
+     * 每个工作表输出到单独的文件,另外输出一个只包含工作表名和文件路径的索引文件:
+     * 
+     * <pre>
+     * item.xml              &lt;WorkSheet name="道具" src="item/道具.xml" /&gt;
+     * item/道具.xml          &lt;WorkSheet name="道具"&gt;...&lt;/WorkSheet&gt;
+     * </pre>
+     * 
+     * 只有内容哈希改变的文件才会重新写入,修改一个单元格只会改变对应工作表的文件。
+     * 不再存在的工作表文件会被删除。XmlReader.load可以直接读取索引文件
+     * 
+     * @param fileName
+     *            索引文件名,工作表文件保存在同名(不含扩展名)的目录中
+     * @return 成功返回true,没有转换好的xml数据时返回false
+     * @throws IOException
+     */
+    public boolean outputSplit(String fileName) throws IOException
+    {
+        boolean result = false;
+
+        if (getXml() instanceof Element)
+        {
+            Path index = Paths.get(fileName).toAbsolutePath();
+            String base = index.getFileName().toString();
+            int dot = base.lastIndexOf('.');
+            if (dot > 0)
+            {
+                base = base.substring(0, dot);
+            }
+            Path dir = index.resolveSibling(base);
+            Files.createDirectories(dir);
+
+            Element workbook = new Element(XmlType.WorkBook);
+            Set<String> used = new HashSet<String>();
+            for (Element sheet : getXml().getChildren())
+            {
+                if (XmlType.Styles.equals(sheet.getName()))
+                {
+                    workbook.addContent(sheet.clone());
+                    continue;
+                }
+
+                String name = sheet.getAttributeValue("name");
+                String file = getSheetFileName(name, used);
+                writeIfChanged(dir.resolve(file), XmlStreamWriter.toDocument(sheet), getSync());
+
+                Element element = new Element(XmlType.WorkSheet);
+                element.setAttribute("name", name);
+                element.setAttribute("src", base + "/" + file);
+                workbook.addContent(element);
+            }
+
+            DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.xml");
+            try
+            {
+                for (Path file : files)
+                {
+                    if (!used.contains(file.getFileName().toString().toLowerCase()))
+                    {
+                        Files.delete(file);
+                    }
+                }
+            }
+            finally
+            {
+                files.close();
+            }
+
+            writeIfChanged(index, XmlStreamWriter.toDocument(workbook), getSync());
+            result = true;
+        }
+
+        return result;
+    }
+
+    /**
+     * 获取工作表文件名<br/>
+     * 去掉文件名中不能使用的字符,重名(不区分大小写)时添加序号。
+     * 系统的文件名编码不支持的字符(例如非UTF-8环境中的中文)转换成十六进制
+     * 
+     * @param name
+     *            工作表名
+     * @param used
+     *            已经使用的文件名(小写)
+     * @return 工作表文件名
+     */
+    protected static String getSheetFileName(String name, Set<String> used)
+    {
+        StringBuilder sb = new StringBuilder();
+        if (null != name)
+        {
+            for (int i = 0; i < name.length(); i++)
+            {
+                char c = name.charAt(i);
+                sb.append(((c < ' ') || ("\\/:*?\"<>|[]".indexOf(c) >= 0)) ? '_' : c);
+            }
+        }
+        String base = sb.toString().trim();
+        try
+        {
+            Paths.get(base);
+        }
+        catch (InvalidPathException ex)
+        {
+            sb.setLength(0);
+            for (int i = 0; i < base.length(); i++)
+            {
+                char c = base.charAt(i);
+                if (c < 0x80)
+                {
+                    sb.append(c);
+                }
+                else
+                {
+                    sb.append('_').append(Integer.toHexString(c));
+                }
+            }
+            base = sb.toString();
+        }
+        if ((0 == base.length()) || base.startsWith("."))
+        {
+            base = "_" + base;
+        }
+
+        String result = base + ".xml";
+        for (int i = 2; !used.add(result.toLowerCase()); i++)
+        {
+            result = base + "_" + i + ".xml";
+        }
+
+        return result;
+    }
+
+    /**
+     * 内容哈希改变时写入文件
+     * 
+     * @param file
+     *            文件
+     * @param data
+     *            文件内容
+     * @param sync
+     *            同步策略
+     * @return 写入文件时返回true,内容没有改变时返回false
+     * @throws IOException
+     */
+    private static boolean writeIfChanged(Path file, byte[] data, AtomicFile.Sync sync) throws IOException
+    {
+        if (Files.isRegularFile(file) && (Files.size(file) == data.length)
+                && ConvertManifest.hash(file).equals(ConvertManifest.hash(data)))
+        {
+            return false;
+        }
+
+        AtomicFile.write(file, data, sync);
+        return true;
+    }
+
+    /**
+     * 将Excel文件直接转换成xml文件<br/>
+     * 使用HSSF事件模型读取Excel,并在读取的同时将数据写入xml文件,
+     * 不创建HSSFWorkbook和中间的Element,输出结果与load之后调用output一致
+     * 
+     * @param fileName
+     *            xml文件名
+     * @return 成功返回true,没有设置Excel文件时返回false
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public boolean convert(String fileName) throws FileNotFoundException, IOException
+    {
+        return convert(Paths.get(fileName));
+    }
+
+    /**
+     * 将Excel文件直接转换成xml文件<br/>
+     * 先写入临时文件再改名,中途失败不会留下不完整的文件。扩展名为.gz/.zz时压缩输出
+     * 
+     * @param file
+     *            xml文件
+     * @return 成功返回true,没有设置Excel文件时返回false
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public boolean convert(Path file) throws FileNotFoundException, IOException
+    {
+        boolean result = false;
+
+        if (null != getFileName())
+        {
+            AtomicFile out = new AtomicFile(file, getSync());
+            try
+            {
+                result = convert(out.getOutputStream());
+                out.commit();
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (null != getIndex())
+            {
+                getIndex().write(WorkBookIndex.getIndexFile(file), getSync());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 将Excel文件直接转换成xml并写入输出流。输出流由调用者负责关闭
+     * 
+     * @param os
+     *            输出流
+     * @return 成功返回true,没有设置Excel文件时返回false
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public boolean convert(OutputStream os) throws FileNotFoundException, IOException
+    {
+        boolean result = false;
+
+        if (isXlsx(getFileName()))
+        {
+            new XSSFEventReader(createHandler(os)).process(getFileName());
+            result = true;
+        }
+        else if (null != getFileName())
+        {
+            NPOIFSFileSystem fs = openFileSystem(getFileName());
+            try
+            {
+                convert(fs.getRoot(), os);
+            }
+            finally
+            {
+                fs.close();
+            }
+
+            result = true;
+        }
+
+        return result;
+    }
+
+    /**
+     * 将Excel数据直接转换成xml并写入输出流<br/>
+     * 根据文件头自动识别xls和xlsx。输入流和输出流由调用者负责关闭
+     * 
+     * @param is
+     *            Excel数据
+     * @param os
+     *            输出流
+     * @throws IOException
+     */
+    public void convert(InputStream is, OutputStream os) throws IOException
+    {
+        BufferedInputStream bis = new BufferedInputStream(NPOIFSFileSystem.createNonClosingInputStream(is));
+        if (isXlsx(bis))
+        {
+            processXlsx(bis, createHandler(os));
+        }
+        else
+        {
+            convert(new POIFSFileSystem(bis).getRoot(), os);
+        }
+    }
+
+    /**
+     * 将xls文件系统直接转换成xml并写入输出流
+     * 
+     * @param dir
+     *            xls文件系统的根目录
+     * @param os
+     *            输出流
+     * @throws IOException
+     */
+    protected void convert(DirectoryNode dir, OutputStream os) throws IOException
+    {
+        if ((null != getExecutor()) || isCellStyles())
+        {
+            _index = isFingerprints() ? new WorkBookIndex() : null;
+            convertWorkBook(new HSSFWorkbook(dir, false), createWriter(os));
+        }
+        else
+        {
+            new HSSFEventReader(createHandler(os)).process(dir);
+        }
+    }
+
+    /**
+     * 创建xml输出,格式与setCompact一致
+     * 
+     * @param os
+     *            输出流
+     * @return xml输出
+     * @throws IOException
+     */
+    protected XmlStreamWriter createWriter(OutputStream os) throws IOException
+    {
+        XmlStreamWriter result = new XmlStreamWriter(os);
+        result.setCompact(isCompact());
+
+        return result;
+    }
+
+    /**
+     * 创建流式转换的回调,计算指纹时在xml输出之外包装一层WorkBookIndex
+     * 
+     * @param os
+     *            输出流
+     * @return 回调
+     * @throws IOException
+     */
+    protected WorkBookHandler createHandler(OutputStream os) throws IOException
+    {
+        _index = isFingerprints() ? new WorkBookIndex(createWriter(os)) : null;
+
+        return (null == _index) ? createWriter(os) : _index;
+    }
+
+    /**
+     * 使用HSSFWorkbook转换的实现方法(并行转换或者输出单元格样式时使用)<br/>
+     * 先输出样式表,设置了线程池时每个工作表在线程池中独立转换并序列化成xml片段,
+     * 再按照工作表的顺序依次写入,否则依次转换并写入各个工作表
+     * 
+     * @param wb
+     *            excel文件操作对象
+     * @param writer
+     *            xml输出
+     * @throws IOException
+     */
+    protected void convertWorkBook(HSSFWorkbook wb, XmlStreamWriter writer) throws IOException
+    {
+        Element styles = createPalette(wb);
+        int as_num = wb.getNumberOfSheets();
+        if (null == getExecutor())
+        {
+            writer.startWorkBook();
+            if (null != styles)
+            {
+                writer.writeElement(styles);
+            }
+            for (int i = 0; i < as_num; i++)
+            {
+                Element sheet = parseSheet2Xml(wb.getSheetAt(i));
+                if (null != sheet)
+                {
+                    writer.writeElement(sheet);
+                    if (null != getIndex())
+                    {
+                        getIndex().addSheet(WorkBookIndex.Sheet.of(sheet, getIndex().getKeyColumn()));
+                    }
+                }
+            }
+            writer.endWorkBook();
+            return;
+        }
+
+        // 指纹在各个线程中分别计算,通过Future.get保证可见
+        final WorkBookIndex.Sheet[] indexes = new WorkBookIndex.Sheet[as_num];
+        List<Future<byte[]>> sheets = new ArrayList<Future<byte[]>>();
+        for (int i = 0; i < as_num; i++)
+        {
+            final HSSFSheet sheet = wb.getSheetAt(i);
+            final int position = i;
+            sheets.add(getExecutor().submit(new Callable<byte[]>()
+            {
+                public byte[] call() throws IOException
+                {
+                    Element element = parseSheet2Xml(sheet);
+                    if ((null != element) && (null != getIndex()))
+                    {
+                        indexes[position] = WorkBookIndex.Sheet.of(element, getIndex().getKeyColumn());
+                    }
+                    return (null == element) ? null : XmlStreamWriter.toFragment(element, 1);
+                }
+            }));
+        }
+
+        writer.startWorkBook();
+        if (null != styles)
+        {
+            writer.writeElement(styles);
+        }
+        for (Future<byte[]> future : sheets)
+        {
+            byte[] fragment = null;
+            try
+            {
+                fragment = getResult(future);
+            }
+            catch (IllegalStateException ex)
+            {
+                if (ex.getCause() instanceof IOException)
+                {
+                    throw (IOException) ex.getCause();
+                }
+
+                throw ex;
+            }
+
+            if (null != fragment)
+            {
+                writer.writeFragment(fragment);
+            }
+        }
+        writer.endWorkBook();
+
+        for (WorkBookIndex.Sheet index : indexes)
+        {
+            if ((null != index) && (null != getIndex()))
+            {
+                getIndex().addSheet(index);
+            }
+        }
+    }
+
+    private Format getFormat()
+    {
+        return XmlStreamWriter.getFormat();
+    }
 }
@@ -0,0 +1,164 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * 导入时的公式单元格<br/>
+ * 公式中可能引用后面的工作表,而HSSF设置公式时需要解析工作表名,因此先记录公式单元格,
+ * 所有工作表创建完毕之后再调用apply设置公式和xml中的缓存结果。
+ * 导入时不计算公式,需要时调用evaluate使用同一个FormulaEvaluator(及其缓存)一次计算所有公式
+ */
+public class FormulaCells
+{
+    /**
+     * 公式单元格所在的工作簿
+     */
+    private Workbook      _wb       = null;
+
+    /**
+     * 等待设置公式的单元格
+     */
+    private List<Pending> _pending  = new ArrayList<Pending>();
+
+    /**
+     * 已经设置公式的单元格
+     */
+    private List<Cell>    _cells    = new ArrayList<Cell>();
+
+    /**
+     * 构造方法
+     *
+     * @param wb
+     *            公式单元格所在的工作簿
+     */
+    public FormulaCells(Workbook wb)
+    {
+        _wb = wb;
+    }
+
+    /**
+     * 添加公式单元格
+     *
+     * @param cell
+     *            单元格
+     * @param formula
+     *            公式
+     * @param type
+     *            缓存结果的数据类型(Data的type属性)
+     * @param value
+     *            缓存结果
+     */
+    public void add(Cell cell, String formula, String type, String value)
+    {
+        _pending.add(new Pending(cell, formula, type, value));
+    }
+
+    /**
+     * 设置所有等待中的公式和缓存结果
+     */
+    public void apply()
+    {
+        for (Pending pending : _pending)
+        {
+            setFormula(pending.cell, pending.formula, pending.type, pending.value);
+            _cells.add(pending.cell);
+        }
+        _pending.clear();
+    }
+
+    /**
+     * 公式单元格的数量
+     *
+     * @return 已经设置公式的单元格数量
+     */
+    public int size()
+    {
+        return _cells.size();
+    }
+
+    /**
+     * 使用同一个FormulaEvaluator计算所有公式,并用计算结果更新缓存结果
+     *
+     * @return 计算的公式数量
+     */
+    public int evaluate()
+    {
+        apply();
+        FormulaEvaluator evaluator = _wb.getCreationHelper().createFormulaEvaluator();
+        for (Cell cell : _cells)
+        {
+            evaluator.evaluateFormulaCell(cell);
+        }
+
+        return _cells.size();
+    }
+
+    /**
+     * 设置单元格的公式和缓存结果,不进行计算
+     *
+     * @param cell
+     *            单元格
+     * @param formula
+     *            公式
+     * @param type
+     *            缓存结果的数据类型(Data的type属性)
+     * @param value
+     *            缓存结果
+     */
+    public static void setFormula(Cell cell, String formula, String type, String value)
+    {
+        cell.setCellFormula(formula);
+        if ("Number".equals(type))
+        {
+            cell.setCellValue(Double.parseDouble(value));
+        }
+        else if ("Boolean".equals(type))
+        {
+            cell.setCellValue(Boolean.parseBoolean(value));
+        }
+        else if ("Error".equals(type))
+        {
+            cell.setCellErrorValue(FormulaError.forString(value).getCode());
+        }
+        else
+        {
+            cell.setCellValue((null == value) ? "" : value);
+        }
+    }
+
+    /**
+     * 等待设置公式的单元格
+     */
+    private static class Pending
+    {
+        final Cell   cell;
+        final String formula;
+        final String type;
+        final String value;
+
+        Pending(Cell cell, String formula, String type, String value)
+        {
+            this.cell = cell;
+            this.formula = formula;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
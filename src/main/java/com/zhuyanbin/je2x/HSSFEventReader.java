@@ -0,0 +1,635 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.ArrayRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DefaultRowHeightRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.SharedValueRecordBase;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.ptg.Ptg;
+
+/**
+ * 基于HSSF事件模型(HSSFEventFactory)的Excel流式读取器<br/>
+ * 按照记录(record)的顺序依次遍历工作表、行和单元格,并回调WorkBookHandler,
+ * 不会创建HSSFWorkbook,内存占用只与单行数据量有关,与工作表的行数无关。<br/>
+ * 输出结果与ExcelReader.parseWorkBook2Xml保持一致(包括默认不输出每个工作表的最后一行,见setLastRow)
+ */
+public class HSSFEventReader implements HSSFListener
+{
+    /**
+     * 没有RowRecord时的默认行高
+     */
+    private static final short              DEFAULT_HEIGHT = 0xFF;
+
+    /**
+     * 回调接口
+     */
+    private WorkBookHandler                 _handler       = null;
+
+    /**
+     * 用于解析公式文本的工作簿记录收集器
+     */
+    private SheetRecordCollectingListener   _collector     = null;
+
+    /**
+     * 由收集的记录构造的精简工作簿,仅用于公式文本的解析
+     */
+    private HSSFWorkbook                    _stubWorkBook  = null;
+
+    /**
+     * 共享字符串表
+     */
+    private SSTRecord                       _sst           = null;
+
+    /**
+     * 工作表记录
+     */
+    private List<BoundSheetRecord>          _boundSheets   = new ArrayList<BoundSheetRecord>();
+
+    /**
+     * 按BOF位置排序之后的工作表记录
+     */
+    private BoundSheetRecord[]              _orderedSheets = null;
+
+    /**
+     * 当前工作表序号
+     */
+    private int                             _sheetIndex    = -1;
+
+    /**
+     * BOF/EOF嵌套深度
+     */
+    private int                             _depth         = 0;
+
+    /**
+     * 当前是否处于工作表中
+     */
+    private boolean                         _inSheet       = false;
+
+    /**
+     * 当前工作表的默认行高
+     */
+    private short                           _defaultHeight = DEFAULT_HEIGHT;
+
+    /**
+     * 已读取RowRecord但尚未输出的行(行号 => 行高)
+     */
+    private TreeMap<Integer, Short>         _rowHeights    = new TreeMap<Integer, Short>();
+
+    /**
+     * 当前工作表的共享公式和数组公式
+     */
+    private List<SharedValueRecordBase>     _sharedValues  = new ArrayList<SharedValueRecordBase>();
+
+    /**
+     * 正在读取的行
+     */
+    private BufferedRow                     _currentRow    = null;
+
+    /**
+     * 已读取完毕但尚未输出的行<br/>
+     * 工作表的最后一行不会输出,因此需要延迟一行输出
+     */
+    private BufferedRow                     _pendingRow    = null;
+
+    /**
+     * 缓存结果为字符串的公式单元格,等待紧随其后的StringRecord
+     */
+    private BufferedCell                    _stringCell    = null;
+
+    /**
+     * 是否输出每个工作表的最后一行
+     */
+    private boolean                         _lastRow       = false;
+
+    /**
+     * 构造方法
+     *
+     * @param handler
+     *            回调接口
+     */
+    public HSSFEventReader(WorkBookHandler handler)
+    {
+        _handler = handler;
+    }
+
+    /**
+     * 设置是否输出每个工作表的最后一行<br/>
+     * 默认不输出,与xml的转换结果一致;创建配置表等需要所有数据时设置为true,与HSSFSheet.rowIterator一致
+     *
+     * @param lastRow
+     *            输出最后一行时为true
+     */
+    public void setLastRow(boolean lastRow)
+    {
+        _lastRow = lastRow;
+    }
+
+    public boolean isLastRow()
+    {
+        return _lastRow;
+    }
+
+    /**
+     * 读取Excel文件
+     *
+     * @param fs
+     *            Excel文件系统
+     * @throws IOException
+     */
+    public void process(POIFSFileSystem fs) throws IOException
+    {
+        process(fs.getRoot());
+    }
+
+    /**
+     * 读取Excel文件
+     *
+     * @param dir
+     *            Excel文件系统的根目录
+     * @throws IOException
+     */
+    public void process(DirectoryNode dir) throws IOException
+    {
+        _collector = new SheetRecordCollectingListener(this);
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(_collector);
+
+        _handler.startWorkBook();
+        try
+        {
+            new HSSFEventFactory().processWorkbookEvents(request, dir);
+        }
+        catch (RecordException ex)
+        {
+            throw ex.getCause();
+        }
+        _handler.endWorkBook();
+    }
+
+    public void processRecord(Record record)
+    {
+        try
+        {
+            handleRecord(record);
+        }
+        catch (IOException ex)
+        {
+            // HSSFListener不允许抛出受检异常,包装之后在process中还原
+            throw new RecordException(ex);
+        }
+    }
+
+    /**
+     * 处理单条记录
+     *
+     * @param record
+     *            记录
+     * @throws IOException
+     */
+    protected void handleRecord(Record record) throws IOException
+    {
+        switch (record.getSid())
+        {
+            case BoundSheetRecord.sid:
+                _boundSheets.add((BoundSheetRecord) record);
+                break;
+            case SSTRecord.sid:
+                _sst = (SSTRecord) record;
+                break;
+            case BOFRecord.sid:
+                _depth++;
+                if ((1 == _depth) && (BOFRecord.TYPE_WORKBOOK != ((BOFRecord) record).getType()))
+                {
+                    startSheet();
+                }
+                break;
+            case EOFRecord.sid:
+                _depth--;
+                if ((0 == _depth) && _inSheet)
+                {
+                    endSheet();
+                }
+                break;
+            case DefaultRowHeightRecord.sid:
+                _defaultHeight = ((DefaultRowHeightRecord) record).getRowHeight();
+                break;
+            case RowRecord.sid:
+                RowRecord row = (RowRecord) record;
+                _rowHeights.put(Integer.valueOf(row.getRowNumber()), Short.valueOf(getHeight(row.getHeight())));
+                break;
+            case SharedFormulaRecord.sid:
+            case ArrayRecord.sid:
+                _sharedValues.add((SharedValueRecordBase) record);
+                break;
+            case NumberRecord.sid:
+                NumberRecord number = (NumberRecord) record;
+                addCell(number.getRow(), number.getColumn(), "Number", ExcelReader.formatNumber(number.getValue()));
+                break;
+            case LabelSSTRecord.sid:
+                LabelSSTRecord label = (LabelSSTRecord) record;
+                addCell(label.getRow(), label.getColumn(), "String", _sst.getString(label.getSSTIndex()).getString());
+                break;
+            case LabelRecord.sid:
+                LabelRecord oldLabel = (LabelRecord) record;
+                addCell(oldLabel.getRow(), oldLabel.getColumn(), "String", oldLabel.getValue());
+                break;
+            case BoolErrRecord.sid:
+                BoolErrRecord boolErr = (BoolErrRecord) record;
+                if (boolErr.isBoolean())
+                {
+                    addCell(boolErr.getRow(), boolErr.getColumn(), "Boolean", boolErr.getBooleanValue() ? "TRUE" : "FALSE");
+                }
+                else
+                {
+                    addCell(boolErr.getRow(), boolErr.getColumn(), "String", ErrorEval.getText(boolErr.getErrorValue()));
+                }
+                break;
+            case BlankRecord.sid:
+                BlankRecord blank = (BlankRecord) record;
+                addCell(blank.getRow(), blank.getColumn(), "String", "");
+                break;
+            case MulBlankRecord.sid:
+                MulBlankRecord mulBlank = (MulBlankRecord) record;
+                for (int i = mulBlank.getFirstColumn(); i <= mulBlank.getLastColumn(); i++)
+                {
+                    addCell(mulBlank.getRow(), i, "String", "");
+                }
+                break;
+            case RKRecord.sid:
+                RKRecord rk = (RKRecord) record;
+                addCell(rk.getRow(), rk.getColumn(), "Number", ExcelReader.formatNumber(rk.getRKNumber()));
+                break;
+            case MulRKRecord.sid:
+                MulRKRecord mulRk = (MulRKRecord) record;
+                for (int i = 0; i < mulRk.getNumColumns(); i++)
+                {
+                    addCell(mulRk.getRow(), mulRk.getFirstColumn() + i, "Number", ExcelReader.formatNumber(mulRk.getRKNumberAt(i)));
+                }
+                break;
+            case FormulaRecord.sid:
+                FormulaRecord formula = (FormulaRecord) record;
+                addCell(formula.getRow(), formula.getColumn(), formula);
+                break;
+            case StringRecord.sid:
+                if (null != _stringCell)
+                {
+                    _stringCell.value = ((StringRecord) record).getString();
+                    _stringCell = null;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 获取实际行高,与HSSFRow.getHeight一致
+     *
+     * @param height
+     *            RowRecord中的行高
+     * @return 实际行高
+     */
+    private short getHeight(short height)
+    {
+        short result = height;
+        if (0 != (height & 0x8000))
+        {
+            result = _defaultHeight;
+        }
+        else
+        {
+            result = (short) (height & 0x7FFF);
+        }
+
+        return result;
+    }
+
+    /**
+     * 开始一个新的工作表
+     *
+     * @throws IOException
+     */
+    private void startSheet() throws IOException
+    {
+        if (null == _orderedSheets)
+        {
+            _orderedSheets = BoundSheetRecord.orderByBofPosition(_boundSheets);
+        }
+
+        _sheetIndex++;
+        _inSheet = true;
+        _defaultHeight = DEFAULT_HEIGHT;
+        _rowHeights.clear();
+        _sharedValues.clear();
+        _currentRow = null;
+        _pendingRow = null;
+
+        _handler.startSheet(_orderedSheets[_sheetIndex].getSheetname());
+    }
+
+    /**
+     * 当前工作表结束
+     *
+     * @throws IOException
+     */
+    private void endSheet() throws IOException
+    {
+        finishRow();
+        for (Map.Entry<Integer, Short> entry : _rowHeights.entrySet())
+        {
+            pushRow(new BufferedRow(entry.getKey().intValue(), entry.getValue().shortValue()));
+        }
+        _rowHeights.clear();
+
+        // 与ExcelReader.parseSheet2Xml一致,默认不输出最后一行
+        if (_lastRow && (null != _pendingRow))
+        {
+            outputRow(_pendingRow);
+        }
+        _pendingRow = null;
+        _inSheet = false;
+        _handler.endSheet();
+    }
+
+    /**
+     * 添加单元格数据
+     *
+     * @param rownum
+     *            行号
+     * @param column
+     *            列号
+     * @param type
+     *            数据类型
+     * @param value
+     *            数据
+     * @throws IOException
+     */
+    private void addCell(int rownum, int column, String type, String value) throws IOException
+    {
+        getRow(rownum).cells.add(new BufferedCell(column, type, value));
+    }
+
+    /**
+     * 添加公式单元格,公式文本在输出时解析<br/>
+     * 缓存结果与HSSFCell一致,字符串结果在之后的StringRecord中
+     *
+     * @param rownum
+     *            行号
+     * @param column
+     *            列号
+     * @param formula
+     *            公式记录
+     * @throws IOException
+     */
+    private void addCell(int rownum, int column, FormulaRecord formula) throws IOException
+    {
+        BufferedCell cell = null;
+        switch (formula.getCachedResultType())
+        {
+            case HSSFCell.CELL_TYPE_NUMERIC:
+                cell = new BufferedCell(column, "Number", ExcelReader.formatNumber(formula.getValue()));
+                break;
+            case HSSFCell.CELL_TYPE_BOOLEAN:
+                cell = new BufferedCell(column, "Boolean", formula.getCachedBooleanValue() ? "TRUE" : "FALSE");
+                break;
+            case HSSFCell.CELL_TYPE_ERROR:
+                cell = new BufferedCell(column, "Error", ErrorEval.getText(formula.getCachedErrorValue()));
+                break;
+            case HSSFCell.CELL_TYPE_STRING:
+            default:
+                cell = new BufferedCell(column, "String", "");
+                _stringCell = formula.hasCachedResultString() ? cell : null;
+                break;
+        }
+        cell.formula = formula;
+        getRow(rownum).cells.add(cell);
+    }
+
+    /**
+     * 获取正在读取的行,如果行号发生变化则结束上一行
+     *
+     * @param rownum
+     *            行号
+     * @return 正在读取的行
+     * @throws IOException
+     */
+    private BufferedRow getRow(int rownum) throws IOException
+    {
+        if ((null == _currentRow) || (_currentRow.rownum != rownum))
+        {
+            finishRow();
+
+            // 输出在此之前只有RowRecord而没有单元格的行
+            while ((!_rowHeights.isEmpty()) && (_rowHeights.firstKey().intValue() < rownum))
+            {
+                Map.Entry<Integer, Short> entry = _rowHeights.pollFirstEntry();
+                pushRow(new BufferedRow(entry.getKey().intValue(), entry.getValue().shortValue()));
+            }
+
+            Short height = _rowHeights.remove(Integer.valueOf(rownum));
+            _currentRow = new BufferedRow(rownum, (null == height) ? DEFAULT_HEIGHT : height.shortValue());
+        }
+
+        return _currentRow;
+    }
+
+    /**
+     * 结束正在读取的行
+     *
+     * @throws IOException
+     */
+    private void finishRow() throws IOException
+    {
+        if (null != _currentRow)
+        {
+            pushRow(_currentRow);
+            _currentRow = null;
+        }
+    }
+
+    /**
+     * 将读取完毕的行放入等待队列,同时输出上一行
+     *
+     * @param row
+     *            读取完毕的行
+     * @throws IOException
+     */
+    private void pushRow(BufferedRow row) throws IOException
+    {
+        if (null != _pendingRow)
+        {
+            outputRow(_pendingRow);
+        }
+
+        _pendingRow = row;
+    }
+
+    /**
+     * 输出一行数据
+     *
+     * @param row
+     *            行数据
+     * @throws IOException
+     */
+    private void outputRow(BufferedRow row) throws IOException
+    {
+        Collections.sort(row.cells, BufferedCell.COLUMN_ORDER);
+
+        _handler.startRow(row.rownum, row.height);
+        for (BufferedCell cell : row.cells)
+        {
+            if (null != cell.formula)
+            {
+                _handler.formulaCell(cell.column, getFormula(cell.formula), cell.type, cell.value);
+            }
+            else
+            {
+                _handler.cell(cell.column, cell.type, cell.value);
+            }
+        }
+        _handler.endRow();
+    }
+
+    /**
+     * 解析公式文本,与HSSFCell.getCellFormula一致
+     *
+     * @param formula
+     *            公式记录
+     * @return 公式文本
+     */
+    private String getFormula(FormulaRecord formula)
+    {
+        Ptg[] ptgs = formula.getParsedExpression();
+        for (SharedValueRecordBase shared : _sharedValues)
+        {
+            if (shared.isInRange(formula.getRow(), formula.getColumn()))
+            {
+                if (shared instanceof SharedFormulaRecord)
+                {
+                    if (formula.isSharedFormula())
+                    {
+                        ptgs = ((SharedFormulaRecord) shared).getFormulaTokens(formula);
+                        break;
+                    }
+                }
+                else
+                {
+                    ptgs = ((ArrayRecord) shared).getFormulaTokens();
+                    break;
+                }
+            }
+        }
+
+        if (null == _stubWorkBook)
+        {
+            _stubWorkBook = _collector.getStubHSSFWorkbook();
+        }
+
+        return HSSFFormulaParser.toFormulaString(_stubWorkBook, ptgs);
+    }
+
+    /**
+     * 读取中的行数据
+     */
+    private static class BufferedRow
+    {
+        final int               rownum;
+        final short             height;
+        final List<BufferedCell> cells = new ArrayList<BufferedCell>();
+
+        BufferedRow(int rownum, short height)
+        {
+            this.rownum = rownum;
+            this.height = height;
+        }
+    }
+
+    /**
+     * 读取中的单元格数据
+     */
+    private static class BufferedCell
+    {
+        static final Comparator<BufferedCell> COLUMN_ORDER = new Comparator<BufferedCell>()
+                                                           {
+                                                               public int compare(BufferedCell a, BufferedCell b)
+                                                               {
+                                                                   return a.column - b.column;
+                                                               }
+                                                           };
+
+        final int                             column;
+        final String                          type;
+        String                                value;
+        FormulaRecord                         formula = null;
+
+        BufferedCell(int column, String type, String value)
+        {
+            this.column = column;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 用于在HSSFListener回调中传递IOException
+     */
+    private static class RecordException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        RecordException(IOException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause()
+        {
+            return (IOException) super.getCause();
+        }
+    }
+}
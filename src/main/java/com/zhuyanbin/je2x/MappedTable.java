@@ -0,0 +1,569 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 映射在内存中的只读配置表<br/>
+ * 接口与ConfigTable一致,数值、布尔值和索引直接从TableFile映射的内存中按位置读取,
+ * 不复制数据也不装箱,字符串在第一次读取时解码。打开时只读取列的描述,因此表的大小不影响打开的时间。
+ * 所有读取都使用绝对位置,多个线程可以同时读取
+ */
+public final class MappedTable
+{
+    /**
+     * 所在的文件
+     */
+    private final TableFile  _file;
+
+    /**
+     * 文件内容
+     */
+    private final ByteBuffer _buffer;
+
+    /**
+     * 表名
+     */
+    private final String     _name;
+
+    /**
+     * 数据行数
+     */
+    private final int        _rows;
+
+    /**
+     * 关键列,没有时为-1
+     */
+    private final int        _keyColumn;
+
+    /**
+     * 哈希索引的长度
+     */
+    private final int        _slotCount;
+
+    /**
+     * 哈希索引的位置
+     */
+    private final int        _slots;
+
+    /**
+     * 每一列的类型
+     */
+    private final int[]      _types;
+
+    /**
+     * 每一列的列名在字典中的编号
+     */
+    private final int[]      _names;
+
+    /**
+     * 每一列有数据的行的位图的位置
+     */
+    private final int[]      _present;
+
+    /**
+     * 每一列数据的位置
+     */
+    private final int[]      _data;
+
+    /**
+     * 构造方法,读取表的描述
+     *
+     * @param file
+     *            所在的文件
+     * @param position
+     *            表的描述的位置
+     */
+    MappedTable(TableFile file, int position)
+    {
+        _file = file;
+        _buffer = file.getBuffer();
+        _name = file.getString(_buffer.getInt(position));
+        _rows = _buffer.getInt(position + 4);
+        int columns = _buffer.getInt(position + 8);
+        _keyColumn = _buffer.getInt(position + 12);
+        _slotCount = _buffer.getInt(position + 16);
+        _slots = (int) _buffer.getLong(position + 24);
+        _types = new int[columns];
+        _names = new int[columns];
+        _present = new int[columns];
+        _data = new int[columns];
+        for (int i = 0; i < columns; i++)
+        {
+            int column = position + TableFile.TABLE_SIZE + i * TableFile.COLUMN_SIZE;
+            _types[i] = _buffer.getInt(column);
+            _names[i] = _buffer.getInt(column + 4);
+            _present[i] = (int) _buffer.getLong(column + 8);
+            _data[i] = (int) _buffer.getLong(column + 16);
+        }
+    }
+
+    /**
+     * 按数值关键字查找行,关键列为字符串列时按十进制文本查找
+     *
+     * @param key
+     *            关键字
+     * @return 行号,没有时返回-1
+     */
+    public int getRow(long key)
+    {
+        if ((_keyColumn < 0) || (ConfigTable.TYPE_STRING == _types[_keyColumn]))
+        {
+            return (_keyColumn < 0) ? -1 : getRow(Long.toString(key));
+        }
+        if (ConfigTable.TYPE_NUMBER != _types[_keyColumn])
+        {
+            return -1;
+        }
+
+        int mask = _slotCount - 1;
+        int keys = _data[_keyColumn];
+        for (int i = ConfigTable.hash(key) & mask;; i = (i + 1) & mask)
+        {
+            int row = _buffer.getInt(_slots + i * 4);
+            if ((-1 == row) || (_buffer.getDouble(keys + row * 8) == key))
+            {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * 按字符串关键字查找行,关键列为数值列时先解析成数值
+     *
+     * @param key
+     *            关键字
+     * @return 行号,没有时返回-1
+     */
+    public int getRow(String key)
+    {
+        if ((_keyColumn < 0) || (null == key))
+        {
+            return -1;
+        }
+        if (ConfigTable.TYPE_NUMBER == _types[_keyColumn])
+        {
+            try
+            {
+                double value = DoubleFormatter.parse(key);
+                return (value == (long) value) ? getRow((long) value) : -1;
+            }
+            catch (NumberFormatException ex)
+            {
+                return -1;
+            }
+        }
+        if (ConfigTable.TYPE_STRING != _types[_keyColumn])
+        {
+            return -1;
+        }
+
+        int mask = _slotCount - 1;
+        int codes = _data[_keyColumn];
+        int hash = key.hashCode();
+        for (int i = ConfigTable.hash(key) & mask;; i = (i + 1) & mask)
+        {
+            int row = _buffer.getInt(_slots + i * 4);
+            if ((-1 == row) || _file.isString(_buffer.getInt(codes + row * 4), key, hash))
+            {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * 是否有关键字对应的行
+     *
+     * @param key
+     *            关键字
+     * @return 有时返回true
+     */
+    public boolean contains(long key)
+    {
+        return getRow(key) >= 0;
+    }
+
+    /**
+     * 是否有字符串关键字对应的行,见contains(long)
+     */
+    public boolean contains(String key)
+    {
+        return getRow(key) >= 0;
+    }
+
+    /**
+     * 查找行,没有时抛出异常
+     *
+     * @param key
+     *            关键字
+     * @return 行号
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    private int requireRow(long key)
+    {
+        int row = getRow(key);
+        if (row < 0)
+        {
+            throw new IllegalArgumentException(_name + ": no row with key " + key);
+        }
+
+        return row;
+    }
+
+    /**
+     * 查找行,没有时抛出异常,同requireRow(long)
+     */
+    private int requireRow(String key)
+    {
+        int row = getRow(key);
+        if (row < 0)
+        {
+            throw new IllegalArgumentException(_name + ": no row with key " + key);
+        }
+
+        return row;
+    }
+
+    /**
+     * 按关键字读取数值,与ConfigTable.getDouble(long, int)一致<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public double getDouble(long key, int column)
+    {
+        return getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getDouble(long, int)
+     */
+    public double getDouble(String key, int column)
+    {
+        return getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取数值,与ConfigTable.getLong(long, int)一致<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值,小数部分截断
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public long getLong(long key, int column)
+    {
+        return (long) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getLong(long, int)
+     */
+    public long getLong(String key, int column)
+    {
+        return (long) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取数值,与ConfigTable.getInt(long, int)一致<br/>
+     * 单元格的转换规则见getDoubleAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 数值,小数部分截断
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     * @throws NumberFormatException
+     *             字符串不是数值时抛出
+     */
+    public int getInt(long key, int column)
+    {
+        return (int) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getInt(long, int)
+     */
+    public int getInt(String key, int column)
+    {
+        return (int) getDoubleAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取布尔值,与ConfigTable.getBoolean(long, int)一致<br/>
+     * 单元格的转换规则见getBooleanAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 布尔值
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    public boolean getBoolean(long key, int column)
+    {
+        return getBooleanAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getBoolean(long, int)
+     */
+    public boolean getBoolean(String key, int column)
+    {
+        return getBooleanAt(requireRow(key), column);
+    }
+
+    /**
+     * 按关键字读取文本,与ConfigTable.getString(long, int)一致<br/>
+     * 单元格的转换规则见getStringAt(int, int)
+     *
+     * @param key
+     *            关键字,查找规则见getRow(long)
+     * @param column
+     *            列号
+     * @return 文本,空单元格返回null
+     * @throws IllegalArgumentException
+     *             没有关键字对应的行时抛出
+     */
+    public String getString(long key, int column)
+    {
+        return getStringAt(requireRow(key), column);
+    }
+
+    /**
+     * 按字符串关键字读取,见getString(long, int)
+     */
+    public String getString(String key, int column)
+    {
+        return getStringAt(requireRow(key), column);
+    }
+
+    /**
+     * 按行号读取数值,转换规则与ConfigTable.getDoubleAt一致
+     *
+     * @param row
+     *            行号(从0开始,不包括表头)
+     * @param column
+     *            列号
+     * @return 数值
+     */
+    public double getDoubleAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return 0;
+        }
+
+        switch (_types[column])
+        {
+            case ConfigTable.TYPE_NUMBER:
+                return _buffer.getDouble(_data[column] + row * 8);
+            case ConfigTable.TYPE_BOOLEAN:
+                return getBit(_data[column], row) ? 1 : 0;
+            default:
+                return DoubleFormatter.parse(getStringAt(row, column));
+        }
+    }
+
+    /**
+     * 按行号读取布尔值,转换规则与ConfigTable.getBooleanAt一致
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 布尔值
+     */
+    public boolean getBooleanAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return false;
+        }
+
+        switch (_types[column])
+        {
+            case ConfigTable.TYPE_NUMBER:
+                return 0 != _buffer.getDouble(_data[column] + row * 8);
+            case ConfigTable.TYPE_BOOLEAN:
+                return getBit(_data[column], row);
+            default:
+                String text = getStringAt(row, column);
+                return "true".equalsIgnoreCase(text) || "1".equals(text);
+        }
+    }
+
+    /**
+     * 按行号读取文本,转换规则与ConfigTable.getStringAt一致
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 文本,空单元格返回null
+     */
+    public String getStringAt(int row, int column)
+    {
+        if (isNull(row, column))
+        {
+            return null;
+        }
+
+        switch (_types[column])
+        {
+            case ConfigTable.TYPE_NUMBER:
+                return DoubleFormatter.format(_buffer.getDouble(_data[column] + row * 8));
+            case ConfigTable.TYPE_BOOLEAN:
+                return getBit(_data[column], row) ? "TRUE" : "FALSE";
+            default:
+                return _file.getString(_buffer.getInt(_data[column] + row * 4));
+        }
+    }
+
+    /**
+     * 单元格是否为空
+     *
+     * @param row
+     *            行号
+     * @param column
+     *            列号
+     * @return 空单元格或者超出范围的列返回true
+     * @throws IndexOutOfBoundsException
+     *             行号超出范围时抛出
+     */
+    public boolean isNull(int row, int column)
+    {
+        if ((row < 0) || (row >= _rows))
+        {
+            throw new IndexOutOfBoundsException(_name + ": row " + row);
+        }
+
+        return (column < 0) || (column >= _types.length) || !getBit(_present[column], row);
+    }
+
+    /**
+     * 读取位图中的一位
+     *
+     * @param position
+     *            位图的位置
+     * @param row
+     *            行号
+     * @return 该位为1时返回true
+     */
+    private boolean getBit(int position, int row)
+    {
+        return 0 != (_buffer.getLong(position + (row >>> 6) * 8) & (1L << row));
+    }
+
+    /**
+     * 获取表名
+     *
+     * @return 工作表名
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * 获取行数
+     *
+     * @return 数据的行数,不包括表头
+     */
+    public int getRowCount()
+    {
+        return _rows;
+    }
+
+    /**
+     * 获取列数
+     *
+     * @return 列数
+     */
+    public int getColumnCount()
+    {
+        return _types.length;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 关键列的列号,没有关键列时为-1
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 获取列名
+     *
+     * @param column
+     *            列号
+     * @return 列名(表头第一行的文本)
+     */
+    public String getColumnName(int column)
+    {
+        return _file.getString(_names[column]);
+    }
+
+    /**
+     * 获取列的类型
+     *
+     * @param column
+     *            列号
+     * @return ConfigTable.TYPE_EMPTY/TYPE_NUMBER/TYPE_BOOLEAN/TYPE_STRING
+     */
+    public int getColumnType(int column)
+    {
+        return _types[column];
+    }
+
+    /**
+     * 按列名查找列
+     *
+     * @param name
+     *            列名
+     * @return 列号,没有时返回-1
+     */
+    public int getColumn(String name)
+    {
+        for (int i = 0; i < _types.length; i++)
+        {
+            if (getColumnName(i).equals(name))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
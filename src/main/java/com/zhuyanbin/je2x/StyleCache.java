@@ -0,0 +1,287 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+
+/**
+ * 单元格样式缓存(导入)<br/>
+ * 根据StylePalette输出的Styles元素创建单元格样式。样式在第一次使用时创建,
+ * 属性相同的样式和字体只创建一次,多个单元格共用同一个CellStyle/Font对象,
+ * 因此样式数量不会随单元格数量增长(HSSF最多4000个样式)。<br/>
+ * 不是线程安全的,与写入的工作簿一样只能在一个线程中使用
+ */
+public class StyleCache
+{
+    /**
+     * 写入的工作簿
+     */
+    private Workbook                 _wb       = null;
+
+    /**
+     * 样式编号到样式属性的映射
+     */
+    private Map<Integer, Element>    _elements = new HashMap<Integer, Element>();
+
+    /**
+     * 样式编号到样式的映射
+     */
+    private Map<Integer, CellStyle>  _ids      = new HashMap<Integer, CellStyle>();
+
+    /**
+     * 样式属性到样式的映射
+     */
+    private Map<String, CellStyle>   _styles   = new HashMap<String, CellStyle>();
+
+    /**
+     * 字体属性到字体的映射
+     */
+    private Map<String, Font>        _fonts    = new HashMap<String, Font>();
+
+    /**
+     * 构造方法
+     *
+     * @param wb
+     *            写入的工作簿
+     * @param styles
+     *            Styles元素,为null时没有样式
+     */
+    public StyleCache(Workbook wb, Element styles)
+    {
+        _wb = wb;
+        if (null != styles)
+        {
+            for (Element style : styles.getChildren(XmlType.Style))
+            {
+                _elements.put(Integer.valueOf(style.getAttributeValue("id")), style);
+            }
+        }
+    }
+
+    /**
+     * 获取样式
+     *
+     * @param id
+     *            样式编号
+     * @return 样式,编号不存在时返回null
+     */
+    public CellStyle getStyle(int id)
+    {
+        Integer key = Integer.valueOf(id);
+        CellStyle result = _ids.get(key);
+        if ((null == result) && _elements.containsKey(key))
+        {
+            result = createStyle(_elements.get(key));
+            _ids.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * 根据样式属性获取或者创建样式
+     *
+     * @param element
+     *            Style元素
+     * @return 样式
+     */
+    private CellStyle createStyle(Element element)
+    {
+        StringBuilder styleKey = new StringBuilder();
+        StringBuilder fontKey = new StringBuilder();
+        for (Attribute attribute : element.getAttributes())
+        {
+            if (!"id".equals(attribute.getName()))
+            {
+                StringBuilder sb = isFontAttribute(attribute.getName()) ? fontKey : styleKey;
+                sb.append(attribute.getName()).append('=').append(attribute.getValue()).append(';');
+            }
+        }
+        styleKey.append(fontKey);
+
+        CellStyle result = _styles.get(styleKey.toString());
+        if (null != result)
+        {
+            return result;
+        }
+
+        result = _wb.createCellStyle();
+        Font font = null;
+        if (fontKey.length() > 0)
+        {
+            font = _fonts.get(fontKey.toString());
+            if (null == font)
+            {
+                font = _wb.createFont();
+                _fonts.put(fontKey.toString(), font);
+                for (Attribute attribute : element.getAttributes())
+                {
+                    applyFont(font, attribute.getName(), attribute.getValue());
+                }
+            }
+            result.setFont(font);
+        }
+
+        DataFormat format = _wb.createDataFormat();
+        for (Attribute attribute : element.getAttributes())
+        {
+            applyStyle(result, format, attribute.getName(), attribute.getValue());
+        }
+        _styles.put(styleKey.toString(), result);
+
+        return result;
+    }
+
+    /**
+     * 是否为字体属性
+     *
+     * @param name
+     *            属性名
+     * @return 字体属性返回true
+     */
+    private static boolean isFontAttribute(String name)
+    {
+        return "font".equals(name) || "fontHeight".equals(name) || "bold".equals(name) || "italic".equals(name)
+                || "underline".equals(name) || "strike".equals(name) || "color".equals(name)
+                || "offset".equals(name);
+    }
+
+    /**
+     * 设置样式属性
+     */
+    private static void applyStyle(CellStyle style, DataFormat format, String name, String value)
+    {
+        if ("format".equals(name))
+        {
+            style.setDataFormat(format.getFormat(value));
+        }
+        else if ("align".equals(name))
+        {
+            style.setAlignment(Short.parseShort(value));
+        }
+        else if ("valign".equals(name))
+        {
+            style.setVerticalAlignment(Short.parseShort(value));
+        }
+        else if ("wrap".equals(name))
+        {
+            style.setWrapText(Boolean.parseBoolean(value));
+        }
+        else if ("indent".equals(name))
+        {
+            style.setIndention(Short.parseShort(value));
+        }
+        else if ("rotation".equals(name))
+        {
+            style.setRotation(Short.parseShort(value));
+        }
+        else if ("locked".equals(name))
+        {
+            style.setLocked(Boolean.parseBoolean(value));
+        }
+        else if ("hidden".equals(name))
+        {
+            style.setHidden(Boolean.parseBoolean(value));
+        }
+        else if ("borderTop".equals(name))
+        {
+            style.setBorderTop(Short.parseShort(value));
+        }
+        else if ("borderBottom".equals(name))
+        {
+            style.setBorderBottom(Short.parseShort(value));
+        }
+        else if ("borderLeft".equals(name))
+        {
+            style.setBorderLeft(Short.parseShort(value));
+        }
+        else if ("borderRight".equals(name))
+        {
+            style.setBorderRight(Short.parseShort(value));
+        }
+        else if ("topColor".equals(name))
+        {
+            style.setTopBorderColor(Short.parseShort(value));
+        }
+        else if ("bottomColor".equals(name))
+        {
+            style.setBottomBorderColor(Short.parseShort(value));
+        }
+        else if ("leftColor".equals(name))
+        {
+            style.setLeftBorderColor(Short.parseShort(value));
+        }
+        else if ("rightColor".equals(name))
+        {
+            style.setRightBorderColor(Short.parseShort(value));
+        }
+        else if ("pattern".equals(name))
+        {
+            style.setFillPattern(Short.parseShort(value));
+        }
+        else if ("fg".equals(name))
+        {
+            style.setFillForegroundColor(Short.parseShort(value));
+        }
+        else if ("bg".equals(name))
+        {
+            style.setFillBackgroundColor(Short.parseShort(value));
+        }
+    }
+
+    /**
+     * 设置字体属性
+     */
+    private static void applyFont(Font font, String name, String value)
+    {
+        if ("font".equals(name))
+        {
+            font.setFontName(value);
+        }
+        else if ("fontHeight".equals(name))
+        {
+            font.setFontHeight(Short.parseShort(value));
+        }
+        else if ("bold".equals(name))
+        {
+            font.setBoldweight(Short.parseShort(value));
+        }
+        else if ("italic".equals(name))
+        {
+            font.setItalic(Boolean.parseBoolean(value));
+        }
+        else if ("underline".equals(name))
+        {
+            font.setUnderline(Byte.parseByte(value));
+        }
+        else if ("strike".equals(name))
+        {
+            font.setStrikeout(Boolean.parseBoolean(value));
+        }
+        else if ("color".equals(name))
+        {
+            font.setColor(Short.parseShort(value));
+        }
+        else if ("offset".equals(name))
+        {
+            font.setTypeOffset(Short.parseShort(value));
+        }
+    }
+}
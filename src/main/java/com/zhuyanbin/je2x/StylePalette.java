@@ -0,0 +1,254 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ * 
+ * 本项目是开源项目，可任意修改和使用
+ * 
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.jdom2.Element;
+
+/**
+ * 单元格样式表(导出)<br/>
+ * 收集工作簿中实际使用的样式,内容相同的样式只保留一份,按出现顺序编号。
+ * 输出为WorkBook下的Styles元素,单元格通过Style(紧凑格式为s)属性引用样式编号:
+ *
+ * <pre>
+ * &lt;Styles&gt;
+ *     &lt;Style id="0" format="0.00" bold="700" /&gt;
+ * &lt;/Styles&gt;
+ * </pre>
+ *
+ * 样式属性只输出与默认样式不同的部分(没有边框时不输出边框颜色),与默认样式完全相同的单元格不引用样式。
+ * 颜色为调色板中的索引,自定义调色板不会导出。<br/>
+ * 创建之后只读,可以在多个线程中同时使用
+ */
+public class StylePalette
+{
+    /**
+     * 默认样式(新建工作簿的默认单元格样式)的属性
+     */
+    private static Map<String, String> _defaults = null;
+
+    /**
+     * 工作簿中的样式序号到样式编号的映射,-1为默认样式
+     */
+    private int[]                      _ids      = null;
+
+    /**
+     * 按编号排列的样式
+     */
+    private List<Element>              _styles   = new ArrayList<Element>();
+
+    /**
+     * 构造方法,遍历所有的单元格收集实际使用的样式
+     *
+     * @param wb
+     *            工作簿
+     */
+    public StylePalette(Workbook wb)
+    {
+        int count = wb.getNumCellStyles();
+        boolean[] used = new boolean[count];
+        for (int i = 0; i < wb.getNumberOfSheets(); i++)
+        {
+            Sheet sheet = wb.getSheetAt(i);
+            for (Iterator<Row> rows = sheet.rowIterator(); rows.hasNext();)
+            {
+                for (Iterator<Cell> cells = rows.next().cellIterator(); cells.hasNext();)
+                {
+                    used[cells.next().getCellStyle().getIndex()] = true;
+                }
+            }
+        }
+
+        _ids = new int[count];
+        Arrays.fill(_ids, -1);
+        Map<String, Integer> keys = new HashMap<String, Integer>();
+        for (short i = 0; i < count; i++)
+        {
+            if (!used[i])
+            {
+                continue;
+            }
+
+            Map<String, String> attributes = getAttributes(wb.getCellStyleAt(i), wb);
+            if (attributes.isEmpty())
+            {
+                continue;
+            }
+
+            String key = attributes.toString();
+            Integer id = keys.get(key);
+            if (null == id)
+            {
+                id = Integer.valueOf(_styles.size());
+                keys.put(key, id);
+
+                Element style = new Element(XmlType.Style);
+                style.setAttribute("id", id.toString());
+                for (Map.Entry<String, String> entry : attributes.entrySet())
+                {
+                    style.setAttribute(entry.getKey(), entry.getValue());
+                }
+                _styles.add(style);
+            }
+            _ids[i] = id.intValue();
+        }
+    }
+
+    /**
+     * 获取样式编号
+     *
+     * @param style
+     *            单元格样式
+     * @return 样式编号,默认样式返回-1
+     */
+    public int getId(CellStyle style)
+    {
+        int index = style.getIndex();
+
+        return (index < _ids.length) ? _ids[index] : -1;
+    }
+
+    /**
+     * 不同样式的数量
+     *
+     * @return 样式数量
+     */
+    public int size()
+    {
+        return _styles.size();
+    }
+
+    /**
+     * 转换成xml
+     *
+     * @return Styles元素
+     */
+    public Element toXml()
+    {
+        Element result = new Element(XmlType.Styles);
+        for (Element style : _styles)
+        {
+            result.addContent(style.clone());
+        }
+
+        return result;
+    }
+
+    /**
+     * 默认样式的属性
+     *
+     * @return 默认样式的属性
+     */
+    private static synchronized Map<String, String> getDefaults()
+    {
+        if (null == _defaults)
+        {
+            HSSFWorkbook wb = new HSSFWorkbook();
+            _defaults = readAttributes(wb.getCellStyleAt((short) 15), wb);
+        }
+
+        return _defaults;
+    }
+
+    /**
+     * 获取样式中与默认样式不同的属性
+     *
+     * @param style
+     *            单元格样式
+     * @param wb
+     *            样式所在的工作簿
+     * @return 属性名和属性值,按固定顺序排列
+     */
+    public static Map<String, String> getAttributes(CellStyle style, Workbook wb)
+    {
+        Map<String, String> result = readAttributes(style, wb);
+        // 没有边框时边框颜色没有意义
+        String[][] borders = { { "borderTop", "topColor" }, { "borderBottom", "bottomColor" },
+                { "borderLeft", "leftColor" }, { "borderRight", "rightColor" } };
+        for (String[] border : borders)
+        {
+            if ("0".equals(result.get(border[0])))
+            {
+                result.remove(border[1]);
+            }
+        }
+        for (Map.Entry<String, String> entry : getDefaults().entrySet())
+        {
+            if (entry.getValue().equals(result.get(entry.getKey())))
+            {
+                result.remove(entry.getKey());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 读取样式的所有属性
+     *
+     * @param style
+     *            单元格样式
+     * @param wb
+     *            样式所在的工作簿
+     * @return 属性名和属性值,按固定顺序排列
+     */
+    private static Map<String, String> readAttributes(CellStyle style, Workbook wb)
+    {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        String format = style.getDataFormatString();
+        result.put("format", (null == format) ? "General" : format);
+        result.put("align", Short.toString(style.getAlignment()));
+        result.put("valign", Short.toString(style.getVerticalAlignment()));
+        result.put("wrap", Boolean.toString(style.getWrapText()));
+        result.put("indent", Short.toString(style.getIndention()));
+        result.put("rotation", Short.toString(style.getRotation()));
+        result.put("locked", Boolean.toString(style.getLocked()));
+        result.put("hidden", Boolean.toString(style.getHidden()));
+        result.put("borderTop", Short.toString(style.getBorderTop()));
+        result.put("borderBottom", Short.toString(style.getBorderBottom()));
+        result.put("borderLeft", Short.toString(style.getBorderLeft()));
+        result.put("borderRight", Short.toString(style.getBorderRight()));
+        result.put("topColor", Short.toString(style.getTopBorderColor()));
+        result.put("bottomColor", Short.toString(style.getBottomBorderColor()));
+        result.put("leftColor", Short.toString(style.getLeftBorderColor()));
+        result.put("rightColor", Short.toString(style.getRightBorderColor()));
+        result.put("pattern", Short.toString(style.getFillPattern()));
+        result.put("fg", Short.toString(style.getFillForegroundColor()));
+        result.put("bg", Short.toString(style.getFillBackgroundColor()));
+
+        Font font = wb.getFontAt(style.getFontIndex());
+        result.put("font", font.getFontName());
+        result.put("fontHeight", Short.toString(font.getFontHeight()));
+        result.put("bold", Short.toString(font.getBoldweight()));
+        result.put("italic", Boolean.toString(font.getItalic()));
+        result.put("underline", Byte.toString(font.getUnderline()));
+        result.put("strike", Boolean.toString(font.getStrikeout()));
+        result.put("color", Short.toString(font.getColor()));
+        result.put("offset", Short.toString(font.getTypeOffset()));
+
+        return result;
+    }
+}
@@ -0,0 +1,516 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制的按列存储的配置表文件<br/>
+ * 与ConfigTable的内存结构一一对应,读取时使用FileChannel.map映射整个文件,数值、布尔值和索引直接在映射的内存上读取,
+ * 不需要解析,打开文件只读取文件头和列的描述。同一台机器上的多个进程映射同一个文件时共享操作系统的页缓存。<br/>
+ * 文件结构(小端字节序,每一段都按8字节对齐,位置都是从文件开头计算的字节偏移):
+ *
+ * <pre>
+ * 文件头     int 魔数"JE2T", short 版本, short 保留, int 表的个数, int 字符串的个数,
+ *            long 字符串偏移表, long 字符串哈希表, long 字符串数据, long 表目录
+ * 字符串     int[字符串个数 + 1] 每个字符串在数据中的起止偏移, int[字符串个数] String.hashCode,
+ *            utf-8编码的字符串数据,所有表的表名、列名和数据共用一个字典
+ * 列数据     long[] 有数据的行(位图), 数值列为double[], 布尔列为long[](位图), 字符串列为int[](字典编号)
+ * 索引       int[] 开放寻址的哈希表,保存行号,空位为-1,与ConfigTable使用相同的哈希函数
+ * 表         int 表名, int 行数, int 列数, int 关键列, int 索引长度, int 保留, long 索引,
+ *            每一列: int 类型, int 列名, long 位图, long 数据
+ * 表目录     long[表的个数] 每个表的位置
+ * </pre>
+ *
+ * 映射的文件不能超过2GB
+ */
+public class TableFile
+{
+    /**
+     * 文件扩展名
+     */
+    public static final String             EXTENSION   = ".tbl";
+
+    /**
+     * 魔数,按小端字节序读取的"JE2T"
+     */
+    static final int                       MAGIC       = 0x5432454A;
+
+    /**
+     * 文件格式版本,格式改变时需要修改
+     */
+    static final short                     VERSION     = 1;
+
+    /**
+     * 文件头的长度
+     */
+    static final int                       HEADER_SIZE = 48;
+
+    /**
+     * 表的描述中固定部分的长度
+     */
+    static final int                       TABLE_SIZE  = 32;
+
+    /**
+     * 每一列的描述的长度
+     */
+    static final int                       COLUMN_SIZE = 24;
+
+    /**
+     * 字符串编码
+     */
+    static final Charset                   CHARSET     = Charset.forName("utf-8");
+
+    /**
+     * 映射的文件内容
+     */
+    private final ByteBuffer               _buffer;
+
+    /**
+     * 字符串的个数
+     */
+    private final int                      _stringCount;
+
+    /**
+     * 字符串偏移表的位置
+     */
+    private final int                      _offsets;
+
+    /**
+     * 字符串哈希表的位置
+     */
+    private final int                      _hashes;
+
+    /**
+     * 字符串数据的位置
+     */
+    private final int                      _data;
+
+    /**
+     * 已经解码的字符串,字符串是不可变的,多个线程同时解码同一个字符串没有问题
+     */
+    private final String[]                 _strings;
+
+    /**
+     * 表名对应的表,按写入的顺序
+     */
+    private final Map<String, MappedTable> _tables     = new LinkedHashMap<String, MappedTable>();
+
+    /**
+     * 构造方法
+     *
+     * @param buffer
+     *            文件内容
+     * @throws IOException
+     *             不是配置表文件或者版本不一致时抛出
+     */
+    TableFile(ByteBuffer buffer) throws IOException
+    {
+        _buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if ((_buffer.limit() < HEADER_SIZE) || (MAGIC != _buffer.getInt(0)))
+        {
+            throw new IOException("not a table file");
+        }
+        if (VERSION != _buffer.getShort(4))
+        {
+            throw new IOException("unsupported table file version " + _buffer.getShort(4));
+        }
+
+        int tableCount = _buffer.getInt(8);
+        _stringCount = _buffer.getInt(12);
+        _offsets = (int) _buffer.getLong(16);
+        _hashes = (int) _buffer.getLong(24);
+        _data = (int) _buffer.getLong(32);
+        _strings = new String[_stringCount];
+        int directory = (int) _buffer.getLong(40);
+        for (int i = 0; i < tableCount; i++)
+        {
+            MappedTable table = new MappedTable(this, (int) _buffer.getLong(directory + i * 8));
+            _tables.put(table.getName(), table);
+        }
+    }
+
+    /**
+     * 映射并打开配置表文件
+     *
+     * @param file
+     *            配置表文件
+     * @return 配置表文件
+     * @throws IOException
+     */
+    public static TableFile open(Path file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try
+        {
+            // 映射在FileChannel关闭之后仍然有效
+            return new TableFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * 获取所有的表
+     *
+     * @return 表名对应的表,按写入的顺序
+     */
+    public Map<String, MappedTable> getTables()
+    {
+        return Collections.unmodifiableMap(_tables);
+    }
+
+    /**
+     * 获取表
+     *
+     * @param name
+     *            表名
+     * @return 表,没有时返回null
+     */
+    public MappedTable getTable(String name)
+    {
+        return _tables.get(name);
+    }
+
+    ByteBuffer getBuffer()
+    {
+        return _buffer;
+    }
+
+    /**
+     * 获取字典中的字符串,第一次读取时解码
+     *
+     * @param code
+     *            字典编号
+     * @return 字符串
+     */
+    String getString(int code)
+    {
+        String result = _strings[code];
+        if (null == result)
+        {
+            int start = _buffer.getInt(_offsets + code * 4);
+            int end = _buffer.getInt(_offsets + code * 4 + 4);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer slice = _buffer.duplicate();
+            slice.position(_data + start);
+            slice.get(bytes);
+            result = new String(bytes, CHARSET);
+            _strings[code] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * 字典中的字符串是否与key相同,先比较哈希
+     *
+     * @param code
+     *            字典编号
+     * @param key
+     *            字符串
+     * @param hash
+     *            key.hashCode()
+     * @return 相同时返回true
+     */
+    boolean isString(int code, String key, int hash)
+    {
+        return (hash == _buffer.getInt(_hashes + code * 4)) && key.equals(getString(code));
+    }
+
+    /**
+     * 将所有的表写入输出流,输出流由调用者负责关闭
+     *
+     * @param tables
+     *            表
+     * @param os
+     *            输出流
+     * @throws IOException
+     */
+    public static void write(Map<String, ConfigTable> tables, OutputStream os) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        encoder.write(tables.values());
+        os.write(encoder.buffer.array(), 0, encoder.buffer.position());
+    }
+
+    /**
+     * 将所有的表写入文件,先写入临时文件再改名
+     *
+     * @param tables
+     *            表
+     * @param file
+     *            文件
+     * @param sync
+     *            写入磁盘的方式
+     * @throws IOException
+     */
+    public static void write(Map<String, ConfigTable> tables, Path file, AtomicFile.Sync sync) throws IOException
+    {
+        AtomicFile out = new AtomicFile(file, AtomicFile.Compression.NONE, sync);
+        try
+        {
+            write(tables, out.getOutputStream());
+            out.commit();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * 二进制文件的输出<br/>
+     * 整个文件先在内存中生成,便于回填文件头和表中的位置
+     */
+    private static class Encoder
+    {
+        /**
+         * 输出缓冲,position为当前的写入位置
+         */
+        ByteBuffer                         buffer      = ByteBuffer.allocate(64 * 1024).order(
+                                                               ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * 字符串对应的字典编号
+         */
+        private final Map<String, Integer> _codes      = new HashMap<String, Integer>();
+
+        /**
+         * 字典中的字符串
+         */
+        private final List<String>         _dictionary = new ArrayList<String>();
+
+        void write(Iterable<ConfigTable> tables)
+        {
+            List<ConfigTable> list = new ArrayList<ConfigTable>();
+            for (ConfigTable table : tables)
+            {
+                list.add(table);
+                getCode(table.getName());
+                for (int i = 0; i < table.getColumnCount(); i++)
+                {
+                    getCode(table.getColumnName(i));
+                }
+                for (String value : table.getPool())
+                {
+                    getCode(value);
+                }
+            }
+
+            ensure(HEADER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(list.size()).putInt(_dictionary.size());
+            buffer.position(HEADER_SIZE);
+
+            // 字符串字典
+            List<byte[]> bytes = new ArrayList<byte[]>();
+            long offsets = align();
+            int offset = 0;
+            ensure((_dictionary.size() + 1) * 4);
+            buffer.putInt(0);
+            for (String value : _dictionary)
+            {
+                byte[] data = value.getBytes(CHARSET);
+                bytes.add(data);
+                offset += data.length;
+                buffer.putInt(offset);
+            }
+            long hashes = align();
+            ensure(_dictionary.size() * 4);
+            for (String value : _dictionary)
+            {
+                buffer.putInt(value.hashCode());
+            }
+            long data = align();
+            ensure(offset);
+            for (byte[] value : bytes)
+            {
+                buffer.put(value);
+            }
+
+            long[] positions = new long[list.size()];
+            for (int i = 0; i < list.size(); i++)
+            {
+                positions[i] = writeTable(list.get(i));
+            }
+
+            long directory = align();
+            ensure(positions.length * 8);
+            for (long position : positions)
+            {
+                buffer.putLong(position);
+            }
+
+            buffer.putLong(16, offsets).putLong(24, hashes).putLong(32, data).putLong(40, directory);
+        }
+
+        /**
+         * 输出一个表
+         *
+         * @param table
+         *            表
+         * @return 表的描述的位置
+         */
+        private long writeTable(ConfigTable table)
+        {
+            int rows = table.getRowCount();
+            int columns = table.getColumnCount();
+            long[] present = new long[columns];
+            long[] data = new long[columns];
+            for (int i = 0; i < columns; i++)
+            {
+                present[i] = writeBits(table.getPresent(i), rows);
+                switch (table.getColumnType(i))
+                {
+                    case ConfigTable.TYPE_NUMBER:
+                        data[i] = align();
+                        ensure(rows * 8);
+                        for (double value : table.getNumbers(i))
+                        {
+                            buffer.putDouble(value);
+                        }
+                        break;
+                    case ConfigTable.TYPE_BOOLEAN:
+                        data[i] = writeBits(table.getBooleans(i), rows);
+                        break;
+                    case ConfigTable.TYPE_STRING:
+                        data[i] = align();
+                        ensure(rows * 4);
+                        String[] pool = table.getPool();
+                        for (int code : table.getStrings(i))
+                        {
+                            // 没有数据的行编号为0,读取时先检查位图
+                            buffer.putInt(_codes.get(pool[code]).intValue());
+                        }
+                        break;
+                    default:
+                        data[i] = 0;
+                }
+            }
+
+            int[] slots = table.getSlots();
+            long index = align();
+            ensure(slots.length * 4);
+            for (int slot : slots)
+            {
+                buffer.putInt(slot);
+            }
+
+            long result = align();
+            ensure(TABLE_SIZE + columns * COLUMN_SIZE);
+            buffer.putInt(_codes.get(table.getName()).intValue()).putInt(rows).putInt(columns);
+            buffer.putInt(table.getKeyColumn()).putInt(slots.length).putInt(0).putLong(index);
+            for (int i = 0; i < columns; i++)
+            {
+                buffer.putInt(table.getColumnType(i)).putInt(_codes.get(table.getColumnName(i)).intValue());
+                buffer.putLong(present[i]).putLong(data[i]);
+            }
+
+            return result;
+        }
+
+        /**
+         * 输出位图
+         *
+         * @param bits
+         *            位图
+         * @param rows
+         *            行数
+         * @return 位图的位置
+         */
+        private long writeBits(BitSet bits, int rows)
+        {
+            long result = align();
+            long[] words = bits.toLongArray();
+            int count = (rows + 63) >>> 6;
+            ensure(count * 8);
+            for (int i = 0; i < count; i++)
+            {
+                buffer.putLong((i < words.length) ? words[i] : 0);
+            }
+
+            return result;
+        }
+
+        /**
+         * 获取字符串的字典编号,没有时加入字典
+         *
+         * @param value
+         *            字符串
+         * @return 字典编号
+         */
+        private int getCode(String value)
+        {
+            Integer result = _codes.get(value);
+            if (null == result)
+            {
+                result = Integer.valueOf(_dictionary.size());
+                _codes.put(value, result);
+                _dictionary.add(value);
+            }
+
+            return result.intValue();
+        }
+
+        /**
+         * 将写入位置对齐到8字节
+         *
+         * @return 对齐之后的位置
+         */
+        private long align()
+        {
+            int padding = (8 - (buffer.position() & 7)) & 7;
+            ensure(padding);
+            buffer.position(buffer.position() + padding);
+
+            return buffer.position();
+        }
+
+        /**
+         * 保证还能写入size个字节
+         *
+         * @param size
+         *            字节数
+         */
+        private void ensure(int size)
+        {
+            if (buffer.remaining() < size)
+            {
+                long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + size);
+                if (capacity > Integer.MAX_VALUE)
+                {
+                    throw new IllegalStateException("table file too large");
+                }
+                ByteBuffer larger = ByteBuffer.allocate((int) capacity).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+
+/**
+ * 比较两个版本的工作簿,列出增加、删除和修改的行<br/>
+ * 先比较工作表哈希,相同的工作表直接跳过;再按关键列匹配行并比较行哈希,
+ * 只有哈希不同的行才逐个比较单元格。两个xml文件旁边都有最新的索引文件(见WorkBookIndex)时,
+ * 工作表哈希从索引文件读取,所有工作表都相同时不需要解析xml。<br/>
+ * 输出每行一条记录,字段以制表符分隔,修改的列号以逗号分隔:
+ *
+ * <pre>
+ * added       工作表名    关键字    行号
+ * removed     工作表名    关键字    行号(旧版本)
+ * modified    工作表名    关键字    行号    列号,列号
+ * </pre>
+ */
+public class WorkBookDiff
+{
+    /**
+     * 增加的行
+     */
+    public static final String ADDED      = "added";
+
+    /**
+     * 删除的行
+     */
+    public static final String REMOVED    = "removed";
+
+    /**
+     * 修改的行
+     */
+    public static final String MODIFIED   = "modified";
+
+    /**
+     * 关键列
+     */
+    private int                _keyColumn = 0;
+
+    /**
+     * 设置关键列
+     *
+     * @param keyColumn
+     *            关键列的列号,默认为0
+     */
+    public void setKeyColumn(int keyColumn)
+    {
+        _keyColumn = keyColumn;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 关键列的列号
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 比较两个版本的工作簿
+     *
+     * @param older
+     *            旧版本的WorkBook元素
+     * @param newer
+     *            新版本的WorkBook元素
+     * @return 改变的行,按新版本中工作表和行的顺序,删除的行排在每个工作表的最后
+     */
+    public List<Change> diff(Element older, Element newer)
+    {
+        return diff(older, newer, new HashSet<String>());
+    }
+
+    /**
+     * 比较两个版本的xml文件<br/>
+     * 两个文件都有不早于xml文件的索引文件时,跳过工作表哈希相同的工作表
+     *
+     * @param older
+     *            旧版本的xml文件
+     * @param newer
+     *            新版本的xml文件
+     * @return 改变的行
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public List<Change> diff(Path older, Path newer) throws JDOMException, IOException
+    {
+        Set<String> same = new HashSet<String>();
+        WorkBookIndex oldIndex = readIndex(older);
+        WorkBookIndex newIndex = readIndex(newer);
+        if ((null != oldIndex) && (null != newIndex))
+        {
+            boolean all = oldIndex.getSheets().size() == newIndex.getSheets().size();
+            for (WorkBookIndex.Sheet sheet : newIndex.getSheets())
+            {
+                WorkBookIndex.Sheet other = oldIndex.getSheet(sheet.getName());
+                if ((null != other) && (other.getHash() == sheet.getHash()))
+                {
+                    same.add(sheet.getName());
+                }
+                else
+                {
+                    all = false;
+                }
+            }
+            if (all)
+            {
+                return new ArrayList<Change>();
+            }
+        }
+
+        return diff(read(older), read(newer), same);
+    }
+
+    /**
+     * 比较两个版本的工作簿
+     *
+     * @param older
+     *            旧版本的WorkBook元素
+     * @param newer
+     *            新版本的WorkBook元素
+     * @param same
+     *            已知相同的工作表名
+     * @return 改变的行
+     */
+    private List<Change> diff(Element older, Element newer, Set<String> same)
+    {
+        Map<String, Element> oldSheets = new HashMap<String, Element>();
+        for (Element sheet : older.getChildren(XmlType.WorkSheet))
+        {
+            oldSheets.put(sheet.getAttributeValue("name"), sheet);
+        }
+
+        List<Change> result = new ArrayList<Change>();
+        Set<String> names = new HashSet<String>();
+        for (Element sheet : newer.getChildren(XmlType.WorkSheet))
+        {
+            String name = sheet.getAttributeValue("name");
+            names.add(name);
+            if (!same.contains(name))
+            {
+                diffSheet(name, oldSheets.get(name), sheet, result);
+            }
+        }
+        for (Element sheet : older.getChildren(XmlType.WorkSheet))
+        {
+            String name = sheet.getAttributeValue("name");
+            if (!names.contains(name))
+            {
+                diffSheet(name, sheet, null, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 比较两个版本的工作表
+     *
+     * @param name
+     *            工作表名
+     * @param older
+     *            旧版本的WorkSheet元素,没有时为null
+     * @param newer
+     *            新版本的WorkSheet元素,没有时为null
+     * @param result
+     *            改变的行
+     */
+    private void diffSheet(String name, Element older, Element newer, List<Change> result)
+    {
+        WorkBookIndex.Sheet oldIndex = (null == older) ? null : WorkBookIndex.Sheet.of(older, getKeyColumn());
+        WorkBookIndex.Sheet newIndex = (null == newer) ? null : WorkBookIndex.Sheet.of(newer, getKeyColumn());
+        if ((null != oldIndex) && (null != newIndex) && (oldIndex.getHash() == newIndex.getHash()))
+        {
+            return;
+        }
+
+        Map<String, WorkBookIndex.Row> oldRows = new HashMap<String, WorkBookIndex.Row>();
+        if (null != oldIndex)
+        {
+            for (WorkBookIndex.Row row : oldIndex.getRows())
+            {
+                oldRows.put(row.getId(), row);
+            }
+        }
+
+        Map<Integer, Element> oldElements = null;
+        Map<Integer, Element> newElements = null;
+        if (null != newIndex)
+        {
+            for (WorkBookIndex.Row row : newIndex.getRows())
+            {
+                WorkBookIndex.Row old = oldRows.remove(row.getId());
+                if (null == old)
+                {
+                    result.add(new Change(ADDED, name, row.getKey(), row.getRownum(), null));
+                }
+                else if (old.getHash() != row.getHash())
+                {
+                    // 只有哈希不同的行才比较单元格
+                    oldElements = (null == oldElements) ? getRows(older) : oldElements;
+                    newElements = (null == newElements) ? getRows(newer) : newElements;
+                    int[] columns = diffCells(oldElements.get(Integer.valueOf(old.getRownum())), newElements
+                            .get(Integer.valueOf(row.getRownum())));
+                    result.add(new Change(MODIFIED, name, row.getKey(), row.getRownum(), columns));
+                }
+            }
+        }
+
+        if (null != oldIndex)
+        {
+            for (WorkBookIndex.Row row : oldIndex.getRows())
+            {
+                if (oldRows.containsKey(row.getId()))
+                {
+                    result.add(new Change(REMOVED, name, row.getKey(), row.getRownum(), null));
+                }
+            }
+        }
+    }
+
+    /**
+     * 比较两行中的单元格
+     *
+     * @param older
+     *            旧版本的行
+     * @param newer
+     *            新版本的行
+     * @return 改变的列号
+     */
+    private static int[] diffCells(Element older, Element newer)
+    {
+        TreeMap<Integer, String[]> oldCells = ElementHandler.getCells(older);
+        TreeMap<Integer, String[]> newCells = ElementHandler.getCells(newer);
+        TreeSet<Integer> columns = new TreeSet<Integer>(oldCells.keySet());
+        columns.addAll(newCells.keySet());
+
+        int[] result = new int[columns.size()];
+        int count = 0;
+        for (Integer column : columns)
+        {
+            String[] a = oldCells.get(column);
+            String[] b = newCells.get(column);
+            if (!isSame(a, b))
+            {
+                result[count++] = column.intValue();
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * 两个单元格是否相同,与WorkBookIndex的哈希使用相同的规则
+     *
+     * @param a
+     *            {数据类型, 公式, 数据},可以为null
+     * @param b
+     *            {数据类型, 公式, 数据},可以为null
+     * @return 相同时返回true
+     */
+    private static boolean isSame(String[] a, String[] b)
+    {
+        String[] x = isBlank(a) ? null : a;
+        String[] y = isBlank(b) ? null : b;
+        if ((null == x) || (null == y))
+        {
+            return x == y;
+        }
+
+        return String.valueOf(x[0]).equals(String.valueOf(y[0])) && String.valueOf(x[1]).equals(String.valueOf(y[1]))
+                && Format.compact(x[2]).equals(Format.compact(y[2]));
+    }
+
+    /**
+     * 是否为没有公式的空白单元格(不计入行哈希)
+     *
+     * @param cell
+     *            {数据类型, 公式, 数据},可以为null
+     * @return 空白时返回true
+     */
+    private static boolean isBlank(String[] cell)
+    {
+        return (null == cell) || ((null == cell[1]) && (0 == Format.compact(cell[2]).length()));
+    }
+
+    /**
+     * 行号对应的行元素
+     *
+     * @param sheet
+     *            WorkSheet元素
+     * @return 行号对应的Row/R元素
+     */
+    private static Map<Integer, Element> getRows(Element sheet)
+    {
+        Map<Integer, Element> result = new HashMap<Integer, Element>();
+        int rownum = -1;
+        for (Element row : sheet.getChildren())
+        {
+            rownum = XmlType.getIndex(row, rownum + 1);
+            result.put(Integer.valueOf(rownum), row);
+        }
+
+        return result;
+    }
+
+    /**
+     * 读取xml文件旁边的索引文件
+     *
+     * @param file
+     *            xml文件
+     * @return 指纹,索引文件不存在、比xml文件旧或者格式错误时返回null
+     * @throws IOException
+     */
+    private static WorkBookIndex readIndex(Path file) throws IOException
+    {
+        Path index = WorkBookIndex.getIndexFile(file);
+        if (!Files.isRegularFile(index)
+                || (Files.getLastModifiedTime(index).compareTo(Files.getLastModifiedTime(file)) < 0))
+        {
+            return null;
+        }
+
+        return WorkBookIndex.read(index);
+    }
+
+    /**
+     * 读取xml文件
+     *
+     * @param file
+     *            xml文件
+     * @return WorkBook元素
+     * @throws JDOMException
+     * @throws IOException
+     */
+    private static Element read(Path file) throws JDOMException, IOException
+    {
+        InputStream is = AtomicFile.openInput(file);
+        try
+        {
+            return new SAXBuilder().build(is).getRootElement();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * 输出改变的行
+     *
+     * @param changes
+     *            改变的行
+     * @param out
+     *            输出
+     */
+    public static void print(List<Change> changes, PrintStream out)
+    {
+        for (Change change : changes)
+        {
+            out.println(change);
+        }
+    }
+
+    /**
+     * 命令行入口: [-k 关键列] 旧版本 新版本<br/>
+     * 改变的行输出到标准输出,参数错误时退出码为2
+     *
+     * @param args
+     *            命令行参数
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        WorkBookDiff diff = new WorkBookDiff();
+        int i = 0;
+        if ((args.length == 4) && ("-k".equals(args[0]) || "--key".equals(args[0])))
+        {
+            diff.setKeyColumn(Integer.parseInt(args[1]));
+            i = 2;
+        }
+        if (args.length - i != 2)
+        {
+            System.err.println("usage: java com.zhuyanbin.je2x.WorkBookDiff [-k column] <old.xml> <new.xml>");
+            System.exit(2);
+        }
+
+        print(diff.diff(Paths.get(args[i]), Paths.get(args[i + 1])), System.out);
+    }
+
+    /**
+     * 改变的行
+     */
+    public static class Change
+    {
+        /**
+         * ADDED/REMOVED/MODIFIED
+         */
+        private final String _type;
+
+        /**
+         * 工作表名
+         */
+        private final String _sheet;
+
+        /**
+         * 关键列的数据
+         */
+        private final String _key;
+
+        /**
+         * 行号,删除的行为旧版本中的行号
+         */
+        private final int    _rownum;
+
+        /**
+         * 修改的列号,增加和删除的行为空
+         */
+        private final int[]  _columns;
+
+        Change(String type, String sheet, String key, int rownum, int[] columns)
+        {
+            _type = type;
+            _sheet = sheet;
+            _key = key;
+            _rownum = rownum;
+            _columns = (null == columns) ? new int[0] : columns;
+        }
+
+        public String getType()
+        {
+            return _type;
+        }
+
+        public String getSheet()
+        {
+            return _sheet;
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        public int getRownum()
+        {
+            return _rownum;
+        }
+
+        public int[] getColumns()
+        {
+            return _columns.clone();
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(_type).append('\t').append(_sheet).append('\t').append(_key)
+                    .append('\t').append(_rownum);
+            for (int i = 0; i < _columns.length; i++)
+            {
+                sb.append((0 == i) ? '\t' : ',').append(_columns[i]);
+            }
+
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+
+/**
+ * 工作簿遍历回调接口<br/>
+ * 流式读取Excel时按照WorkBook/WorkSheet/Row/Cell的顺序依次回调,
+ * 实现类可以据此构建xml数据或直接输出,无需在内存中保存整个工作簿
+ */
+public interface WorkBookHandler
+{
+    /**
+     * 开始处理工作簿
+     *
+     * @throws IOException
+     */
+    public void startWorkBook() throws IOException;
+
+    /**
+     * 开始处理工作表(sheet)
+     *
+     * @param name
+     *            工作表名称
+     * @throws IOException
+     */
+    public void startSheet(String name) throws IOException;
+
+    /**
+     * 开始处理行(row)
+     *
+     * @param rownum
+     *            行号(从0开始)
+     * @param height
+     *            行高
+     * @throws IOException
+     */
+    public void startRow(int rownum, short height) throws IOException;
+
+    /**
+     * 处理单元格(cell)
+     *
+     * @param column
+     *            列号(从0开始)
+     * @param type
+     *            数据类型,与xml中Data的type属性一致
+     * @param value
+     *            单元格数据
+     * @throws IOException
+     */
+    public void cell(int column, String type, String value) throws IOException;
+
+    /**
+     * 处理公式单元格(cell)
+     *
+     * @param column
+     *            列号(从0开始)
+     * @param formula
+     *            公式(不包含开头的'=')
+     * @param type
+     *            公式缓存结果的数据类型,与xml中Data的type属性一致
+     * @param value
+     *            公式的缓存结果
+     * @throws IOException
+     */
+    public void formulaCell(int column, String formula, String type, String value) throws IOException;
+
+    /**
+     * 行(row)处理结束
+     *
+     * @throws IOException
+     */
+    public void endRow() throws IOException;
+
+    /**
+     * 工作表(sheet)处理结束
+     *
+     * @throws IOException
+     */
+    public void endSheet() throws IOException;
+
+    /**
+     * 工作簿处理结束
+     *
+     * @throws IOException
+     */
+    public void endWorkBook() throws IOException;
+}
@@ -0,0 +1,637 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+
+/**
+ * 行和工作表的内容指纹<br/>
+ * 每一行计算64位的FNV-1a哈希,只包含单元格的列号、数据类型、公式和数据(不包括行高和样式),
+ * 每个工作表的哈希由各行的行号和行哈希计算。
+ * 既可以作为WorkBookHandler包装xml输出,在导出的同时计算(见ExcelReader.setFingerprints),
+ * 也可以从xml的Element计算,两者的结果一致。<br/>
+ * 指纹可以保存为xml文件旁边的索引文件(文件名加上.idx),每行一条记录,字段以制表符分隔:
+ *
+ * <pre>
+ * # je2x index 1
+ * S    工作表哈希    工作表名
+ * R    行号    行哈希    关键列的数据
+ * </pre>
+ */
+public class WorkBookIndex implements WorkBookHandler
+{
+    /**
+     * 索引文件的扩展名
+     */
+    public static final String    EXTENSION    = ".idx";
+
+    /**
+     * 索引文件头
+     */
+    private static final String   HEADER       = "# je2x index 1";
+
+    /**
+     * 索引文件编码
+     */
+    private static final Charset  CHARSET      = Charset.forName("utf-8");
+
+    /**
+     * FNV-1a的初始值
+     */
+    static final long             FNV_OFFSET   = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a的乘数
+     */
+    private static final long     FNV_PRIME    = 0x100000001b3L;
+
+    /**
+     * 包装的回调,为null时只计算指纹
+     */
+    private final WorkBookHandler _next;
+
+    /**
+     * 关键列
+     */
+    private int                   _keyColumn   = 0;
+
+    /**
+     * 是否保存每一行的指纹
+     */
+    private boolean               _rows        = true;
+
+    /**
+     * 已经完成的工作表
+     */
+    private final List<Sheet>     _sheets      = new ArrayList<Sheet>();
+
+    /**
+     * 当前处理中的工作表
+     */
+    private Sheet                 _sheet       = null;
+
+    /**
+     * 当前行的行号
+     */
+    private int                   _rownum      = 0;
+
+    /**
+     * 当前行的哈希
+     */
+    private long                  _rowHash     = FNV_OFFSET;
+
+    /**
+     * 当前行关键列的数据
+     */
+    private String                _key         = "";
+
+    /**
+     * 构造方法,只计算指纹
+     */
+    public WorkBookIndex()
+    {
+        this(null);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param next
+     *            包装的回调,所有回调原样转发,为null时只计算指纹
+     */
+    public WorkBookIndex(WorkBookHandler next)
+    {
+        _next = next;
+    }
+
+    /**
+     * 设置关键列
+     *
+     * @param keyColumn
+     *            关键列的列号,默认为0
+     */
+    public void setKeyColumn(int keyColumn)
+    {
+        _keyColumn = keyColumn;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 关键列的列号
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 设置是否保存每一行的指纹<br/>
+     * 只需要工作表指纹时(例如判断工作表是否改变)设置为false,内存占用与行数无关
+     *
+     * @param rows
+     *            保存每一行的指纹时为true,默认为true
+     */
+    public void setRows(boolean rows)
+    {
+        _rows = rows;
+    }
+
+    public boolean isRows()
+    {
+        return _rows;
+    }
+
+    /**
+     * 获取所有工作表的指纹
+     *
+     * @return 工作表的指纹,按工作表的顺序
+     */
+    public List<Sheet> getSheets()
+    {
+        return Collections.unmodifiableList(_sheets);
+    }
+
+    /**
+     * 获取工作表的指纹
+     *
+     * @param name
+     *            工作表名
+     * @return 工作表的指纹,没有时返回null
+     */
+    public Sheet getSheet(String name)
+    {
+        for (Sheet sheet : _sheets)
+        {
+            if (sheet.getName().equals(name))
+            {
+                return sheet;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 添加一个已经计算好的工作表指纹(ExcelReader并行转换时使用)
+     *
+     * @param sheet
+     *            工作表的指纹
+     */
+    public void addSheet(Sheet sheet)
+    {
+        _sheets.add(sheet);
+    }
+
+    public void startWorkBook() throws IOException
+    {
+        _sheets.clear();
+        if (null != _next)
+        {
+            _next.startWorkBook();
+        }
+    }
+
+    public void startSheet(String name) throws IOException
+    {
+        _sheet = new Sheet(name);
+        if (null != _next)
+        {
+            _next.startSheet(name);
+        }
+    }
+
+    public void startRow(int rownum, short height) throws IOException
+    {
+        _rownum = rownum;
+        _rowHash = FNV_OFFSET;
+        _key = "";
+        if (null != _next)
+        {
+            _next.startRow(rownum, height);
+        }
+    }
+
+    public void cell(int column, String type, String value) throws IOException
+    {
+        addCell(column, null, type, value);
+        if (null != _next)
+        {
+            _next.cell(column, type, value);
+        }
+    }
+
+    public void formulaCell(int column, String formula, String type, String value) throws IOException
+    {
+        addCell(column, formula, type, value);
+        if (null != _next)
+        {
+            _next.formulaCell(column, formula, type, value);
+        }
+    }
+
+    public void endRow() throws IOException
+    {
+        if (_rows)
+        {
+            _sheet.addRow(_rownum, _rowHash, _key);
+        }
+        else
+        {
+            _sheet.addHash(_rownum, _rowHash);
+        }
+        if (null != _next)
+        {
+            _next.endRow();
+        }
+    }
+
+    public void endSheet() throws IOException
+    {
+        _sheets.add(_sheet);
+        _sheet = null;
+        if (null != _next)
+        {
+            _next.endSheet();
+        }
+    }
+
+    public void endWorkBook() throws IOException
+    {
+        if (null != _next)
+        {
+            _next.endWorkBook();
+        }
+    }
+
+    /**
+     * 将单元格计入当前行的哈希<br/>
+     * 数据按xml输出时的压缩格式处理,没有公式的空白单元格不计入,
+     * 因此流式导出和从xml计算的结果一致
+     *
+     * @param column
+     *            列号
+     * @param formula
+     *            公式,可以为null
+     * @param type
+     *            数据类型
+     * @param value
+     *            数据
+     */
+    private void addCell(int column, String formula, String type, String value)
+    {
+        String text = (null == value) ? "" : Format.compact(value);
+        if ((0 == text.length()) && (null == formula))
+        {
+            return;
+        }
+
+        long hash = hash(_rowHash, Integer.toString(column));
+        hash = hash(hash ^ 1, (null == type) ? "" : type);
+        hash = hash(hash ^ 2, (null == formula) ? "" : formula);
+        _rowHash = hash(hash ^ 3, text);
+        if (column == _keyColumn)
+        {
+            _key = text;
+        }
+    }
+
+    /**
+     * 计算xml中整个工作簿的指纹
+     *
+     * @param workbook
+     *            WorkBook元素
+     * @param keyColumn
+     *            关键列
+     * @return 指纹
+     */
+    public static WorkBookIndex of(Element workbook, int keyColumn)
+    {
+        WorkBookIndex result = new WorkBookIndex();
+        result.setKeyColumn(keyColumn);
+        try
+        {
+            for (Element sheet : workbook.getChildren(XmlType.WorkSheet))
+            {
+                ElementHandler.process(sheet, result);
+            }
+        }
+        catch (IOException ex)
+        {
+            // 没有包装的回调时不会发生
+            throw new IllegalStateException(ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * 索引文件的路径
+     *
+     * @param xmlFile
+     *            xml文件
+     * @return 同一目录下文件名加上.idx的文件
+     */
+    public static Path getIndexFile(Path xmlFile)
+    {
+        return xmlFile.resolveSibling(xmlFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * 保存索引文件
+     *
+     * @param file
+     *            索引文件
+     * @param sync
+     *            写入磁盘的方式
+     * @throws IOException
+     */
+    public void write(Path file, AtomicFile.Sync sync) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(bos, CHARSET);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Sheet sheet : _sheets)
+        {
+            writer.write("S\t" + toHex(sheet.getHash()) + "\t" + sheet.getName() + "\n");
+            for (Row row : sheet.getRows())
+            {
+                writer.write("R\t" + row.getRownum() + "\t" + toHex(row.getHash()) + "\t" + row.getKey() + "\n");
+            }
+        }
+        writer.close();
+
+        AtomicFile.write(file, bos.toByteArray(), sync);
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @param file
+     *            索引文件
+     * @return 指纹,文件头不一致时返回null
+     * @throws IOException
+     */
+    public static WorkBookIndex read(Path file) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), CHARSET));
+        try
+        {
+            if (!HEADER.equals(reader.readLine()))
+            {
+                return null;
+            }
+
+            WorkBookIndex result = new WorkBookIndex();
+            List<Long> hashes = new ArrayList<Long>();
+            Sheet sheet = null;
+            String line = null;
+            while (null != (line = reader.readLine()))
+            {
+                String[] fields = line.split("\t", -1);
+                if ("S".equals(fields[0]) && (3 == fields.length))
+                {
+                    sheet = new Sheet(fields[2]);
+                    hashes.add(Long.valueOf(Long.parseUnsignedLong(fields[1], 16)));
+                    result._sheets.add(sheet);
+                }
+                else if ("R".equals(fields[0]) && (4 == fields.length) && (null != sheet))
+                {
+                    sheet.addRow(Integer.parseInt(fields[1]), Long.parseUnsignedLong(fields[2], 16), fields[3]);
+                }
+            }
+
+            // 工作表哈希由行重新计算,与文件中的不一致时视为损坏
+            for (int i = 0; i < hashes.size(); i++)
+            {
+                if (hashes.get(i).longValue() != result._sheets.get(i).getHash())
+                {
+                    return null;
+                }
+            }
+
+            return result;
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * 计算64位FNV-1a哈希
+     *
+     * @param hash
+     *            初始值,第一次为FNV_OFFSET,也可以是前一段数据的哈希
+     * @param text
+     *            文本
+     * @return 哈希
+     */
+    static long hash(long hash, CharSequence text)
+    {
+        long result = hash;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            result = (result ^ (c & 0xFF)) * FNV_PRIME;
+            result = (result ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return result;
+    }
+
+    /**
+     * 转换成16位十六进制字符串
+     *
+     * @param hash
+     *            哈希
+     * @return 十六进制字符串
+     */
+    static String toHex(long hash)
+    {
+        String hex = Long.toHexString(hash);
+
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * 工作表的指纹
+     */
+    public static class Sheet
+    {
+        /**
+         * 工作表名
+         */
+        private final String              _name;
+
+        /**
+         * 按顺序排列的行
+         */
+        private final List<Row>           _rows        = new ArrayList<Row>();
+
+        /**
+         * 关键字出现的次数,用于区分重复的关键字
+         */
+        private final Map<String, Integer> _occurrences = new HashMap<String, Integer>();
+
+        /**
+         * 工作表哈希
+         */
+        private long                      _hash        = FNV_OFFSET;
+
+        Sheet(String name)
+        {
+            _name = name;
+        }
+
+        /**
+         * 计算xml中一个工作表的指纹
+         *
+         * @param sheet
+         *            WorkSheet元素
+         * @param keyColumn
+         *            关键列
+         * @return 工作表的指纹
+         */
+        public static Sheet of(Element sheet, int keyColumn)
+        {
+            WorkBookIndex index = new WorkBookIndex();
+            index.setKeyColumn(keyColumn);
+            try
+            {
+                ElementHandler.process(sheet, index);
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+
+            return index._sheets.get(0);
+        }
+
+        void addRow(int rownum, long hash, String key)
+        {
+            Integer occurrence = _occurrences.get(key);
+            _occurrences.put(key, Integer.valueOf((null == occurrence) ? 1 : occurrence.intValue() + 1));
+            String id = key;
+            if ((null != occurrence) || (0 == key.length()))
+            {
+                id = key + '\0' + ((null == occurrence) ? 0 : occurrence.intValue());
+            }
+            _rows.add(new Row(rownum, hash, key, id));
+            addHash(rownum, hash);
+        }
+
+        /**
+         * 将一行计入工作表哈希,不保存行的指纹
+         *
+         * @param rownum
+         *            行号
+         * @param hash
+         *            行哈希
+         */
+        void addHash(int rownum, long hash)
+        {
+            _hash = WorkBookIndex.hash(_hash ^ rownum, toHex(hash));
+        }
+
+        public String getName()
+        {
+            return _name;
+        }
+
+        public long getHash()
+        {
+            return _hash;
+        }
+
+        public List<Row> getRows()
+        {
+            return Collections.unmodifiableList(_rows);
+        }
+    }
+
+    /**
+     * 行的指纹
+     */
+    public static class Row
+    {
+        /**
+         * 行号
+         */
+        private final int    _rownum;
+
+        /**
+         * 行哈希
+         */
+        private final long   _hash;
+
+        /**
+         * 关键列的数据
+         */
+        private final String _key;
+
+        /**
+         * 区分重复关键字之后的唯一标识,关键字为空或者重复时加上出现的序号
+         */
+        private final String _id;
+
+        Row(int rownum, long hash, String key, String id)
+        {
+            _rownum = rownum;
+            _hash = hash;
+            _key = key;
+            _id = id;
+        }
+
+        public int getRownum()
+        {
+            return _rownum;
+        }
+
+        public long getHash()
+        {
+            return _hash;
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        public String getId()
+        {
+            return _id;
+        }
+    }
+}
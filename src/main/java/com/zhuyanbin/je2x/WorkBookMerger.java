@@ -0,0 +1,1093 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+
+/**
+ * 工作簿的三方合并<br/>
+ * 按行的关键列(默认为第一列,例如"编号")匹配行,行的插入、删除、移动都不会造成错位。
+ * 每一行计算内容哈希,没有修改的行只比较哈希;双方都修改了同一行时再按单元格合并,
+ * 同一个单元格被双方修改成不同的值时记录冲突并保留本方(ours)的值,
+ * 冲突同时写入合并结果的Conflicts元素(见XmlType.Conflicts),删除该元素之前XmlReader拒绝读取。
+ * 所有查找都使用哈希表,时间与行数成正比。<br/>
+ * 可以作为git的merge driver使用:
+ *
+ * <pre>
+ * git config merge.je2x.driver "java -cp je2x.jar com.zhuyanbin.je2x.WorkBookMerger %O %A %B"
+ * echo "*.xml merge=je2x" &gt;&gt; .gitattributes
+ * </pre>
+ */
+public class WorkBookMerger
+{
+    /**
+     * 关键列
+     */
+    private int                  _keyColumn = 0;
+
+    /**
+     * 上一次合并的冲突
+     */
+    private final List<Conflict> _conflicts = new ArrayList<Conflict>();
+
+    /**
+     * 设置关键列
+     *
+     * @param keyColumn
+     *            关键列的列号,默认为0
+     */
+    public void setKeyColumn(int keyColumn)
+    {
+        _keyColumn = keyColumn;
+    }
+
+    /**
+     * 获取关键列
+     *
+     * @return 关键列的列号
+     */
+    public int getKeyColumn()
+    {
+        return _keyColumn;
+    }
+
+    /**
+     * 获取上一次合并的冲突
+     *
+     * @return 冲突,没有冲突时为空
+     */
+    public List<Conflict> getConflicts()
+    {
+        return Collections.unmodifiableList(_conflicts);
+    }
+
+    /**
+     * 三方合并<br/>
+     * 输出使用本方的格式(普通格式或紧凑格式),工作表按本方的顺序,只有对方增加的工作表排在最后。
+     * 有冲突时WorkBook的第一个子元素为记录所有冲突的Conflicts元素
+     *
+     * @param base
+     *            共同的祖先,为null时视为空工作簿
+     * @param ours
+     *            本方
+     * @param theirs
+     *            对方
+     * @return 合并之后的WorkBook元素
+     */
+    public Element merge(Element base, Element ours, Element theirs)
+    {
+        _conflicts.clear();
+        Palette palette = new Palette(getStyles(ours));
+        Map<String, Sheet> baseSheets = parseSheets(base);
+        Map<String, Sheet> ourSheets = parseSheets(ours);
+        Map<String, Sheet> theirSheets = parseSheets(theirs);
+
+        List<String> names = new ArrayList<String>(ourSheets.keySet());
+        for (String name : theirSheets.keySet())
+        {
+            if (!ourSheets.containsKey(name))
+            {
+                names.add(name);
+            }
+        }
+
+        Element result = new Element(XmlType.WorkBook);
+        boolean compact = isCompact(ours);
+        for (String name : names)
+        {
+            Sheet b = baseSheets.get(name);
+            Sheet o = ourSheets.get(name);
+            Sheet t = theirSheets.get(name);
+            if ((null == o) || (null == t))
+            {
+                Sheet other = (null == o) ? t : o;
+                if ((null != b) && b.isSame(other))
+                {
+                    // 一方删除,另一方没有修改
+                    continue;
+                }
+                if (null != b)
+                {
+                    _conflicts.add(new Conflict(name, null, Conflict.SHEET, "sheet", (null == o) ? null : "sheet",
+                            (null == t) ? null : "sheet"));
+                }
+                o = (null == o) ? new Sheet() : o;
+                t = (null == t) ? new Sheet() : t;
+            }
+
+            List<RowData> rows = mergeRows(name, (null == b) ? new Sheet() : b, o, t);
+            result.addContent(toXml(name, rows, compact, palette));
+        }
+
+        if (palette.isUsed())
+        {
+            result.addContent(0, palette.toXml());
+        }
+        if (!_conflicts.isEmpty())
+        {
+            // 冲突记录在文件中,XmlReader拒绝读取没有解决冲突的文件
+            Element conflicts = new Element(XmlType.Conflicts);
+            for (Conflict conflict : _conflicts)
+            {
+                conflicts.addContent(conflict.toXml());
+            }
+            result.addContent(0, conflicts);
+        }
+
+        return result;
+    }
+
+    /**
+     * 合并工作表的行<br/>
+     * 按本方的顺序输出,只有对方增加的行插入到对方中它前面最近的、本方也有的行之后
+     *
+     * @param sheet
+     *            工作表名
+     * @param base
+     *            共同的祖先
+     * @param ours
+     *            本方
+     * @param theirs
+     *            对方
+     * @return 合并之后的行
+     */
+    private List<RowData> mergeRows(String sheet, Sheet base, Sheet ours, Sheet theirs)
+    {
+        List<RowData> head = new ArrayList<RowData>();
+        Map<String, List<RowData>> inserts = new HashMap<String, List<RowData>>();
+        String anchor = null;
+        for (RowData t : theirs.rows)
+        {
+            if (ours.keys.containsKey(t.key))
+            {
+                anchor = t.key;
+                continue;
+            }
+
+            RowData b = base.keys.get(t.key);
+            if (null != b)
+            {
+                if (b.isSame(t))
+                {
+                    // 本方删除,对方没有修改
+                    continue;
+                }
+                _conflicts.add(new Conflict(sheet, t.key, Conflict.ROW, "row", null, "row"));
+            }
+
+            List<RowData> list = head;
+            if (null != anchor)
+            {
+                list = inserts.get(anchor);
+                if (null == list)
+                {
+                    list = new ArrayList<RowData>();
+                    inserts.put(anchor, list);
+                }
+            }
+            list.add(t);
+        }
+
+        List<RowData> result = new ArrayList<RowData>(head);
+        for (RowData o : ours.rows)
+        {
+            RowData row = mergeRow(sheet, base.keys.get(o.key), o, theirs.keys.get(o.key));
+            if (null != row)
+            {
+                result.add(row);
+            }
+            List<RowData> list = inserts.get(o.key);
+            if (null != list)
+            {
+                result.addAll(list);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 合并一行
+     *
+     * @param sheet
+     *            工作表名
+     * @param b
+     *            共同的祖先,没有时为null
+     * @param o
+     *            本方
+     * @param t
+     *            对方,没有时为null
+     * @return 合并之后的行,删除时返回null
+     */
+    private RowData mergeRow(String sheet, RowData b, RowData o, RowData t)
+    {
+        if (null == t)
+        {
+            if ((null == b) || b.isSame(o))
+            {
+                // 本方增加,或者对方删除、本方没有修改
+                return (null == b) ? o : null;
+            }
+            _conflicts.add(new Conflict(sheet, o.key, Conflict.ROW, "row", "row", null));
+            return o;
+        }
+
+        if (o.isSame(t) || ((null != b) && b.isSame(t)))
+        {
+            return o;
+        }
+        if ((null != b) && b.isSame(o))
+        {
+            return new RowData(o.key, o.gap, t.height, t.cells);
+        }
+
+        String height = o.height;
+        if ((null != b) && b.height.equals(o.height))
+        {
+            height = t.height;
+        }
+        else if (!o.height.equals(t.height) && ((null == b) || !b.height.equals(t.height)))
+        {
+            _conflicts.add(new Conflict(sheet, o.key, Conflict.HEIGHT, (null == b) ? null : b.height, o.height,
+                    t.height));
+        }
+
+        Map<Integer, CellData> empty = Collections.emptyMap();
+        Map<Integer, CellData> baseCells = (null == b) ? empty : b.cells;
+        TreeSet<Integer> columns = new TreeSet<Integer>(o.cells.keySet());
+        columns.addAll(t.cells.keySet());
+        columns.addAll(baseCells.keySet());
+        TreeMap<Integer, CellData> cells = new TreeMap<Integer, CellData>();
+        for (Integer column : columns)
+        {
+            CellData cb = baseCells.get(column);
+            CellData co = o.cells.get(column);
+            CellData ct = t.cells.get(column);
+            CellData cell = co;
+            if (!CellData.isSame(co, ct))
+            {
+                if (CellData.isSame(cb, co))
+                {
+                    cell = ct;
+                }
+                else if (!CellData.isSame(cb, ct))
+                {
+                    _conflicts.add(new Conflict(sheet, o.key, column.intValue(), CellData.getText(cb), CellData
+                            .getText(co), CellData.getText(ct)));
+                }
+            }
+            if (null != cell)
+            {
+                cells.put(column, cell);
+            }
+        }
+
+        return new RowData(o.key, o.gap, height, cells);
+    }
+
+    /**
+     * 输出工作表
+     *
+     * @param name
+     *            工作表名
+     * @param rows
+     *            行
+     * @param compact
+     *            是否为紧凑格式
+     * @param palette
+     *            输出的样式表
+     * @return WorkSheet元素
+     */
+    private static Element toXml(String name, List<RowData> rows, boolean compact, Palette palette)
+    {
+        Element result = new Element(XmlType.WorkSheet);
+        result.setAttribute("name", name);
+        int rownum = -1;
+        for (RowData row : rows)
+        {
+            rownum += 1 + row.gap;
+            Element element = new Element(compact ? XmlType.CompactRow : XmlType.Row);
+            if (!compact)
+            {
+                element.setAttribute("Height", row.height);
+            }
+            else if (!Short.toString(XmlType.DefaultHeight).equals(row.height))
+            {
+                element.setAttribute("h", row.height);
+            }
+            if (row.gap > 0)
+            {
+                element.setAttribute(compact ? XmlType.CompactIndex : XmlType.Index, Integer.toString(rownum));
+            }
+
+            int next = 0;
+            for (Map.Entry<Integer, CellData> entry : row.cells.entrySet())
+            {
+                int column = entry.getKey().intValue();
+                Element cell = entry.getValue().toXml(compact, palette);
+                if (column != next)
+                {
+                    cell.setAttribute(compact ? XmlType.CompactIndex : XmlType.Index, Integer.toString(column));
+                }
+                element.addContent(cell);
+                next = column + 1;
+            }
+            result.addContent(element);
+        }
+
+        return result;
+    }
+
+    /**
+     * 是否为紧凑格式
+     *
+     * @param workbook
+     *            WorkBook元素
+     * @return 第一个行元素为R时返回true
+     */
+    private static boolean isCompact(Element workbook)
+    {
+        if (null != workbook)
+        {
+            for (Element sheet : workbook.getChildren(XmlType.WorkSheet))
+            {
+                if (!sheet.getChildren().isEmpty())
+                {
+                    return XmlType.CompactRow.equals(sheet.getChildren().get(0).getName());
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 获取样式表
+     *
+     * @param workbook
+     *            WorkBook元素,可以为null
+     * @return Styles元素,没有时返回null
+     */
+    private static Element getStyles(Element workbook)
+    {
+        return (null == workbook) ? null : workbook.getChild(XmlType.Styles);
+    }
+
+    /**
+     * 解析所有工作表
+     *
+     * @param workbook
+     *            WorkBook元素,可以为null
+     * @return 工作表名和工作表,按原来的顺序
+     */
+    private Map<String, Sheet> parseSheets(Element workbook)
+    {
+        Map<String, Sheet> result = new LinkedHashMap<String, Sheet>();
+        if (null != workbook)
+        {
+            Map<Integer, Element> styles = new HashMap<Integer, Element>();
+            Element palette = getStyles(workbook);
+            if (null != palette)
+            {
+                for (Element style : palette.getChildren(XmlType.Style))
+                {
+                    styles.put(Integer.valueOf(style.getAttributeValue("id")), style);
+                }
+            }
+            for (Element sheet : workbook.getChildren(XmlType.WorkSheet))
+            {
+                result.put(sheet.getAttributeValue("name"), new Sheet(sheet, styles, getKeyColumn()));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 读取xml文件,文件为空时返回null
+     *
+     * @param file
+     *            xml文件
+     * @return WorkBook元素
+     * @throws JDOMException
+     * @throws IOException
+     */
+    private static Element read(Path file) throws JDOMException, IOException
+    {
+        if (!Files.isRegularFile(file) || (0 == Files.size(file)))
+        {
+            return null;
+        }
+
+        InputStream is = AtomicFile.openInput(file);
+        try
+        {
+            return new SAXBuilder().build(is).getRootElement();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * 合并三个xml文件,结果写入本方的文件(git merge driver的约定)
+     *
+     * @param base
+     *            共同的祖先(%O)
+     * @param ours
+     *            本方(%A),同时也是输出文件
+     * @param theirs
+     *            对方(%B)
+     * @param err
+     *            冲突输出
+     * @return 冲突的个数
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public int merge(Path base, Path ours, Path theirs, PrintStream err) throws JDOMException, IOException
+    {
+        Element result = merge(read(base), read(ours), read(theirs));
+        AtomicFile.write(ours, XmlStreamWriter.toDocument(result), AtomicFile.Sync.NONE);
+        for (Conflict conflict : getConflicts())
+        {
+            err.println(ours + ": " + conflict);
+        }
+
+        return getConflicts().size();
+    }
+
+    /**
+     * 命令行入口: [-k 关键列] base ours theirs<br/>
+     * 没有冲突时退出码为0,有冲突时为1(git将文件标记为冲突),参数错误时为2
+     *
+     * @param args
+     *            命令行参数
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        WorkBookMerger merger = new WorkBookMerger();
+        int i = 0;
+        if ((args.length == 5) && ("-k".equals(args[0]) || "--key".equals(args[0])))
+        {
+            merger.setKeyColumn(Integer.parseInt(args[1]));
+            i = 2;
+        }
+        if (args.length - i != 3)
+        {
+            System.err.println("usage: java com.zhuyanbin.je2x.WorkBookMerger [-k column] <base> <ours> <theirs>");
+            System.exit(2);
+        }
+
+        int conflicts = merger.merge(Paths.get(args[i]), Paths.get(args[i + 1]), Paths.get(args[i + 2]),
+                System.err);
+        System.exit((0 == conflicts) ? 0 : 1);
+    }
+
+    /**
+     * 合并冲突
+     */
+    public static class Conflict
+    {
+        /**
+         * 整个工作表冲突(一方删除,另一方修改)
+         */
+        public static final int SHEET  = -3;
+
+        /**
+         * 整行冲突(一方删除,另一方修改)
+         */
+        public static final int ROW    = -2;
+
+        /**
+         * 行高冲突
+         */
+        public static final int HEIGHT = -1;
+
+        /**
+         * 工作表名
+         */
+        private final String    _sheet;
+
+        /**
+         * 行的关键字,工作表冲突时为null
+         */
+        private final String    _key;
+
+        /**
+         * 列号,或者SHEET/ROW/HEIGHT
+         */
+        private final int       _column;
+
+        /**
+         * 共同祖先的值,没有时为null
+         */
+        private final String    _base;
+
+        /**
+         * 本方的值,删除时为null
+         */
+        private final String    _ours;
+
+        /**
+         * 对方的值,删除时为null
+         */
+        private final String    _theirs;
+
+        Conflict(String sheet, String key, int column, String base, String ours, String theirs)
+        {
+            _sheet = sheet;
+            _key = key;
+            _column = column;
+            _base = base;
+            _ours = ours;
+            _theirs = theirs;
+        }
+
+        public String getSheet()
+        {
+            return _sheet;
+        }
+
+        public String getKey()
+        {
+            return _key;
+        }
+
+        public int getColumn()
+        {
+            return _column;
+        }
+
+        public String getBase()
+        {
+            return _base;
+        }
+
+        public String getOurs()
+        {
+            return _ours;
+        }
+
+        public String getTheirs()
+        {
+            return _theirs;
+        }
+
+        /**
+         * 转换成Conflicts中的Conflict元素,值为null的属性省略
+         *
+         * @return Conflict元素
+         */
+        Element toXml()
+        {
+            Element result = new Element(XmlType.Conflict);
+            result.setAttribute("sheet", _sheet);
+            if (null != _key)
+            {
+                result.setAttribute("key", RowData.getDisplayKey(_key));
+            }
+            switch (_column)
+            {
+                case SHEET:
+                    result.setAttribute("column", "sheet");
+                    break;
+                case ROW:
+                    result.setAttribute("column", "row");
+                    break;
+                case HEIGHT:
+                    result.setAttribute("column", "height");
+                    break;
+                default:
+                    result.setAttribute("column", Integer.toString(_column));
+                    break;
+            }
+            setAttribute(result, "base", _base);
+            setAttribute(result, "ours", _ours);
+            setAttribute(result, "theirs", _theirs);
+            return result;
+        }
+
+        private static void setAttribute(Element element, String name, String value)
+        {
+            if (null != value)
+            {
+                element.setAttribute(name, value);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder("conflict in ").append(_sheet);
+            if (null != _key)
+            {
+                sb.append(" [").append(RowData.getDisplayKey(_key)).append(']');
+            }
+            if (_column >= 0)
+            {
+                sb.append(" column ").append(_column);
+            }
+            else if (HEIGHT == _column)
+            {
+                sb.append(" height");
+            }
+
+            return sb.append(": base=").append(_base).append(", ours=").append(_ours).append(", theirs=")
+                    .append(_theirs).toString();
+        }
+    }
+
+    /**
+     * 工作表
+     */
+    private static class Sheet
+    {
+        /**
+         * 按顺序排列的行
+         */
+        final List<RowData>        rows = new ArrayList<RowData>();
+
+        /**
+         * 关键字对应的行
+         */
+        final Map<String, RowData> keys = new HashMap<String, RowData>();
+
+        Sheet()
+        {
+        }
+
+        Sheet(Element sheet, Map<Integer, Element> styles, int keyColumn)
+        {
+            Map<String, Integer> occurrences = new HashMap<String, Integer>();
+            int rownum = -1;
+            for (Element row : sheet.getChildren())
+            {
+                int index = XmlType.getIndex(row, rownum + 1);
+                boolean compact = XmlType.CompactRow.equals(row.getName());
+                String height = compact ? row.getAttributeValue("h") : row.getAttributeValue("Height");
+                if (null == height)
+                {
+                    height = Short.toString(XmlType.DefaultHeight);
+                }
+
+                TreeMap<Integer, CellData> cells = new TreeMap<Integer, CellData>();
+                int column = 0;
+                for (Element cell : row.getChildren())
+                {
+                    column = XmlType.getIndex(cell, column);
+                    cells.put(Integer.valueOf(column++), new CellData(cell, styles));
+                }
+
+                // 关键字为空或者重复时按出现的次序区分
+                CellData keyCell = cells.get(Integer.valueOf(keyColumn));
+                String key = (null == keyCell) ? "" : keyCell.getValue();
+                Integer occurrence = occurrences.get(key);
+                occurrences.put(key, Integer.valueOf((null == occurrence) ? 1 : occurrence.intValue() + 1));
+                if ((null != occurrence) || (0 == key.length()))
+                {
+                    key = key + '\0' + ((null == occurrence) ? 0 : occurrence.intValue());
+                }
+
+                RowData data = new RowData(key, index - rownum - 1, height, cells);
+                rows.add(data);
+                keys.put(key, data);
+                rownum = index;
+            }
+        }
+
+        /**
+         * 内容是否相同
+         *
+         * @param other
+         *            另一个工作表
+         * @return 所有的行都相同时返回true
+         */
+        boolean isSame(Sheet other)
+        {
+            if (rows.size() != other.rows.size())
+            {
+                return false;
+            }
+            for (int i = 0; i < rows.size(); i++)
+            {
+                if (!rows.get(i).isSame(other.rows.get(i)))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * 行数据
+     */
+    private static class RowData
+    {
+        /**
+         * 关键字
+         */
+        final String                    key;
+
+        /**
+         * 与上一行之间的空行数
+         */
+        final int                       gap;
+
+        /**
+         * 行高
+         */
+        final String                    height;
+
+        /**
+         * 列号对应的单元格
+         */
+        final Map<Integer, CellData>    cells;
+
+        /**
+         * 行的内容(行高和所有单元格)
+         */
+        final String                    content;
+
+        /**
+         * 内容哈希
+         */
+        final long                      hash;
+
+        RowData(String key, int gap, String height, Map<Integer, CellData> cells)
+        {
+            this.key = key;
+            this.gap = gap;
+            this.height = height;
+            this.cells = cells;
+
+            StringBuilder sb = new StringBuilder(height);
+            for (Map.Entry<Integer, CellData> entry : cells.entrySet())
+            {
+                sb.append('\n').append(entry.getKey()).append(':').append(entry.getValue().content);
+            }
+            content = sb.toString();
+            hash = WorkBookIndex.hash(WorkBookIndex.FNV_OFFSET, content);
+        }
+
+        /**
+         * 内容是否相同,先比较哈希
+         *
+         * @param other
+         *            另一行,可以为null
+         * @return 相同时返回true
+         */
+        boolean isSame(RowData other)
+        {
+            return (null != other) && (hash == other.hash) && content.equals(other.content);
+        }
+
+        /**
+         * 显示用的关键字,去掉区分重复关键字的序号
+         *
+         * @param key
+         *            关键字
+         * @return 显示用的关键字
+         */
+        static String getDisplayKey(String key)
+        {
+            int index = key.indexOf('\0');
+
+            return (index < 0) ? key : key.substring(0, index) + "#" + key.substring(index + 1);
+        }
+    }
+
+    /**
+     * 单元格数据,与格式(普通格式/紧凑格式)和样式编号无关
+     */
+    private static class CellData
+    {
+        /**
+         * 数据类型,没有数据时为null
+         */
+        private final String  _type;
+
+        /**
+         * 数据
+         */
+        private final String  _value;
+
+        /**
+         * 公式
+         */
+        private final String  _formula;
+
+        /**
+         * 样式,没有时为null
+         */
+        private final Element _style;
+
+        /**
+         * 比较用的内容(类型、公式、样式属性、数据)
+         */
+        final String          content;
+
+        CellData(Element cell, Map<Integer, Element> styles)
+        {
+            boolean compact = XmlType.CompactCell.equals(cell.getName());
+            Element data = compact ? cell : cell.getChild(XmlType.Data);
+            _type = (null == data) ? null : (compact ? XmlType.toType(cell.getAttributeValue("t")) : data
+                    .getAttributeValue("type"));
+            _value = (null == data) ? null : data.getText();
+            _formula = XmlType.getFormula(cell);
+            int style = XmlType.getStyle(cell);
+            _style = (style < 0) ? null : styles.get(Integer.valueOf(style));
+            content = _type + "\t" + _formula + "\t" + Palette.getKey(_style) + "\t" + _value;
+        }
+
+        /**
+         * 获取数据
+         *
+         * @return 数据,没有数据时为空字符串
+         */
+        String getValue()
+        {
+            return (null == _value) ? "" : _value;
+        }
+
+        /**
+         * 输出单元格
+         *
+         * @param compact
+         *            是否为紧凑格式
+         * @param palette
+         *            输出的样式表
+         * @return Cell/C元素
+         */
+        Element toXml(boolean compact, Palette palette)
+        {
+            int style = palette.getId(_style);
+            Element result = null;
+            if (compact)
+            {
+                result = new Element(XmlType.CompactCell);
+                String t = XmlType.toCompactType(_type);
+                if (null != t)
+                {
+                    result.setAttribute("t", t);
+                }
+                if (null != _formula)
+                {
+                    result.setAttribute(XmlType.CompactFormula, _formula);
+                }
+                if (style >= 0)
+                {
+                    result.setAttribute(XmlType.CompactStyle, Integer.toString(style));
+                }
+                if (null != _value)
+                {
+                    result.setText(_value);
+                }
+            }
+            else
+            {
+                result = new Element(XmlType.Cell);
+                if (style >= 0)
+                {
+                    result.setAttribute(XmlType.Style, Integer.toString(style));
+                }
+                if (null != _type)
+                {
+                    Element data = new Element(XmlType.Data);
+                    data.setAttribute("type", _type);
+                    if (null != _formula)
+                    {
+                        data.setAttribute(XmlType.Formula, _formula);
+                    }
+                    data.setText(_value);
+                    result.addContent(data);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * 两个单元格是否相同
+         *
+         * @param a
+         *            单元格,可以为null
+         * @param b
+         *            单元格,可以为null
+         * @return 都为null或者内容相同时返回true
+         */
+        static boolean isSame(CellData a, CellData b)
+        {
+            return (null == a) ? (null == b) : ((null != b) && a.content.equals(b.content));
+        }
+
+        /**
+         * 冲突报告中显示的值
+         *
+         * @param cell
+         *            单元格,可以为null
+         * @return 数据,没有单元格时返回null
+         */
+        static String getText(CellData cell)
+        {
+            return (null == cell) ? null : cell.getValue();
+        }
+    }
+
+    /**
+     * 输出的样式表<br/>
+     * 以本方的样式表为基础,对方的样式按属性查找,没有时添加新的编号
+     */
+    private static class Palette
+    {
+        /**
+         * 样式属性对应的编号
+         */
+        private final Map<String, Integer> _ids    = new HashMap<String, Integer>();
+
+        /**
+         * 输出的Style元素
+         */
+        private final List<Element>        _styles = new ArrayList<Element>();
+
+        /**
+         * 下一个编号
+         */
+        private int                        _next   = 0;
+
+        /**
+         * 是否有样式表
+         */
+        private boolean                    _used   = false;
+
+        Palette(Element styles)
+        {
+            if (null != styles)
+            {
+                _used = true;
+                for (Element style : styles.getChildren(XmlType.Style))
+                {
+                    int id = Integer.parseInt(style.getAttributeValue("id"));
+                    String key = getKey(style);
+                    if (!_ids.containsKey(key))
+                    {
+                        _ids.put(key, Integer.valueOf(id));
+                    }
+                    _styles.add(style.clone());
+                    _next = Math.max(_next, id + 1);
+                }
+            }
+        }
+
+        /**
+         * 获取样式的编号,样式表中没有时添加
+         *
+         * @param style
+         *            Style元素,为null时表示默认样式
+         * @return 编号,默认样式返回-1
+         */
+        int getId(Element style)
+        {
+            if (null == style)
+            {
+                return -1;
+            }
+
+            _used = true;
+            String key = getKey(style);
+            Integer result = _ids.get(key);
+            if (null == result)
+            {
+                result = Integer.valueOf(_next++);
+                _ids.put(key, result);
+                Element element = style.clone();
+                element.setAttribute("id", result.toString());
+                _styles.add(element);
+            }
+
+            return result.intValue();
+        }
+
+        /**
+         * 是否需要输出样式表
+         *
+         * @return 任意一方有样式时返回true
+         */
+        boolean isUsed()
+        {
+            return _used;
+        }
+
+        /**
+         * 输出样式表
+         *
+         * @return Styles元素
+         */
+        Element toXml()
+        {
+            Element result = new Element(XmlType.Styles);
+            for (Element style : _styles)
+            {
+                result.addContent(style.clone());
+            }
+
+            return result;
+        }
+
+        /**
+         * 样式的比较键
+         *
+         * @param style
+         *            Style元素,可以为null
+         * @return 除id之外的所有属性
+         */
+        static String getKey(Element style)
+        {
+            if (null == style)
+            {
+                return "";
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (Attribute attribute : style.getAttributes())
+            {
+                if (!"id".equals(attribute.getName()))
+                {
+                    sb.append(attribute.getName()).append('=').append(attribute.getValue()).append(';');
+                }
+            }
+
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,688 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * 基于XSSFReader和SAX的xlsx流式读取器<br/>
+ * 共享字符串使用只读的ReadOnlySharedStringsTable,工作表逐个以SAX方式解析并回调WorkBookHandler,
+ * 不会创建XSSFWorkbook,内存占用与工作表的行数无关。<br/>
+ * 输出结果与xls的转换结果一致(包括默认不输出每个工作表的最后一行,见setLastRow)
+ */
+public class XSSFEventReader
+{
+    /**
+     * 没有sheetFormatPr@defaultRowHeight时Excel使用的默认行高(单位为点)
+     */
+    private static final float         DEFAULT_HEIGHT = 15;
+
+    /**
+     * SAX解析器工厂
+     */
+    private static SAXParserFactory    _factory       = null;
+
+    /**
+     * 回调接口
+     */
+    private WorkBookHandler            _handler       = null;
+
+    /**
+     * 共享字符串表
+     */
+    private ReadOnlySharedStringsTable _sst           = null;
+
+    /**
+     * 仅包含工作表名称的空工作簿,解析共享公式时使用
+     */
+    private XSSFEvaluationWorkbook     _formulaBook   = null;
+
+    /**
+     * 是否输出每个工作表的最后一行
+     */
+    private boolean                    _lastRow       = false;
+
+    /**
+     * 构造方法
+     *
+     * @param handler
+     *            回调接口
+     */
+    public XSSFEventReader(WorkBookHandler handler)
+    {
+        _handler = handler;
+    }
+
+    /**
+     * 设置是否输出每个工作表的最后一行<br/>
+     * 默认不输出,与xml的转换结果一致;创建配置表等需要所有数据时设置为true
+     *
+     * @param lastRow
+     *            输出最后一行时为true
+     */
+    public void setLastRow(boolean lastRow)
+    {
+        _lastRow = lastRow;
+    }
+
+    public boolean isLastRow()
+    {
+        return _lastRow;
+    }
+
+    /**
+     * SAX解析器工厂
+     *
+     * @return SAX解析器工厂
+     */
+    protected static synchronized SAXParserFactory getFactory()
+    {
+        if (null == _factory)
+        {
+            _factory = SAXParserFactory.newInstance();
+            _factory.setNamespaceAware(true);
+        }
+
+        return _factory;
+    }
+
+    /**
+     * 读取xlsx文件
+     *
+     * @param fileName
+     *            xlsx文件名
+     * @throws IOException
+     */
+    public void process(String fileName) throws IOException
+    {
+        OPCPackage pkg = null;
+        try
+        {
+            pkg = OPCPackage.open(fileName, PackageAccess.READ);
+            process(pkg);
+        }
+        catch (OpenXML4JException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        finally
+        {
+            if (null != pkg)
+            {
+                // 只读打开,不需要保存
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * 读取xlsx文件
+     *
+     * @param pkg
+     *            xlsx文件包
+     * @throws IOException
+     * @throws OpenXML4JException
+     */
+    public void process(OPCPackage pkg) throws IOException, OpenXML4JException
+    {
+        try
+        {
+            _sst = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            SAXParser parser = getFactory().newSAXParser();
+
+            _handler.startWorkBook();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            int sheetIndex = 0;
+            while (sheets.hasNext())
+            {
+                InputStream is = sheets.next();
+                try
+                {
+                    _handler.startSheet(sheets.getSheetName());
+                    parser.parse(is, new SheetHandler(reader, sheetIndex));
+                    _handler.endSheet();
+                }
+                finally
+                {
+                    is.close();
+                }
+                sheetIndex++;
+            }
+            _handler.endWorkBook();
+        }
+        catch (SAXException ex)
+        {
+            if (ex.getException() instanceof IOException)
+            {
+                throw (IOException) ex.getException();
+            }
+
+            throw new IOException(ex.getMessage(), ex);
+        }
+        catch (ParserConfigurationException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 获取用于解析共享公式的工作簿
+     *
+     * @param reader
+     *            xlsx读取器
+     * @return 仅包含工作表名称的工作簿
+     * @throws IOException
+     */
+    private XSSFEvaluationWorkbook getFormulaBook(XSSFReader reader) throws IOException
+    {
+        if (null == _formulaBook)
+        {
+            List<String> names = new ArrayList<String>();
+            try
+            {
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (sheets.hasNext())
+                {
+                    sheets.next().close();
+                    names.add(sheets.getSheetName());
+                }
+            }
+            catch (OpenXML4JException ex)
+            {
+                throw new IOException(ex.getMessage(), ex);
+            }
+
+            XSSFWorkbook wb = new XSSFWorkbook();
+            for (String name : names)
+            {
+                wb.createSheet(name);
+            }
+            _formulaBook = XSSFEvaluationWorkbook.create(wb);
+        }
+
+        return _formulaBook;
+    }
+
+    /**
+     * 读取中的单元格数据
+     */
+    private static class BufferedCell
+    {
+        static final Comparator<BufferedCell> COLUMN_ORDER = new Comparator<BufferedCell>()
+                                                           {
+                                                               public int compare(BufferedCell a, BufferedCell b)
+                                                               {
+                                                                   return a.column - b.column;
+                                                               }
+                                                           };
+
+        final int                             column;
+        final String                          formula;
+        final String                          type;
+        final String                          value;
+
+        BufferedCell(int column, String formula, String type, String value)
+        {
+            this.column = column;
+            this.formula = formula;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 读取中的行数据
+     */
+    private static class BufferedRow
+    {
+        final int                rownum;
+        final short              height;
+        final List<BufferedCell> cells = new ArrayList<BufferedCell>();
+
+        BufferedRow(int rownum, short height)
+        {
+            this.rownum = rownum;
+            this.height = height;
+        }
+    }
+
+    /**
+     * 共享公式的主公式
+     */
+    private static class MasterFormula
+    {
+        final int    rownum;
+        final int    column;
+        final String formula;
+
+        MasterFormula(int rownum, int column, String formula)
+        {
+            this.rownum = rownum;
+            this.column = column;
+            this.formula = formula;
+        }
+    }
+
+    /**
+     * 工作表的SAX解析器
+     */
+    private class SheetHandler extends DefaultHandler
+    {
+        /**
+         * xlsx读取器
+         */
+        private final XSSFReader                     _reader;
+
+        /**
+         * 工作表序号
+         */
+        private final int                            _sheetIndex;
+
+        /**
+         * 共享公式(si => 主公式)
+         */
+        private final HashMap<String, MasterFormula> _shared        = new HashMap<String, MasterFormula>();
+
+        /**
+         * 默认行高(单位为点)
+         */
+        private float                                _defaultHeight = DEFAULT_HEIGHT;
+
+        /**
+         * 正在读取的行
+         */
+        private BufferedRow                          _row           = null;
+
+        /**
+         * 已读取完毕但尚未输出的行<br/>
+         * 工作表的最后一行不会输出,因此需要延迟一行输出
+         */
+        private BufferedRow                          _pendingRow    = null;
+
+        /**
+         * 上一行的行号
+         */
+        private int                                  _lastRownum    = -1;
+
+        /**
+         * 当前单元格的列号
+         */
+        private int                                  _column        = -1;
+
+        /**
+         * 当前单元格的类型(t属性)
+         */
+        private String                               _cellType      = null;
+
+        /**
+         * 当前单元格的值
+         */
+        private StringBuilder                        _value         = new StringBuilder();
+
+        /**
+         * 当前单元格的公式,没有公式时为null
+         */
+        private StringBuilder                        _formula       = null;
+
+        /**
+         * 当前公式的类型(t属性)
+         */
+        private String                               _formulaType   = null;
+
+        /**
+         * 当前共享公式的序号(si属性)
+         */
+        private String                               _formulaIndex  = null;
+
+        /**
+         * 当前正在读取的文本,没有时为null
+         */
+        private StringBuilder                        _text          = null;
+
+        /**
+         * 是否在注音(rPh)中
+         */
+        private boolean                              _inPhonetic    = false;
+
+        SheetHandler(XSSFReader reader, int sheetIndex)
+        {
+            _reader = reader;
+            _sheetIndex = sheetIndex;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            if ("sheetFormatPr".equals(localName))
+            {
+                String height = attributes.getValue("defaultRowHeight");
+                if (null != height)
+                {
+                    _defaultHeight = Float.parseFloat(height);
+                }
+            }
+            else if ("row".equals(localName))
+            {
+                String r = attributes.getValue("r");
+                int rownum = (null == r) ? (_lastRownum + 1) : (Integer.parseInt(r) - 1);
+                String ht = attributes.getValue("ht");
+                float height = (null == ht) ? _defaultHeight : Float.parseFloat(ht);
+
+                _row = new BufferedRow(rownum, (short) (height * 20));
+                _lastRownum = rownum;
+                _column = -1;
+            }
+            else if ("c".equals(localName))
+            {
+                String r = attributes.getValue("r");
+                _column = (null == r) ? (_column + 1) : new CellReference(r).getCol();
+                _cellType = attributes.getValue("t");
+                _value.setLength(0);
+                _formula = null;
+                _formulaType = null;
+                _formulaIndex = null;
+            }
+            else if ("v".equals(localName))
+            {
+                _text = _value;
+            }
+            else if ("f".equals(localName))
+            {
+                _formula = new StringBuilder();
+                _formulaType = attributes.getValue("t");
+                _formulaIndex = attributes.getValue("si");
+                _text = _formula;
+            }
+            else if ("rPh".equals(localName))
+            {
+                _inPhonetic = true;
+            }
+            else if ("t".equals(localName) && (!_inPhonetic))
+            {
+                // inlineStr的文本
+                _text = _value;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            if ("v".equals(localName) || "f".equals(localName) || "t".equals(localName))
+            {
+                _text = null;
+            }
+            else if ("rPh".equals(localName))
+            {
+                _inPhonetic = false;
+            }
+            else if ("c".equals(localName))
+            {
+                try
+                {
+                    endCell();
+                }
+                catch (IOException ex)
+                {
+                    throw new SAXException(ex);
+                }
+            }
+            else if ("row".equals(localName))
+            {
+                pushRow(_row);
+                _row = null;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            if (null != _text)
+            {
+                _text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException
+        {
+            // 与ExcelReader.parseSheet2Xml一致,默认不输出最后一行
+            if (_lastRow && (null != _pendingRow))
+            {
+                try
+                {
+                    outputRow(_pendingRow);
+                }
+                catch (IOException ex)
+                {
+                    throw new SAXException(ex);
+                }
+            }
+            _pendingRow = null;
+        }
+
+        /**
+         * 单元格读取完毕,转换成与xls一致的类型和数据
+         *
+         * @throws IOException
+         */
+        private void endCell() throws IOException
+        {
+            String type = "String";
+            String value = _value.toString();
+            String formula = null;
+
+            if (null != _formula)
+            {
+                formula = getFormula();
+
+                // 缓存结果: t="str"为字符串,"d"为日期文本,"b"为布尔值,"e"为错误,否则为数值(没有缓存结果时与XSSFCell一致为0)
+                if ("b".equals(_cellType))
+                {
+                    type = "Boolean";
+                    value = "1".equals(value) ? "TRUE" : "FALSE";
+                }
+                else if ("e".equals(_cellType))
+                {
+                    type = "Error";
+                }
+                else if ((!"str".equals(_cellType)) && (!"d".equals(_cellType)))
+                {
+                    type = "Number";
+                    value = ExcelReader.formatNumber((0 == value.length()) ? 0 : Double.parseDouble(value));
+                }
+            }
+            else if ("s".equals(_cellType))
+            {
+                value = _sst.getEntryAt(Integer.parseInt(value));
+            }
+            else if ("b".equals(_cellType))
+            {
+                type = "Boolean";
+                value = "1".equals(value) ? "TRUE" : "FALSE";
+            }
+            else if (("inlineStr".equals(_cellType)) || ("str".equals(_cellType)) || ("e".equals(_cellType))
+                    || ("d".equals(_cellType)))
+            {
+                // t="d"为ISO 8601格式的日期,按文本输出
+                type = "String";
+            }
+            else if (0 != value.length())
+            {
+                type = "Number";
+                value = ExcelReader.formatNumber(Double.parseDouble(value));
+            }
+
+            _row.cells.add(new BufferedCell(_column, formula, type, value));
+        }
+
+        /**
+         * 获取当前单元格的公式文本,共享公式根据主公式偏移得到
+         *
+         * @return 公式文本
+         * @throws IOException
+         */
+        private String getFormula() throws IOException
+        {
+            String result = _formula.toString();
+
+            if ("shared".equals(_formulaType) && (null != _formulaIndex))
+            {
+                if (0 != result.length())
+                {
+                    _shared.put(_formulaIndex, new MasterFormula(_row.rownum, _column, result));
+                }
+                else
+                {
+                    MasterFormula master = _shared.get(_formulaIndex);
+                    if (null != master)
+                    {
+                        XSSFEvaluationWorkbook book = getFormulaBook(_reader);
+                        Ptg[] ptgs = FormulaParser.parse(master.formula, book, FormulaType.CELL, _sheetIndex);
+                        shift(ptgs, _row.rownum - master.rownum, _column - master.column);
+                        result = FormulaRenderer.toFormulaString(book, ptgs);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * 将公式中的相对引用偏移到当前单元格<br/>
+         * SharedFormula.convertSharedFormulas会丢失跨工作表引用的工作表名,因此在这里直接修改
+         *
+         * @param ptgs
+         *            主公式的解析结果
+         * @param rows
+         *            行偏移
+         * @param columns
+         *            列偏移
+         */
+        private void shift(Ptg[] ptgs, int rows, int columns)
+        {
+            for (Ptg ptg : ptgs)
+            {
+                if (ptg instanceof RefPtgBase)
+                {
+                    RefPtgBase ref = (RefPtgBase) ptg;
+                    if (ref.isRowRelative())
+                    {
+                        ref.setRow(ref.getRow() + rows);
+                    }
+                    if (ref.isColRelative())
+                    {
+                        ref.setColumn(ref.getColumn() + columns);
+                    }
+                }
+                else if (ptg instanceof AreaPtgBase)
+                {
+                    AreaPtgBase area = (AreaPtgBase) ptg;
+                    if (area.isFirstRowRelative())
+                    {
+                        area.setFirstRow(area.getFirstRow() + rows);
+                    }
+                    if (area.isLastRowRelative())
+                    {
+                        area.setLastRow(area.getLastRow() + rows);
+                    }
+                    if (area.isFirstColRelative())
+                    {
+                        area.setFirstColumn(area.getFirstColumn() + columns);
+                    }
+                    if (area.isLastColRelative())
+                    {
+                        area.setLastColumn(area.getLastColumn() + columns);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 将读取完毕的行放入等待队列,同时输出上一行
+         *
+         * @param row
+         *            读取完毕的行
+         * @throws SAXException
+         */
+        private void pushRow(BufferedRow row) throws SAXException
+        {
+            try
+            {
+                if (null != _pendingRow)
+                {
+                    outputRow(_pendingRow);
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new SAXException(ex);
+            }
+
+            _pendingRow = row;
+        }
+
+        /**
+         * 输出一行数据
+         *
+         * @param row
+         *            行数据
+         * @throws IOException
+         */
+        private void outputRow(BufferedRow row) throws IOException
+        {
+            Collections.sort(row.cells, BufferedCell.COLUMN_ORDER);
+
+            _handler.startRow(row.rownum, row.height);
+            for (BufferedCell cell : row.cells)
+            {
+                if (null != cell.formula)
+                {
+                    _handler.formulaCell(cell.column, cell.formula, cell.type, cell.value);
+                }
+                else
+                {
+                    _handler.cell(cell.column, cell.type, cell.value);
+                }
+            }
+            _handler.endRow();
+        }
+    }
+}
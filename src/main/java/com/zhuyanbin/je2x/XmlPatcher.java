@@ -0,0 +1,418 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+
+/**
+ * 按xml修补已有的xls工作簿<br/>
+ * 逐个比较工作表、行、单元格,只修改与xml不同的部分,xml中没有的内容(未导出的样式、
+ * 图片、打印设置等)保持不变。合并之后只改变了几行时,修补的代价与改变的行数相当,
+ * 而不需要重新创建整个工作簿。<br/>
+ * 比较的规则与ExcelReader导出的结果一致: 数值按数值比较,文本按xml的压缩空白比较;
+ * 只有xml带有样式表(Styles)时才比较样式;每个工作表的最后一行不会被导出(见ExcelReader.parseSheet2Xml),
+ * 因此也不会被删除
+ */
+public class XmlPatcher
+{
+    /**
+     * 默认单元格样式的编号
+     */
+    private static final short         DEFAULT_STYLE = 0x0F;
+
+    /**
+     * 修补的工作簿
+     */
+    private final HSSFWorkbook         _wb;
+
+    /**
+     * xml中的样式,xml没有样式表时为null
+     */
+    private final StyleCache           _styles;
+
+    /**
+     * xml中样式编号对应的属性
+     */
+    private final Map<Integer, String> _styleKeys    = new HashMap<Integer, String>();
+
+    /**
+     * 工作簿中样式编号对应的属性
+     */
+    private final Map<Short, String>   _cellKeys     = new HashMap<Short, String>();
+
+    /**
+     * 公式单元格,所有工作表修补完之后设置
+     */
+    private final FormulaCells         _formulas;
+
+    /**
+     * 单元格数据写入
+     */
+    private final CellValueWriter      _cells;
+
+    /**
+     * 读取单元格数据,与导出的结果一致
+     */
+    private final ExcelReader          _reader       = new ExcelReader();
+
+    /**
+     * 修改的次数
+     */
+    private int                        _changes      = 0;
+
+    /**
+     * 构造方法
+     * 
+     * @param wb
+     *            修补的工作簿
+     * @param styles
+     *            xml中的Styles元素,为null时不比较样式
+     */
+    public XmlPatcher(HSSFWorkbook wb, Element styles)
+    {
+        _wb = wb;
+        _styles = (null == styles) ? null : new StyleCache(wb, styles);
+        _formulas = new FormulaCells(wb);
+        _cells = new CellValueWriter(wb);
+        if (null != styles)
+        {
+            for (Element style : styles.getChildren(XmlType.Style))
+            {
+                _styleKeys.put(Integer.valueOf(style.getAttributeValue("id")), getStyleKey(style));
+            }
+        }
+    }
+
+    /**
+     * 获取修改的次数(工作表、行、单元格的增加、删除、修改)
+     * 
+     * @return 修改的次数,0表示工作簿与xml一致
+     */
+    public int getChanges()
+    {
+        return _changes;
+    }
+
+    /**
+     * 获取修补过程中修改的公式单元格,需要在所有工作表修补完之后调用apply
+     * 
+     * @return 公式单元格
+     */
+    public FormulaCells getFormulas()
+    {
+        return _formulas;
+    }
+
+    /**
+     * 修补所有工作表<br/>
+     * 按顺序对应,名字不同时优先移动同名的工作表,没有同名的工作表时改名;多余的工作表被删除
+     * 
+     * @param sheets
+     *            xml中的WorkSheet元素
+     */
+    public void patch(List<Element> sheets)
+    {
+        for (int i = 0; i < sheets.size(); i++)
+        {
+            Element xml = sheets.get(i);
+            String name = xml.getAttributeValue("name");
+            if (i >= _wb.getNumberOfSheets())
+            {
+                _wb.createSheet(name);
+                _changes++;
+            }
+            else if (!name.equals(_wb.getSheetName(i)))
+            {
+                int index = _wb.getSheetIndex(name);
+                if (index > i)
+                {
+                    _wb.setSheetOrder(name, i);
+                }
+                else
+                {
+                    _wb.setSheetName(i, name);
+                }
+                _changes++;
+            }
+            patchSheet(_wb.getSheetAt(i), xml);
+        }
+
+        while (_wb.getNumberOfSheets() > sheets.size())
+        {
+            _wb.removeSheetAt(_wb.getNumberOfSheets() - 1);
+            _changes++;
+        }
+    }
+
+    /**
+     * 修补工作表
+     * 
+     * @param sheet
+     *            工作表
+     * @param xml
+     *            WorkSheet元素
+     */
+    protected void patchSheet(HSSFSheet sheet, Element xml)
+    {
+        int limit = sheet.getLastRowNum();
+        BitSet rows = new BitSet();
+        int rownum = 0;
+        for (Element element : xml.getChildren())
+        {
+            rownum = XmlType.getIndex(element, rownum);
+            HSSFRow row = sheet.getRow(rownum);
+            if (null == row)
+            {
+                row = sheet.createRow(rownum);
+                _changes++;
+            }
+            patchRow(row, element);
+            rows.set(rownum++);
+        }
+
+        List<Row> removed = new ArrayList<Row>();
+        for (Iterator<Row> it = sheet.rowIterator(); it.hasNext();)
+        {
+            Row row = it.next();
+            if ((row.getRowNum() < limit) && !rows.get(row.getRowNum()))
+            {
+                removed.add(row);
+            }
+        }
+        for (Row row : removed)
+        {
+            sheet.removeRow(row);
+            _changes++;
+        }
+    }
+
+    /**
+     * 修补行
+     * 
+     * @param row
+     *            行
+     * @param xml
+     *            Row/R元素
+     */
+    protected void patchRow(HSSFRow row, Element xml)
+    {
+        String height = XmlType.CompactRow.equals(xml.getName()) ? xml.getAttributeValue("h") : xml
+                .getAttributeValue("Height");
+        short value = (null == height) ? XmlType.DefaultHeight : Short.parseShort(height);
+        if (value != row.getHeight())
+        {
+            row.setHeight(value);
+            _changes++;
+        }
+
+        BitSet columns = new BitSet();
+        int column = 0;
+        for (Element element : xml.getChildren())
+        {
+            column = XmlType.getIndex(element, column);
+            patchCell(row, column, element);
+            columns.set(column++);
+        }
+
+        List<Cell> removed = new ArrayList<Cell>();
+        for (Iterator<Cell> it = row.cellIterator(); it.hasNext();)
+        {
+            Cell cell = it.next();
+            if (!columns.get(cell.getColumnIndex()))
+            {
+                removed.add(cell);
+            }
+        }
+        for (Cell cell : removed)
+        {
+            row.removeCell(cell);
+            _changes++;
+        }
+    }
+
+    /**
+     * 修补单元格
+     * 
+     * @param row
+     *            行
+     * @param column
+     *            列号
+     * @param xml
+     *            Cell/C元素
+     */
+    protected void patchCell(HSSFRow row, int column, Element xml)
+    {
+        boolean compact = XmlType.CompactCell.equals(xml.getName());
+        Element data = compact ? xml : xml.getChild(XmlType.Data);
+        String type = null;
+        String value = null;
+        String formula = null;
+        if (null != data)
+        {
+            type = compact ? XmlType.toType(xml.getAttributeValue("t")) : data.getAttributeValue("type");
+            value = data.getText();
+            formula = data.getAttributeValue(compact ? XmlType.CompactFormula : XmlType.Formula);
+        }
+
+        boolean changed = false;
+        HSSFCell cell = row.getCell(column);
+        if (null == cell)
+        {
+            cell = row.createCell(column);
+            changed = true;
+        }
+        else if (!isSame(cell, type, value, formula))
+        {
+            if (HSSFCell.CELL_TYPE_FORMULA == cell.getCellType())
+            {
+                cell.setCellType(HSSFCell.CELL_TYPE_BLANK);
+            }
+            changed = true;
+        }
+        if (changed)
+        {
+            _cells.setValue(cell, type, value);
+            if (null != formula)
+            {
+                _formulas.add(cell, formula, type, value);
+            }
+        }
+
+        if (null != _styles)
+        {
+            int id = XmlType.getStyle(xml);
+            String key = (id < 0) ? "" : _styleKeys.get(Integer.valueOf(id));
+            if ((null != key) && !key.equals(getCellKey(cell.getCellStyle())))
+            {
+                cell.setCellStyle((id < 0) ? _wb.getCellStyleAt(DEFAULT_STYLE) : _styles.getStyle(id));
+                changed = true;
+            }
+        }
+
+        _changes += changed ? 1 : 0;
+    }
+
+    /**
+     * 单元格是否与xml中的数据一致
+     * 
+     * @param cell
+     *            单元格
+     * @param type
+     *            xml中的数据类型,为null时表示空单元格
+     * @param value
+     *            xml中的数据
+     * @param formula
+     *            xml中的公式
+     * @return 一致时返回true
+     */
+    private boolean isSame(HSSFCell cell, String type, String value, String formula)
+    {
+        if (null == type)
+        {
+            return HSSFCell.CELL_TYPE_BLANK == cell.getCellType();
+        }
+
+        Element current = _reader.getCellValue(cell);
+        String currentFormula = current.getAttributeValue(XmlType.Formula);
+        if ((null == formula) ? (null != currentFormula) : !formula.equals(currentFormula))
+        {
+            return false;
+        }
+
+        String currentType = current.getAttributeValue("type");
+        String text = (null == value) ? "" : value;
+        if (("Number".equals(type) || "Boolean".equals(type) || "Error".equals(type)) ? !type
+                .equals(currentType) : !"String".equals(currentType))
+        {
+            return false;
+        }
+        if ("Number".equals(type))
+        {
+            try
+            {
+                return DoubleFormatter.parse(text.trim()) == cell.getNumericCellValue();
+            }
+            catch (NumberFormatException ex)
+            {
+                return false;
+            }
+        }
+        if ("Boolean".equals(type))
+        {
+            return text.trim().equalsIgnoreCase(current.getText());
+        }
+
+        return Format.compact(text).equals(Format.compact(current.getText()));
+    }
+
+    /**
+     * xml中样式的比较键
+     * 
+     * @param style
+     *            Style元素
+     * @return 除id之外的所有属性
+     */
+    private static String getStyleKey(Element style)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Attribute attribute : style.getAttributes())
+        {
+            if (!"id".equals(attribute.getName()))
+            {
+                sb.append(attribute.getName()).append('=').append(attribute.getValue()).append(';');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * 工作簿中样式的比较键,与getStyleKey的格式一致
+     * 
+     * @param style
+     *            单元格样式
+     * @return 与默认样式不同的属性
+     */
+    private String getCellKey(CellStyle style)
+    {
+        Short index = Short.valueOf(style.getIndex());
+        String result = _cellKeys.get(index);
+        if (null == result)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, String> entry : StylePalette.getAttributes(style, _wb).entrySet())
+            {
+                sb.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+            }
+            result = sb.toString();
+            _cellKeys.put(index, result);
+        }
+
+        return result;
+    }
+}
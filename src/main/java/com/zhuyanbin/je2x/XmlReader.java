@@ -11,19 +11,39 @@
  */
 package com.zhuyanbin.je2x;
 
-import java.io.FileInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
@@ -36,6 +56,21 @@ import org.xml.sax.SAXException;
  */
 public class XmlReader
 {
+    /**
+     * 输出格式: Excel 97-2003(.xls)
+     */
+    public static final int FORMAT_XLS  = 0;
+
+    /**
+     * 输出格式: Excel 2007(.xlsx)
+     */
+    public static final int FORMAT_XLSX = 1;
+
+    /**
+     * 输出格式: 二进制的按列存储的配置表(.tbl),见TableFile
+     */
+    public static final int FORMAT_TABLE = 2;
+
     /**
      * 需要转换的xml文件地址
      */
@@ -51,6 +86,51 @@ public class XmlReader
      */
     private static HashMap<String, Integer> _typeMap  = null;
 
+    /**
+     * 是否使用流式(StAX)解析
+     */
+    private boolean _streaming = false;
+
+    /**
+     * 输出xlsx时内存中保留的行数,超出的行写入临时文件
+     */
+    private int _rowWindow = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+
+    /**
+     * 读取分文件输出的工作表时使用的线程池,为null时使用ForkJoinPool.commonPool()
+     */
+    private ExecutorService _executor = null;
+
+    /**
+     * 当前工作簿的单元格样式缓存
+     */
+    private StyleCache _styles = null;
+
+    /**
+     * 当前工作簿的公式单元格
+     */
+    private FormulaCells _formulas = null;
+
+    /**
+     * 当前工作簿的单元格数据写入
+     */
+    private CellValueWriter _cells = null;
+
+    /**
+     * 读取之后是否计算所有公式
+     */
+    private boolean _evaluateFormulas = false;
+
+    /**
+     * 输出文件的同步策略
+     */
+    private AtomicFile.Sync _sync = AtomicFile.Sync.NONE;
+
+    /**
+     * 输出配置表时使用的设置(关键列、表头行数)
+     */
+    private ConfigTable.Builder _tableBuilder = new ConfigTable.Builder();
+
     /**
      * 默认构造函数
      */
@@ -111,6 +191,146 @@ public class XmlReader
         return _fileName;
     }
 
+    /**
+     * 设置是否使用流式解析<br/>
+     * 流式解析使用XMLStreamReader,在读取xml的同时创建行和单元格,不会生成完整的Document
+     * 
+     * @param streaming
+     *            true为流式解析,false为普通解析
+     */
+    public void setStreaming(boolean streaming)
+    {
+        _streaming = streaming;
+    }
+
+    /**
+     * 是否使用流式解析
+     * 
+     * @return 流式解析返回true
+     */
+    public boolean isStreaming()
+    {
+        return _streaming;
+    }
+
+    /**
+     * 设置输出xlsx时内存中保留的行数
+     * 
+     * @param size
+     *            内存中保留的行数,超出的行写入临时文件
+     */
+    public void setRowAccessWindowSize(int size)
+    {
+        _rowWindow = size;
+    }
+
+    /**
+     * 获取输出xlsx时内存中保留的行数
+     * 
+     * @return 内存中保留的行数
+     */
+    public int getRowAccessWindowSize()
+    {
+        return _rowWindow;
+    }
+
+    /**
+     * 设置读取分文件输出(ExcelReader.outputSplit)的工作表时使用的线程池
+     * 
+     * @param executor
+     *            线程池,为null时使用ForkJoinPool.commonPool()
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        _executor = executor;
+    }
+
+    /**
+     * 获取读取分文件输出的工作表时使用的线程池
+     * 
+     * @return 线程池,没有设置时为null
+     */
+    public ExecutorService getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * 设置读取之后是否计算所有公式<br/>
+     * 默认不计算,公式单元格使用xml中的缓存结果
+     * 
+     * @param evaluateFormulas
+     *            true为读取之后计算所有公式
+     */
+    public void setEvaluateFormulas(boolean evaluateFormulas)
+    {
+        _evaluateFormulas = evaluateFormulas;
+    }
+
+    /**
+     * 读取之后是否计算所有公式
+     * 
+     * @return 计算所有公式返回true
+     */
+    public boolean isEvaluateFormulas()
+    {
+        return _evaluateFormulas;
+    }
+
+    /**
+     * 设置输出文件的同步策略<br/>
+     * 输出文件总是先写入临时文件再改名,同步策略决定改名之前是否将数据刷新到磁盘
+     * 
+     * @param sync
+     *            同步策略,默认为AtomicFile.Sync.NONE
+     */
+    public void setSync(AtomicFile.Sync sync)
+    {
+        _sync = sync;
+    }
+
+    /**
+     * 获取输出文件的同步策略
+     * 
+     * @return 同步策略
+     */
+    public AtomicFile.Sync getSync()
+    {
+        return _sync;
+    }
+
+    /**
+     * 设置输出配置表(FORMAT_TABLE)时使用的设置
+     * 
+     * @param tableBuilder
+     *            关键列、表头行数等设置
+     */
+    public void setTableBuilder(ConfigTable.Builder tableBuilder)
+    {
+        _tableBuilder = tableBuilder;
+    }
+
+    /**
+     * 获取输出配置表时使用的设置
+     * 
+     * @return 关键列、表头行数等设置
+     */
+    public ConfigTable.Builder getTableBuilder()
+    {
+        return _tableBuilder;
+    }
+
+    /**
+     * 计算工作簿中的所有公式<br/>
+     * 使用同一个FormulaEvaluator依次计算load时读取的公式单元格,公式之间引用的结果只计算一次
+     * 
+     * @return 计算的公式数量,没有读取工作簿时返回0
+     */
+    public int evaluateFormulas()
+    {
+        return (null == _formulas) ? 0 : _formulas.evaluate();
+    }
+
     /**
      * 转换字典
      * 
@@ -155,7 +375,8 @@ public class XmlReader
     }
 
     /**
-     * 获取单元格数据类型
+     * 获取单元格数据类型<br/>
+     * 支持普通格式(Cell/Data)和紧凑格式(C)
      * 
      * @param cell
      *            单元格数据
@@ -163,14 +384,31 @@ public class XmlReader
      */
     protected int getCellType(Element cell)
     {
-        int result = HSSFCell.CELL_TYPE_STRING;
+        return getType(getDataType(cell));
+    }
 
-        if (null != cell)
+    /**
+     * 获取单元格数据的type属性<br/>
+     * 支持普通格式(Cell/Data)和紧凑格式(C)
+     * 
+     * @param cell
+     *            单元格数据
+     * @return Data的type属性,没有数据时返回null
+     */
+    protected static String getDataType(Element cell)
+    {
+        String result = null;
+
+        if ((null != cell) && XmlType.CompactCell.equals(cell.getName()))
+        {
+            result = XmlType.toType(cell.getAttributeValue("t"));
+        }
+        else if (null != cell)
         {
             Element data = cell.getChild("Data");
             if (null != data)
             {
-                result = getType(data.getAttributeValue("type"));
+                result = data.getAttributeValue("type");
             }
         }
 
@@ -178,7 +416,8 @@ public class XmlReader
     }
 
     /**
-     * 获取单元格的具体数据
+     * 获取单元格的具体数据<br/>
+     * 支持普通格式(Cell/Data)和紧凑格式(C)
      * 
      * @param cell
      *            单元格数据
@@ -187,7 +426,11 @@ public class XmlReader
     protected String getCellValue(Element cell)
     {
         String result = null;
-        if (null != cell)
+        if ((null != cell) && XmlType.CompactCell.equals(cell.getName()))
+        {
+            result = cell.getText();
+        }
+        else if (null != cell)
         {
             Element data = cell.getChild("Data");
             if (null != data)
@@ -200,7 +443,8 @@ public class XmlReader
     }
 
     /**
-     * 解析xml数据单元格
+     * 解析xml数据单元格<br/>
+     * Number/Boolean创建数值/布尔单元格,字符串复用同一个工作簿中相同的RichTextString(见CellValueWriter)
      * 
      * @param column
      *            单元格列号
@@ -213,9 +457,40 @@ public class XmlReader
     {
         if ((null != cell) && (null != row))
         {
-            HSSFCell wbCell = row.createCell(column, getCellType(cell));
-            String value = getCellValue(cell);
-            wbCell.setCellValue(value);
+            // 紧凑格式的数据就是C本身,普通格式只查找一次Data
+            boolean compact = XmlType.CompactCell.equals(cell.getName());
+            Element data = compact ? cell : cell.getChild(XmlType.Data);
+            String type = null;
+            String value = null;
+            if (null != data)
+            {
+                type = compact ? XmlType.toType(cell.getAttributeValue("t")) : data.getAttributeValue("type");
+                value = data.getText();
+            }
+
+            HSSFCell wbCell = row.createCell(column);
+            if ((null == _cells) || (_cells.getWorkBook() != row.getSheet().getWorkbook()))
+            {
+                _cells = new CellValueWriter(row.getSheet().getWorkbook());
+            }
+            _cells.setValue(wbCell, type, value);
+
+            String formula = compact ? cell.getAttributeValue(XmlType.CompactFormula) : ((null == data) ? null
+                    : data.getAttributeValue(XmlType.Formula));
+            if ((null != formula) && (null != _formulas))
+            {
+                _formulas.add(wbCell, formula, type, value);
+            }
+
+            int style = XmlType.getStyle(cell);
+            if ((style >= 0) && (null != _styles))
+            {
+                CellStyle cellStyle = _styles.getStyle(style);
+                if (null != cellStyle)
+                {
+                    wbCell.setCellStyle(cellStyle);
+                }
+            }
         }
     }
 
@@ -234,12 +509,26 @@ public class XmlReader
         if ((null != row) && (null != sheet))
         {
             HSSFRow wbRow = sheet.createRow(rownum);
-            wbRow.setHeight(Short.parseShort(row.getAttributeValue("Height")));
+            if (XmlType.CompactRow.equals(row.getName()))
+            {
+                String height = row.getAttributeValue("h");
+                if (null != height)
+                {
+                    wbRow.setHeight(Short.parseShort(height));
+                }
+            }
+            else
+            {
+                wbRow.setHeight(Short.parseShort(row.getAttributeValue("Height")));
+            }
             List<Element> cells = row.getChildren();
             int len = cells.size();
+            int column = 0;
             for (int i = 0; i < len; i++)
             {
-                parseXml2Cell(i, cells.get(i), wbRow);
+                Element cell = cells.get(i);
+                column = XmlType.getIndex(cell, column);
+                parseXml2Cell(column++, cell, wbRow);
             }
         }
     }
@@ -260,15 +549,18 @@ public class XmlReader
             HSSFSheet result = wb.createSheet(sheet.getAttributeValue("name"));
             List<Element> rows = sheet.getChildren();
             int len = rows.size();
+            int rownum = 0;
             for (int i = 0; i < len; i++)
             {
-                parseXml2Row(i, rows.get(i), result);
+                Element row = rows.get(i);
+                rownum = XmlType.getIndex(row, rownum);
+                parseXml2Row(rownum++, row, result);
             }
         }
     }
 
     /**
-     * 解析实现方法
+     * 解析实现方法,.gz/.zz压缩的xml文件自动解压
      * 
      * @throws FileNotFoundException
      * @throws ParserConfigurationException
@@ -278,54 +570,454 @@ public class XmlReader
     public void load() throws FileNotFoundException, JDOMException, IOException, IllegalStateException
     {
         setWorkBook(null);
+        _styles = null;
+        _formulas = null;
+        List<File> sheetFiles = getSheetFiles(getXmlFile());
+        if (null != sheetFiles)
+        {
+            loadSplit(sheetFiles);
+            return;
+        }
+
+        if (isStreaming())
+        {
+            loadStreaming();
+            return;
+        }
+
+        InputStream is = AtomicFile.openInput(Paths.get(getXmlFile()));
+        try
+        {
+            parse(is);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * 从输入流解析xml数据<br/>
+     * 不支持ExcelReader.outputSplit输出的索引文件,压缩数据自动解压。输入流由调用者负责关闭,
+     * 读取完毕后没有对应的xml文件,因此之后不能输出xlsx格式
+     * 
+     * @param is
+     *            xml数据
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public void load(InputStream is) throws JDOMException, IOException
+    {
+        setXmlFile(null);
+        setWorkBook(null);
+        _styles = null;
+        _formulas = null;
+        InputStream xml = AtomicFile.Compression.unwrap(new BufferedInputStream(is, AtomicFile.BUFFER_SIZE));
+        if (isStreaming())
+        {
+            parseStreaming(xml);
+        }
+        else
+        {
+            parse(xml);
+        }
+    }
+
+    /**
+     * 从通道解析xml数据,通道由调用者负责关闭
+     * 
+     * @param channel
+     *            xml数据
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public void load(ReadableByteChannel channel) throws JDOMException, IOException
+    {
+        load(Channels.newInputStream(channel));
+    }
+
+    /**
+     * 解析xml文件
+     * 
+     * @param file
+     *            要解析的xml文件
+     * @throws FileNotFoundException
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public void load(Path file) throws FileNotFoundException, JDOMException, IOException
+    {
+        load(file.toString());
+    }
+
+    /**
+     * 使用SAXBuilder解析xml数据
+     * 
+     * @param is
+     *            xml数据
+     * @throws JDOMException
+     * @throws IOException
+     */
+    private void parse(InputStream is) throws JDOMException, IOException
+    {
         SAXBuilder sb = new SAXBuilder();
-        FileInputStream fis = new FileInputStream(getXmlFile());
+        Document doc = sb.build(is);
+        Element root = checkConflicts(doc.getRootElement());
+        HSSFWorkbook wb = new HSSFWorkbook();
+        _styles = new StyleCache(wb, root.getChild(XmlType.Styles));
+        _formulas = new FormulaCells(wb);
+        List<Element> sheets = root.getChildren(XmlType.WorkSheet);
+        for (Element sheet :sheets)
+        {
+            parseXml2WorkSheet(sheet, wb);
+        }
+
+        finishWorkBook(wb);
+    }
+
+    /**
+     * 流式解析实现方法
+     * 
+     * @throws FileNotFoundException
+     * @throws JDOMException
+     * @throws IOException
+     */
+    protected void loadStreaming() throws FileNotFoundException, JDOMException, IOException
+    {
+        InputStream is = AtomicFile.openInput(Paths.get(getXmlFile()));
+        try
+        {
+            parseStreaming(is);
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * 使用XmlWorkBookParser流式解析xml数据
+     * 
+     * @param is
+     *            xml数据
+     * @throws JDOMException
+     */
+    private void parseStreaming(InputStream is) throws JDOMException
+    {
         try
         {
-            Document doc = sb.build(fis);
-            Element root = doc.getRootElement();
             HSSFWorkbook wb = new HSSFWorkbook();
-            List<Element> sheets = root.getChildren();
-            for (Element sheet :sheets)
+            XmlWorkBookParser parser = new XmlWorkBookParser(wb);
+            parser.parse(is);
+            _formulas = parser.getFormulas();
+            finishWorkBook(wb);
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new JDOMException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 按xml修补已有的xls文件<br/>
+     * 读取excelFile,只修改与xml不同的工作表、行、单元格(见XmlPatcher),
+     * 之后可以用output保存(可以直接覆盖excelFile)。支持分文件输出的索引文件
+     * 
+     * @param excelFile
+     *            已有的xls文件
+     * @return 修改的次数,0表示xls文件与xml一致
+     * @throws FileNotFoundException
+     * @throws JDOMException
+     * @throws IOException
+     */
+    public int patch(String excelFile) throws FileNotFoundException, JDOMException, IOException
+    {
+        setWorkBook(null);
+        _styles = null;
+        _formulas = null;
+
+        HSSFWorkbook wb = null;
+        InputStream is = new BufferedInputStream(Files.newInputStream(Paths.get(excelFile)), AtomicFile.BUFFER_SIZE);
+        try
+        {
+            wb = new HSSFWorkbook(is);
+        }
+        finally
+        {
+            is.close();
+        }
+
+        Element styles = null;
+        List<Element> sheets = new ArrayList<Element>();
+        List<File> sheetFiles = getSheetFiles(getXmlFile());
+        if (null != sheetFiles)
+        {
+            styles = getStyles(getXmlFile());
+            for (File file : sheetFiles)
             {
-                parseXml2WorkSheet(sheet, wb);
+                sheets.add(readRoot(file));
             }
+        }
+        else
+        {
+            Element root = readRoot(new File(getXmlFile()));
+            styles = root.getChild(XmlType.Styles);
+            sheets.addAll(root.getChildren(XmlType.WorkSheet));
+        }
+
+        XmlPatcher patcher = new XmlPatcher(wb, styles);
+        patcher.patch(sheets);
+        _formulas = patcher.getFormulas();
+        finishWorkBook(wb);
+
+        return patcher.getChanges();
+    }
 
-            setWorkBook(wb);
+    /**
+     * 读取完毕,设置公式(需要时计算所有公式)之后保存工作簿
+     * 
+     * @param wb
+     *            读取的工作簿
+     */
+    private void finishWorkBook(HSSFWorkbook wb)
+    {
+        _formulas.apply();
+        if (isEvaluateFormulas())
+        {
+            _formulas.evaluate();
         }
-        catch (JDOMException ex)
+        setWorkBook(wb);
+    }
+
+    /**
+     * 获取分文件输出的工作表文件<br/>
+     * 只读取到第一个工作表的开始标签(跳过样式表),工作表带有src属性时为ExcelReader.outputSplit输出的索引文件
+     * 
+     * @param fileName
+     *            xml文件名
+     * @return 按顺序排列的工作表文件,不是索引文件时返回null
+     * @throws FileNotFoundException
+     * @throws JDOMException
+     * @throws IOException
+     */
+    protected static List<File> getSheetFiles(String fileName) throws FileNotFoundException, JDOMException,
+            IOException
+    {
+        boolean split = false;
+        InputStream is = AtomicFile.openInput(Paths.get(fileName));
+        try
         {
-            if (null != fis)
+            XMLStreamReader reader = XmlWorkBookParser.getFactory().createXMLStreamReader(is);
+            try
             {
-                fis.close();
-                fis = null;
+                int depth = 0;
+                boolean found = false;
+                while (reader.hasNext() && !found)
+                {
+                    int event = reader.next();
+                    if (XMLStreamConstants.START_ELEMENT == event)
+                    {
+                        depth++;
+                        found = (2 == depth) && XmlType.WorkSheet.equals(reader.getLocalName());
+                        split = found && (null != reader.getAttributeValue(null, "src"));
+                    }
+                    else if (XMLStreamConstants.END_ELEMENT == event)
+                    {
+                        depth--;
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
             }
-            throw ex;
         }
-        catch (IOException ex)
+        catch (XMLStreamException ex)
+        {
+            throw new JDOMException(ex.getMessage(), ex);
+        }
+        finally
+        {
+            is.close();
+        }
+
+        if (!split)
         {
-            if (null != fis)
+            return null;
+        }
+
+        List<File> result = new ArrayList<File>();
+        File parent = new File(fileName).getAbsoluteFile().getParentFile();
+        Element root = readRoot(new File(fileName));
+        for (Element sheet : root.getChildren(XmlType.WorkSheet))
+        {
+            result.add(new File(parent, sheet.getAttributeValue("src")));
+        }
+
+        return result;
+    }
+
+    /**
+     * 读取分文件输出的xml<br/>
+     * 流式解析时依次解析各个工作表文件;否则在线程池中同时解析所有的工作表文件,
+     * 再按照顺序写入工作簿
+     * 
+     * @param sheetFiles
+     *            工作表文件
+     * @throws FileNotFoundException
+     * @throws JDOMException
+     * @throws IOException
+     */
+    protected void loadSplit(List<File> sheetFiles) throws FileNotFoundException, JDOMException, IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        Element styles = getStyles(getXmlFile());
+        if (isStreaming())
+        {
+            XmlWorkBookParser parser = new XmlWorkBookParser(wb);
+            parser.setStyles(styles);
+            parseSheetFiles(sheetFiles, parser);
+            _formulas = parser.getFormulas();
+            finishWorkBook(wb);
+            return;
+        }
+
+        _styles = new StyleCache(wb, styles);
+        _formulas = new FormulaCells(wb);
+        ExecutorService executor = (null == getExecutor()) ? ForkJoinPool.commonPool() : getExecutor();
+        List<Future<Element>> sheets = new ArrayList<Future<Element>>();
+        for (final File file : sheetFiles)
+        {
+            sheets.add(executor.submit(new Callable<Element>()
             {
-                fis.close();
-                fis = null;
-            }
-            throw ex;
+                public Element call() throws JDOMException, IOException
+                {
+                    return readRoot(file);
+                }
+            }));
         }
-        catch (IllegalStateException ex)
+
+        for (Future<Element> future : sheets)
         {
-            if (null != fis)
+            try
+            {
+                parseXml2WorkSheet(future.get(), wb);
+            }
+            catch (InterruptedException ex)
             {
-                fis.close();
-                fis = null;
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
             }
-            throw ex;
+            catch (ExecutionException ex)
+            {
+                Throwable cause = ex.getCause();
+                if (cause instanceof JDOMException)
+                {
+                    throw (JDOMException) cause;
+                }
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        finishWorkBook(wb);
+    }
+
+    /**
+     * 读取xml文件的根元素,压缩文件自动解压
+     * 
+     * @param file
+     *            xml文件
+     * @return 根元素
+     * @throws JDOMException
+     * @throws IOException
+     */
+    private static Element readRoot(File file) throws JDOMException, IOException
+    {
+        InputStream is = AtomicFile.openInput(file.toPath());
+        try
+        {
+            return checkConflicts(new SAXBuilder().build(is).getRootElement());
         }
+        finally
+        {
+            is.close();
+        }
+    }
 
-        if (null != fis)
+    /**
+     * 检查WorkBookMerger合并时留下的冲突记录,有没有解决的冲突时拒绝读取
+     * 
+     * @param root
+     *            根元素
+     * @return root
+     * @throws JDOMException
+     *             含有Conflicts元素
+     */
+    private static Element checkConflicts(Element root) throws JDOMException
+    {
+        if (null != root.getChild(XmlType.Conflicts))
         {
-            fis.close();
-            fis = null;
+            throw new JDOMException("unresolved merge conflicts, remove the " + XmlType.Conflicts
+                    + " element after resolving them");
         }
+
+        return root;
+    }
+
+    /**
+     * 读取分文件输出的索引文件中的样式表
+     * 
+     * @param fileName
+     *            索引文件名
+     * @return Styles元素,没有样式表时返回null
+     * @throws JDOMException
+     * @throws IOException
+     */
+    private static Element getStyles(String fileName) throws JDOMException, IOException
+    {
+        return readRoot(new File(fileName)).getChild(XmlType.Styles);
+    }
+
+    /**
+     * 依次流式解析工作表文件并写入工作簿,全部解析完之后设置公式
+     * 
+     * @param sheetFiles
+     *            工作表文件
+     * @param parser
+     *            流式解析器
+     * @throws FileNotFoundException
+     * @throws IOException
+     * @throws JDOMException
+     */
+    private static void parseSheetFiles(List<File> sheetFiles, XmlWorkBookParser parser)
+            throws FileNotFoundException, IOException, JDOMException
+    {
+        for (File file : sheetFiles)
+        {
+            InputStream is = AtomicFile.openInput(file.toPath());
+            try
+            {
+                parser.parseSheet(is);
+            }
+            catch (XMLStreamException ex)
+            {
+                throw new JDOMException(ex.getMessage(), ex);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        parser.getFormulas().apply();
     }
 
     /**
@@ -341,7 +1033,30 @@ public class XmlReader
     }
 
     /**
-     * 要保存的Excel文件名
+     * 根据文件扩展名获取输出格式
+     * 
+     * @param fileName
+     *            Excel文件名
+     * @return 扩展名为.xlsx(或.xlsx.gz等)时返回FORMAT_XLSX,为.tbl时返回FORMAT_TABLE,否则返回FORMAT_XLS
+     */
+    protected static int getFormat(String fileName)
+    {
+        int result = FORMAT_XLS;
+
+        if ((null != fileName) && AtomicFile.Compression.strip(fileName).toLowerCase().endsWith(".xlsx"))
+        {
+            result = FORMAT_XLSX;
+        }
+        else if ((null != fileName) && fileName.toLowerCase().endsWith(TableFile.EXTENSION))
+        {
+            result = FORMAT_TABLE;
+        }
+
+        return result;
+    }
+
+    /**
+     * 要保存的Excel文件名,根据扩展名选择输出格式
      * 
      * @param fileName
      *            Excel文件名
@@ -350,35 +1065,250 @@ public class XmlReader
      */
     public boolean output(String fileName) throws IOException, FileNotFoundException
     {
-        boolean result = false;
+        return output(fileName, getFormat(fileName));
+    }
+
+    /**
+     * 要保存的Excel文件名
+     * 
+     * @param fileName
+     *            Excel文件名
+     * @param format
+     *            输出格式,FORMAT_XLS、FORMAT_XLSX或FORMAT_TABLE
+     * @return 成功返回true,失败返回false
+     * @throws IOException
+     */
+    public boolean output(String fileName, int format) throws IOException, FileNotFoundException
+    {
+        return output(Paths.get(fileName), format);
+    }
+
+    /**
+     * 要保存的Excel文件,根据扩展名选择输出格式
+     * 
+     * @param file
+     *            Excel文件
+     * @return 成功返回true,失败返回false
+     * @throws IOException
+     */
+    public boolean output(Path file) throws IOException
+    {
+        return output(file, getFormat(file.toString()));
+    }
+
+    /**
+     * 要保存的Excel文件<br/>
+     * 没有可以输出的数据时不创建文件。先写入临时文件再改名,中途失败不会留下不完整的文件
+     * 
+     * @param file
+     *            Excel文件
+     * @param format
+     *            输出格式,FORMAT_XLS、FORMAT_XLSX或FORMAT_TABLE
+     * @return 成功返回true,失败返回false
+     * @throws IOException
+     */
+    public boolean output(Path file, int format) throws IOException
+    {
+        if (!canOutput(format))
+        {
+            return false;
+        }
+
+        AtomicFile out = new AtomicFile(file, getSync());
+        try
+        {
+            boolean result = output(out.getOutputStream(), format);
+            out.commit();
+            return result;
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * 将Excel数据写入输出流,输出流由调用者负责关闭
+     * 
+     * @param os
+     *            输出流
+     * @param format
+     *            输出格式,FORMAT_XLS、FORMAT_XLSX或FORMAT_TABLE
+     * @return 成功返回true,失败返回false
+     * @throws IOException
+     */
+    public boolean output(OutputStream os, int format) throws IOException
+    {
+        if (!canOutput(format))
+        {
+            return false;
+        }
+
+        if (FORMAT_XLSX == format)
+        {
+            outputXlsx(os);
+        }
+        else if (FORMAT_TABLE == format)
+        {
+            TableFile.write(getTables(), os);
+        }
+        else
+        {
+            getWorkBook().write(os);
+        }
+
+        return true;
+    }
+
+    /**
+     * 将Excel数据写入通道,通道由调用者负责关闭
+     * 
+     * @param channel
+     *            通道
+     * @param format
+     *            输出格式,FORMAT_XLS、FORMAT_XLSX或FORMAT_TABLE
+     * @return 成功返回true,失败返回false
+     * @throws IOException
+     */
+    public boolean output(WritableByteChannel channel, int format) throws IOException
+    {
+        return output(Channels.newOutputStream(channel), format);
+    }
+
+    /**
+     * 是否有可以输出的数据
+     * 
+     * @param format
+     *            输出格式,FORMAT_XLS、FORMAT_XLSX或FORMAT_TABLE
+     * @return xlsx需要设置xml文件,xls需要先读取xml文件,配置表两者之一即可
+     */
+    protected boolean canOutput(int format)
+    {
+        if (FORMAT_XLSX == format)
+        {
+            return null != getXmlFile();
+        }
+        if (FORMAT_TABLE == format)
+        {
+            return (null != getXmlFile()) || (getWorkBook() instanceof HSSFWorkbook);
+        }
+
+        return getWorkBook() instanceof HSSFWorkbook;
+    }
 
+    /**
+     * 创建输出的配置表<br/>
+     * 已经读取时使用读取的工作簿,否则直接从xml文件(包括分文件输出的索引文件)创建,不创建工作簿
+     * 
+     * @return 表名对应的表
+     * @throws IOException
+     */
+    protected Map<String, ConfigTable> getTables() throws IOException
+    {
         if (getWorkBook() instanceof HSSFWorkbook)
         {
-            FileOutputStream fos = new FileOutputStream(fileName);
-            try
+            return getTableBuilder().build(getWorkBook());
+        }
+
+        ConfigTable.Builder builder = getTableBuilder();
+        process(builder);
+
+        return builder.getTables();
+    }
+
+    /**
+     * 将xml文件(包括分文件输出的索引文件)按工作表依次回调handler<br/>
+     * 分文件输出时每次只读取一个工作表文件
+     *
+     * @param handler
+     *            回调接口
+     * @throws IOException
+     */
+    void process(WorkBookHandler handler) throws IOException
+    {
+        try
+        {
+            handler.startWorkBook();
+            List<File> sheetFiles = getSheetFiles(getXmlFile());
+            if (null == sheetFiles)
             {
-                getWorkBook().write(fos);
+                for (Element sheet : readRoot(new File(getXmlFile())).getChildren(XmlType.WorkSheet))
+                {
+                    ElementHandler.process(sheet, handler);
+                }
             }
-            catch (IOException ex)
+            else
             {
-                if (null != fos)
+                for (File file : sheetFiles)
                 {
-                    fos.close();
-                    fos = null;
+                    ElementHandler.process(readRoot(file), handler);
                 }
-
-                throw ex;
             }
+            handler.endWorkBook();
+        }
+        catch (JDOMException ex)
+        {
+            throw new IOException(ex);
+        }
+    }
 
-            if (null != fos)
+    /**
+     * 将xml文件转换成xlsx文件<br/>
+     * 使用SXSSFWorkbook流式输出,xml文件直接由XMLStreamReader解析,内存中只保留
+     * getRowAccessWindowSize()行,其余的行写入临时文件,因此不受load()的影响,
+     * 行数也不受xls的65536行限制
+     * 
+     * @param fileName
+     *            xlsx文件名
+     * @return 成功返回true,没有设置xml文件时返回false
+     * @throws IOException
+     */
+    protected boolean outputXlsx(String fileName) throws IOException, FileNotFoundException
+    {
+        return output(fileName, FORMAT_XLSX);
+    }
+
+    /**
+     * 将xml文件转换成xlsx格式并写入输出流
+     * 
+     * @param os
+     *            输出流
+     * @throws IOException
+     */
+    protected void outputXlsx(OutputStream os) throws IOException
+    {
+        SXSSFWorkbook wb = new SXSSFWorkbook(getRowAccessWindowSize());
+        try
+        {
+            List<File> sheetFiles = getSheetFiles(getXmlFile());
+            if (null != sheetFiles)
             {
-                fos.close();
-                fos = null;
+                XmlWorkBookParser parser = new XmlWorkBookParser(wb);
+                parser.setStyles(getStyles(getXmlFile()));
+                parseSheetFiles(sheetFiles, parser);
             }
-
-            result = true;
+            else
+            {
+                InputStream is = AtomicFile.openInput(Paths.get(getXmlFile()));
+                try
+                {
+                    new XmlWorkBookParser(wb).parse(is);
+                }
+                finally
+                {
+                    is.close();
+                }
+            }
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        catch (JDOMException ex)
+        {
+            throw new IOException(ex.getMessage(), ex);
         }
 
-        return result;
+        wb.write(os);
     }
 }
@@ -0,0 +1,493 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.jdom2.Attribute;
+import org.jdom2.Element;
+import org.jdom2.output.EscapeStrategy;
+import org.jdom2.output.Format;
+
+/**
+ * 流式xml输出<br/>
+ * 在遍历工作簿的同时直接将WorkBook/WorkSheet/Row/Cell/Data写入输出流,
+ * 不创建中间的Element对象。输出格式(utf-8编码、4个空格缩进、压缩空白)与
+ * ExcelReader.output使用XMLOutputter输出的结果逐字节一致
+ */
+public class XmlStreamWriter implements WorkBookHandler
+{
+    /**
+     * 输出编码
+     */
+    public static final String  ENCODING   = "utf-8";
+
+    /**
+     * 缩进
+     */
+    private static final String INDENT     = "    ";
+
+    /**
+     * 换行符,与XMLOutputter默认一致
+     */
+    private static final String EOL        = "\r\n";
+
+    /**
+     * 底层输出流
+     */
+    private OutputStream        _os         = null;
+
+    /**
+     * 输出
+     */
+    private Writer              _writer     = null;
+
+    /**
+     * 转义策略,与XMLOutputter使用相同的编码
+     */
+    private EscapeStrategy      _escape     = null;
+
+    /**
+     * 当前元素的深度
+     */
+    private int                 _depth      = 0;
+
+    /**
+     * 当前元素的开始标签是否还未结束(即还没有子元素)
+     */
+    private boolean             _open       = false;
+
+    /**
+     * 是否输出紧凑格式
+     */
+    private boolean             _compact    = false;
+
+    /**
+     * 下一个连续的行号,行号不连续时输出行号属性
+     */
+    private int                 _nextRow    = 0;
+
+    /**
+     * 下一个连续的列号,列号不连续时输出列号属性
+     */
+    private int                 _nextColumn = 0;
+
+    /**
+     * 构造方法
+     *
+     * @param os
+     *            输出流,由调用者负责关闭
+     * @throws IOException
+     */
+    public XmlStreamWriter(OutputStream os) throws IOException
+    {
+        _os = os;
+        _writer = new BufferedWriter(new OutputStreamWriter(os, ENCODING), 64 * 1024);
+        _escape = getFormat().getEscapeStrategy();
+    }
+
+    /**
+     * 设置是否输出紧凑格式<br/>
+     * 紧凑格式为 &lt;R h="300"&gt;&lt;C t="n"&gt;42&lt;/C&gt;&lt;C&gt;名称&lt;/C&gt;&lt;/R&gt;,见XmlType.CompactRow和XmlType.CompactCell
+     *
+     * @param compact
+     *            true为紧凑格式,false为普通格式(Row/Cell/Data)
+     */
+    public void setCompact(boolean compact)
+    {
+        _compact = compact;
+    }
+
+    /**
+     * 是否输出紧凑格式
+     *
+     * @return 紧凑格式返回true
+     */
+    public boolean isCompact()
+    {
+        return _compact;
+    }
+
+    /**
+     * 与ExcelReader一致的输出格式
+     *
+     * @return 输出格式
+     */
+    public static Format getFormat()
+    {
+        Format result = Format.getCompactFormat();
+        result.setEncoding(ENCODING);
+        result.setIndent(INDENT);
+
+        return result;
+    }
+
+    /**
+     * 将一个元素(包括所有子元素)转换成xml片段<br/>
+     * 用于在多个线程中分别序列化各个工作表,再由writeFragment按顺序拼接
+     *
+     * @param element
+     *            元素
+     * @param depth
+     *            元素在文档中的深度,WorkSheet为1
+     * @return utf-8编码的xml片段
+     * @throws IOException
+     */
+    public static byte[] toFragment(Element element, int depth) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XmlStreamWriter writer = new XmlStreamWriter(bos);
+        writer._depth = depth;
+        writer.writeElement(element);
+        writer._writer.flush();
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * 将一个元素(包括所有子元素)作为根元素转换成完整的xml文档
+     *
+     * @param element
+     *            根元素
+     * @return utf-8编码的xml文档
+     * @throws IOException
+     */
+    public static byte[] toDocument(Element element) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XmlStreamWriter writer = new XmlStreamWriter(bos);
+        writer.writeDeclaration();
+        writer.writeElement(element);
+        writer._writer.flush();
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * 输出一个元素(包括所有子元素)<br/>
+     * 包含子元素的元素按子元素输出,否则按文本元素输出
+     *
+     * @param element
+     *            元素
+     * @throws IOException
+     */
+    public void writeElement(Element element) throws IOException
+    {
+        List<Element> children = element.getChildren();
+        if (children.isEmpty())
+        {
+            writeStartTag(element.getName(), element.getAttributes());
+            writeText(element.getName(), element.getText());
+        }
+        else
+        {
+            writeStartTag(element.getName(), element.getAttributes());
+            _open = true;
+            _depth++;
+            for (Element child : children)
+            {
+                writeElement(child);
+            }
+            endElement(element.getName());
+        }
+    }
+
+    /**
+     * 输出由toFragment生成的xml片段
+     *
+     * @param fragment
+     *            xml片段
+     * @throws IOException
+     */
+    public void writeFragment(byte[] fragment) throws IOException
+    {
+        closeStartTag();
+        _writer.flush();
+        _os.write(fragment);
+    }
+
+    public void startWorkBook() throws IOException
+    {
+        writeDeclaration();
+        startElement(XmlType.WorkBook, null, null);
+    }
+
+    public void startSheet(String name) throws IOException
+    {
+        startElement(XmlType.WorkSheet, "name", name);
+        _nextRow = 0;
+    }
+
+    public void startRow(int rownum, short height) throws IOException
+    {
+        if (isCompact())
+        {
+            writeStartTag(XmlType.CompactRow, (XmlType.DefaultHeight == height) ? null : "h", Short.toString(height));
+        }
+        else
+        {
+            writeStartTag(XmlType.Row, "Height", Short.toString(height));
+        }
+        writeIndex(rownum, _nextRow);
+        _open = true;
+        _depth++;
+
+        _nextRow = rownum + 1;
+        _nextColumn = 0;
+    }
+
+    public void cell(int column, String type, String value) throws IOException
+    {
+        formulaCell(column, null, type, value);
+    }
+
+    public void formulaCell(int column, String formula, String type, String value) throws IOException
+    {
+        if (isCompact())
+        {
+            String t = XmlType.toCompactType(type);
+            writeStartTag(XmlType.CompactCell, (null == t) ? null : "t", t);
+            if (null != formula)
+            {
+                writeAttribute(XmlType.CompactFormula, formula);
+            }
+            writeIndex(column, _nextColumn);
+            writeText(XmlType.CompactCell, value);
+        }
+        else
+        {
+            writeStartTag(XmlType.Cell, null, null);
+            writeIndex(column, _nextColumn);
+            _open = true;
+            _depth++;
+            writeStartTag(XmlType.Data, "type", type);
+            if (null != formula)
+            {
+                writeAttribute(XmlType.Formula, formula);
+            }
+            writeText(XmlType.Data, value);
+            endElement(XmlType.Cell);
+        }
+
+        _nextColumn = column + 1;
+    }
+
+    public void endRow() throws IOException
+    {
+        endElement(isCompact() ? XmlType.CompactRow : XmlType.Row);
+    }
+
+    public void endSheet() throws IOException
+    {
+        endElement(XmlType.WorkSheet);
+    }
+
+    public void endWorkBook() throws IOException
+    {
+        endElement(XmlType.WorkBook);
+        _writer.flush();
+    }
+
+    /**
+     * 输出xml声明
+     *
+     * @throws IOException
+     */
+    private void writeDeclaration() throws IOException
+    {
+        _writer.write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?>");
+        _writer.write(EOL);
+    }
+
+    /**
+     * 结束上一个元素未完成的开始标签
+     *
+     * @throws IOException
+     */
+    private void closeStartTag() throws IOException
+    {
+        if (_open)
+        {
+            _writer.write('>');
+            _writer.write(EOL);
+            _open = false;
+        }
+    }
+
+    /**
+     * 输出缩进
+     *
+     * @throws IOException
+     */
+    private void indent() throws IOException
+    {
+        for (int i = 0; i < _depth; i++)
+        {
+            _writer.write(INDENT);
+        }
+    }
+
+    /**
+     * 输出开始标签(不包含结尾的'>')
+     *
+     * @param name
+     *            元素名
+     * @param attrName
+     *            属性名,为null时不输出属性
+     * @param attrValue
+     *            属性值
+     * @throws IOException
+     */
+    private void writeStartTag(String name, String attrName, String attrValue) throws IOException
+    {
+        closeStartTag();
+        indent();
+        _writer.write('<');
+        _writer.write(name);
+        if (null != attrName)
+        {
+            writeAttribute(attrName, attrValue);
+        }
+    }
+
+    /**
+     * 输出开始标签(不包含结尾的'>')
+     *
+     * @param name
+     *            元素名
+     * @param attributes
+     *            属性
+     * @throws IOException
+     */
+    private void writeStartTag(String name, List<Attribute> attributes) throws IOException
+    {
+        closeStartTag();
+        indent();
+        _writer.write('<');
+        _writer.write(name);
+        for (Attribute attribute : attributes)
+        {
+            writeAttribute(attribute.getName(), attribute.getValue());
+        }
+    }
+
+    /**
+     * 输出属性
+     *
+     * @param name
+     *            属性名
+     * @param value
+     *            属性值
+     * @throws IOException
+     */
+    private void writeAttribute(String name, String value) throws IOException
+    {
+        _writer.write(' ');
+        _writer.write(name);
+        _writer.write("=\"");
+        _writer.write(Format.escapeAttribute(_escape, value));
+        _writer.write('"');
+    }
+
+    /**
+     * 行号/列号与上一行/上一个单元格不连续时输出行号/列号属性
+     *
+     * @param index
+     *            行号/列号
+     * @param next
+     *            上一行/上一个单元格的下一个行号/列号
+     * @throws IOException
+     */
+    private void writeIndex(int index, int next) throws IOException
+    {
+        if (index != next)
+        {
+            writeAttribute(isCompact() ? XmlType.CompactIndex : XmlType.Index, Integer.toString(index));
+        }
+    }
+
+    /**
+     * 开始一个包含子元素的元素
+     *
+     * @param name
+     *            元素名
+     * @param attrName
+     *            属性名,为null时不输出属性
+     * @param attrValue
+     *            属性值
+     * @throws IOException
+     */
+    private void startElement(String name, String attrName, String attrValue) throws IOException
+    {
+        writeStartTag(name, attrName, attrValue);
+        _open = true;
+        _depth++;
+    }
+
+    /**
+     * 结束一个包含子元素的元素,没有子元素时输出为空元素
+     *
+     * @param name
+     *            元素名
+     * @throws IOException
+     */
+    private void endElement(String name) throws IOException
+    {
+        _depth--;
+        if (_open)
+        {
+            _writer.write(" />");
+            _open = false;
+        }
+        else
+        {
+            indent();
+            _writer.write("</");
+            _writer.write(name);
+            _writer.write('>');
+        }
+        _writer.write(EOL);
+    }
+
+    /**
+     * 输出文本元素开始标签之后的部分,文本按照XMLOutputter的压缩格式处理
+     *
+     * @param name
+     *            元素名
+     * @param text
+     *            文本
+     * @throws IOException
+     */
+    private void writeText(String name, String text) throws IOException
+    {
+        String value = (null == text) ? "" : Format.compact(text);
+        if (0 == value.length())
+        {
+            _writer.write(" />");
+        }
+        else
+        {
+            _writer.write('>');
+            _writer.write(Format.escapeText(_escape, EOL, value));
+            _writer.write("</");
+            _writer.write(name);
+            _writer.write('>');
+        }
+        _writer.write(EOL);
+    }
+}
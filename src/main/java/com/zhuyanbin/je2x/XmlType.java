@@ -11,6 +11,8 @@
  */
 package com.zhuyanbin.je2x;
 
+import org.jdom2.Element;
+
 /**
  * XML 标签
  */
@@ -37,4 +39,174 @@ final public class XmlType
      * Excel中的Cell Data
      */
     public final static String Data      = "Data";
+
+    /**
+     * 单元格样式表,位于WorkBook中所有WorkSheet之前
+     */
+    public final static String Styles         = "Styles";
+
+    /**
+     * 单元格样式,id为样式编号
+     */
+    public final static String Style          = "Style";
+
+    /**
+     * 紧凑格式中单元格引用样式编号的属性(普通格式为Style属性)
+     */
+    public final static String CompactStyle   = "s";
+
+    /**
+     * 公式单元格中Data的公式属性,Data的type和文本为公式的缓存结果
+     */
+    public final static String Formula        = "formula";
+
+    /**
+     * 紧凑格式中C的公式属性,t属性和文本为公式的缓存结果
+     */
+    public final static String CompactFormula = "f";
+
+    /**
+     * 紧凑格式中的Row,行高为h属性,默认行高时省略
+     */
+    public final static String CompactRow     = "R";
+
+    /**
+     * 紧凑格式中的Cell,数据直接作为文本,类型为t属性(n: Number, b: Boolean),字符串省略t属性
+     */
+    public final static String CompactCell    = "C";
+
+    /**
+     * 行号/列号属性,只在与上一行/上一个单元格不连续时输出(从0开始)
+     */
+    public final static String Index          = "Index";
+
+    /**
+     * 紧凑格式中的行号/列号属性
+     */
+    public final static String CompactIndex   = "i";
+
+    /**
+     * WorkBookMerger记录未解决冲突的元素,位于WorkBook的第一个子元素,解决冲突后必须删除
+     */
+    public final static String Conflicts      = "Conflicts";
+
+    /**
+     * Conflicts中的一个冲突,属性为sheet、key、column(列号或sheet/row/height)以及base、ours、theirs的值
+     */
+    public final static String Conflict       = "Conflict";
+
+    /**
+     * 默认行高(1/20点),紧凑格式中不输出默认行高
+     */
+    public final static short  DefaultHeight  = 0xFF;
+
+    /**
+     * 获取行或单元格元素的行号/列号属性
+     * 
+     * @param element
+     *            Row/Cell(普通格式)或R/C(紧凑格式)
+     * @param next
+     *            没有行号/列号属性时的值(上一行/上一个单元格的下一个)
+     * @return 行号/列号
+     */
+    public static int getIndex(Element element, int next)
+    {
+        boolean compact = CompactRow.equals(element.getName()) || CompactCell.equals(element.getName());
+        String index = element.getAttributeValue(compact ? CompactIndex : Index);
+
+        return (null == index) ? next : Integer.parseInt(index);
+    }
+
+    /**
+     * 获取单元格元素引用的样式编号
+     * 
+     * @param cell
+     *            Cell(普通格式)或C(紧凑格式)
+     * @return 样式编号,没有样式时返回-1
+     */
+    public static int getStyle(Element cell)
+    {
+        String style = cell.getAttributeValue(CompactCell.equals(cell.getName()) ? CompactStyle : Style);
+
+        return (null == style) ? -1 : Integer.parseInt(style);
+    }
+
+    /**
+     * 获取单元格元素的公式
+     * 
+     * @param cell
+     *            Cell(普通格式)或C(紧凑格式)
+     * @return 公式,不是公式单元格时返回null
+     */
+    public static String getFormula(Element cell)
+    {
+        if (CompactCell.equals(cell.getName()))
+        {
+            return cell.getAttributeValue(CompactFormula);
+        }
+
+        Element data = cell.getChild(Data);
+
+        return (null == data) ? null : data.getAttributeValue(Formula);
+    }
+
+    /**
+     * 将Data的type转换成紧凑格式的t属性
+     * 
+     * @param type
+     *            Data的type属性
+     * @return t属性,字符串返回null
+     */
+    public static String toCompactType(String type)
+    {
+        String result = type;
+        if ("String".equals(type))
+        {
+            result = null;
+        }
+        else if ("Number".equals(type))
+        {
+            result = "n";
+        }
+        else if ("Boolean".equals(type))
+        {
+            result = "b";
+        }
+        else if ("Error".equals(type))
+        {
+            result = "e";
+        }
+
+        return result;
+    }
+
+    /**
+     * 将紧凑格式的t属性转换成Data的type
+     * 
+     * @param type
+     *            t属性,可以为null
+     * @return Data的type属性
+     */
+    public static String toType(String type)
+    {
+        String result = type;
+        if (null == type)
+        {
+            result = "String";
+        }
+        else if ("n".equals(type))
+        {
+            result = "Number";
+        }
+        else if ("b".equals(type))
+        {
+            result = "Boolean";
+        }
+        else if ("e".equals(type))
+        {
+            result = "Error";
+        }
+
+        return result;
+    }
 }
@@ -0,0 +1,467 @@
+/**
+ * 本类库是解决EXCEL与XML之间互相转换的问题
+ * 开发此类库是为了解决EXCEL在subversion等版本管理软件中合并版本时的问题，因EXCEL是二进制文件，
+ * 因此在合并项目时无法自动合并，因此建立中间件将excel转换成明文的文本模式，从而利于管理和维护。
+ *
+ * 本项目是开源项目，可任意修改和使用
+ *
+ * @author Yanbin Zhu<haker-haker@163.com>
+ * @date 2012-08-24 10:28:24
+ * @version 1.0.0
+ */
+package com.zhuyanbin.je2x;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.jdom2.Element;
+
+/**
+ * 基于StAX(XMLStreamReader)的xml流式解析器<br/>
+ * 在读取到Row/Cell的同时创建对应的行和单元格,读取过的xml数据随即丢弃,
+ * 解析过程中只在内存中保留工作簿本身。<br/>
+ * 解析规则与XmlReader.parseXml2WorkSheet/parseXml2Row/parseXml2Cell一致,
+ * 同样支持普通格式(Row/Cell/Data)和紧凑格式(R/C),以及不连续的行号/列号属性。
+ * 工作表之前的样式表(Styles)读取完之后用于设置单元格样式。<br/>
+ * 公式单元格设置公式和xml中的缓存结果,不进行计算。HSSF/XSSF工作簿的公式在整个工作簿解析完之后才设置
+ * (公式可能引用后面的工作表),SXSSF的行会写入临时文件,因此直接设置
+ */
+public class XmlWorkBookParser
+{
+    /**
+     * 元素深度: 工作簿
+     */
+    private static final int         DEPTH_WORKBOOK = 1;
+
+    /**
+     * 元素深度: 工作表
+     */
+    private static final int         DEPTH_SHEET    = 2;
+
+    /**
+     * 元素深度: 行
+     */
+    private static final int         DEPTH_ROW      = 3;
+
+    /**
+     * 元素深度: 单元格
+     */
+    private static final int         DEPTH_CELL     = 4;
+
+    /**
+     * 元素深度: 单元格数据
+     */
+    private static final int         DEPTH_DATA     = 5;
+
+    /**
+     * 解析器工厂
+     */
+    private static XMLInputFactory   _factory       = null;
+
+    /**
+     * 写入的工作簿
+     */
+    private Workbook                 _wb            = null;
+
+    /**
+     * 单元格样式缓存
+     */
+    private StyleCache               _styles        = null;
+
+    /**
+     * 公式单元格
+     */
+    private FormulaCells             _formulas      = null;
+
+    /**
+     * 单元格数据写入
+     */
+    private CellValueWriter          _cells         = null;
+
+    /**
+     * 构造方法
+     *
+     * @param wb
+     *            写入的工作簿
+     */
+    public XmlWorkBookParser(Workbook wb)
+    {
+        _wb = wb;
+        _formulas = new FormulaCells(wb);
+        _cells = new CellValueWriter(wb);
+    }
+
+    /**
+     * 获取写入的工作簿
+     *
+     * @return 工作簿
+     */
+    public Workbook getWorkBook()
+    {
+        return _wb;
+    }
+
+    /**
+     * 获取公式单元格<br/>
+     * 使用parseSheet解析多个工作表时,全部解析完之后需要调用getFormulas().apply()设置公式
+     *
+     * @return 公式单元格
+     */
+    public FormulaCells getFormulas()
+    {
+        return _formulas;
+    }
+
+    /**
+     * 设置单元格样式表<br/>
+     * 用于分文件输出的工作表文件,样式表保存在索引文件中
+     *
+     * @param styles
+     *            Styles元素,为null时没有样式
+     */
+    public void setStyles(Element styles)
+    {
+        _styles = new StyleCache(_wb, styles);
+    }
+
+    /**
+     * 解析器工厂,不解析外部实体
+     *
+     * @return 解析器工厂
+     */
+    protected static synchronized XMLInputFactory getFactory()
+    {
+        if (null == _factory)
+        {
+            _factory = XMLInputFactory.newInstance();
+            _factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+            _factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        }
+
+        return _factory;
+    }
+
+    /**
+     * 解析xml并写入工作簿
+     *
+     * @param is
+     *            xml输入流,由调用者负责关闭
+     * @throws XMLStreamException
+     */
+    public void parse(InputStream is) throws XMLStreamException
+    {
+        XMLStreamReader reader = getFactory().createXMLStreamReader(is);
+        try
+        {
+            parse(reader);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * 解析只包含一个工作表的xml(根元素为WorkSheet)并写入工作簿<br/>
+     * 用于读取ExcelReader.outputSplit输出的工作表文件
+     *
+     * @param is
+     *            xml输入流,由调用者负责关闭
+     * @throws XMLStreamException
+     */
+    public void parseSheet(InputStream is) throws XMLStreamException
+    {
+        XMLStreamReader reader = getFactory().createXMLStreamReader(is);
+        try
+        {
+            parse(reader, DEPTH_WORKBOOK);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * 解析实现方法
+     *
+     * @param reader
+     *            xml解析器
+     * @throws XMLStreamException
+     */
+    protected void parse(XMLStreamReader reader) throws XMLStreamException
+    {
+        parse(reader, 0);
+        _formulas.apply();
+    }
+
+    /**
+     * 解析实现方法
+     *
+     * @param reader
+     *            xml解析器
+     * @param base
+     *            根元素之上的深度,根元素为WorkBook时为0,为WorkSheet时为1
+     * @throws XMLStreamException
+     */
+    protected void parse(XMLStreamReader reader, int base) throws XMLStreamException
+    {
+        int depth = base;
+        Sheet sheet = null;
+        Row row = null;
+        int rownum = 0;
+        int column = 0;
+        String type = null;
+        StringBuilder text = null;
+        int textDepth = -1;
+        int style = -1;
+        String formula = null;
+        Element styles = null;
+
+        while (reader.hasNext())
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    switch (depth)
+                    {
+                        case DEPTH_SHEET:
+                            if (XmlType.Conflicts.equals(reader.getLocalName()))
+                            {
+                                // WorkBookMerger留下的没有解决的冲突
+                                throw new XMLStreamException("unresolved merge conflicts, remove the "
+                                        + XmlType.Conflicts + " element after resolving them", reader.getLocation());
+                            }
+                            if (XmlType.Styles.equals(reader.getLocalName()))
+                            {
+                                styles = new Element(XmlType.Styles);
+                                break;
+                            }
+                            sheet = _wb.createSheet(reader.getAttributeValue(null, "name"));
+                            rownum = 0;
+                            break;
+                        case DEPTH_ROW:
+                            if (null != styles)
+                            {
+                                styles.addContent(readStyle(reader));
+                                break;
+                            }
+                            boolean compact = XmlType.CompactRow.equals(reader.getLocalName());
+                            rownum = getIndex(reader, compact, rownum);
+                            row = sheet.createRow(rownum++);
+                            String height = reader.getAttributeValue(null, compact ? "h" : "Height");
+                            if (null != height)
+                            {
+                                row.setHeight(Short.parseShort(height));
+                            }
+                            column = 0;
+                            break;
+                        case DEPTH_CELL:
+                            type = null;
+                            text = null;
+                            boolean compactCell = XmlType.CompactCell.equals(reader.getLocalName());
+                            column = getIndex(reader, compactCell, column);
+                            style = getStyle(reader, compactCell);
+                            formula = null;
+                            if (compactCell)
+                            {
+                                formula = reader.getAttributeValue(null, XmlType.CompactFormula);
+                                type = XmlType.toType(reader.getAttributeValue(null, "t"));
+                                text = new StringBuilder();
+                                textDepth = depth;
+                            }
+                            break;
+                        case DEPTH_DATA:
+                            // 与Element.getChild("Data")一致,只读取第一个Data
+                            if ((null == text) && XmlType.Data.equals(reader.getLocalName()))
+                            {
+                                type = reader.getAttributeValue(null, "type");
+                                formula = reader.getAttributeValue(null, XmlType.Formula);
+                                text = new StringBuilder();
+                                textDepth = depth;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (textDepth == depth)
+                    {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    switch (depth)
+                    {
+                        case DEPTH_SHEET:
+                            if (null != styles)
+                            {
+                                setStyles(styles);
+                                styles = null;
+                            }
+                            sheet = null;
+                            break;
+                        case DEPTH_ROW:
+                            row = null;
+                            break;
+                        case DEPTH_CELL:
+                            Cell cell = createCell(row, column++, type, text);
+                            setStyle(cell, style);
+                            if (null != formula)
+                            {
+                                addFormula(cell, formula, type, text);
+                            }
+                            textDepth = -1;
+                            break;
+                        case DEPTH_DATA:
+                            if (textDepth == depth)
+                            {
+                                textDepth = -1;
+                            }
+                            break;
+                        case DEPTH_WORKBOOK:
+                        default:
+                            break;
+                    }
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 获取当前行或单元格的行号/列号属性
+     *
+     * @param reader
+     *            xml解析器,位于Row/Cell(或R/C)的开始标签
+     * @param compact
+     *            是否为紧凑格式
+     * @param next
+     *            没有行号/列号属性时的值
+     * @return 行号/列号
+     */
+    private static int getIndex(XMLStreamReader reader, boolean compact, int next)
+    {
+        String index = reader.getAttributeValue(null, compact ? XmlType.CompactIndex : XmlType.Index);
+
+        return (null == index) ? next : Integer.parseInt(index);
+    }
+
+    /**
+     * 获取当前单元格引用的样式编号
+     *
+     * @param reader
+     *            xml解析器,位于Cell(或C)的开始标签
+     * @param compact
+     *            是否为紧凑格式
+     * @return 样式编号,没有样式时返回-1
+     */
+    private static int getStyle(XMLStreamReader reader, boolean compact)
+    {
+        String style = reader.getAttributeValue(null, compact ? XmlType.CompactStyle : XmlType.Style);
+
+        return (null == style) ? -1 : Integer.parseInt(style);
+    }
+
+    /**
+     * 读取样式表中的一个样式
+     *
+     * @param reader
+     *            xml解析器,位于Style的开始标签
+     * @return Style元素
+     */
+    private static Element readStyle(XMLStreamReader reader)
+    {
+        Element result = new Element(XmlType.Style);
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+        {
+            result.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * 添加公式单元格
+     *
+     * @param cell
+     *            单元格
+     * @param formula
+     *            公式
+     * @param type
+     *            缓存结果的数据类型
+     * @param text
+     *            缓存结果
+     */
+    private void addFormula(Cell cell, String formula, String type, StringBuilder text)
+    {
+        String value = (null == text) ? null : text.toString();
+        if (_wb instanceof SXSSFWorkbook)
+        {
+            FormulaCells.setFormula(cell, formula, type, value);
+        }
+        else
+        {
+            _formulas.add(cell, formula, type, value);
+        }
+    }
+
+    /**
+     * 设置单元格样式
+     *
+     * @param cell
+     *            单元格
+     * @param style
+     *            样式编号,小于0时不设置
+     */
+    private void setStyle(Cell cell, int style)
+    {
+        if ((style >= 0) && (null != _styles))
+        {
+            CellStyle cellStyle = _styles.getStyle(style);
+            if (null != cellStyle)
+            {
+                cell.setCellStyle(cellStyle);
+            }
+        }
+    }
+
+    /**
+     * 创建单元格<br/>
+     * 与XmlReader.parseXml2Cell一致,Number/Boolean直接从字符解析成数值/布尔单元格,
+     * 字符串复用相同的RichTextString,没有数据时为空白单元格
+     *
+     * @param row
+     *            行
+     * @param column
+     *            列号
+     * @param type
+     *            xml中Data的type属性
+     * @param text
+     *            单元格数据,没有Data时为null
+     * @return 单元格
+     */
+    protected Cell createCell(Row row, int column, String type, StringBuilder text)
+    {
+        Cell result = row.createCell(column);
+        _cells.setValue(result, type, text);
+
+        return result;
+    }
+}
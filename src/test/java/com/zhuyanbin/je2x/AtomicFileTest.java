@@ -0,0 +1,156 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AtomicFileTest
+{
+    private final Path dir    = Paths.get("target/AtomicFileTest");
+
+    private final Path target = dir.resolve("test.txt");
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Files.createDirectories(dir);
+        DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+        try
+        {
+            for (Path file : files)
+            {
+                Files.delete(file);
+            }
+        }
+        finally
+        {
+            files.close();
+        }
+        Files.write(target, "old".getBytes("utf-8"));
+    }
+
+    @Test
+    public void testCommit() throws Exception
+    {
+        AtomicFile file = new AtomicFile(target, AtomicFile.Sync.FULL);
+        try
+        {
+            file.getOutputStream().write("new".getBytes("utf-8"));
+            Assert.assertEquals("old", new String(Files.readAllBytes(target), "utf-8"));
+            Assert.assertEquals(2, count());
+            file.commit();
+        }
+        finally
+        {
+            file.close();
+        }
+
+        Assert.assertEquals("new", new String(Files.readAllBytes(target), "utf-8"));
+        Assert.assertEquals(1, count());
+    }
+
+    @Test
+    public void testAbort() throws Exception
+    {
+        AtomicFile file = new AtomicFile(target);
+        try
+        {
+            file.getOutputStream().write("half".getBytes("utf-8"));
+        }
+        finally
+        {
+            file.close();
+        }
+
+        Assert.assertEquals("old", new String(Files.readAllBytes(target), "utf-8"));
+        Assert.assertEquals(1, count());
+    }
+
+    @Test
+    public void testCompression() throws Exception
+    {
+        byte[] data = "<WorkBook>压缩</WorkBook>".getBytes("utf-8");
+        String[] names = { "test.xml", "test.xml.gz", "test.xml.zz" };
+        for (String name : names)
+        {
+            Path file = dir.resolve(name);
+            AtomicFile.write(file, data, AtomicFile.Sync.NONE);
+            Assert.assertEquals(AtomicFile.Compression.NONE == AtomicFile.Compression.forFile(name),
+                    Arrays.equals(data, Files.readAllBytes(file)));
+            Assert.assertArrayEquals(data, read(file));
+        }
+        Assert.assertEquals("test.xml", AtomicFile.Compression.strip("test.xml.gz"));
+        Assert.assertEquals("test.xml", AtomicFile.Compression.strip("test.xml"));
+    }
+
+    @Test
+    public void testCompressedXml() throws Exception
+    {
+        ExcelReader excel = new ExcelReader("src/test/excel/test.xls");
+        excel.load();
+        Assert.assertTrue(excel.output(dir.resolve("test.xml")));
+        Assert.assertTrue(excel.output(dir.resolve("test.xml.gz")));
+        Assert.assertTrue(Files.size(dir.resolve("test.xml.gz")) < Files.size(dir.resolve("test.xml")));
+
+        XmlReader reader = new XmlReader();
+        reader.load(dir.resolve("test.xml"));
+        HSSFWorkbook expected = reader.getWorkBook();
+        reader.load(dir.resolve("test.xml.gz"));
+        WorkBookAssert.assertSameWorkBook(expected, reader.getWorkBook());
+        reader.setStreaming(true);
+        reader.load(dir.resolve("test.xml.gz"));
+        WorkBookAssert.assertSameWorkBook(expected, reader.getWorkBook());
+    }
+
+    private int count() throws Exception
+    {
+        int result = 0;
+        DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+        try
+        {
+            Iterator<Path> it = files.iterator();
+            while (it.hasNext())
+            {
+                it.next();
+                result++;
+            }
+        }
+        finally
+        {
+            files.close();
+        }
+
+        return result;
+    }
+
+    private static byte[] read(Path file) throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        InputStream is = AtomicFile.openInput(file);
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int length = 0;
+            while ((length = is.read(buffer)) > 0)
+            {
+                bos.write(buffer, 0, length);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        return bos.toByteArray();
+    }
+}
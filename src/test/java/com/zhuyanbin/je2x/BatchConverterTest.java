@@ -0,0 +1,171 @@
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchConverterTest
+{
+    private final Path     source = Paths.get("src/test/excel/test.xls");
+
+    private final Path     root   = Paths.get("target/BatchConverterTest");
+
+    private BatchConverter classRelection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        classRelection = new BatchConverter();
+        deleteTree(root);
+        Files.createDirectories(root.resolve("config/drop"));
+        Files.copy(source, root.resolve("item.xls"));
+        Files.copy(source, root.resolve("config/equip.xls"));
+        Files.copy(source, root.resolve("config/drop/drop.xls"));
+        Files.write(root.resolve("config/readme.txt"), "readme".getBytes("utf-8"));
+    }
+
+    private static void deleteTree(Path dir) throws IOException
+    {
+        if (Files.isDirectory(dir))
+        {
+            for (Path child : Files.newDirectoryStream(dir))
+            {
+                deleteTree(child);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testListFiles() throws IOException
+    {
+        Assert.assertEquals(3, classRelection.listFiles(root).size());
+
+        classRelection.addExclude("config/drop/**");
+        Assert.assertEquals(2, classRelection.listFiles(root).size());
+
+        classRelection.addInclude("equip*.xls");
+        List<Path> files = classRelection.listFiles(root);
+        Assert.assertEquals(1, files.size());
+        Assert.assertEquals(root.resolve("config/equip.xls"), files.get(0));
+    }
+
+    @Test
+    public void testGetTarget()
+    {
+        Path file = root.resolve("config/equip.xls");
+        Assert.assertEquals(root.resolve("config/equip.xml"), classRelection.getTarget(root, file));
+
+        classRelection.setOutputDir(Paths.get("target/out"));
+        Assert.assertEquals(Paths.get("target/out/config/equip.xml"), classRelection.getTarget(root, file));
+
+        classRelection.setDirection(BatchConverter.TO_EXCEL);
+        classRelection.setFormat(XmlReader.FORMAT_XLSX);
+        Assert.assertEquals(Paths.get("target/out/config/equip.xlsx"), classRelection.getTarget(root, file));
+    }
+
+    @Test
+    public void testTargetCollision() throws Exception
+    {
+        // item.xls和item.xlsx都输出到item.xml,都不转换
+        Files.copy(source, root.resolve("item.xlsx"));
+        BatchConverter.Summary summary = classRelection.run(root, null);
+        Assert.assertEquals(2, summary.getFailed());
+        Assert.assertEquals(2, summary.getFiles());
+        Assert.assertFalse(Files.exists(root.resolve("item.xml")));
+        Assert.assertTrue(Files.exists(root.resolve("config/equip.xml")));
+    }
+
+    @Test
+    public void testPermits()
+    {
+        classRelection.setMemory(64);
+        Assert.assertEquals(1, classRelection.getPermits(0));
+        Assert.assertEquals(16, classRelection.getPermits(1024 * 1024));
+        Assert.assertEquals(64, classRelection.getPermits(1024L * 1024 * 1024));
+    }
+
+    @Test
+    public void testRun() throws Exception
+    {
+        classRelection.setThreads(2);
+        classRelection.setMemory(1);
+        BatchConverter.Summary summary = classRelection.run(root, null);
+        Assert.assertEquals(3, summary.getFiles());
+        Assert.assertEquals(0, summary.getFailed());
+        Assert.assertEquals(3 * Files.size(source), summary.getBytes());
+        Assert.assertNotNull(summary.toString());
+
+        new ExcelReader(source.toString()).convert("target/BatchConverterTest.xml");
+        byte[] expected = Files.readAllBytes(Paths.get("target/BatchConverterTest.xml"));
+        Assert.assertArrayEquals(expected, Files.readAllBytes(root.resolve("config/drop/drop.xml")));
+
+        classRelection = new BatchConverter();
+        classRelection.parseArgs(new String[] { "-d", "excel", "-o", "target/BatchConverterTest/out", "-e", "drop*", root.toString() });
+        summary = classRelection.run(root, null);
+        Assert.assertEquals(2, summary.getFiles());
+        Assert.assertTrue(Files.exists(root.resolve("out/config/equip.xls")));
+    }
+
+    @Test
+    public void testIncremental() throws Exception
+    {
+        Path cache = root.resolve("cache");
+        classRelection.setCacheDir(cache);
+        classRelection.addExclude("cache/**");
+        classRelection.setThreads(1);
+
+        // 三个源文件内容相同,只有第一个需要转换
+        BatchConverter.Summary summary = classRelection.run(root, null);
+        Assert.assertEquals(3, summary.getFiles());
+        Assert.assertEquals(0, summary.getSkipped());
+        Assert.assertEquals(2, summary.getCached());
+        Assert.assertTrue(Files.exists(cache.resolve(ConvertManifest.MANIFEST)));
+
+        summary = classRelection.run(root, null);
+        Assert.assertEquals(0, summary.getFiles());
+        Assert.assertEquals(3, summary.getSkipped());
+
+        // 删除输出文件后从缓存中恢复
+        Path target = root.resolve("config/equip.xml");
+        byte[] expected = Files.readAllBytes(target);
+        Files.delete(target);
+        summary = classRelection.run(root, null);
+        Assert.assertEquals(1, summary.getFiles());
+        Assert.assertEquals(1, summary.getCached());
+        Assert.assertEquals(2, summary.getSkipped());
+        Assert.assertArrayEquals(expected, Files.readAllBytes(target));
+
+        // 源文件被删除后清单中不再保留
+        Files.delete(root.resolve("item.xls"));
+        classRelection.run(root, null);
+        ConvertManifest manifest = new ConvertManifest(cache);
+        manifest.load();
+        Assert.assertEquals(2, manifest.keys().size());
+        Assert.assertNotNull(manifest.get("config/drop/drop.xls"));
+    }
+
+    @Test
+    public void testParseArgs()
+    {
+        Assert.assertNull(classRelection.parseArgs(new String[0]));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-x", "1", "dir" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "dir", "-t" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-d", "Excel", "dir" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-f", "xslx", "dir" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-s", "compat", "dir" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-y", "yes", "dir" }));
+        Assert.assertNull(classRelection.parseArgs(new String[] { "-p", "true", "dir" }));
+        Assert.assertEquals(BatchConverter.TO_XML, classRelection.getDirection());
+        Assert.assertEquals(Paths.get("dir"), classRelection.parseArgs(new String[] { "-t", "3", "-m", "100", "-f", "xlsx", "dir" }));
+        Assert.assertEquals(3, classRelection.getThreads());
+        Assert.assertEquals(100, classRelection.getMemory());
+        Assert.assertEquals(XmlReader.FORMAT_XLSX, classRelection.getFormat());
+    }
+}
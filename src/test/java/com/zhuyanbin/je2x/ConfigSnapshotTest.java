@@ -0,0 +1,186 @@
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigSnapshotTest
+{
+    private final String xmlFile   = "src/test/xml/test.xml";
+
+    private final String excelFile = "src/test/excel/test.xls";
+
+    @Test
+    public void testReload() throws Exception
+    {
+        Path file = Paths.get("target/snapshot/test.xml");
+        Files.createDirectories(file.getParent());
+        Files.copy(Paths.get(xmlFile), file, StandardCopyOption.REPLACE_EXISTING);
+
+        ConfigSnapshot config = new ConfigSnapshot(file);
+        Assert.assertNull(config.get());
+        Assert.assertTrue(config.reload());
+        ConfigSnapshot.Snapshot first = config.get();
+        Assert.assertEquals(1, first.getVersion());
+        Element workbook = new SAXBuilder().build(xmlFile).getRootElement();
+        Assert.assertEquals(workbook.getChildren(XmlType.WorkSheet).size(), first.getTables().size());
+
+        // 文件没有改变时不重新读取,内容没有改变时不替换
+        Assert.assertFalse(config.refresh());
+        Assert.assertFalse(config.reload());
+        Assert.assertSame(first, config.get());
+
+        // 只修改第二个工作表
+        Element sheet = workbook.getChildren(XmlType.WorkSheet).get(1);
+        Element row = sheet.getChildren().get(sheet.getChildren().size() - 1);
+        Element data = row.getChildren().get(1).getChild(XmlType.Data);
+        data.setText(data.getText() + "-changed");
+        Files.write(file, XmlStreamWriter.toDocument(workbook));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+
+        Assert.assertTrue(config.refresh());
+        ConfigSnapshot.Snapshot second = config.get();
+        Assert.assertEquals(2, second.getVersion());
+        for (String name : first.getTables().keySet())
+        {
+            if (name.equals(sheet.getAttributeValue("name")))
+            {
+                Assert.assertNotSame(first.getTable(name), second.getTable(name));
+            }
+            else
+            {
+                // 没有改变的工作表沿用原来的表
+                Assert.assertSame(first.getTable(name), second.getTable(name));
+            }
+        }
+
+        // 原来的快照不受影响
+        String name = sheet.getAttributeValue("name");
+        int last = first.getTable(name).getRowCount() - 1;
+        Assert.assertFalse(first.getTable(name).getStringAt(last, 1).endsWith("-changed"));
+        Assert.assertTrue(second.getTable(name).getStringAt(last, 1).endsWith("-changed"));
+    }
+
+    @Test
+    public void testBackground() throws Exception
+    {
+        Path file = Paths.get("target/snapshot/background.xls");
+        Files.createDirectories(file.getParent());
+        Files.copy(Paths.get(excelFile), file, StandardCopyOption.REPLACE_EXISTING);
+
+        ConfigSnapshot config = new ConfigSnapshot(file);
+        try
+        {
+            config.start(10, TimeUnit.MILLISECONDS);
+            ConfigSnapshot.Snapshot first = config.get();
+            Assert.assertNotNull(first);
+            Assert.assertFalse(first.getTables().isEmpty());
+
+            // 文件被替换成不能读取的内容时保留原来的快照
+            Files.write(file, new byte[] { 1, 2, 3 });
+            waitFor(config, true);
+            Assert.assertSame(first, config.get());
+
+            // 内容相同的文件只更新修改时间,不替换快照
+            Files.copy(Paths.get(excelFile), file, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            waitFor(config, false);
+            Assert.assertSame(first, config.get());
+        }
+        finally
+        {
+            config.close();
+        }
+    }
+
+    @Test
+    public void testExcel() throws Exception
+    {
+        Path file = Paths.get("target/snapshot/rows.xls");
+        Files.createDirectories(file.getParent());
+        writeExcel(file, 3);
+
+        // 表头有两行,关键列为1
+        ConfigSnapshot config = new ConfigSnapshot(file, 1, 2);
+        Assert.assertTrue(config.reload());
+        ConfigSnapshot.Snapshot first = config.get();
+        ConfigTable table = first.getTable("items");
+        Assert.assertEquals(3, table.getRowCount());
+        Assert.assertEquals(1, table.getKeyColumn());
+        Assert.assertTrue(table.contains(103L));
+        Assert.assertEquals(2, first.getTable("fixed").getRowCount());
+
+        // 只改变items,fixed沿用原来的表
+        writeExcel(file, 4);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        Assert.assertTrue(config.refresh());
+        ConfigSnapshot.Snapshot second = config.get();
+        Assert.assertEquals(4, second.getTable("items").getRowCount());
+        Assert.assertTrue(second.getTable("items").contains(104L));
+        Assert.assertSame(first.getTable("fixed"), second.getTable("fixed"));
+    }
+
+    /**
+     * 两行表头,items有rows行数据,fixed总是两行数据
+     */
+    private static void writeExcel(Path file, int rows) throws IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        Sheet items = wb.createSheet("items");
+        Sheet fixed = wb.createSheet("fixed");
+        for (Sheet sheet : new Sheet[] { items, fixed })
+        {
+            Row row = sheet.createRow(0);
+            row.createCell(0).setCellValue("名称");
+            row.createCell(1).setCellValue("编号");
+            row = sheet.createRow(1);
+            row.createCell(0).setCellValue("name");
+            row.createCell(1).setCellValue("id");
+        }
+        for (int i = 1; i <= rows; i++)
+        {
+            Row row = items.createRow(i + 1);
+            row.createCell(0).setCellValue("item" + i);
+            row.createCell(1).setCellValue(100 + i);
+        }
+        for (int i = 1; i <= 2; i++)
+        {
+            fixed.createRow(i + 1).createCell(1).setCellValue(200 + i);
+        }
+
+        OutputStream os = Files.newOutputStream(file);
+        try
+        {
+            wb.write(os);
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    /**
+     * 等待后台线程处理完文件的改变
+     */
+    private static void waitFor(ConfigSnapshot config, boolean error) throws InterruptedException
+    {
+        for (int i = 0; (i < 500) && ((null != config.getError()) != error); i++)
+        {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(error, null != config.getError());
+    }
+}
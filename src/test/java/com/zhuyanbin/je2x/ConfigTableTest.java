@@ -0,0 +1,141 @@
+package com.zhuyanbin.je2x;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConfigTableTest
+{
+    private final String xmlFile   = "src/test/xml/test.xml";
+
+    private final String excelFile = "src/test/excel/test.xls";
+
+    @Test
+    public void testOfElement() throws Exception
+    {
+        Element workbook = new SAXBuilder().build(xmlFile).getRootElement();
+        Map<String, ConfigTable> tables = ConfigTable.of(workbook);
+        Assert.assertEquals(workbook.getChildren(XmlType.WorkSheet).size(), tables.size());
+
+        Element sheet = workbook.getChildren(XmlType.WorkSheet).get(0);
+        ConfigTable table = tables.get(sheet.getAttributeValue("name"));
+        Assert.assertEquals(0, table.getColumn("编号"));
+        Assert.assertEquals(1, table.getColumn("名称"));
+        Assert.assertEquals(-1, table.getColumn("不存在"));
+        Assert.assertEquals(sheet.getChildren().size() - 1, table.getRowCount());
+
+        // 每一行都能按关键字找到,数据与xml一致
+        for (int i = 1; i < sheet.getChildren().size(); i++)
+        {
+            Map<Integer, String[]> cells = ElementHandler.getCells(sheet.getChildren().get(i));
+            String key = cells.get(Integer.valueOf(0))[2];
+            int row = table.getRow(key);
+            Assert.assertTrue(key, row >= 0);
+            for (Map.Entry<Integer, String[]> cell : cells.entrySet())
+            {
+                String value = cell.getValue()[2];
+                if (value.length() > 0)
+                {
+                    Assert.assertEquals(value, table.getStringAt(row, cell.getKey().intValue()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookup() throws Exception
+    {
+        // 表头有三行: 中文列名、Classid、id
+        ConfigTable.Builder builder = new ConfigTable.Builder();
+        builder.setHeaderRows(3);
+        Map<String, ConfigTable> tables = builder.build(new SAXBuilder().build(xmlFile).getRootElement());
+        ConfigTable table = tables.values().iterator().next();
+
+        Assert.assertEquals(ConfigTable.TYPE_NUMBER, table.getColumnType(0));
+        Assert.assertEquals(ConfigTable.TYPE_STRING, table.getColumnType(1));
+        long key = table.getLong(table.getStringAt(0, 0), 0);
+        Assert.assertEquals(0, table.getRow(key));
+        Assert.assertTrue(table.contains(key));
+        Assert.assertFalse(table.contains(-12345L));
+        Assert.assertEquals(table.getStringAt(0, 1), table.getString(key, 1));
+        Assert.assertEquals(table.getDoubleAt(0, 0), table.getDouble(key, 0), 0);
+        Assert.assertEquals((int) key, table.getInt(key, 0));
+
+        try
+        {
+            table.getString(-12345L, 1);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // 没有关键字对应的行
+        }
+    }
+
+    @Test
+    public void testSources() throws Exception
+    {
+        // 流式读取Excel与HSSFWorkbook一致(包括每个工作表的最后一行),XmlReader的工作簿与读取的xml一致
+        HSSFWorkbook wb = new HSSFWorkbook(new FileInputStream(excelFile));
+        assertTables(ConfigTable.of(wb), new ConfigTable.Builder().load(Paths.get(excelFile)));
+
+        XmlReader xml = new XmlReader(xmlFile);
+        xml.load();
+        assertTables(ConfigTable.of(new SAXBuilder().build(xmlFile).getRootElement()), ConfigTable.of(xml
+                .getWorkBook()));
+    }
+
+    @Test
+    public void testLastRow() throws Exception
+    {
+        // 一行表头,三行数据,最后一行的关键字为103
+        Workbook[] books = { new HSSFWorkbook(), new XSSFWorkbook() };
+        String[] files = { "target/ConfigTableTest.xls", "target/ConfigTableTest.xlsx" };
+        for (int i = 0; i < books.length; i++)
+        {
+            Sheet sheet = books[i].createSheet("t");
+            sheet.createRow(0).createCell(0).setCellValue("id");
+            for (int j = 1; j <= 3; j++)
+            {
+                sheet.createRow(j).createCell(0).setCellValue(100 + j);
+            }
+            FileOutputStream fos = new FileOutputStream(files[i]);
+            books[i].write(fos);
+            fos.close();
+
+            ConfigTable table = new ConfigTable.Builder().load(Paths.get(files[i])).get("t");
+            Assert.assertEquals(files[i], 3, table.getRowCount());
+            Assert.assertTrue(files[i], table.contains(103L));
+        }
+        Assert.assertEquals(3, ConfigTable.of((HSSFWorkbook) books[0]).get("t").getRowCount());
+    }
+
+    private static void assertTables(Map<String, ConfigTable> expected, Map<String, ConfigTable> actual)
+    {
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (String name : expected.keySet())
+        {
+            ConfigTable a = expected.get(name);
+            ConfigTable b = actual.get(name);
+            Assert.assertEquals(name, a.getRowCount(), b.getRowCount());
+            for (int row = 0; row < a.getRowCount(); row++)
+            {
+                for (int column = 0; column < a.getColumnCount(); column++)
+                {
+                    Assert.assertEquals(name + " " + row + "," + column, a.getStringAt(row, column), b
+                            .getStringAt(row, column));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zhuyanbin.je2x;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConvertManifestTest
+{
+    private final Path      dir    = Paths.get("target/ConvertManifestTest");
+
+    private final Path      source = dir.resolve("test.txt");
+
+    private final Path      target = dir.resolve("test.out");
+
+    private ConvertManifest classRelection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(ConvertManifest.MANIFEST));
+        Files.write(source, "abc".getBytes("utf-8"));
+        Files.write(target, "output".getBytes("utf-8"));
+        classRelection = new ConvertManifest(dir);
+    }
+
+    @Test
+    public void testHash() throws Exception
+    {
+        Assert.assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", ConvertManifest.hash(source));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        String hash = ConvertManifest.hash(source);
+        Assert.assertFalse(classRelection.isUpToDate("test.txt", source, target, "v1"));
+
+        classRelection.put("test.txt", source, hash, target, "v1");
+        Assert.assertTrue(classRelection.isUpToDate("test.txt", source, target, "v1"));
+        Assert.assertFalse(classRelection.isUpToDate("test.txt", source, target, "v2"));
+        classRelection.save();
+
+        ConvertManifest manifest = new ConvertManifest(dir);
+        manifest.load();
+        ConvertManifest.Entry entry = manifest.get("test.txt");
+        Assert.assertEquals(hash, entry.getHash());
+        Assert.assertEquals(ConvertManifest.hash(target), entry.getOutputHash());
+        Assert.assertEquals(3, entry.getSize());
+        Assert.assertTrue(manifest.isUpToDate("test.txt", source, target, "v1"));
+
+        Files.write(target, "changed".getBytes("utf-8"));
+        Assert.assertFalse(manifest.isUpToDate("test.txt", source, target, "v1"));
+
+        Assert.assertTrue(manifest.restore("test.txt", source, hash, target, "v1"));
+        Assert.assertEquals("output", new String(Files.readAllBytes(target), "utf-8"));
+        Assert.assertFalse(manifest.restore("test.txt", source, hash, target, "v2"));
+    }
+}
@@ -0,0 +1,172 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConvertServerTest
+{
+    private final String  fileName = "src/test/excel/test.xls";
+
+    private final Path    dir      = Paths.get("target/ConvertServerTest");
+
+    private final Path    cwd      = Paths.get("").toAbsolutePath();
+
+    private ConvertServer classRelection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Files.createDirectories(dir);
+        classRelection = new ConvertServer();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        classRelection.close();
+        classRelection = null;
+    }
+
+    @Test
+    public void testServe() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new ExcelReader(fileName).convert(expected);
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(request);
+        ConvertClient.writeRequest(dos, cwd.toString(), new String[] { "textconv", fileName });
+        ConvertClient.writeRequest(dos, cwd.toString(), new String[] { "unknown" });
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        classRelection.serve(new ByteArrayInputStream(request.toByteArray()), response);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(0, ConvertClient.readResponse(in, out, err));
+        Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        Assert.assertEquals(0, err.size());
+
+        out.reset();
+        Assert.assertEquals(2, ConvertClient.readResponse(in, out, err));
+        Assert.assertEquals(0, out.size());
+        Assert.assertTrue(err.toString("utf-8").startsWith("usage:"));
+        Assert.assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testListen() throws Exception
+    {
+        Path state = dir.resolve("state");
+        Path target = dir.resolve("compact.xml");
+        Files.deleteIfExists(target);
+        ExcelReader reader = new ExcelReader(fileName);
+        reader.setCompact(true);
+        Assert.assertTrue(reader.convert(dir.resolve("expected.xml")));
+
+        classRelection.warmUp();
+        int port = classRelection.listen(0, 2);
+        classRelection.writeState(state, port);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(0, ConvertClient.call(state, cwd, new String[] { "-s", "compact", "toxml", fileName,
+                target.toString() }, out, err));
+        Assert.assertArrayEquals(Files.readAllBytes(dir.resolve("expected.xml")), Files.readAllBytes(target));
+        Assert.assertEquals(0, ConvertClient.call(state, cwd, new String[] { "ping" }, out, err));
+        Assert.assertEquals("je2x " + ConvertManifest.VERSION + "\n", out.toString("utf-8"));
+        Assert.assertEquals(1, ConvertClient.call(state, cwd, new String[] { "textconv", "missing.xls" }, out, err));
+
+        // 令牌不一致时服务端直接断开,客户端在本进程中执行
+        Files.write(state, (port + " wrong").getBytes("utf-8"));
+        Assert.assertEquals(-1, ConvertClient.call(state, cwd, new String[] { "ping" }, out, err));
+        classRelection.writeState(state, port);
+
+        classRelection.close();
+        Assert.assertFalse(Files.exists(state));
+        Assert.assertEquals(-1, ConvertClient.call(dir.resolve("missing"), cwd, new String[] { "ping" }, out, err));
+    }
+
+    @Test
+    public void testOptions() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(bos, true, "utf-8");
+        Assert.assertEquals(0, classRelection.execute(cwd, new String[] { "-s", "compact", "-y", "off", "ping" }, out,
+                err));
+        Assert.assertEquals(2, classRelection.execute(cwd, new String[] { "-s", "compakt", "ping" }, out, err));
+        Assert.assertEquals(2, classRelection.execute(cwd, new String[] { "-y", "yes", "ping" }, out, err));
+        Assert.assertEquals(2, classRelection.execute(cwd, new String[] { "-k", "id", "ping" }, out, err));
+        Assert.assertTrue(bos.toString("utf-8").startsWith("usage:"));
+    }
+
+    @Test
+    public void testSilentConnection() throws Exception
+    {
+        // 只有一个处理线程,连接之后不发送令牌的进程超时后释放线程
+        Path state = dir.resolve("silent");
+        int port = classRelection.listen(0, 1);
+        classRelection.writeState(state, port);
+        Socket silent = new Socket(InetAddress.getLoopbackAddress(), port);
+        try
+        {
+            Thread.sleep(ConvertClient.TIMEOUT + 500);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Assert.assertEquals(0, ConvertClient.call(state, cwd, new String[] { "ping" }, out, err));
+            Assert.assertEquals("je2x " + ConvertManifest.VERSION + "\n", out.toString("utf-8"));
+        }
+        finally
+        {
+            silent.close();
+        }
+    }
+
+    @Test
+    public void testStaleState() throws Exception
+    {
+        // 状态文件中的端口被其他不响应的进程使用
+        Path state = dir.resolve("stale");
+        ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        try
+        {
+            Files.write(state, (socket.getLocalPort() + " token").getBytes("utf-8"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            Assert.assertEquals(-1, ConvertClient.call(state, cwd, new String[] { "ping" }, out, err));
+            Assert.assertEquals(0, out.size());
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Exception
+    {
+        Path state = dir.resolve("shutdown");
+        int port = classRelection.listen(0, 1);
+        classRelection.writeState(state, port);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(0, ConvertClient.call(state, cwd, new String[] { "shutdown" }, out, err));
+        Assert.assertFalse(Files.exists(state));
+    }
+}
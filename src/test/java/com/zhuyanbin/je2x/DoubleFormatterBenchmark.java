@@ -0,0 +1,61 @@
+package com.zhuyanbin.je2x;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+
+/**
+ * DoubleFormatter与原来的DecimalFormat格式化的性能对比<br/>
+ * 数据模拟数值表: 大部分是整数,其余是1~4位小数
+ */
+public class DoubleFormatterBenchmark
+{
+    private static final int ROUNDS = 5;
+
+    private static final int COUNT  = 1000000;
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        double[] values = createValues(COUNT);
+        DecimalFormat format = new DecimalFormat();
+        format.setDecimalSeparatorAlwaysShown(false);
+        format.setGroupingUsed(false);
+
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (double value : values)
+            {
+                sum += format.format(value).length();
+            }
+            long decimalFormat = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (double value : values)
+            {
+                sum += DoubleFormatter.format(value).length();
+            }
+            long doubleFormatter = System.nanoTime() - start;
+
+            System.out.println(String.format("round %d: DecimalFormat %.1f ns/op, DoubleFormatter %.1f ns/op (%d)",
+                    round, decimalFormat / (double) COUNT, doubleFormatter / (double) COUNT, sum));
+        }
+    }
+
+    private static double[] createValues(int count)
+    {
+        Random random = new Random(1);
+        double[] result = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            int digits = random.nextInt(8) - 3;
+            double value = random.nextInt(100000);
+            result[i] = (digits <= 0) ? value : value / Math.pow(10, digits);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+package com.zhuyanbin.je2x;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DoubleFormatterTest
+{
+    @Test
+    public void testFormat()
+    {
+        Assert.assertEquals("0", DoubleFormatter.format(0));
+        Assert.assertEquals("-0", DoubleFormatter.format(-0.0));
+        Assert.assertEquals("42", DoubleFormatter.format(42));
+        Assert.assertEquals("-42", DoubleFormatter.format(-42));
+        Assert.assertEquals("0.12345", DoubleFormatter.format(0.12345));
+        Assert.assertEquals("-0.001", DoubleFormatter.format(-0.001));
+        Assert.assertEquals("123.456", DoubleFormatter.format(123.456));
+        Assert.assertEquals("0.30000000000000004", DoubleFormatter.format(0.1 + 0.2));
+        Assert.assertEquals("0.0000123", DoubleFormatter.format(1.23e-5));
+        Assert.assertEquals("100000000000000000000", DoubleFormatter.format(1e20));
+        Assert.assertEquals("123456789012345680", DoubleFormatter.format(123456789012345678.0));
+        Assert.assertEquals("9007199254740992", DoubleFormatter.format(9007199254740992.0));
+        // Double.toString在JDK 19之前输出 2.82879384806159008E17
+        Assert.assertEquals("282879384806159000", DoubleFormatter.format(2.82879384806159E17));
+        Assert.assertEquals("NaN", DoubleFormatter.format(Double.NaN));
+        Assert.assertEquals("-Infinity", DoubleFormatter.format(Double.NEGATIVE_INFINITY));
+        Assert.assertEquals("x=1.5", DoubleFormatter.append(new StringBuilder("x="), 1.5).toString());
+    }
+
+    @Test
+    public void testShortestRoundTrip()
+    {
+        Random random = new Random(20121018);
+        for (int i = 0; i < 20000; i++)
+        {
+            double value = (0 == i % 2) ? Double.longBitsToDouble(random.nextLong()) : random.nextDouble()
+                    * Math.pow(10, random.nextInt(20) - 10);
+            if (Double.isNaN(value) || Double.isInfinite(value) || (Math.abs(value) < 1e-30)
+                    || (Math.abs(value) > 1e30))
+            {
+                continue;
+            }
+
+            String text = DoubleFormatter.format(value);
+            Assert.assertEquals(text, value, Double.parseDouble(text), 0);
+            Assert.assertEquals(text, -1, text.indexOf('E'));
+            Assert.assertEquals(text, shortestDigits(value), new BigDecimal(text).stripTrailingZeros().precision());
+        }
+    }
+
+    /**
+     * 能够精确读回value的最短有效数字位数
+     */
+    private static int shortestDigits(double value)
+    {
+        BigDecimal exact = new BigDecimal(value);
+        for (int precision = 1; precision < 17; precision++)
+        {
+            if (exact.round(new MathContext(precision, RoundingMode.HALF_EVEN)).doubleValue() == value)
+            {
+                return precision;
+            }
+        }
+
+        return 17;
+    }
+
+    @Test
+    public void testParse()
+    {
+        Assert.assertEquals(42, DoubleFormatter.parse("42"), 0);
+        Assert.assertEquals(-0.001, DoubleFormatter.parse("-0.001"), 0);
+        Assert.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(DoubleFormatter.parse("-0")));
+        Assert.assertEquals(1.5e300, DoubleFormatter.parse("1.5E300"), 0);
+        Assert.assertTrue(Double.isNaN(DoubleFormatter.parse("NaN")));
+
+        Random random = new Random(20121019);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+        {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 8);
+            sb.setLength(0);
+            DoubleFormatter.append(sb, value);
+            Assert.assertEquals(sb.toString(), value, DoubleFormatter.parse(sb), 0);
+            Assert.assertEquals(sb.toString(), Double.parseDouble(sb.toString()), DoubleFormatter.parse(sb), 0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalid()
+    {
+        DoubleFormatter.parse("12a");
+    }
+
+    @Test
+    public void testThreadSafe() throws InterruptedException
+    {
+        final double[] values = { 0.12345, 42, -1.5e-7, 98765.4321 };
+        final String[] expected = { "0.12345", "42", "-0.00000015", "98765.4321" };
+        final boolean[] failed = { false };
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 10000; i++)
+                    {
+                        int k = i % values.length;
+                        if (!expected[k].equals(DoubleFormatter.format(values[k])))
+                        {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertFalse(failed[0]);
+    }
+}
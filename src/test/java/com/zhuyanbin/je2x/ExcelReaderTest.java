@@ -1,13 +1,29 @@
 package com.zhuyanbin.je2x;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.easymock.EasyMock;
 import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.output.XMLOutputter;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -61,6 +77,194 @@ public class ExcelReaderTest
         Assert.assertTrue(classRelection.output(xmlFileName));
     }
     
+    @Test
+    public void testConvert() throws FileNotFoundException, IOException
+    {
+        Assert.assertFalse(classRelection.convert("target/convert.xml"));
+        classRelection.load(fileName);
+        Assert.assertTrue(classRelection.output("target/output.xml"));
+        Assert.assertTrue(classRelection.convert("target/convert.xml"));
+
+        Assert.assertArrayEquals(readFile("target/output.xml"), readFile("target/convert.xml"));
+    }
+
+    @Test
+    public void testLoadStreams() throws FileNotFoundException, JDOMException, IOException
+    {
+        classRelection.load(fileName);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Assert.assertTrue(classRelection.output(expected));
+
+        FileInputStream fis = new FileInputStream(fileName);
+        try
+        {
+            classRelection.load(fis);
+        }
+        finally
+        {
+            fis.close();
+        }
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Assert.assertTrue(classRelection.output(Channels.newChannel(actual)));
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        XmlReader xmlReader = new XmlReader(xmlFileName);
+        xmlReader.load();
+        Assert.assertTrue(xmlReader.output("target/streams.xlsx"));
+        FileChannel channel = FileChannel.open(Paths.get("target/streams.xlsx"));
+        try
+        {
+            classRelection.load(channel);
+        }
+        finally
+        {
+            channel.close();
+        }
+        Element xlsx = classRelection.getXml();
+        classRelection.load(Paths.get("target/streams.xlsx"));
+        XMLOutputter xop = new XMLOutputter();
+        Assert.assertEquals(xop.outputString(classRelection.getXml()), xop.outputString(xlsx));
+
+        Path path = Paths.get("target/path.xml");
+        classRelection.load(Paths.get(fileName));
+        Assert.assertTrue(classRelection.output(path));
+        Assert.assertArrayEquals(expected.toByteArray(), Files.readAllBytes(path));
+
+        actual.reset();
+        fis = new FileInputStream(fileName);
+        try
+        {
+            classRelection.convert(fis, actual);
+        }
+        finally
+        {
+            fis.close();
+        }
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testLoadStreaming() throws FileNotFoundException, IOException
+    {
+        classRelection.load(fileName);
+        Element expected = classRelection.getXml();
+
+        classRelection.setStreaming(true);
+        Assert.assertTrue(classRelection.isStreaming());
+        classRelection.load(fileName);
+        XMLOutputter xop = new XMLOutputter();
+        Assert.assertEquals(xop.outputString(expected), xop.outputString(classRelection.getXml()));
+    }
+
+    @Test
+    public void testParallel() throws FileNotFoundException, IOException
+    {
+        classRelection.load(fileName);
+        String expected = new XMLOutputter().outputString(classRelection.getXml());
+        Assert.assertTrue(classRelection.convert("target/sequential.xml"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            classRelection.setExecutor(executor);
+            Assert.assertSame(executor, classRelection.getExecutor());
+            classRelection.load(fileName);
+            Assert.assertEquals(expected, new XMLOutputter().outputString(classRelection.getXml()));
+            Assert.assertTrue(classRelection.convert("target/parallel.xml"));
+            Assert.assertArrayEquals(readFile("target/sequential.xml"), readFile("target/parallel.xml"));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        classRelection.setParallel(true);
+        Assert.assertNotNull(classRelection.getExecutor());
+        classRelection.load(fileName);
+        Assert.assertEquals(expected, new XMLOutputter().outputString(classRelection.getXml()));
+        classRelection.setParallel(false);
+        Assert.assertNull(classRelection.getExecutor());
+    }
+
+    @Test
+    public void testOutputSplit() throws FileNotFoundException, JDOMException, IOException
+    {
+        Path dir = Paths.get("target/split/test");
+        Assert.assertFalse(classRelection.outputSplit("target/split/test.xml"));
+
+        classRelection.load(fileName);
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("removed.xml"), new byte[0]);
+        Assert.assertTrue(classRelection.outputSplit("target/split/test.xml"));
+        Assert.assertFalse(Files.exists(dir.resolve("removed.xml")));
+
+        List<File> files = XmlReader.getSheetFiles("target/split/test.xml");
+        Assert.assertEquals(classRelection.getXml().getChildren().size(), files.size());
+        Assert.assertEquals(files.size(), dir.toFile().list().length);
+        Element sheet = classRelection.getXml().getChildren().get(0);
+        Path sheetFile = files.get(0).toPath();
+        Assert.assertArrayEquals(XmlStreamWriter.toDocument(sheet), readFile(sheetFile.toString()));
+
+        // 内容没有改变的文件不会重新写入
+        FileTime time = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(sheetFile, time);
+        Files.setLastModifiedTime(Paths.get("target/split/test.xml"), time);
+        Element changed = classRelection.getXml().getChildren().get(1);
+        changed.getChildren().get(0).detach();
+        Assert.assertTrue(classRelection.outputSplit("target/split/test.xml"));
+        Assert.assertEquals(time, Files.getLastModifiedTime(sheetFile));
+        Assert.assertEquals(time, Files.getLastModifiedTime(Paths.get("target/split/test.xml")));
+        Assert.assertArrayEquals(XmlStreamWriter.toDocument(changed), readFile(files.get(1).toString()));
+    }
+
+    @Test
+    public void testCompact() throws FileNotFoundException, IOException
+    {
+        classRelection.load(fileName);
+        Assert.assertTrue(classRelection.output("target/legacy.xml"));
+
+        classRelection.setCompact(true);
+        Assert.assertTrue(classRelection.isCompact());
+        classRelection.load(fileName);
+        Element row = classRelection.getXml().getChildren().get(0).getChildren().get(0);
+        Assert.assertEquals(XmlType.CompactRow, row.getName());
+        Assert.assertEquals(XmlType.CompactCell, row.getChildren().get(0).getName());
+        Assert.assertTrue(classRelection.output("target/compact.xml"));
+        Assert.assertTrue(classRelection.convert("target/compact-convert.xml"));
+        Assert.assertArrayEquals(readFile("target/compact.xml"), readFile("target/compact-convert.xml"));
+        Assert.assertTrue(readFile("target/compact.xml").length * 2 < readFile("target/legacy.xml").length);
+
+        String expected = new XMLOutputter().outputString(classRelection.getXml());
+        classRelection.setStreaming(true);
+        classRelection.load(fileName);
+        Assert.assertEquals(expected, new XMLOutputter().outputString(classRelection.getXml()));
+    }
+
+    @Test
+    public void testGetSheetFileName()
+    {
+        Set<String> used = new HashSet<String>();
+        Assert.assertEquals("a_b_.xml", ExcelReader.getSheetFileName("a/b?", used));
+        Assert.assertEquals("A_B__2.xml", ExcelReader.getSheetFileName("A\\B*", used));
+        Assert.assertEquals("_.xml", ExcelReader.getSheetFileName("", used));
+        Assert.assertEquals("_.hidden.xml", ExcelReader.getSheetFileName(".hidden", used));
+    }
+
+    private byte[] readFile(String name) throws IOException
+    {
+        FileInputStream fis = new FileInputStream(name);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len = 0;
+        while ((len = fis.read(buffer)) > 0)
+        {
+            bos.write(buffer, 0, len);
+        }
+        fis.close();
+
+        return bos.toByteArray();
+    }
+
     @Test
     public void testLoadWithMock() throws FileNotFoundException, IOException
     {
@@ -0,0 +1,101 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HSSFEventReaderTest
+{
+    private final String fileName = "src/test/excel/test.xls";
+
+    private String parse(HSSFWorkbook wb) throws IOException
+    {
+        ExcelReader reader = new ExcelReader();
+        return new XMLOutputter().outputString(reader.parseWorkBook2Xml(wb));
+    }
+
+    private String stream(POIFSFileSystem fs) throws IOException
+    {
+        ElementHandler handler = new ElementHandler();
+        new HSSFEventReader(handler).process(fs);
+        return new XMLOutputter().outputString(handler.getXml());
+    }
+
+    private POIFSFileSystem toFileSystem(HSSFWorkbook wb) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        wb.write(bos);
+        return new POIFSFileSystem(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    @Test
+    public void testSameAsWorkBook() throws IOException
+    {
+        FileInputStream fis = new FileInputStream(fileName);
+        POIFSFileSystem fs = new POIFSFileSystem(fis);
+        fis.close();
+
+        Assert.assertEquals(parse(new HSSFWorkbook(fs)), stream(fs));
+    }
+
+    @Test
+    public void testSparseSheet() throws IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("sparse");
+        HSSFRow row = sheet.createRow(0);
+        row.createCell(0).setCellValue("编号");
+        row.createCell(3).setCellValue(1.5);
+        row.createCell(4).setCellValue(true);
+        row.createCell(5);
+        row = sheet.createRow(2);
+        row.setHeight((short) 600);
+        row = sheet.createRow(5);
+        row.createCell(1).setCellFormula("SUM(D1:D3)");
+        row.createCell(2).setCellValue(123456789);
+        sheet.createRow(9).createCell(0).setCellValue("last");
+        wb.createSheet("empty");
+
+        POIFSFileSystem fs = toFileSystem(wb);
+        Assert.assertEquals(parse(new HSSFWorkbook(fs)), stream(fs));
+    }
+
+    @Test
+    public void testFormulaCachedResults() throws IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("formula");
+        HSSFSheet last = wb.createSheet("last");
+        HSSFRow row = sheet.createRow(0);
+        row.createCell(0).setCellValue(1.5);
+        row.createCell(1).setCellValue("a");
+        row.createCell(2).setCellFormula("A1*2");
+        row.createCell(3).setCellFormula("B1&\"b\"");
+        row.createCell(4).setCellFormula("A1>1");
+        row.createCell(5).setCellFormula("1/0");
+        row.createCell(6).setCellFormula("last!A1");
+        sheet.createRow(1);
+        last.createRow(0).createCell(0).setCellValue(7);
+        last.createRow(1);
+        HSSFFormulaEvaluator.evaluateAllFormulaCells(wb);
+
+        POIFSFileSystem fs = toFileSystem(wb);
+        String expected = parse(new HSSFWorkbook(fs));
+        Assert.assertEquals(expected, stream(fs));
+        Assert.assertTrue(expected.contains("<Data type=\"Number\" formula=\"A1*2\">3</Data>"));
+        Assert.assertTrue(expected.contains("<Data type=\"String\" formula=\"B1&amp;&quot;b&quot;\">ab</Data>"));
+        Assert.assertTrue(expected.contains("<Data type=\"Boolean\" formula=\"A1&gt;1\">TRUE</Data>"));
+        Assert.assertTrue(expected.contains("<Data type=\"Error\" formula=\"1/0\">#DIV/0!</Data>"));
+        Assert.assertTrue(expected.contains("<Data type=\"Number\" formula=\"last!A1\">7</Data>"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.zhuyanbin.je2x;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableFileTest
+{
+    private final Path dir = Paths.get("target/TableFileTest");
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Files.createDirectories(dir);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        ConfigTable.Builder builder = new ConfigTable.Builder();
+        builder.setHeaderRows(3);
+        Map<String, ConfigTable> tables = builder.build(new SAXBuilder().build("src/test/xml/test.xml")
+                .getRootElement());
+        Path file = dir.resolve("test.tbl");
+        TableFile.write(tables, file, AtomicFile.Sync.NONE);
+
+        TableFile mapped = TableFile.open(file);
+        Assert.assertEquals(tables.keySet(), mapped.getTables().keySet());
+        for (ConfigTable expected : tables.values())
+        {
+            MappedTable actual = mapped.getTable(expected.getName());
+            Assert.assertEquals(expected.getRowCount(), actual.getRowCount());
+            Assert.assertEquals(expected.getColumnCount(), actual.getColumnCount());
+            Assert.assertEquals(expected.getKeyColumn(), actual.getKeyColumn());
+            for (int column = 0; column < expected.getColumnCount(); column++)
+            {
+                Assert.assertEquals(expected.getColumnName(column), actual.getColumnName(column));
+                Assert.assertEquals(expected.getColumnType(column), actual.getColumnType(column));
+                Assert.assertEquals(expected.getColumn(expected.getColumnName(column)), actual.getColumn(expected
+                        .getColumnName(column)));
+            }
+            for (int row = 0; row < expected.getRowCount(); row++)
+            {
+                for (int column = 0; column < expected.getColumnCount(); column++)
+                {
+                    Assert.assertEquals(expected.isNull(row, column), actual.isNull(row, column));
+                    Assert.assertEquals(expected.getStringAt(row, column), actual.getStringAt(row, column));
+                }
+
+                String key = expected.getStringAt(row, 0);
+                if (null != key)
+                {
+                    Assert.assertEquals(expected.getRow(key), actual.getRow(key));
+                    Assert.assertEquals(expected.getString(key, 1), actual.getString(key, 1));
+                }
+            }
+            Assert.assertEquals(-1, actual.getRow(-12345L));
+            Assert.assertEquals(-1, actual.getRow("不存在"));
+        }
+
+        ConfigTable table = tables.values().iterator().next();
+        long key = table.getLong(table.getStringAt(0, 0), 0);
+        MappedTable actual = mapped.getTable(table.getName());
+        Assert.assertEquals(table.getRow(key), actual.getRow(key));
+        Assert.assertEquals(table.getDouble(key, 0), actual.getDouble(key, 0), 0);
+        Assert.assertEquals(table.getInt(key, 4), actual.getInt(key, 4));
+    }
+
+    @Test
+    public void testOutput() throws Exception
+    {
+        Path fromXml = dir.resolve("xml.tbl");
+        Assert.assertTrue(new XmlReader("src/test/xml/test.xml").output(fromXml));
+        Path fromExcel = dir.resolve("excel.tbl");
+        Assert.assertTrue(new ExcelReader("src/test/excel/test.xls").outputTable(fromExcel));
+
+        Assert.assertEquals(4, TableFile.open(fromXml).getTables().size());
+        Assert.assertFalse(TableFile.open(fromExcel).getTables().isEmpty());
+        Assert.assertFalse(new ExcelReader().outputTable(dir.resolve("none.tbl")));
+        Assert.assertFalse(Files.exists(dir.resolve("none.tbl")));
+    }
+
+    @Test
+    public void testExcelLastRow() throws Exception
+    {
+        // 一行表头,三行数据,最后一行的关键字为103
+        Path xls = dir.resolve("last.xls");
+        HSSFWorkbook wb = new HSSFWorkbook();
+        Sheet sheet = wb.createSheet("t");
+        sheet.createRow(0).createCell(0).setCellValue("id");
+        for (int i = 1; i <= 3; i++)
+        {
+            sheet.createRow(i).createCell(0).setCellValue(100 + i);
+        }
+        OutputStream os = Files.newOutputStream(xls);
+        wb.write(os);
+        os.close();
+
+        Path file = dir.resolve("last.tbl");
+        ExcelReader reader = new ExcelReader(xls.toString());
+        Assert.assertTrue(reader.outputTable(file));
+        MappedTable table = TableFile.open(file).getTable("t");
+        Assert.assertEquals(3, table.getRowCount());
+        Assert.assertTrue(table.contains(103L));
+
+        // 已经load时仍然从Excel文件读取
+        reader.load();
+        Assert.assertTrue(reader.outputTable(file));
+        Assert.assertTrue(TableFile.open(file).getTable("t").contains(103L));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotTableFile() throws Exception
+    {
+        TableFile.open(Paths.get("src/test/xml/test.xml"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.zhuyanbin.je2x;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Assert;
+
+/**
+ * 比较两个工作簿的内容
+ */
+public class WorkBookAssert
+{
+    public static void assertSameWorkBook(Workbook expected, Workbook actual)
+    {
+        Assert.assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+        for (int i = 0; i < expected.getNumberOfSheets(); i++)
+        {
+            assertSameSheet(expected.getSheetAt(i), actual.getSheetAt(i));
+        }
+    }
+
+    public static void assertSameSheet(Sheet expected, Sheet actual)
+    {
+        Assert.assertEquals(expected.getSheetName(), actual.getSheetName());
+        Assert.assertEquals(expected.getLastRowNum(), actual.getLastRowNum());
+        for (int i = 0; i <= expected.getLastRowNum(); i++)
+        {
+            assertSameRow(expected.getRow(i), actual.getRow(i));
+        }
+    }
+
+    public static void assertSameRow(Row expected, Row actual)
+    {
+        if (null == expected)
+        {
+            Assert.assertNull(actual);
+            return;
+        }
+
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getHeight(), actual.getHeight());
+        Assert.assertEquals(expected.getLastCellNum(), actual.getLastCellNum());
+        for (int i = 0; i < expected.getLastCellNum(); i++)
+        {
+            assertSameCell(expected.getCell(i), actual.getCell(i));
+        }
+    }
+
+    public static void assertSameCell(Cell expected, Cell actual)
+    {
+        if (null == expected)
+        {
+            Assert.assertNull(actual);
+            return;
+        }
+
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getCellType(), actual.getCellType());
+        Assert.assertEquals(expected.toString(), actual.toString());
+    }
+}
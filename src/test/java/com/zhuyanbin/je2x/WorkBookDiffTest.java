@@ -0,0 +1,104 @@
+package com.zhuyanbin.je2x;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.jdom2.Element;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkBookDiffTest
+{
+    private final Path dir  = Paths.get("target/WorkBookDiffTest");
+
+    private Element    base = null;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Files.createDirectories(dir);
+        base = new SAXBuilder().build("src/test/xml/test.xml").getRootElement();
+    }
+
+    @Test
+    public void testFingerprints() throws Exception
+    {
+        ExcelReader streaming = new ExcelReader("src/test/excel/test.xls");
+        streaming.setFingerprints(true);
+        Assert.assertTrue(streaming.convert(dir.resolve("streaming.xml")));
+
+        ExcelReader reader = new ExcelReader("src/test/excel/test.xls");
+        reader.setFingerprints(true);
+        reader.load();
+        Assert.assertTrue(reader.output(dir.resolve("dom.xml")));
+
+        WorkBookIndex expected = WorkBookIndex.of(new SAXBuilder().build(dir.resolve("streaming.xml").toFile())
+                .getRootElement(), 0);
+        assertIndex(expected, streaming.getIndex());
+        assertIndex(expected, reader.getIndex());
+        assertIndex(expected, WorkBookIndex.read(WorkBookIndex.getIndexFile(dir.resolve("streaming.xml"))));
+        assertIndex(expected, WorkBookIndex.read(WorkBookIndex.getIndexFile(dir.resolve("dom.xml"))));
+    }
+
+    @Test
+    public void testDiff() throws Exception
+    {
+        WorkBookDiff diff = new WorkBookDiff();
+        Assert.assertTrue(diff.diff(base, base.clone()).isEmpty());
+
+        Element newer = base.clone();
+        Element sheet = newer.getChildren(XmlType.WorkSheet).get(0);
+        String modified = getData(sheet.getChildren().get(1), 0).getText();
+        getData(sheet.getChildren().get(1), 1).setText("changed");
+        String removed = getData(sheet.getChildren().get(3), 0).getText();
+        sheet.getChildren().remove(3);
+        Element added = sheet.getChildren().get(2).clone();
+        getData(added, 0).setText("new");
+        sheet.addContent(added);
+
+        List<WorkBookDiff.Change> changes = diff.diff(base, newer);
+        Assert.assertEquals(changes.toString(), 3, changes.size());
+        Assert.assertEquals(WorkBookDiff.MODIFIED, changes.get(0).getType());
+        Assert.assertEquals(modified, changes.get(0).getKey());
+        Assert.assertArrayEquals(new int[] { 1 }, changes.get(0).getColumns());
+        Assert.assertEquals(WorkBookDiff.ADDED, changes.get(1).getType());
+        Assert.assertEquals("new", changes.get(1).getKey());
+        Assert.assertEquals(WorkBookDiff.REMOVED, changes.get(2).getType());
+        Assert.assertEquals(removed, changes.get(2).getKey());
+        Assert.assertEquals(3, changes.get(2).getRownum());
+        Assert.assertEquals(WorkBookDiff.MODIFIED + "\t装备\t" + modified + "\t1\t1", changes.get(0).toString());
+
+        // 使用索引文件跳过相同的工作表,结果一致
+        Path older = dir.resolve("older.xml");
+        Path newerFile = dir.resolve("newer.xml");
+        Files.write(older, XmlStreamWriter.toDocument(base));
+        Files.write(newerFile, XmlStreamWriter.toDocument(newer));
+        WorkBookIndex.of(base, 0).write(WorkBookIndex.getIndexFile(older), AtomicFile.Sync.NONE);
+        WorkBookIndex.of(newer, 0).write(WorkBookIndex.getIndexFile(newerFile), AtomicFile.Sync.NONE);
+        Assert.assertEquals(changes.toString(), diff.diff(older, newerFile).toString());
+        Assert.assertTrue(diff.diff(older, older).isEmpty());
+    }
+
+    private static Element getData(Element row, int column)
+    {
+        return row.getChildren(XmlType.Cell).get(column).getChild(XmlType.Data);
+    }
+
+    private static void assertIndex(WorkBookIndex expected, WorkBookIndex actual)
+    {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.getSheets().size(), actual.getSheets().size());
+        for (int i = 0; i < expected.getSheets().size(); i++)
+        {
+            WorkBookIndex.Sheet a = expected.getSheets().get(i);
+            WorkBookIndex.Sheet b = actual.getSheets().get(i);
+            Assert.assertEquals(a.getName(), b.getName());
+            Assert.assertEquals(a.getHash(), b.getHash());
+            Assert.assertEquals(a.getRows().size(), b.getRows().size());
+        }
+    }
+}
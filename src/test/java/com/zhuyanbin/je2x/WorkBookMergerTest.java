@@ -0,0 +1,187 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkBookMergerTest
+{
+    private Element base = null;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        base = new SAXBuilder().build("src/test/xml/test.xml").getRootElement();
+    }
+
+    @Test
+    public void testIdentical() throws Exception
+    {
+        WorkBookMerger merger = new WorkBookMerger();
+        Element result = merger.merge(base, base.clone(), base.clone());
+
+        Assert.assertTrue(merger.getConflicts().isEmpty());
+        Assert.assertArrayEquals(XmlStreamWriter.toDocument(base), XmlStreamWriter.toDocument(result));
+    }
+
+    @Test
+    public void testMerge() throws Exception
+    {
+        Element ours = base.clone();
+        Element theirs = base.clone();
+
+        // 本方修改第2行的名称,对方修改第3行的名称、删除第4行并在第2行之后插入一行
+        setValue(getRow(ours, 1), 1, "ours");
+        setValue(getRow(theirs, 2), 1, "theirs");
+        String deleted = getValue(getRow(theirs, 3), 0);
+        Element sheet = theirs.getChildren(XmlType.WorkSheet).get(0);
+        sheet.removeContent(getRow(theirs, 3));
+        Element added = getRow(theirs, 1).clone();
+        setValue(added, 0, "new");
+        sheet.addContent(sheet.indexOf(getRow(theirs, 1)) + 1, added);
+
+        WorkBookMerger merger = new WorkBookMerger();
+        Element result = merger.merge(base, ours, theirs);
+
+        Assert.assertTrue(merger.getConflicts().toString(), merger.getConflicts().isEmpty());
+        Assert.assertEquals("ours", getValue(getRow(result, 1), 1));
+        Assert.assertEquals("new", getValue(getRow(result, 2), 0));
+        Assert.assertEquals("theirs", getValue(getRow(result, 3), 1));
+        Assert.assertFalse(deleted.equals(getValue(getRow(result, 4), 0)));
+        Assert.assertEquals(getRows(base, 0).size(), getRows(result, 0).size());
+        Assert.assertEquals(base.getChildren(XmlType.WorkSheet).size(), result.getChildren(XmlType.WorkSheet).size());
+    }
+
+    @Test
+    public void testConflict() throws Exception
+    {
+        Element ours = base.clone();
+        Element theirs = base.clone();
+        String key = getValue(getRow(base, 1), 0);
+        setValue(getRow(ours, 1), 1, "ours");
+        setValue(getRow(theirs, 1), 1, "theirs");
+        setValue(getRow(theirs, 1), 2, "theirs");
+
+        WorkBookMerger merger = new WorkBookMerger();
+        Element result = merger.merge(base, ours, theirs);
+
+        List<WorkBookMerger.Conflict> conflicts = merger.getConflicts();
+        Assert.assertEquals(1, conflicts.size());
+        Assert.assertEquals(key, conflicts.get(0).getKey());
+        Assert.assertEquals(1, conflicts.get(0).getColumn());
+        Assert.assertEquals("ours", conflicts.get(0).getOurs());
+        Assert.assertEquals("theirs", conflicts.get(0).getTheirs());
+        Assert.assertEquals("ours", getValue(getRow(result, 1), 1));
+        Assert.assertEquals("theirs", getValue(getRow(result, 1), 2));
+
+        // 冲突记录在合并结果中
+        Element marker = result.getChildren().get(0);
+        Assert.assertEquals(XmlType.Conflicts, marker.getName());
+        Element conflict = marker.getChild(XmlType.Conflict);
+        Assert.assertEquals(key, conflict.getAttributeValue("key"));
+        Assert.assertEquals("1", conflict.getAttributeValue("column"));
+        Assert.assertEquals(getValue(getRow(base, 1), 1), conflict.getAttributeValue("base"));
+        Assert.assertEquals("ours", conflict.getAttributeValue("ours"));
+        Assert.assertEquals("theirs", conflict.getAttributeValue("theirs"));
+    }
+
+    @Test
+    public void testDriverConflict() throws Exception
+    {
+        Path dir = Paths.get("target/WorkBookMergerTest");
+        Files.createDirectories(dir);
+        Element ours = base.clone();
+        Element theirs = base.clone();
+        setValue(getRow(ours, 1), 1, "ours");
+        setValue(getRow(theirs, 1), 1, "theirs");
+        Path file = dir.resolve("conflict.xml");
+        Files.write(dir.resolve("base.xml"), XmlStreamWriter.toDocument(base));
+        Files.write(file, XmlStreamWriter.toDocument(ours));
+        Files.write(dir.resolve("theirs.xml"), XmlStreamWriter.toDocument(theirs));
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int conflicts = new WorkBookMerger().merge(dir.resolve("base.xml"), file, dir.resolve("theirs.xml"),
+                new PrintStream(err, true));
+
+        Assert.assertEquals(1, conflicts);
+        Element merged = new SAXBuilder().build(file.toFile()).getRootElement();
+        Assert.assertNotNull(merged.getChild(XmlType.Conflicts));
+
+        // 没有解决冲突的文件不能读取
+        for (boolean streaming : new boolean[] { false, true })
+        {
+            XmlReader reader = new XmlReader(file.toString());
+            reader.setStreaming(streaming);
+            try
+            {
+                reader.load();
+                Assert.fail("conflicts not detected, streaming=" + streaming);
+            }
+            catch (JDOMException ex)
+            {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("conflicts"));
+            }
+        }
+
+        // 删除Conflicts之后可以读取
+        merged.removeChild(XmlType.Conflicts);
+        Files.write(file, XmlStreamWriter.toDocument(merged));
+        new XmlReader(file.toString()).load();
+    }
+
+    @Test
+    public void testDriver() throws Exception
+    {
+        Path dir = Paths.get("target/WorkBookMergerTest");
+        Files.createDirectories(dir);
+        Element theirs = base.clone();
+        setValue(getRow(theirs, 1), 1, "theirs");
+        Files.write(dir.resolve("base.xml"), XmlStreamWriter.toDocument(base));
+        Files.write(dir.resolve("ours.xml"), XmlStreamWriter.toDocument(base));
+        Files.write(dir.resolve("theirs.xml"), XmlStreamWriter.toDocument(theirs));
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int conflicts = new WorkBookMerger().merge(dir.resolve("base.xml"), dir.resolve("ours.xml"),
+                dir.resolve("theirs.xml"), new PrintStream(err, true));
+
+        Assert.assertEquals(0, conflicts);
+        Assert.assertEquals(0, err.size());
+        Assert.assertArrayEquals(Files.readAllBytes(dir.resolve("theirs.xml")),
+                Files.readAllBytes(dir.resolve("ours.xml")));
+    }
+
+    private static List<Element> getRows(Element workbook, int sheet)
+    {
+        return workbook.getChildren(XmlType.WorkSheet).get(sheet).getChildren();
+    }
+
+    private static Element getRow(Element workbook, int row)
+    {
+        return getRows(workbook, 0).get(row);
+    }
+
+    private static Element getData(Element row, int column)
+    {
+        return row.getChildren(XmlType.Cell).get(column).getChild(XmlType.Data);
+    }
+
+    private static String getValue(Element row, int column)
+    {
+        return getData(row, column).getText();
+    }
+
+    private static void setValue(Element row, int column, String value)
+    {
+        getData(row, column).setText(value);
+    }
+}
@@ -0,0 +1,136 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jdom2.Element;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XSSFEventReaderTest
+{
+    private final String xlsxFileName = "target/XSSFEventReaderTest.xlsx";
+
+    private void fill(Workbook wb)
+    {
+        Sheet sheet = wb.createSheet("装备");
+        Row row = sheet.createRow(0);
+        row.setHeight((short) 375);
+        row.createCell(0).setCellValue("编号");
+        row.createCell(1).setCellValue("名称");
+        row.createCell(3).setCellValue(true);
+        row = sheet.createRow(1);
+        row.setHeight((short) 300);
+        row.createCell(0).setCellValue(21011215);
+        row.createCell(1).setCellValue("编号");
+        row.createCell(2).setCellValue(0.5);
+        row.createCell(3).setCellValue(false);
+        row.createCell(4);
+        row = sheet.createRow(3);
+        row.setHeight((short) 600);
+        row.createCell(2).setCellFormula("SUM(A2:C2)");
+        row = sheet.createRow(4);
+        row.setHeight((short) 300);
+        row.createCell(0).setCellValue("last");
+        wb.createSheet("empty");
+    }
+
+    @Test
+    public void testSameAsXls() throws IOException
+    {
+        HSSFWorkbook hssf = new HSSFWorkbook();
+        fill(hssf);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        hssf.write(bos);
+        hssf = new HSSFWorkbook(new POIFSFileSystem(new ByteArrayInputStream(bos.toByteArray())));
+        String expected = new XMLOutputter().outputString(new ExcelReader().parseWorkBook2Xml(hssf));
+
+        XSSFWorkbook xssf = new XSSFWorkbook();
+        fill(xssf);
+        FileOutputStream fos = new FileOutputStream(xlsxFileName);
+        xssf.write(fos);
+        fos.close();
+
+        ElementHandler handler = new ElementHandler();
+        new XSSFEventReader(handler).process(xlsxFileName);
+        Assert.assertEquals(expected, new XMLOutputter().outputString(handler.getXml()));
+
+        ExcelReader reader = new ExcelReader(xlsxFileName);
+        reader.load();
+        Assert.assertEquals(expected, new XMLOutputter().outputString(reader.getXml()));
+        Assert.assertTrue(reader.convert("target/XSSFEventReaderTest.xml"));
+    }
+
+    @Test
+    public void testDefaultHeightAndDate() throws IOException
+    {
+        XSSFWorkbook xssf = new XSSFWorkbook();
+        Sheet sheet = xssf.createSheet("date");
+        sheet.createRow(0).createCell(0).setCellValue("date");
+        sheet.createRow(1).createCell(0).setCellValue("last");
+        FileOutputStream fos = new FileOutputStream(xlsxFileName);
+        xssf.write(fos);
+        fos.close();
+
+        // 去掉sheetFormatPr,并把第一个单元格改成t="d"的日期
+        String fileName = "target/XSSFEventReaderTest-date.xlsx";
+        ZipFile zip = new ZipFile(xlsxFileName);
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(fileName));
+        try
+        {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();)
+            {
+                ZipEntry entry = entries.nextElement();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                InputStream is = zip.getInputStream(entry);
+                byte[] buffer = new byte[4096];
+                int length = 0;
+                while ((length = is.read(buffer)) > 0)
+                {
+                    bos.write(buffer, 0, length);
+                }
+                is.close();
+
+                byte[] data = bos.toByteArray();
+                if ("xl/worksheets/sheet1.xml".equals(entry.getName()))
+                {
+                    String xml = new String(data, "utf-8");
+                    xml = xml.replaceAll("<sheetFormatPr[^>]*/>", "");
+                    xml = xml.replaceFirst("<c r=\"A1\" t=\"s\"><v>0</v></c>",
+                            "<c r=\"A1\" t=\"d\"><v>2012-08-24T10:28:24</v></c>");
+                    data = xml.getBytes("utf-8");
+                }
+                zos.putNextEntry(new ZipEntry(entry.getName()));
+                zos.write(data);
+                zos.closeEntry();
+            }
+        }
+        finally
+        {
+            zos.close();
+            zip.close();
+        }
+
+        ElementHandler handler = new ElementHandler();
+        new XSSFEventReader(handler).process(fileName);
+        Element row = handler.getXml().getChild(XmlType.WorkSheet).getChild(XmlType.Row);
+        Assert.assertEquals("300", row.getAttributeValue("Height"));
+        Element data = row.getChild(XmlType.Cell).getChild(XmlType.Data);
+        Assert.assertEquals("String", data.getAttributeValue("type"));
+        Assert.assertEquals("2012-08-24T10:28:24", data.getText());
+    }
+}
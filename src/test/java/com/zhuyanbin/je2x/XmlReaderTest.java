@@ -1,10 +1,28 @@
 package com.zhuyanbin.je2x;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.jdom2.Element;
 import org.jdom2.JDOMException;
+import org.jdom2.output.XMLOutputter;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -57,6 +75,100 @@ public class XmlReaderTest
         Assert.assertTrue(classRelection.getWorkBook() instanceof HSSFWorkbook);
     }
 
+    @Test
+    public void testPatch() throws FileNotFoundException, JDOMException, IOException
+    {
+        String xls = "target/patch.xls";
+        String xml = "target/patch.xml";
+        Files.copy(Paths.get("src/test/excel/test.xls"), Paths.get(xls), StandardCopyOption.REPLACE_EXISTING);
+        ExcelReader excel = new ExcelReader(xls);
+        excel.load();
+        Assert.assertTrue(excel.output(xml));
+
+        classRelection.load(xml);
+        Assert.assertEquals(0, classRelection.patch(xls));
+
+        Element sheet = excel.getXml().getChild(XmlType.WorkSheet);
+        sheet.getChildren().get(1).getChildren().get(1).getChild(XmlType.Data).setText("修改");
+        sheet.getChildren().remove(2);
+        sheet.getChildren().get(2).setAttribute(XmlType.Index, "3");
+        Assert.assertTrue(excel.output(xml));
+
+        Assert.assertEquals(2, classRelection.patch(xls));
+        Assert.assertTrue(classRelection.output(xls));
+        Assert.assertEquals(0, classRelection.patch(xls));
+
+        XMLOutputter xop = new XMLOutputter();
+        String expected = xop.outputString(excel.getXml());
+        excel.load();
+        Assert.assertEquals(expected, xop.outputString(excel.getXml()));
+
+        excel.setCompact(true);
+        excel.setCellStyles(true);
+        excel.load();
+        Assert.assertTrue(excel.output(xml));
+        Assert.assertEquals(0, classRelection.patch(xls));
+    }
+
+    @Test
+    public void testLoadStreams() throws FileNotFoundException, JDOMException, IOException
+    {
+        classRelection.load(Paths.get(fileName));
+        HSSFWorkbook expected = classRelection.getWorkBook();
+
+        FileInputStream fis = new FileInputStream(fileName);
+        try
+        {
+            classRelection.load(fis);
+        }
+        finally
+        {
+            fis.close();
+        }
+        Assert.assertNull(classRelection.getXmlFile());
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+        Assert.assertFalse(classRelection.output(new ByteArrayOutputStream(), XmlReader.FORMAT_XLSX));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Assert.assertTrue(classRelection.output(Channels.newChannel(bos), XmlReader.FORMAT_XLS));
+        FileChannel channel = FileChannel.open(Paths.get(fileName));
+        try
+        {
+            classRelection.setStreaming(true);
+            classRelection.load(channel);
+        }
+        finally
+        {
+            channel.close();
+        }
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+        WorkBookAssert.assertSameWorkBook(expected, new HSSFWorkbook(new ByteArrayInputStream(bos.toByteArray())));
+
+        classRelection.load(Paths.get(fileName));
+        Assert.assertTrue(classRelection.output(Paths.get("target/streams.xlsx")));
+        FileInputStream xlsx = new FileInputStream("target/streams.xlsx");
+        try
+        {
+            WorkBookAssert.assertSameWorkBook(expected, new XSSFWorkbook(xlsx));
+        }
+        finally
+        {
+            xlsx.close();
+        }
+    }
+
+    @Test
+    public void testLoadStreaming() throws FileNotFoundException, JDOMException, IOException
+    {
+        classRelection.load(fileName);
+        HSSFWorkbook expected = classRelection.getWorkBook();
+
+        classRelection.setStreaming(true);
+        Assert.assertTrue(classRelection.isStreaming());
+        classRelection.load(fileName);
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+    }
+
     @Test
     public void testOutputReturnBoolean() throws FileNotFoundException, JDOMException, IOException
     {
@@ -66,4 +178,293 @@ public class XmlReaderTest
         classRelection.load(fileName);
         Assert.assertTrue(classRelection.output(xlsFileName));
     }
+
+    @Test
+    public void testOutputXlsx() throws FileNotFoundException, JDOMException, IOException
+    {
+        Assert.assertFalse(classRelection.output("target/test.xlsx"));
+
+        classRelection = new XmlReader(fileName);
+        classRelection.setRowAccessWindowSize(10);
+        Assert.assertEquals(10, classRelection.getRowAccessWindowSize());
+        Assert.assertTrue(classRelection.output("target/test.xlsx"));
+        Assert.assertTrue(classRelection.output("target/test.dat", XmlReader.FORMAT_XLSX));
+
+        classRelection.load();
+        XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream("target/test.xlsx"));
+        WorkBookAssert.assertSameWorkBook(classRelection.getWorkBook(), wb);
+    }
+
+    @Test
+    public void testLoadCompact() throws FileNotFoundException, JDOMException, IOException
+    {
+        ExcelReader reader = new ExcelReader("src/test/excel/test.xls");
+        Assert.assertTrue(reader.convert("target/legacy.xml"));
+        reader.setCompact(true);
+        Assert.assertTrue(reader.convert("target/compact.xml"));
+
+        classRelection.load("target/legacy.xml");
+        HSSFWorkbook expected = classRelection.getWorkBook();
+
+        classRelection.load("target/compact.xml");
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+
+        classRelection.setStreaming(true);
+        classRelection.load("target/compact.xml");
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+
+        Assert.assertTrue(classRelection.output("target/compact.xlsx"));
+        WorkBookAssert.assertSameWorkBook(expected, new XSSFWorkbook(new FileInputStream("target/compact.xlsx")));
+    }
+
+    @Test
+    public void testSparse() throws FileNotFoundException, JDOMException, IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("sparse");
+        sheet.createRow(1).createCell(2).setCellValue("b3");
+        HSSFRow row = sheet.createRow(2);
+        row.createCell(0).setCellValue("a3");
+        row.createCell(1).setCellValue("b3");
+        row.createCell(200).setCellValue("gs3");
+        row = sheet.createRow(1000);
+        row.setHeight((short) 600);
+        row.createCell(5).setCellValue("f1001");
+        sheet.createRow(1001).createCell(0).setCellValue("last");
+        FileOutputStream fos = new FileOutputStream("target/sparse.xls");
+        wb.write(fos);
+        fos.close();
+
+        ExcelReader reader = new ExcelReader("target/sparse.xls");
+        for (boolean compact : new boolean[] { false, true })
+        {
+            reader.setCompact(compact);
+            reader.load();
+            Assert.assertTrue(reader.output("target/sparse.xml"));
+            Assert.assertTrue(reader.convert("target/sparse-convert.xml"));
+            Assert.assertArrayEquals(readFile("target/sparse.xml"), readFile("target/sparse-convert.xml"));
+
+            for (boolean streaming : new boolean[] { false, true })
+            {
+                classRelection.setStreaming(streaming);
+                classRelection.load("target/sparse.xml");
+                HSSFSheet actual = classRelection.getWorkBook().getSheetAt(0);
+                Assert.assertEquals(3, actual.getPhysicalNumberOfRows());
+                Assert.assertEquals("b3", actual.getRow(1).getCell(2).toString());
+                Assert.assertEquals(3, actual.getRow(2).getPhysicalNumberOfCells());
+                Assert.assertEquals("gs3", actual.getRow(2).getCell(200).toString());
+                Assert.assertEquals(600, actual.getRow(1000).getHeight());
+                Assert.assertEquals("f1001", actual.getRow(1000).getCell(5).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testCellStyles() throws FileNotFoundException, JDOMException, IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("styles");
+        for (int i = 0; i < 200; i++)
+        {
+            HSSFRow row = sheet.createRow(i);
+            row.createCell(0).setCellValue("plain" + i);
+
+            // 每行重复创建内容相同的样式
+            HSSFCellStyle bold = wb.createCellStyle();
+            HSSFFont font = wb.createFont();
+            font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+            bold.setFont(font);
+            HSSFCell cell = row.createCell(1);
+            cell.setCellValue("bold" + i);
+            cell.setCellStyle(bold);
+
+            HSSFCellStyle center = wb.createCellStyle();
+            center.setAlignment(HSSFCellStyle.ALIGN_CENTER);
+            center.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+            cell = row.createCell(2);
+            cell.setCellValue(i);
+            cell.setCellStyle(center);
+        }
+        sheet.createRow(200);
+        FileOutputStream fos = new FileOutputStream("target/styles.xls");
+        wb.write(fos);
+        fos.close();
+
+        StylePalette palette = new StylePalette(wb);
+        Assert.assertEquals(2, palette.size());
+        Assert.assertEquals(-1, palette.getId(sheet.getRow(0).getCell(0).getCellStyle()));
+
+        ExcelReader reader = new ExcelReader("target/styles.xls");
+        reader.setCellStyles(true);
+        for (boolean compact : new boolean[] { false, true })
+        {
+            reader.setCompact(compact);
+            reader.load();
+            Assert.assertTrue(reader.output("target/styles.xml"));
+            Assert.assertTrue(reader.convert("target/styles-convert.xml"));
+            Assert.assertArrayEquals(readFile("target/styles.xml"), readFile("target/styles-convert.xml"));
+            Assert.assertTrue(reader.outputSplit("target/styles-split/styles.xml"));
+
+            for (String file : new String[] { "target/styles.xml", "target/styles-split/styles.xml" })
+            {
+                for (boolean streaming : new boolean[] { false, true })
+                {
+                    classRelection.setStreaming(streaming);
+                    classRelection.load(file);
+                    HSSFWorkbook actual = classRelection.getWorkBook();
+                    Assert.assertEquals(new HSSFWorkbook().getNumCellStyles() + 2, actual.getNumCellStyles());
+
+                    HSSFRow row = actual.getSheetAt(0).getRow(100);
+                    Assert.assertEquals(HSSFFont.BOLDWEIGHT_BOLD, row.getCell(1).getCellStyle().getFont(actual)
+                            .getBoldweight());
+                    Assert.assertSame(row.getCell(1).getCellStyle().getIndex(), actual.getSheetAt(0).getRow(0)
+                            .getCell(1).getCellStyle().getIndex());
+                    Assert.assertEquals(HSSFCellStyle.ALIGN_CENTER, row.getCell(2).getCellStyle().getAlignment());
+                    Assert.assertEquals("0.00", row.getCell(2).getCellStyle().getDataFormatString());
+                    Assert.assertEquals(HSSFFont.BOLDWEIGHT_NORMAL, row.getCell(0).getCellStyle().getFont(actual)
+                            .getBoldweight());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFormulas() throws FileNotFoundException, JDOMException, IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("formula");
+        HSSFSheet last = wb.createSheet("last");
+        HSSFRow row = sheet.createRow(0);
+        row.createCell(0).setCellValue(1.5);
+        row.createCell(1).setCellValue("a");
+        row.createCell(2).setCellFormula("A1*2");
+        row.createCell(3).setCellFormula("B1&\"b\"");
+        row.createCell(4).setCellFormula("A1>1");
+        row.createCell(5).setCellFormula("1/0");
+        // 引用后面的工作表
+        row.createCell(6).setCellFormula("last!A1+C1");
+        sheet.createRow(1);
+        last.createRow(0).createCell(0).setCellValue(7);
+        last.createRow(1);
+        HSSFFormulaEvaluator.evaluateAllFormulaCells(wb);
+        FileOutputStream fos = new FileOutputStream("target/formula.xls");
+        wb.write(fos);
+        fos.close();
+
+        ExcelReader reader = new ExcelReader("target/formula.xls");
+        for (boolean compact : new boolean[] { false, true })
+        {
+            reader.setCompact(compact);
+            reader.load();
+            Assert.assertTrue(reader.output("target/formula.xml"));
+            Assert.assertTrue(reader.convert("target/formula-convert.xml"));
+            Assert.assertArrayEquals(readFile("target/formula.xml"), readFile("target/formula-convert.xml"));
+
+            for (boolean streaming : new boolean[] { false, true })
+            {
+                classRelection.setStreaming(streaming);
+                classRelection.load("target/formula.xml");
+                HSSFRow actual = classRelection.getWorkBook().getSheetAt(0).getRow(0);
+                Assert.assertEquals(HSSFCell.CELL_TYPE_FORMULA, actual.getCell(2).getCellType());
+                Assert.assertEquals("A1*2", actual.getCell(2).getCellFormula());
+                Assert.assertEquals(3, actual.getCell(2).getNumericCellValue(), 0);
+                Assert.assertEquals("ab", actual.getCell(3).getStringCellValue());
+                Assert.assertTrue(actual.getCell(4).getBooleanCellValue());
+                Assert.assertEquals(HSSFCell.CELL_TYPE_ERROR, actual.getCell(5).getCachedFormulaResultType());
+                Assert.assertEquals("last!A1+C1", actual.getCell(6).getCellFormula());
+                Assert.assertEquals(10, actual.getCell(6).getNumericCellValue(), 0);
+
+                // 没有计算之前使用缓存结果
+                actual.getCell(0).setCellValue(2);
+                Assert.assertEquals(3, actual.getCell(2).getNumericCellValue(), 0);
+                Assert.assertEquals(5, classRelection.evaluateFormulas());
+                Assert.assertEquals(4, actual.getCell(2).getNumericCellValue(), 0);
+                Assert.assertEquals(11, actual.getCell(6).getNumericCellValue(), 0);
+            }
+
+            Assert.assertTrue(classRelection.output("target/formula.xlsx"));
+            XSSFWorkbook xssf = new XSSFWorkbook(new FileInputStream("target/formula.xlsx"));
+            Assert.assertEquals("last!A1+C1", xssf.getSheetAt(0).getRow(0).getCell(6).getCellFormula());
+            Assert.assertEquals(10, xssf.getSheetAt(0).getRow(0).getCell(6).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    public void testTypedCells() throws FileNotFoundException, JDOMException, IOException
+    {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("typed");
+        for (int i = 0; i < 100; i++)
+        {
+            HSSFRow row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i + 0.25);
+            row.createCell(1).setCellValue(0 == i % 2);
+            row.createCell(2).setCellValue("枚举" + (i % 3));
+            row.createCell(3);
+        }
+        sheet.createRow(100);
+        FileOutputStream fos = new FileOutputStream("target/typed.xls");
+        wb.write(fos);
+        fos.close();
+
+        ExcelReader reader = new ExcelReader("target/typed.xls");
+        for (boolean compact : new boolean[] { false, true })
+        {
+            reader.setCompact(compact);
+            reader.load();
+            Assert.assertTrue(reader.output("target/typed.xml"));
+
+            for (boolean streaming : new boolean[] { false, true })
+            {
+                classRelection.setStreaming(streaming);
+                classRelection.load("target/typed.xml");
+                HSSFSheet actual = classRelection.getWorkBook().getSheetAt(0);
+                for (int i = 0; i < 100; i++)
+                {
+                    for (int j = 0; j < 3; j++)
+                    {
+                        WorkBookAssert.assertSameCell(sheet.getRow(i).getCell(j), actual.getRow(i).getCell(j));
+                    }
+                }
+                Assert.assertEquals(HSSFCell.CELL_TYPE_NUMERIC, actual.getRow(10).getCell(0).getCellType());
+                Assert.assertEquals(10.25, actual.getRow(10).getCell(0).getNumericCellValue(), 0);
+                Assert.assertEquals(HSSFCell.CELL_TYPE_BOOLEAN, actual.getRow(10).getCell(1).getCellType());
+                Assert.assertTrue(actual.getRow(10).getCell(1).getBooleanCellValue());
+                Assert.assertSame(actual.getRow(2).getCell(2).getRichStringCellValue(), actual.getRow(5).getCell(2)
+                        .getRichStringCellValue());
+                Assert.assertEquals(HSSFCell.CELL_TYPE_STRING, actual.getRow(10).getCell(3).getCellType());
+            }
+        }
+    }
+
+    private byte[] readFile(String name) throws IOException
+    {
+        return Files.readAllBytes(Paths.get(name));
+    }
+
+    @Test
+    public void testLoadSplit() throws FileNotFoundException, JDOMException, IOException
+    {
+        ExcelReader reader = new ExcelReader("src/test/excel/test.xls");
+        reader.load();
+        Assert.assertTrue(reader.outputSplit("target/split/load.xml"));
+        Assert.assertTrue(reader.output("target/split/whole.xml"));
+        Assert.assertNull(XmlReader.getSheetFiles("target/split/whole.xml"));
+        Assert.assertEquals(reader.getXml().getChildren().size(), XmlReader.getSheetFiles("target/split/load.xml")
+                .size());
+
+        classRelection.load("target/split/whole.xml");
+        HSSFWorkbook expected = classRelection.getWorkBook();
+
+        classRelection.load("target/split/load.xml");
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+
+        classRelection.setStreaming(true);
+        classRelection.load("target/split/load.xml");
+        WorkBookAssert.assertSameWorkBook(expected, classRelection.getWorkBook());
+
+        Assert.assertTrue(classRelection.output("target/split/load.xlsx"));
+        XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream("target/split/load.xlsx"));
+        WorkBookAssert.assertSameWorkBook(expected, wb);
+    }
 }
@@ -0,0 +1,79 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XmlStreamWriterTest
+{
+    private void write(WorkBookHandler handler) throws IOException
+    {
+        handler.startWorkBook();
+        handler.startSheet("装备 & \"test\"");
+        handler.startRow(0, (short) 375);
+        handler.cell(0, "String", "编号");
+        handler.cell(1, "String", "");
+        handler.cell(2, "String", "   ");
+        handler.cell(3, "String", " a  b\r\n\tc ");
+        handler.cell(4, "String", "<a href=\"x\">&'</a>");
+        handler.cell(5, "Number", "1.5");
+        handler.cell(6, "Boolean", "TRUE");
+        handler.endRow();
+        handler.startRow(1, (short) 255);
+        handler.endRow();
+        handler.endSheet();
+        handler.startSheet("empty");
+        handler.endSheet();
+        handler.endWorkBook();
+    }
+
+    @Test
+    public void testSameAsXMLOutputter() throws IOException
+    {
+        ElementHandler elementHandler = new ElementHandler();
+        write(elementHandler);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new XMLOutputter(XmlStreamWriter.getFormat()).output(new Document(elementHandler.getXml()), expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        write(new XmlStreamWriter(actual));
+
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testEmptyWorkBook() throws IOException
+    {
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        XmlStreamWriter writer = new XmlStreamWriter(actual);
+        writer.startWorkBook();
+        writer.endWorkBook();
+
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n<WorkBook />\r\n", actual.toString("utf-8"));
+    }
+
+    @Test
+    public void testWriteFragment() throws IOException
+    {
+        ElementHandler elementHandler = new ElementHandler();
+        write(elementHandler);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new XMLOutputter(XmlStreamWriter.getFormat()).output(new Document(elementHandler.getXml().clone()), expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        XmlStreamWriter writer = new XmlStreamWriter(actual);
+        writer.startWorkBook();
+        for (Element sheet : elementHandler.getXml().getChildren())
+        {
+            writer.writeFragment(XmlStreamWriter.toFragment(sheet, 1));
+        }
+        writer.endWorkBook();
+
+        Assert.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+}
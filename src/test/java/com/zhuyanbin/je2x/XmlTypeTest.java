@@ -38,4 +38,17 @@ public class XmlTypeTest
         Assert.assertTrue(classRelection instanceof XmlType);
     }
 
+    @Test
+    public void testCompactType()
+    {
+        String[] types = { "String", "Number", "Boolean", "Other" };
+        for (String type : types)
+        {
+            Assert.assertEquals(type, XmlType.toType(XmlType.toCompactType(type)));
+        }
+        Assert.assertNull(XmlType.toCompactType("String"));
+        Assert.assertEquals("n", XmlType.toCompactType("Number"));
+        Assert.assertEquals("b", XmlType.toCompactType("Boolean"));
+    }
+
 }
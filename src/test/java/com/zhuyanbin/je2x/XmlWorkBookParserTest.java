@@ -0,0 +1,58 @@
+package com.zhuyanbin.je2x;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XmlWorkBookParserTest
+{
+    private final String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                                     + "<WorkBook>"
+                                     + "<WorkSheet name=\"装备\">"
+                                     + "<Row Height=\"375\">"
+                                     + "<Cell><Data type=\"String\">编号</Data></Cell>"
+                                     + "<Cell><Data type=\"Number\">12</Data></Cell>"
+                                     + "<Cell><Data type=\"Boolean\">TRUE</Data></Cell>"
+                                     + "<Cell />"
+                                     + "<Cell><Data type=\"String\"><![CDATA[a<b]]> &amp; c</Data><Data type=\"Number\">1</Data></Cell>"
+                                     + "</Row>"
+                                     + "<Row Height=\"600\" />"
+                                     + "<Row Height=\"255\"><Cell><Data type=\"Unknown\">x</Data></Cell></Row>"
+                                     + "</WorkSheet>"
+                                     + "<WorkSheet name=\"empty\" />"
+                                     + "</WorkBook>";
+
+    private HSSFWorkbook parseDocument() throws JDOMException, IOException
+    {
+        Element root = new SAXBuilder().build(new StringReader(xml)).getRootElement();
+        HSSFWorkbook wb = new HSSFWorkbook();
+        XmlReader reader = new XmlReader();
+        List<Element> sheets = root.getChildren();
+        for (Element sheet : sheets)
+        {
+            reader.parseXml2WorkSheet(sheet, wb);
+        }
+
+        return wb;
+    }
+
+    @Test
+    public void testSameAsDocument() throws JDOMException, IOException, XMLStreamException
+    {
+        XmlWorkBookParser parser = new XmlWorkBookParser(new HSSFWorkbook());
+        parser.parse(new ByteArrayInputStream(xml.getBytes("utf-8")));
+
+        WorkBookAssert.assertSameWorkBook(parseDocument(), parser.getWorkBook());
+        Assert.assertEquals("a<b & c", parser.getWorkBook().getSheetAt(0).getRow(0).getCell(4).getStringCellValue());
+    }
+}